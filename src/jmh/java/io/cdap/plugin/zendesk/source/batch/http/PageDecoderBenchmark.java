@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.format.StructuredRecordStringConverter;
+import io.cdap.plugin.zendesk.source.batch.ZendeskBatchSourceConfig;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the map based conversion of a page response with the streaming {@link PageDecoder}, end to end.
+ * The stages of the map based conversion are measured apart by {@link RecordConversionBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PageDecoderBenchmark {
+
+  private static final String TABLE_NAME_FIELD = "tablename";
+  // id of the user or request the comments are read for
+  private static final long ENTITY_ID = 1L;
+
+  @Param({"ARTICLE_COMMENTS", "POST_COMMENTS", "REQUESTS_COMMENTS", "TICKET_COMMENTS", "GROUPS", "ORGANIZATIONS",
+    "SATISFACTION_RATINGS", "TAGS", "TICKET_FIELDS", "TICKET_METRICS", "TICKET_METRIC_EVENTS", "TICKETS", "USERS"})
+  public ObjectType objectType;
+
+  private String response;
+  private Schema schema;
+  private PagedIterator pagedIterator;
+  private PageDecoder pageDecoder;
+  private PageDecoder projectedDecoder;
+
+  /**
+   * Reads the page fixture of the object type, see {@link PageFixtures}.
+   */
+  @Setup
+  public void setup() throws IOException {
+    List<Schema.Field> fields = new ArrayList<>(objectType.getObjectSchema().getFields());
+    fields.add(Schema.Field.of(TABLE_NAME_FIELD, Schema.of(Schema.Type.STRING)));
+    schema = Schema.recordOf(objectType.getObjectName(), fields);
+    response = PageFixtures.getPage(objectType);
+
+    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+      "reference", "email@test.com", "apiToken", "subdomain", objectType.getObjectName(), "",
+      "2019-01-01T23:01:01Z", null, null, 1, 300, 300, "http://%s.localhosttestdomain/%s", null);
+    pagedIterator = new PagedIterator(config, objectType, "subdomain", ENTITY_ID);
+    pageDecoder = new PageDecoder(objectType, schema, TABLE_NAME_FIELD);
+    // an output schema narrowed to the first field of the object, usually its id
+    Schema projectedSchema = Schema.recordOf(objectType.getObjectName(), fields.get(0),
+                                             Schema.Field.of(TABLE_NAME_FIELD, Schema.of(Schema.Type.STRING)));
+    projectedDecoder = new PageDecoder(objectType, projectedSchema, TABLE_NAME_FIELD);
+  }
+
+  /**
+   * Closes the iterator used for the map based conversion.
+   */
+  @TearDown
+  public void tearDown() throws IOException {
+    pagedIterator.close();
+  }
+
+  /**
+   * Parses the page into maps, renames the keys, serializes each object and parses it again.
+   */
+  @Benchmark
+  public void mapConversion(Blackhole blackhole) throws IOException {
+    Map<String, Object> responseMap = pagedIterator.parseResponse(new StringReader(response));
+    Iterator<String> values = pagedIterator.getJsonValuesFromResponse(responseMap);
+    while (values.hasNext()) {
+      blackhole.consume(StructuredRecordStringConverter.fromJsonString(values.next(), schema));
+    }
+  }
+
+  /**
+   * Decodes the page straight into records.
+   */
+  @Benchmark
+  public void streamingDecoder(Blackhole blackhole) throws IOException {
+    Iterator<StructuredRecord> records = pageDecoder.decode(new StringReader(response)).getRecords();
+    while (records.hasNext()) {
+      blackhole.consume(records.next());
+    }
+  }
+
+  /**
+   * Decodes the page straight into records of a narrowed output schema, skipping the other values unparsed.
+   */
+  @Benchmark
+  public void projectedDecoder(Blackhole blackhole) throws IOException {
+    Iterator<StructuredRecord> records = projectedDecoder.decode(new StringReader(response)).getRecords();
+    while (records.hasNext()) {
+      blackhole.consume(records.next());
+    }
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import com.google.common.base.CaseFormat;
+import com.google.common.base.Strings;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Page responses the benchmarks are run with, one per object type.
+ * <p>
+ * By default the pages are generated from the object schemas, keyed and shaped the way Zendesk returns them,
+ * with anonymized values. Pages captured from Zendesk are used instead when the 'jmh.fixtures' system property
+ * names a directory holding them, in files named after the object type, like 'tickets.json'.
+ */
+public final class PageFixtures {
+
+  /**
+   * Number of objects of a generated page, the size of an incremental export page.
+   */
+  public static final int PAGE_SIZE = 1000;
+
+  private static final String FIXTURES_PROPERTY = "jmh.fixtures";
+  private static final Gson GSON = new GsonBuilder().serializeNulls().create();
+  private static final long END_TIME = 1577836800L;
+
+  private PageFixtures() {
+  }
+
+  /**
+   * Returns the page response of an object type, captured if available, generated otherwise.
+   *
+   * @param objectType The object type
+   * @return the page response
+   * @throws IOException if the captured page cannot be read
+   */
+  public static String getPage(ObjectType objectType) throws IOException {
+    String directory = System.getProperty(FIXTURES_PROPERTY);
+    if (!Strings.isNullOrEmpty(directory)) {
+      File file = new File(directory, objectType.name().toLowerCase() + ".json");
+      if (file.isFile()) {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+      }
+    }
+    return createPage(objectType, PAGE_SIZE);
+  }
+
+  /**
+   * Generates a page of anonymized objects. The objects of an object type with a child key are held by
+   * parent objects, every other child being a comment.
+   *
+   * @param objectType The object type
+   * @param size       The number of objects of the page
+   * @return the page response
+   */
+  public static String createPage(ObjectType objectType, int size) {
+    List<Object> objects = new ArrayList<>();
+    if (objectType.getChildKey() == null) {
+      for (int i = 0; i < size; i++) {
+        objects.add(createObject(objectType, i));
+      }
+    } else {
+      for (int i = 0; i < size / 2; i++) {
+        Map<String, Object> comment = createObject(objectType, 2 * i);
+        comment.put("event_type", "Comment");
+        Map<String, Object> change = new LinkedHashMap<>();
+        change.put("id", 2 * i + 1);
+        change.put("event_type", "Change");
+        change.put("previous_value", "open");
+        change.put("value", "solved");
+        Map<String, Object> parent = new LinkedHashMap<>();
+        parent.put("id", 360000000000L + i);
+        parent.put("ticket_id", 1000 + i);
+        parent.put(objectType.getExportTimeKey(), END_TIME - size + i);
+        parent.put(objectType.getChildKey(), Arrays.asList(comment, change));
+        objects.add(parent);
+      }
+    }
+
+    Map<String, Object> page = new LinkedHashMap<>();
+    page.put(objectType.getResponseKey(), objects);
+    page.put("next_page", null);
+    page.put("count", objects.size());
+    page.put("end_time", END_TIME);
+    return GSON.toJson(page);
+  }
+
+  private static Map<String, Object> createObject(ObjectType objectType, int index) {
+    Map<String, Object> object = (Map<String, Object>) createValue(null, objectType.getObjectSchema(), index);
+    String exportTimeKey = objectType.getExportTimeKey();
+    if (exportTimeKey != null && objectType.getChildKey() == null) {
+      long time = END_TIME - PAGE_SIZE + index;
+      Schema.Field field = objectType.getObjectSchema()
+        .getField(CaseFormat.LOWER_UNDERSCORE.to(CaseFormat.LOWER_CAMEL, exportTimeKey));
+      boolean isoTime = field != null && field.getSchema().getNonNullable().getType() == Schema.Type.STRING;
+      object.put(exportTimeKey, isoTime ? Instant.ofEpochSecond(time).toString() : time);
+    }
+    return object;
+  }
+
+  private static Object createValue(String key, Schema schema, int index) {
+    switch (schema.getType()) {
+      case BOOLEAN:
+        return index % 2 == 0;
+      case INT:
+        return index;
+      case LONG:
+        return 360000000000L + index;
+      case FLOAT:
+      case DOUBLE:
+        return index / 10.0;
+      case STRING:
+        return createString(key, index);
+      case ENUM:
+        return schema.getEnumValue(index % schema.getEnumValues().size());
+      case ARRAY:
+        return Arrays.asList(createValue(key, schema.getComponentSchema(), index),
+                             createValue(key, schema.getComponentSchema(), index + 1));
+      case MAP:
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("key_a", createValue(key, schema.getMapSchema().getValue(), index));
+        map.put("key_b", createValue(key, schema.getMapSchema().getValue(), index + 1));
+        return map;
+      case RECORD:
+        Map<String, Object> object = new LinkedHashMap<>();
+        for (Schema.Field field : schema.getFields()) {
+          String fieldKey = CaseFormat.LOWER_CAMEL.to(CaseFormat.LOWER_UNDERSCORE, field.getName());
+          // a few optional values are left out, as in actual responses
+          object.put(fieldKey, field.getSchema().isNullable() && (index + fieldKey.length()) % 7 == 0
+            ? null : createValue(fieldKey, field.getSchema(), index));
+        }
+        return object;
+      case UNION:
+        return createValue(key, schema.getNonNullable(), index);
+      default:
+        return null;
+    }
+  }
+
+  private static String createString(String key, int index) {
+    if (key == null) {
+      return "value " + index;
+    }
+    if (key.endsWith("_at") || key.equals("time")) {
+      return Instant.ofEpochSecond(END_TIME - PAGE_SIZE + index).toString();
+    }
+    if (key.contains("email")) {
+      return "user" + index + "@example.com";
+    }
+    if (key.equals("url")) {
+      return "https://subdomain.zendesk.com/api/v2/objects/" + index + ".json";
+    }
+    if (key.contains("body") || key.contains("description")) {
+      return Strings.repeat("Anonymized text of object " + index + ". ", 8);
+    }
+    return key + " " + index;
+  }
+}
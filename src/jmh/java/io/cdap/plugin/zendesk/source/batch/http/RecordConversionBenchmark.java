@@ -0,0 +1,182 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.format.StructuredRecordStringConverter;
+import io.cdap.plugin.zendesk.source.batch.ZendeskBatchSourceConfig;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures each stage of the map based conversion of a page response apart: parsing the response into maps,
+ * renaming the keys, serializing the objects and parsing them into records.
+ * <p>
+ * Renaming the keys changes the maps, so the stages fed with maps are given a freshly parsed page on every
+ * invocation, outside of the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RecordConversionBenchmark {
+
+  private static final String TABLE_NAME_FIELD = "tablename";
+  // id of the user or request the comments are read for
+  private static final long ENTITY_ID = 1L;
+
+  @Param({"ARTICLE_COMMENTS", "POST_COMMENTS", "REQUESTS_COMMENTS", "TICKET_COMMENTS", "GROUPS", "ORGANIZATIONS",
+    "SATISFACTION_RATINGS", "TAGS", "TICKET_FIELDS", "TICKET_METRICS", "TICKET_METRIC_EVENTS", "TICKETS", "USERS"})
+  public ObjectType objectType;
+
+  private String response;
+  private Schema schema;
+  private PagedIterator pagedIterator;
+  private List<String> jsonValues;
+
+  /**
+   * Reads the page fixture of the object type, and converts it once to get the input of the last stage.
+   */
+  @Setup
+  public void setup() throws IOException {
+    List<Schema.Field> fields = new ArrayList<>(objectType.getObjectSchema().getFields());
+    fields.add(Schema.Field.of(TABLE_NAME_FIELD, Schema.of(Schema.Type.STRING)));
+    schema = Schema.recordOf(objectType.getObjectName(), fields);
+    response = PageFixtures.getPage(objectType);
+
+    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+      "reference", "email@test.com", "apiToken", "subdomain", objectType.getObjectName(), "",
+      "2019-01-01T23:01:01Z", null, null, 1, 300, 300, "http://%s.localhosttestdomain/%s", null);
+    pagedIterator = new PagedIterator(config, objectType, "subdomain", ENTITY_ID);
+    jsonValues = new ArrayList<>();
+    pagedIterator.getJsonValuesFromResponse(pagedIterator.parseResponse(new StringReader(response)))
+      .forEachRemaining(jsonValues::add);
+  }
+
+  /**
+   * Closes the iterator used for the conversion.
+   */
+  @TearDown
+  public void tearDown() throws IOException {
+    pagedIterator.close();
+  }
+
+  /**
+   * Parses the page response into maps, as {@link PagedIterator#getResponseAsMap()} does.
+   */
+  @Benchmark
+  public Map<String, Object> getResponseAsMap() {
+    return pagedIterator.parseResponse(new StringReader(response));
+  }
+
+  /**
+   * Renames the keys of the objects of the page, and serializes them.
+   */
+  @Benchmark
+  public void getJsonValuesFromResponse(ParsedPage parsedPage, Blackhole blackhole) {
+    Iterator<String> values = pagedIterator.getJsonValuesFromResponse(parsedPage.responseMap);
+    while (values.hasNext()) {
+      blackhole.consume(values.next());
+    }
+  }
+
+  /**
+   * Renames the keys of the objects of the page.
+   */
+  @Benchmark
+  public void replaceKeys(ParsedPage parsedPage, Blackhole blackhole) {
+    for (Map<String, Object> object : parsedPage.objects) {
+      pagedIterator.replaceKeys(object, objectType.getObjectSchema());
+      blackhole.consume(object);
+    }
+  }
+
+  /**
+   * Parses the serialized objects of the page into records.
+   */
+  @Benchmark
+  public void fromJsonString(Blackhole blackhole) throws IOException {
+    for (String jsonValue : jsonValues) {
+      blackhole.consume(StructuredRecordStringConverter.fromJsonString(jsonValue, schema));
+    }
+  }
+
+  /**
+   * Runs all the stages, from the page response to the records.
+   */
+  @Benchmark
+  public void endToEnd(Blackhole blackhole) throws IOException {
+    Iterator<String> values = pagedIterator.getJsonValuesFromResponse(
+      pagedIterator.parseResponse(new StringReader(response)));
+    while (values.hasNext()) {
+      blackhole.consume(StructuredRecordStringConverter.fromJsonString(values.next(), schema));
+    }
+  }
+
+  /**
+   * A page response parsed into maps, parsed again before every invocation as the stages change it.
+   */
+  @State(Scope.Thread)
+  public static class ParsedPage {
+
+    private Map<String, Object> responseMap;
+    private List<Map<String, Object>> objects;
+
+    /**
+     * Parses the page response, and collects the objects the keys are renamed in.
+     */
+    @Setup(Level.Invocation)
+    public void setup(RecordConversionBenchmark benchmark) {
+      ObjectType objectType = benchmark.objectType;
+      responseMap = benchmark.pagedIterator.parseResponse(new StringReader(benchmark.response));
+      objects = new ArrayList<>();
+      for (Object object : (List<Object>) responseMap.get(objectType.getResponseKey())) {
+        if (objectType.getChildKey() == null) {
+          objects.add((Map<String, Object>) object);
+        } else {
+          for (Object child : (List<Object>) ((Map<String, Object>) object).get(objectType.getChildKey())) {
+            objects.add((Map<String, Object>) child);
+          }
+        }
+      }
+    }
+  }
+}
@@ -27,6 +27,7 @@ import io.cdap.cdap.etl.api.Emitter;
 import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.cdap.etl.api.PipelineConfigurer;
 import io.cdap.cdap.etl.api.action.SettableArguments;
+import io.cdap.cdap.etl.api.batch.BatchRuntimeContext;
 import io.cdap.cdap.etl.api.batch.BatchSource;
 import io.cdap.cdap.etl.api.batch.BatchSourceContext;
 
@@ -48,9 +49,11 @@ public class ZendeskBatchMultiSource extends BatchSource<NullWritable, Structure
   private static final String MULTI_SINK_PREFIX = "multisink.";
 
   private final ZendeskBatchSourceConfig config;
+  private final ZendeskSourceRun run;
 
   public ZendeskBatchMultiSource(ZendeskBatchSourceConfig config) {
     this.config = config;
+    this.run = new ZendeskSourceRun(config);
   }
 
   @Override
@@ -77,12 +80,32 @@ public class ZendeskBatchMultiSource extends BatchSource<NullWritable, Structure
       config.recordLineage(batchSourceContext, objectName, schemas.get(objectName));
     });
 
+    Map<String, Long> startTimes = run.prepare(batchSourceContext, config.getObjects());
     batchSourceContext.setInput(Input.of(config.referenceName,
-      new ZendeskInputFormatProvider(config, config.getObjects(), schemasStrings, ZendeskBatchMultiSource.NAME)));
+      new ZendeskInputFormatProvider(config, config.getObjects(), schemasStrings, ZendeskBatchMultiSource.NAME,
+                                     startTimes, run.getCheckpointDir(), run.getPositionsDir())));
+  }
+
+  @Override
+  public void onRunFinish(boolean succeeded, BatchSourceContext context) {
+    run.finish(succeeded);
+  }
+
+  @Override
+  public void initialize(BatchRuntimeContext context) throws Exception {
+    super.initialize(context);
+    run.initialize(context);
   }
 
   @Override
   public void transform(KeyValue<NullWritable, StructuredRecord> input, Emitter<StructuredRecord> emitter) {
+    run.publishMetricsPeriodically();
     emitter.emit(input.getValue());
   }
+
+  @Override
+  public void destroy() {
+    run.destroy();
+    super.destroy();
+  }
 }
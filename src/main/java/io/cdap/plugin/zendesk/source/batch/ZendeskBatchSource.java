@@ -27,6 +27,7 @@ import io.cdap.cdap.api.dataset.lib.KeyValue;
 import io.cdap.cdap.etl.api.Emitter;
 import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.cdap.etl.api.PipelineConfigurer;
+import io.cdap.cdap.etl.api.batch.BatchRuntimeContext;
 import io.cdap.cdap.etl.api.batch.BatchSource;
 import io.cdap.cdap.etl.api.batch.BatchSourceContext;
 import io.cdap.plugin.zendesk.source.common.config.BaseZendeskSourceConfig;
@@ -34,6 +35,7 @@ import io.cdap.plugin.zendesk.source.common.config.BaseZendeskSourceConfig;
 import org.apache.hadoop.io.NullWritable;
 
 import java.util.Collections;
+import java.util.Map;
 
 /**
  * Source plugin to read data from Zendesk.
@@ -46,9 +48,11 @@ public class ZendeskBatchSource extends BatchSource<NullWritable, StructuredReco
   public static final String NAME = "Zendesk";
 
   private final ZendeskBatchSourceConfig config;
+  private final ZendeskSourceRun run;
 
   public ZendeskBatchSource(ZendeskBatchSourceConfig config) {
     this.config = config;
+    this.run = new ZendeskSourceRun(config);
   }
 
   @Override
@@ -72,17 +76,36 @@ public class ZendeskBatchSource extends BatchSource<NullWritable, StructuredReco
     String objectToPull = config.getObjectsToPull().iterator().next();
 
     config.recordLineage(batchSourceContext, objectToPull, schema);
+    Map<String, Long> startTimes = run.prepare(batchSourceContext, Collections.singletonList(objectToPull));
     batchSourceContext.setInput(Input.of(
       config.referenceName,
       new ZendeskInputFormatProvider(config,
         Collections.singletonList(objectToPull),
         ImmutableMap.of(objectToPull, schema.toString()),
-        ZendeskBatchSource.NAME)));
+        ZendeskBatchSource.NAME, startTimes, run.getCheckpointDir(), run.getPositionsDir())));
+  }
+
+  @Override
+  public void onRunFinish(boolean succeeded, BatchSourceContext context) {
+    run.finish(succeeded);
+  }
+
+  @Override
+  public void initialize(BatchRuntimeContext context) throws Exception {
+    super.initialize(context);
+    run.initialize(context);
   }
 
   @Override
   public void transform(KeyValue<NullWritable, StructuredRecord> input,
                         Emitter<StructuredRecord> emitter) {
+    run.publishMetricsPeriodically();
     emitter.emit(input.getValue());
   }
+
+  @Override
+  public void destroy() {
+    run.destroy();
+    super.destroy();
+  }
 }
@@ -23,8 +23,7 @@ import io.cdap.cdap.api.annotation.Macro;
 import io.cdap.cdap.api.annotation.Name;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.etl.api.FailureCollector;
-import io.cdap.plugin.zendesk.source.batch.http.ConnectionTimeoutException;
-import io.cdap.plugin.zendesk.source.batch.http.PagedIterator;
+import io.cdap.plugin.zendesk.source.batch.http.ConnectionValidator;
 import io.cdap.plugin.zendesk.source.common.ObjectType;
 import io.cdap.plugin.zendesk.source.common.config.BaseZendeskSourceConfig;
 
@@ -32,6 +31,11 @@ import java.io.IOException;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
 
@@ -47,9 +51,41 @@ public class ZendeskBatchSourceConfig extends BaseZendeskSourceConfig {
   public static final String PROPERTY_MAX_RETRY_COUNT = "maxRetryCount";
   public static final String PROPERTY_CONNECT_TIMEOUT = "connectTimeout";
   public static final String PROPERTY_READ_TIMEOUT = "readTimeout";
+  public static final String PROPERTY_RETRY_BASE_DELAY = "retryBaseDelay";
+  public static final String PROPERTY_RETRY_MAX_DELAY = "retryMaxDelay";
+  public static final String PROPERTY_MAX_RETRY_TIME = "maxRetryTime";
   public static final String PROPERTY_URL = "zendeskBaseUrl";
   public static final String PROPERTY_SCHEMA = "schema";
   public static final String PROPERTY_TABLE_NAME_FIELD = "tableNameField";
+  public static final String PROPERTY_MAX_SPLITS_PER_OBJECT = "maxSplitsPerObject";
+  public static final String PROPERTY_PACK_SMALL_OBJECTS = "packSmallObjects";
+  public static final String PROPERTY_MAX_CONNECTIONS_PER_ROUTE = "maxConnectionsPerRoute";
+  public static final String PROPERTY_KEEP_ALIVE = "keepAlive";
+  public static final String PROPERTY_IDLE_TIMEOUT = "idleTimeout";
+  public static final String PROPERTY_PREFETCH_PAGES = "prefetchPages";
+  public static final String PROPERTY_COMMENTS_CONCURRENCY = "commentsConcurrency";
+  public static final String PROPERTY_MAX_REQUESTS_PER_MINUTE = "maxRequestsPerMinute";
+  public static final String PROPERTY_SUBDOMAIN_REQUEST_BUDGET = "subdomainRequestBudget";
+  public static final String PROPERTY_EXPORT_PAGINATION = "exportPagination";
+  public static final String PROPERTY_HTTP_ENGINE = "httpEngine";
+  public static final String PROPERTY_ADAPTIVE_CONCURRENCY = "adaptiveConcurrency";
+  public static final String PROPERTY_VALIDATION_TIMEOUT = "validationTimeout";
+  public static final String PROPERTY_VALIDATION_CACHE_TTL = "validationCacheTtl";
+  public static final String PROPERTY_WATERMARK_PATH = "watermarkPath";
+  public static final String PROPERTY_CHECKPOINT_PATH = "checkpointPath";
+  public static final String PROPERTY_SIDELOAD_WITH_TICKETS = "sideloadWithTickets";
+  public static final String EXPORT_PAGINATION_TIME = "Time";
+  public static final String EXPORT_PAGINATION_CURSOR = "Cursor";
+  public static final String HTTP_ENGINE_BLOCKING = "Blocking";
+  public static final String HTTP_ENGINE_ASYNC = "Async";
+  public static final int MAX_CONNECTIONS_PER_ROUTE_DEFAULT = 10;
+  public static final int KEEP_ALIVE_DEFAULT = 60;
+  public static final int IDLE_TIMEOUT_DEFAULT = 30;
+  public static final int RETRY_BASE_DELAY_DEFAULT = 1;
+  public static final int RETRY_MAX_DELAY_DEFAULT = 60;
+  public static final int MAX_RETRY_TIME_DEFAULT = 900;
+  public static final int VALIDATION_TIMEOUT_DEFAULT = 30;
+  public static final int VALIDATION_CACHE_TTL_DEFAULT = 600;
   public static final String TABLE_NAME_FIELD_DEFAULT = "tablename";
 
   @Name(PROPERTY_START_DATE)
@@ -88,6 +124,27 @@ public class ZendeskBatchSourceConfig extends BaseZendeskSourceConfig {
   @Macro
   private final Integer readTimeout;
 
+  @Name(PROPERTY_RETRY_BASE_DELAY)
+  @Macro
+  @Nullable
+  @Description("Time in seconds a failed request is retried after at most, doubled at each failed attempt. " +
+    "The time waited is drawn at random up to it. Defaults to 1.")
+  protected Integer retryBaseDelay;
+
+  @Name(PROPERTY_RETRY_MAX_DELAY)
+  @Macro
+  @Nullable
+  @Description("Maximum time in seconds a failed request is retried after. Defaults to 60.")
+  protected Integer retryMaxDelay;
+
+  @Name(PROPERTY_MAX_RETRY_TIME)
+  @Macro
+  @Nullable
+  @Description("Maximum total time in seconds a split waits before retrying the requests failed on a server " +
+    "error or a connection failure. Once it is used up, the next such failure fails the split. Requests rejected " +
+    "by the rate limit wait for the time given by Zendesk instead. Defaults to 900.")
+  protected Integer maxRetryTime;
+
   @Name(PROPERTY_URL)
   @Description("Zendesk base url.")
   @Macro
@@ -106,6 +163,134 @@ public class ZendeskBatchSourceConfig extends BaseZendeskSourceConfig {
     "is set to `Table`.")
   protected String tableNameField;
 
+  @Name(PROPERTY_MAX_SPLITS_PER_OBJECT)
+  @Macro
+  @Nullable
+  @Description("Maximum number of splits the time range of an incremental export object, or the pages of a list " +
+    "object, are divided into. The number of splits is estimated from the first page of the export or the list. " +
+    "Defaults to 1.")
+  protected Integer maxSplitsPerObject;
+
+  @Name(PROPERTY_PACK_SMALL_OBJECTS)
+  @Macro
+  @Nullable
+  @Description("Whether the objects estimated to take a few requests are read together by a single split, in " +
+    "sequence, instead of a split each. The splits are packed up to the requests of the largest split, so that " +
+    "fewer tasks are started without delaying the end of the read. Defaults to false.")
+  protected Boolean packSmallObjects;
+
+  @Name(PROPERTY_MAX_CONNECTIONS_PER_ROUTE)
+  @Macro
+  @Nullable
+  @Description("Maximum number of connections kept open to a Zendesk subdomain. Defaults to 10.")
+  protected Integer maxConnectionsPerRoute;
+
+  @Name(PROPERTY_KEEP_ALIVE)
+  @Macro
+  @Nullable
+  @Description("Maximum time in seconds a connection is kept open for reuse, when the server does not " +
+    "specify it. Defaults to 60.")
+  protected Integer keepAlive;
+
+  @Name(PROPERTY_IDLE_TIMEOUT)
+  @Macro
+  @Nullable
+  @Description("Time in seconds after which an unused connection is closed. Defaults to 30.")
+  protected Integer idleTimeout;
+
+  @Name(PROPERTY_PREFETCH_PAGES)
+  @Macro
+  @Nullable
+  @Description("Number of pages requested ahead while the records of the current page are read. " +
+    "Defaults to 0, which requests each page once the previous one is read.")
+  protected Integer prefetchPages;
+
+  @Name(PROPERTY_COMMENTS_CONCURRENCY)
+  @Macro
+  @Nullable
+  @Description("Number of users or requests whose comments are read in parallel for the Article Comments, " +
+    "Post Comments and Requests Comments objects. Defaults to 1.")
+  protected Integer commentsConcurrency;
+
+  @Name(PROPERTY_MAX_REQUESTS_PER_MINUTE)
+  @Macro
+  @Nullable
+  @Description("Maximum number of requests per minute sent to a Zendesk subdomain by all the readers of a " +
+    "worker. The rate is lowered to the limit reported by Zendesk. If not set, only the reported limit is used.")
+  protected Integer maxRequestsPerMinute;
+
+  @Name(PROPERTY_SUBDOMAIN_REQUEST_BUDGET)
+  @Macro
+  @Nullable
+  @Description("Number of requests per minute sent to a Zendesk subdomain by all the splits of a run. It is divided " +
+    "evenly among the splits reading the subdomain, and each split sends at most its share. If not set, the splits " +
+    "are only held back by the Max Requests Per Minute and the limit reported by Zendesk.")
+  protected Integer subdomainRequestBudget;
+
+  @Name(PROPERTY_EXPORT_PAGINATION)
+  @Macro
+  @Nullable
+  @Description("Pagination of the incremental exports, 'Time' or 'Cursor'. The cursor based export is used for " +
+    "the Tickets and Users objects, the other objects are exported by time. Defaults to 'Time'.")
+  protected String exportPagination;
+
+  @Name(PROPERTY_HTTP_ENGINE)
+  @Macro
+  @Nullable
+  @Description("How the requests are sent, 'Blocking' or 'Async'. Blocking requests are sent by the reading " +
+    "thread, which waits for each response. Async requests are sent by a non-blocking client whose I/O threads are " +
+    "shared by the readers of a worker, so that a reader keeps the following page and the comments of several " +
+    "entities requested while it reads, without a thread per request. Defaults to 'Blocking'.")
+  protected String httpEngine;
+
+  @Name(PROPERTY_ADAPTIVE_CONCURRENCY)
+  @Macro
+  @Nullable
+  @Description("Whether the number of requests in flight to a Zendesk subdomain adapts to its responses. It starts " +
+    "at one request and grows while the responses are healthy, up to the max connections of the subdomain, and is " +
+    "halved on 429 and 5xx errors, connection failures and latency spikes. Defaults to false.")
+  protected Boolean adaptiveConcurrency;
+
+  @Name(PROPERTY_VALIDATION_TIMEOUT)
+  @Macro
+  @Nullable
+  @Description("Maximum time in seconds the connection to the subdomains is validated for. The subdomains are " +
+    "validated in parallel, and those not answering in time are reported as failed. Defaults to 30.")
+  protected Integer validationTimeout;
+
+  @Name(PROPERTY_VALIDATION_CACHE_TTL)
+  @Macro
+  @Nullable
+  @Description("Time in seconds a successful validation of the connection to a subdomain is reused for, with the " +
+    "same credentials, so that the pipeline run does not validate again the subdomains validated when it was " +
+    "deployed. 0 to validate the connection every time. Defaults to 600.")
+  protected Integer validationCacheTtl;
+
+  @Name(PROPERTY_WATERMARK_PATH)
+  @Macro
+  @Nullable
+  @Description("Directory where the start of each successful run is saved per subdomain and object. When set, " +
+    "the incremental export objects are read from the start of the last successful run instead of the start date. " +
+    "When an export stops before the start of the run, the position it reached is saved instead. " +
+    "Each pipeline must use its own directory.")
+  protected String watermarkPath;
+
+  @Name(PROPERTY_CHECKPOINT_PATH)
+  @Macro
+  @Nullable
+  @Description("Directory where the pages read by each split are kept while the pipeline runs. A retried task " +
+    "replays the pages kept by the failed attempt instead of requesting them again from Zendesk. The pages are " +
+    "deleted at the end of the run.")
+  protected String checkpointPath;
+
+  @Name(PROPERTY_SIDELOAD_WITH_TICKETS)
+  @Macro
+  @Nullable
+  @Description("Whether the Ticket Metrics, Users, Groups and Organizations objects are read from the pages of the " +
+    "Tickets export, when selected along with Tickets, instead of their own exports. Only the objects referenced by " +
+    "the tickets read are then read, once per split among the objects recently referenced. Defaults to false.")
+  protected Boolean sideloadWithTickets;
+
   /**
    * Constructor for ZendeskBatchSourceConfig object.
    *
@@ -181,10 +366,115 @@ public class ZendeskBatchSourceConfig extends BaseZendeskSourceConfig {
     return zendeskBaseUrl;
   }
 
+  public int getRetryBaseDelay() {
+    return retryBaseDelay == null ? RETRY_BASE_DELAY_DEFAULT : retryBaseDelay;
+  }
+
+  public int getRetryMaxDelay() {
+    return retryMaxDelay == null ? RETRY_MAX_DELAY_DEFAULT : retryMaxDelay;
+  }
+
+  public int getMaxRetryTime() {
+    return maxRetryTime == null ? MAX_RETRY_TIME_DEFAULT : maxRetryTime;
+  }
+
   public String getTableNameField() {
     return Strings.isNullOrEmpty(tableNameField) ? TABLE_NAME_FIELD_DEFAULT : tableNameField;
   }
 
+  public int getMaxSplitsPerObject() {
+    return maxSplitsPerObject == null ? 1 : maxSplitsPerObject;
+  }
+
+  public boolean isPackSmallObjects() {
+    return packSmallObjects != null && packSmallObjects;
+  }
+
+  public int getMaxConnectionsPerRoute() {
+    return maxConnectionsPerRoute == null ? MAX_CONNECTIONS_PER_ROUTE_DEFAULT : maxConnectionsPerRoute;
+  }
+
+  public int getKeepAlive() {
+    return keepAlive == null ? KEEP_ALIVE_DEFAULT : keepAlive;
+  }
+
+  public int getIdleTimeout() {
+    return idleTimeout == null ? IDLE_TIMEOUT_DEFAULT : idleTimeout;
+  }
+
+  public int getPrefetchPages() {
+    return prefetchPages == null ? 0 : prefetchPages;
+  }
+
+  public int getCommentsConcurrency() {
+    return commentsConcurrency == null ? 1 : commentsConcurrency;
+  }
+
+  public int getMaxRequestsPerMinute() {
+    return maxRequestsPerMinute == null ? 0 : maxRequestsPerMinute;
+  }
+
+  public int getSubdomainRequestBudget() {
+    return subdomainRequestBudget == null ? 0 : subdomainRequestBudget;
+  }
+
+  public String getExportPagination() {
+    return Strings.isNullOrEmpty(exportPagination) ? EXPORT_PAGINATION_TIME : exportPagination;
+  }
+
+  public String getHttpEngine() {
+    return Strings.isNullOrEmpty(httpEngine) ? HTTP_ENGINE_BLOCKING : httpEngine;
+  }
+
+  public boolean isAsyncHttpEngine() {
+    return getHttpEngine().equals(HTTP_ENGINE_ASYNC);
+  }
+
+  public boolean isAdaptiveConcurrency() {
+    return adaptiveConcurrency != null && adaptiveConcurrency;
+  }
+
+  public int getValidationTimeout() {
+    return validationTimeout == null ? VALIDATION_TIMEOUT_DEFAULT : validationTimeout;
+  }
+
+  public int getValidationCacheTtl() {
+    return validationCacheTtl == null ? VALIDATION_CACHE_TTL_DEFAULT : validationCacheTtl;
+  }
+
+  @Nullable
+  public String getWatermarkPath() {
+    return Strings.isNullOrEmpty(watermarkPath) ? null : watermarkPath;
+  }
+
+  @Nullable
+  public String getCheckpointPath() {
+    return Strings.isNullOrEmpty(checkpointPath) ? null : checkpointPath;
+  }
+
+  public boolean isSideloadWithTickets() {
+    return sideloadWithTickets != null && sideloadWithTickets;
+  }
+
+  /**
+   * Returns the objects sideloaded with the pages of the Tickets export instead of being read by their own exports:
+   * the selected objects that Tickets can sideload, if sideloading is enabled and Tickets is selected.
+   *
+   * @return the sideloaded object types, empty if none
+   */
+  public Set<ObjectType> getTicketSideloads() {
+    if (!isSideloadWithTickets()) {
+      return Collections.emptySet();
+    }
+    List<String> objects = getObjects();
+    if (!objects.contains(ObjectType.TICKETS.getObjectName())) {
+      return Collections.emptySet();
+    }
+    return ObjectType.TICKETS.getSideloads().keySet().stream()
+      .filter(objectType -> objects.contains(objectType.getObjectName()))
+      .collect(Collectors.toCollection(LinkedHashSet::new));
+  }
+
   /**
    * Fetches the schema for the selected single object to pull.
    *
@@ -231,6 +521,33 @@ public class ZendeskBatchSourceConfig extends BaseZendeskSourceConfig {
     }
     validateIntervalFilterProperty(PROPERTY_START_DATE, getStartDate(), collector);
     validateIntervalFilterProperty(PROPERTY_END_DATE, getEndDate(), collector);
+    validateMinimumProperty(PROPERTY_RETRY_BASE_DELAY, retryBaseDelay, 0, collector);
+    validateMinimumProperty(PROPERTY_RETRY_MAX_DELAY, retryMaxDelay, 0, collector);
+    validateMinimumProperty(PROPERTY_MAX_RETRY_TIME, maxRetryTime, 0, collector);
+    validateMinimumProperty(PROPERTY_MAX_SPLITS_PER_OBJECT, maxSplitsPerObject, 1, collector);
+    validateMinimumProperty(PROPERTY_MAX_CONNECTIONS_PER_ROUTE, maxConnectionsPerRoute, 1, collector);
+    validateMinimumProperty(PROPERTY_KEEP_ALIVE, keepAlive, 1, collector);
+    validateMinimumProperty(PROPERTY_IDLE_TIMEOUT, idleTimeout, 1, collector);
+    validateMinimumProperty(PROPERTY_PREFETCH_PAGES, prefetchPages, 0, collector);
+    validateMinimumProperty(PROPERTY_COMMENTS_CONCURRENCY, commentsConcurrency, 1, collector);
+    validateMinimumProperty(PROPERTY_MAX_REQUESTS_PER_MINUTE, maxRequestsPerMinute, 1, collector);
+    validateMinimumProperty(PROPERTY_SUBDOMAIN_REQUEST_BUDGET, subdomainRequestBudget, 1, collector);
+    validateMinimumProperty(PROPERTY_VALIDATION_TIMEOUT, validationTimeout, 1, collector);
+    validateMinimumProperty(PROPERTY_VALIDATION_CACHE_TTL, validationCacheTtl, 0, collector);
+    if (!containsMacro(PROPERTY_EXPORT_PAGINATION) && !getExportPagination().equals(EXPORT_PAGINATION_TIME)
+      && !getExportPagination().equals(EXPORT_PAGINATION_CURSOR)) {
+      collector.addFailure(
+          String.format("Invalid '%s' value: '%s'.", PROPERTY_EXPORT_PAGINATION, exportPagination),
+          String.format("Value must be '%s' or '%s'.", EXPORT_PAGINATION_TIME, EXPORT_PAGINATION_CURSOR))
+        .withConfigProperty(PROPERTY_EXPORT_PAGINATION);
+    }
+    if (!containsMacro(PROPERTY_HTTP_ENGINE) && !getHttpEngine().equals(HTTP_ENGINE_BLOCKING)
+      && !getHttpEngine().equals(HTTP_ENGINE_ASYNC)) {
+      collector.addFailure(
+          String.format("Invalid '%s' value: '%s'.", PROPERTY_HTTP_ENGINE, httpEngine),
+          String.format("Value must be '%s' or '%s'.", HTTP_ENGINE_BLOCKING, HTTP_ENGINE_ASYNC))
+        .withConfigProperty(PROPERTY_HTTP_ENGINE);
+    }
   }
 
   @VisibleForTesting
@@ -244,15 +561,21 @@ public class ZendeskBatchSourceConfig extends BaseZendeskSourceConfig {
       return;
     }
 
-    getSubdomains().forEach(subdomain -> {
-      try (PagedIterator pagedIterator = new PagedIterator(this, ObjectType.GROUPS, subdomain)) {
-        pagedIterator.hasNext();
-      } catch (IOException | ConnectionTimeoutException e) {
-        collector.addFailure(String.format("There was an issue communicating with Zendesk subdomain '%s'.",
-            subdomain), null)
-          .withConfigProperty(BaseZendeskSourceConfig.PROPERTY_SUBDOMAINS);
-      }
-    });
+    new ConnectionValidator(this).findFailingSubdomains().forEach(subdomain ->
+      collector.addFailure(String.format("There was an issue communicating with Zendesk subdomain '%s'.",
+          subdomain), null)
+        .withConfigProperty(BaseZendeskSourceConfig.PROPERTY_SUBDOMAINS));
+  }
+
+  private void validateMinimumProperty(String propertyName, Integer value, int minimum,
+                                       FailureCollector collector) {
+    if (containsMacro(propertyName) || value == null || value >= minimum) {
+      return;
+    }
+    collector.addFailure(
+        String.format("Invalid '%s' value: '%s'.", propertyName, value),
+        String.format("Value must be greater than or equal to %d.", minimum))
+      .withConfigProperty(propertyName);
   }
 
   private void validateIntervalFilterProperty(String propertyName, String datetime, FailureCollector collector) {
@@ -0,0 +1,155 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.zendesk.source.batch.util.ZendeskBatchSourceConstants;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
+
+import org.apache.hadoop.conf.Configuration;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+
+/**
+ * The config and the schemas of a job, parsed from the Hadoop configuration once per JVM.
+ * <p>
+ * The input format and every record reader of an executor read the same config and schemas. They are parsed the
+ * first time they are needed, and shared by the next splits with the same configuration. The record schemas of the
+ * Multi Source plugin, with their 'tablename' field, are also built once.
+ */
+final class ZendeskInputConfig {
+
+  private static final Gson GSON = new GsonBuilder().create();
+  private static final Type SCHEMAS_TYPE = new TypeToken<Map<String, String>>() {
+  }.getType();
+  private static final int MAX_CACHED_CONFIGS = 16;
+  private static final Cache<List<String>, ZendeskInputConfig> CACHE = CacheBuilder.newBuilder()
+    .maximumSize(MAX_CACHED_CONFIGS)
+    .build();
+
+  private final ZendeskBatchSourceConfig config;
+  private final String schemasJson;
+  private final boolean multiSource;
+  private Map<String, Schema> schemas;
+
+  private ZendeskInputConfig(String configJson, @Nullable String schemasJson, @Nullable String pluginName) {
+    this.config = GSON.fromJson(configJson, ZendeskBatchSourceConfig.class);
+    this.schemasJson = schemasJson;
+    this.multiSource = ZendeskBatchMultiSource.NAME.equalsIgnoreCase(pluginName);
+  }
+
+  /**
+   * Returns the config and the schemas of a job, parsing them if they are not cached yet.
+   *
+   * @param configuration The Hadoop configuration of the job
+   * @return the config and the schemas shared by the splits of the job
+   */
+  static ZendeskInputConfig of(Configuration configuration) {
+    String configJson = configuration.get(ZendeskBatchSourceConstants.PROPERTY_CONFIG_JSON);
+    String schemasJson = configuration.get(ZendeskBatchSourceConstants.PROPERTY_SCHEMAS_JSON);
+    String pluginName = configuration.get(ZendeskBatchSourceConstants.PROPERTY_PLUGIN_NAME);
+    try {
+      return CACHE.get(Arrays.asList(configJson, schemasJson, pluginName),
+                       () -> new ZendeskInputConfig(configJson, schemasJson, pluginName));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      throw new IllegalArgumentException(
+        String.format("Unable to parse the config of the Zendesk source: %s", e.getCause().getMessage()), e.getCause());
+    }
+  }
+
+  /**
+   * Returns the config of the source.
+   */
+  ZendeskBatchSourceConfig getConfig() {
+    return config;
+  }
+
+  /**
+   * Returns the schema of the records of an object.
+   *
+   * @param object The object name
+   * @return the schema, with the 'tablename' field for the Multi Source plugin
+   * @throws IOException if a schema of the job cannot be parsed
+   */
+  Schema getSchema(String object) throws IOException {
+    return getSchemas().get(object);
+  }
+
+  /**
+   * Returns the schemas of the objects sideloaded with the pages of an object, for the sideloaded objects with a
+   * schema in the job.
+   *
+   * @param objectType The object type read by the split
+   * @return the schemas by sideloaded object type
+   * @throws IOException if a schema of the job cannot be parsed
+   */
+  Map<ObjectType, Schema> getSideloadSchemas(ObjectType objectType) throws IOException {
+    if (objectType != ObjectType.TICKETS) {
+      return Collections.emptyMap();
+    }
+    Map<String, Schema> schemas = getSchemas();
+    Map<ObjectType, Schema> sideloadSchemas = new LinkedHashMap<>();
+    for (ObjectType sideloadType : config.getTicketSideloads()) {
+      Schema schema = schemas.get(sideloadType.getObjectName());
+      if (schema != null) {
+        sideloadSchemas.put(sideloadType, schema);
+      }
+    }
+    return sideloadSchemas;
+  }
+
+  private synchronized Map<String, Schema> getSchemas() throws IOException {
+    if (schemas == null) {
+      Map<String, String> schemaJsons = schemasJson == null
+        ? Collections.emptyMap()
+        : GSON.fromJson(schemasJson, SCHEMAS_TYPE);
+      Map<String, Schema> parsed = new HashMap<>();
+      for (Map.Entry<String, String> entry : schemaJsons.entrySet()) {
+        parsed.put(entry.getKey(), toRecordSchema(entry.getKey(), Schema.parseJson(entry.getValue())));
+      }
+      schemas = parsed;
+    }
+    return schemas;
+  }
+
+  private Schema toRecordSchema(String object, Schema schema) {
+    // In case of Multi Source plugin, we need to add 'tablename' field to the schema
+    if (!multiSource) {
+      return schema;
+    }
+    List<Schema.Field> schemaFields = schema.getFields().stream().collect(Collectors.toList());
+    schemaFields.add(Schema.Field.of(config.getTableNameField(), Schema.of(Schema.Type.STRING)));
+    return Schema.recordOf(object, schemaFields);
+  }
+}
@@ -19,7 +19,6 @@ package io.cdap.plugin.zendesk.source.batch;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
-import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.plugin.zendesk.source.batch.util.ZendeskBatchSourceConstants;
 import io.cdap.plugin.zendesk.source.common.ObjectType;
 
@@ -32,6 +31,8 @@ import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -46,45 +47,58 @@ public class ZendeskInputFormat extends InputFormat {
   private static final Gson GSON = new GsonBuilder().create();
   private static final Type OBJECTS_TYPE = new TypeToken<List<String>>() {
   }.getType();
-  private static final Type SCHEMAS_TYPE = new TypeToken<Map<String, String>>() {
+  private static final Type START_TIMES_TYPE = new TypeToken<Map<String, Long>>() {
   }.getType();
-  private ZendeskBatchSourceConfig config;
 
   @Override
   public List<InputSplit> getSplits(JobContext context) {
     Configuration configuration = context.getConfiguration();
     List<String> objects = GSON.fromJson(
       configuration.get(ZendeskBatchSourceConstants.PROPERTY_OBJECTS_JSON), OBJECTS_TYPE);
-    config = GSON.fromJson(configuration.get(ZendeskBatchSourceConstants.PROPERTY_CONFIG_JSON),
-      ZendeskBatchSourceConfig.class);
+    ZendeskBatchSourceConfig config = ZendeskInputConfig.of(configuration).getConfig();
     Set<String> subdomains = config.getSubdomains();
+    String startTimesJson = configuration.get(ZendeskBatchSourceConstants.PROPERTY_START_TIMES_JSON);
+    Map<String, Long> startTimes = startTimesJson == null
+      ? Collections.emptyMap()
+      : GSON.fromJson(startTimesJson, START_TIMES_TYPE);
+    ZendeskSplitPlanner splitPlanner = new ZendeskSplitPlanner(config, startTimes);
+    // The sideloaded objects are read by the splits of the Tickets object
+    Set<String> sideloaded = config.getTicketSideloads().stream()
+      .map(ObjectType::getObjectName)
+      .collect(Collectors.toSet());
 
-    return subdomains.stream()
-      .flatMap(subdomain -> objects.stream().map(object -> new ZendeskSplit(subdomain, object)))
-      .collect(Collectors.toList());
+    List<ZendeskSplit> splits = splitPlanner.plan(subdomains, objects.stream()
+      .filter(object -> !sideloaded.contains(object))
+      .collect(Collectors.toList()));
+    if (config.isPackSmallObjects()) {
+      splits = ZendeskSplitPlanner.pack(splits);
+    }
+    if (config.getSubdomainRequestBudget() > 0) {
+      ZendeskSplitPlanner.allocateRequestBudget(splits, config.getSubdomainRequestBudget());
+    }
+    return new ArrayList<>(splits);
   }
 
   @Override
   public RecordReader createRecordReader(InputSplit split,
                                          TaskAttemptContext context) throws IOException {
     ZendeskSplit multiSplit = (ZendeskSplit) split;
-    String object = multiSplit.getObject();
+    ZendeskInputConfig inputConfig = ZendeskInputConfig.of(context.getConfiguration());
+    if (!multiSplit.getParts().isEmpty()) {
+      List<ZendeskRecordReader> partReaders = new ArrayList<>();
+      for (ZendeskSplit part : multiSplit.getParts()) {
+        partReaders.add(createRecordReader(part, inputConfig));
+      }
+      return new ZendeskPackedRecordReader(partReaders);
+    }
+    return createRecordReader(multiSplit, inputConfig);
+  }
 
-    Configuration configuration = context.getConfiguration();
-    config = GSON.fromJson(configuration.get(ZendeskBatchSourceConstants.PROPERTY_CONFIG_JSON),
-      ZendeskBatchSourceConfig.class);
-    Map<String, String> schemas = GSON.fromJson(
-      configuration.get(ZendeskBatchSourceConstants.PROPERTY_SCHEMAS_JSON), SCHEMAS_TYPE);
-    Schema schema = Schema.parseJson(schemas.get(object));
+  private ZendeskRecordReader createRecordReader(ZendeskSplit split, ZendeskInputConfig inputConfig)
+    throws IOException {
+    String object = split.getObject();
     ObjectType objectType = ObjectType.fromString(object);
-
-    // In case of Multi Source plugin, we need to add 'tablename' field to the schema
-    if (configuration.get(ZendeskBatchSourceConstants.PROPERTY_PLUGIN_NAME)
-      .equalsIgnoreCase(ZendeskBatchMultiSource.NAME)) {
-      List<Schema.Field> schemaFields = schema.getFields().stream().collect(Collectors.toList());
-      schemaFields.add(Schema.Field.of(config.getTableNameField(), Schema.of(Schema.Type.STRING)));
-      schema = Schema.recordOf(object, schemaFields);
-    }
-    return new ZendeskRecordReader(multiSplit.getSubdomain(), objectType, schema);
+    return new ZendeskRecordReader(split.getSubdomain(), objectType, inputConfig.getSchema(object),
+                                   inputConfig.getSideloadSchemas(objectType));
   }
 }
@@ -22,9 +22,12 @@ import com.google.gson.GsonBuilder;
 import io.cdap.cdap.api.data.batch.InputFormatProvider;
 import io.cdap.plugin.zendesk.source.batch.util.ZendeskBatchSourceConstants;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
 /**
  * InputFormatProvider used by cdap to provide configurations to mapreduce job.
  */
@@ -44,12 +47,41 @@ public class ZendeskInputFormatProvider implements InputFormatProvider {
   public ZendeskInputFormatProvider(ZendeskBatchSourceConfig config,
                                     List<String> objectsToPull,
                                     Map<String, String> schemas, String pluginName) {
-    this.conf = new ImmutableMap.Builder<String, String>()
+    this(config, objectsToPull, schemas, pluginName, Collections.emptyMap(), null, null);
+  }
+
+  /**
+   * Constructor for ZendeskInputFormatProvider, which starts the incremental exports at the given times and keeps
+   * the pages read by the splits.
+   *
+   * @param config        the batch source config instance
+   * @param objectsToPull the list of objects to pull
+   * @param schemas       the map of schemas for each object type
+   * @param pluginName    whether plugin is batch source or multi batch source
+   * @param startTimes    the start times of the incremental exports in epoch seconds, by subdomain and object
+   * @param checkpointDir the directory keeping the pages read by the splits of the run, null to keep none
+   * @param positionsDir  the directory keeping the positions reached by the exports of the run, null to keep none
+   */
+  public ZendeskInputFormatProvider(ZendeskBatchSourceConfig config,
+                                    List<String> objectsToPull,
+                                    Map<String, String> schemas, String pluginName,
+                                    Map<String, Long> startTimes, @Nullable String checkpointDir,
+                                    @Nullable String positionsDir) {
+    ImmutableMap.Builder<String, String> builder = new ImmutableMap.Builder<String, String>()
       .put(ZendeskBatchSourceConstants.PROPERTY_CONFIG_JSON, GSON.toJson(config))
       .put(ZendeskBatchSourceConstants.PROPERTY_OBJECTS_JSON, GSON.toJson(objectsToPull))
       .put(ZendeskBatchSourceConstants.PROPERTY_SCHEMAS_JSON, GSON.toJson(schemas))
-      .put(ZendeskBatchSourceConstants.PROPERTY_PLUGIN_NAME, pluginName)
-      .build();
+      .put(ZendeskBatchSourceConstants.PROPERTY_PLUGIN_NAME, pluginName);
+    if (!startTimes.isEmpty()) {
+      builder.put(ZendeskBatchSourceConstants.PROPERTY_START_TIMES_JSON, GSON.toJson(startTimes));
+    }
+    if (checkpointDir != null) {
+      builder.put(ZendeskBatchSourceConstants.PROPERTY_CHECKPOINT_DIR, checkpointDir);
+    }
+    if (positionsDir != null) {
+      builder.put(ZendeskBatchSourceConstants.PROPERTY_POSITIONS_DIR, positionsDir);
+    }
+    this.conf = builder.build();
   }
 
   @Override
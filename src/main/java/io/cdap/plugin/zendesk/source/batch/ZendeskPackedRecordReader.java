@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * RecordReader implementation, which reads the parts of a packed split one after the other.
+ */
+public class ZendeskPackedRecordReader extends RecordReader<NullWritable, StructuredRecord> {
+
+  private final List<ZendeskRecordReader> partReaders;
+
+  // The progress is read by the reporting thread of the task
+  private volatile List<ZendeskSplit> parts;
+  private TaskAttemptContext context;
+  private volatile ZendeskRecordReader currentReader;
+  private volatile int currentPart;
+  private long totalLength;
+  private volatile long readLength;
+
+  /**
+   * Constructor for ZendeskPackedRecordReader.
+   *
+   * @param partReaders the readers of the parts of the split, in order
+   */
+  public ZendeskPackedRecordReader(List<ZendeskRecordReader> partReaders) {
+    this.partReaders = partReaders;
+  }
+
+  @Override
+  public void initialize(InputSplit split, TaskAttemptContext taskAttemptContext) {
+    List<ZendeskSplit> splitParts = ((ZendeskSplit) split).getParts();
+    context = taskAttemptContext;
+    totalLength = splitParts.stream().mapToLong(ZendeskSplit::getLength).sum();
+    parts = splitParts;
+  }
+
+  @Override
+  public boolean nextKeyValue() throws IOException {
+    while (currentPart < parts.size()) {
+      if (currentReader == null) {
+        // The part is initialized when the previous part is read, so that a single part is open at a time
+        currentReader = partReaders.get(currentPart);
+        currentReader.initialize(parts.get(currentPart), context);
+      }
+      if (currentReader.nextKeyValue()) {
+        return true;
+      }
+      currentReader.close();
+      currentReader = null;
+      readLength += parts.get(currentPart).getLength();
+      currentPart++;
+    }
+    return false;
+  }
+
+  @Override
+  public NullWritable getCurrentKey() {
+    return NullWritable.get();
+  }
+
+  @Override
+  public StructuredRecord getCurrentValue() {
+    return currentReader.getCurrentValue();
+  }
+
+  @Override
+  public float getProgress() {
+    List<ZendeskSplit> splitParts = parts;
+    if (splitParts == null) {
+      return 0;
+    }
+    // The length read is updated before moving to the next part, so it is read first
+    long length = readLength;
+    int part = currentPart;
+    if (part >= splitParts.size()) {
+      return 1;
+    }
+    if (totalLength <= 0) {
+      return (float) part / splitParts.size();
+    }
+    ZendeskRecordReader reader = currentReader;
+    float currentProgress = reader == null ? 0 : reader.getProgress();
+    return Math.min(1f, (length + currentProgress * splitParts.get(part).getLength()) / totalLength);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (currentReader != null) {
+      currentReader.close();
+      currentReader = null;
+    }
+  }
+}
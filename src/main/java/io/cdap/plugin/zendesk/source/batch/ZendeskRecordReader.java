@@ -16,17 +16,22 @@
 
 package io.cdap.plugin.zendesk.source.batch;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.common.annotations.VisibleForTesting;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
-import io.cdap.cdap.format.StructuredRecordStringConverter;
+import io.cdap.plugin.zendesk.source.batch.http.BasePagedIterator;
 import io.cdap.plugin.zendesk.source.batch.http.CommentsPagedIterator;
+import io.cdap.plugin.zendesk.source.batch.http.PageSpool;
 import io.cdap.plugin.zendesk.source.batch.http.PagedIterator;
+import io.cdap.plugin.zendesk.source.batch.http.RecordPagedIterator;
+import io.cdap.plugin.zendesk.source.batch.http.SubdomainRateLimiter;
+import io.cdap.plugin.zendesk.source.batch.metrics.ZendeskMetrics;
 import io.cdap.plugin.zendesk.source.batch.util.ZendeskBatchSourceConstants;
+import io.cdap.plugin.zendesk.source.batch.watermark.FileWatermarkStore;
 import io.cdap.plugin.zendesk.source.common.ObjectType;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.RecordReader;
@@ -34,20 +39,28 @@ import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.Map;
+
+import javax.annotation.Nullable;
 
 /**
  * RecordReader implementation, which reads object from Zendesk.
  */
 public class ZendeskRecordReader extends RecordReader<NullWritable, StructuredRecord> {
 
-  private static final Gson GSON = new GsonBuilder().create();
+  private static final String ID = "id";
 
   private final String subdomain;
   private final ObjectType objectType;
   private final Schema schema;
+  private final Map<ObjectType, Schema> sideloadSchemas;
 
-  private Iterator<String> pagedIterator;
+  private Iterator<StructuredRecord> pagedIterator;
+  private ZendeskMetrics metrics;
+  private FileWatermarkStore positions;
+  private volatile boolean finished;
 
   /**
    * Constructor for ZendeskRecordReader.
@@ -57,23 +70,59 @@ public class ZendeskRecordReader extends RecordReader<NullWritable, StructuredRe
    * @param schema     the schema for the object
    */
   public ZendeskRecordReader(String subdomain, ObjectType objectType, Schema schema) {
+    this(subdomain, objectType, schema, Collections.emptyMap());
+  }
+
+  /**
+   * Constructor for ZendeskRecordReader, which also reads the objects sideloaded with the pages of the object.
+   *
+   * @param subdomain       the subdomain name
+   * @param objectType      the object type for which data to be fetched
+   * @param schema          the schema for the object
+   * @param sideloadSchemas the schemas of the sideloaded objects, by object type
+   */
+  public ZendeskRecordReader(String subdomain, ObjectType objectType, Schema schema,
+                             Map<ObjectType, Schema> sideloadSchemas) {
     this.subdomain = subdomain;
     this.objectType = objectType;
     this.schema = schema;
+    this.sideloadSchemas = sideloadSchemas;
   }
 
   @Override
   public void initialize(InputSplit split,
-                         TaskAttemptContext taskAttemptContext) {
+                         TaskAttemptContext taskAttemptContext) throws IOException {
     Configuration conf = taskAttemptContext.getConfiguration();
-    String configJson = conf.get(ZendeskBatchSourceConstants.PROPERTY_CONFIG_JSON);
-    ZendeskBatchSourceConfig config = GSON.fromJson(configJson, ZendeskBatchSourceConfig.class);
-    pagedIterator = createIterator(config);
+    ZendeskBatchSourceConfig config = ZendeskInputConfig.of(conf).getConfig();
+    pagedIterator = createIterator(config, (ZendeskSplit) split);
+    metrics = ZendeskMetrics.forObject(config.referenceName, subdomain, objectType);
+
+    String checkpointDir = conf.get(ZendeskBatchSourceConstants.PROPERTY_CHECKPOINT_DIR);
+    if (checkpointDir != null && pagedIterator instanceof RecordPagedIterator) {
+      String spoolDirectory = getSpoolDirectory(checkpointDir, (ZendeskSplit) split);
+      ((RecordPagedIterator) pagedIterator).setPageSpool(new PageSpool(spoolDirectory, conf));
+    }
+    // The last split of an export reports the position it reached, which the next run starts from
+    String positionsDir = conf.get(ZendeskBatchSourceConstants.PROPERTY_POSITIONS_DIR);
+    if (positionsDir != null && objectType.isBatch() && ((ZendeskSplit) split).getEndTime() == 0
+      && pagedIterator instanceof RecordPagedIterator) {
+      positions = new FileWatermarkStore(positionsDir, conf);
+    }
   }
 
   @Override
-  public boolean nextKeyValue() {
-    return pagedIterator.hasNext();
+  public boolean nextKeyValue() throws IOException {
+    boolean hasNext = pagedIterator.hasNext();
+    if (hasNext) {
+      metrics.recordRecord();
+    } else if (!finished && positions != null) {
+      Long reachedTime = ((RecordPagedIterator) pagedIterator).getReachedTime();
+      if (reachedTime != null) {
+        positions.put(subdomain, objectType.getObjectName(), reachedTime);
+      }
+    }
+    finished = !hasNext;
+    return hasNext;
   }
 
   @Override
@@ -82,13 +131,21 @@ public class ZendeskRecordReader extends RecordReader<NullWritable, StructuredRe
   }
 
   @Override
-  public StructuredRecord getCurrentValue() throws IOException {
-    String next = pagedIterator.next();
-    return StructuredRecordStringConverter.fromJsonString(next, schema);
+  public StructuredRecord getCurrentValue() {
+    return pagedIterator.next();
   }
 
   @Override
   public float getProgress() {
+    if (finished) {
+      return 1;
+    }
+    if (pagedIterator instanceof BasePagedIterator) {
+      return ((BasePagedIterator<?>) pagedIterator).getProgress();
+    }
+    if (pagedIterator instanceof CommentsPagedIterator) {
+      return ((CommentsPagedIterator) pagedIterator).getProgress();
+    }
     return 0;
   }
 
@@ -99,17 +156,54 @@ public class ZendeskRecordReader extends RecordReader<NullWritable, StructuredRe
     }
   }
 
-  private Iterator<String> createIterator(ZendeskBatchSourceConfig config) {
+  private Iterator<StructuredRecord> createIterator(ZendeskBatchSourceConfig config, ZendeskSplit split) {
+    SubdomainRateLimiter budgetLimiter = split.getRequestsPerMinute() > 0
+      ? SubdomainRateLimiter.forBudget(split.getRequestsPerMinute())
+      : null;
     if (objectType == ObjectType.ARTICLE_COMMENTS || objectType == ObjectType.POST_COMMENTS) {
-      return new CommentsPagedIterator(
-        new PagedIterator(config, ObjectType.USERS_SIMPLE, subdomain),
-        config, objectType, subdomain);
+      return createCommentsIterator(config, ObjectType.USERS_SIMPLE, budgetLimiter);
     }
     if (objectType == ObjectType.REQUESTS_COMMENTS) {
-      return new CommentsPagedIterator(
-        new PagedIterator(config, ObjectType.REQUESTS, subdomain),
-        config, objectType, subdomain);
+      return createCommentsIterator(config, ObjectType.REQUESTS, budgetLimiter);
+    }
+    RecordPagedIterator recordPagedIterator = split.getStartTime() > 0
+      ? new RecordPagedIterator(config, objectType, subdomain, schema, split.getStartTime(),
+                                split.getEndTime() > 0 ? split.getEndTime() : null)
+      : new RecordPagedIterator(config, objectType, subdomain, schema);
+    if (split.getStartPage() > 0) {
+      recordPagedIterator.setPageRange(split.getStartPage(), split.getEndPage());
+    }
+    recordPagedIterator.setPrefetchPages(config.getPrefetchPages());
+    recordPagedIterator.setBudgetLimiter(budgetLimiter);
+    if (!sideloadSchemas.isEmpty()) {
+      recordPagedIterator.setSideloads(sideloadSchemas);
+    }
+    return recordPagedIterator;
+  }
+
+  private CommentsPagedIterator createCommentsIterator(ZendeskBatchSourceConfig config, ObjectType entityType,
+                                                       @Nullable SubdomainRateLimiter budgetLimiter) {
+    PagedIterator entityIterator = new PagedIterator(config, entityType, subdomain);
+    // The comments iterators share the budget of the entity iterator
+    entityIterator.setBudgetLimiter(budgetLimiter);
+    // Only the ids of the entities are used
+    entityIterator.setProjection(Collections.singleton(ID));
+    entityIterator.setPrefetchPages(config.getPrefetchPages());
+    return new CommentsPagedIterator(entityIterator, config, objectType, subdomain, schema);
+  }
+
+  /**
+   * Returns the directory keeping the pages of a split, which is the same for every attempt of the split and differs
+   * from the directories of the other splits.
+   */
+  @VisibleForTesting
+  static String getSpoolDirectory(String checkpointDir, ZendeskSplit split) {
+    String splitName = String.format("%s-%d-%d", split.getObject().replaceAll("[^A-Za-z0-9]", "_"),
+                                     split.getStartTime(), split.getEndTime());
+    // The splits reading the pages of a list all have the same time range
+    if (split.getStartPage() > 0) {
+      splitName = String.format("%s-pages-%d-%d", splitName, split.getStartPage(), split.getEndPage());
     }
-    return new PagedIterator(config, objectType, subdomain);
+    return new Path(new Path(checkpointDir, split.getSubdomain()), splitName).toString();
   }
 }
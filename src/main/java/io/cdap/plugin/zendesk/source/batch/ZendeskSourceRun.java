@@ -0,0 +1,173 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch;
+
+import io.cdap.cdap.etl.api.batch.BatchRuntimeContext;
+import io.cdap.cdap.etl.api.batch.BatchSourceContext;
+import io.cdap.plugin.zendesk.source.batch.http.PageSpool;
+import io.cdap.plugin.zendesk.source.batch.metrics.MetricsPublisher;
+import io.cdap.plugin.zendesk.source.batch.watermark.FileWatermarkStore;
+import io.cdap.plugin.zendesk.source.batch.watermark.WatermarkTracker;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * State of a run of the Zendesk sources. The driver keeps the watermarks of the objects read, which are saved once
+ * the run succeeds, and the checkpoint and positions directories of the run, which are deleted once the run finishes.
+ * The workers keep the publisher of the metrics of the stage.
+ */
+class ZendeskSourceRun {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ZendeskSourceRun.class);
+  private static final String POSITIONS_DIR = "_positions";
+
+  private final ZendeskBatchSourceConfig config;
+  private WatermarkTracker watermarkTracker;
+  private String checkpointDir;
+  private String positionsDir;
+  private MetricsPublisher metricsPublisher;
+
+  ZendeskSourceRun(ZendeskBatchSourceConfig config) {
+    this.config = config;
+  }
+
+  /**
+   * Reads the watermarks of the objects and creates the checkpoint and positions directory names of the run, when
+   * configured.
+   *
+   * @param context The context of the run
+   * @param objects The objects read by the run
+   * @return the time each object is read from, by object name, empty without watermarks
+   */
+  Map<String, Long> prepare(BatchSourceContext context, List<String> objects) {
+    Map<String, Long> startTimes = Collections.emptyMap();
+    if (config.getWatermarkPath() != null) {
+      long runTime = TimeUnit.MILLISECONDS.toSeconds(context.getLogicalStartTime());
+      try {
+        FileWatermarkStore store = new FileWatermarkStore(config.getWatermarkPath(), new Configuration());
+        watermarkTracker = new WatermarkTracker(config, store, objects, runTime);
+        startTimes = watermarkTracker.getStartTimes();
+      } catch (IOException e) {
+        throw new UncheckedIOException("Unable to read the watermarks.", e);
+      }
+      positionsDir = new Path(new Path(config.getWatermarkPath(), POSITIONS_DIR), UUID.randomUUID().toString())
+        .toString();
+    }
+    if (config.getCheckpointPath() != null) {
+      checkpointDir = new Path(config.getCheckpointPath(), UUID.randomUUID().toString()).toString();
+    }
+    return startTimes;
+  }
+
+  /**
+   * Returns the directory the pages of the run are kept under.
+   *
+   * @return the checkpoint directory, null if the pages are not kept
+   */
+  @Nullable
+  String getCheckpointDir() {
+    return checkpointDir;
+  }
+
+  /**
+   * Returns the directory the positions reached by the exports of the run are kept under.
+   *
+   * @return the positions directory, null if the watermarks are not kept
+   */
+  @Nullable
+  String getPositionsDir() {
+    return positionsDir;
+  }
+
+  /**
+   * Deletes the pages kept by the run, and saves the watermarks if the run succeeded.
+   *
+   * @param succeeded Whether the run succeeded
+   */
+  void finish(boolean succeeded) {
+    if (checkpointDir != null) {
+      try {
+        PageSpool.delete(checkpointDir, new Configuration());
+      } catch (IOException e) {
+        LOG.warn("Unable to delete the pages kept under '{}'.", checkpointDir, e);
+      }
+    }
+    if (positionsDir == null) {
+      return;
+    }
+    Configuration configuration = new Configuration();
+    try {
+      if (succeeded) {
+        watermarkTracker.commit(new FileWatermarkStore(positionsDir, configuration));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to save the watermarks.", e);
+    } finally {
+      deletePositions(configuration);
+    }
+  }
+
+  private void deletePositions(Configuration configuration) {
+    Path path = new Path(positionsDir);
+    try {
+      FileSystem fileSystem = path.getFileSystem(configuration);
+      fileSystem.delete(path, true);
+    } catch (IOException e) {
+      LOG.warn("Unable to delete the positions kept under '{}'.", positionsDir, e);
+    }
+  }
+
+  /**
+   * Starts publishing the metrics of the stage on a worker.
+   *
+   * @param context The runtime context of the stage
+   */
+  void initialize(BatchRuntimeContext context) {
+    metricsPublisher = new MetricsPublisher(config.referenceName, context.getMetrics());
+  }
+
+  /**
+   * Publishes the metrics of the stage if they were not published within the last second.
+   */
+  void publishMetricsPeriodically() {
+    if (metricsPublisher != null) {
+      metricsPublisher.publishPeriodically();
+    }
+  }
+
+  /**
+   * Publishes the last metrics of the stage on a worker.
+   */
+  void destroy() {
+    if (metricsPublisher != null) {
+      metricsPublisher.publish();
+    }
+  }
+}
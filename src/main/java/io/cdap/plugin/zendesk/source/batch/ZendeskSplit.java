@@ -22,6 +22,9 @@ import org.apache.hadoop.mapreduce.InputSplit;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * A split used for mapreduce.
@@ -30,31 +33,124 @@ public class ZendeskSplit extends InputSplit implements Writable {
 
   private String subdomain;
   private String object;
+  private long startTime;
+  private long endTime;
+  private long length;
+  private int startPage;
+  private int endPage;
+  private int requestsPerMinute;
+  private List<ZendeskSplit> parts = Collections.emptyList();
 
   public ZendeskSplit() {
     // For serialization
   }
 
   public ZendeskSplit(String subdomain, String object) {
+    this(subdomain, object, 0, 0);
+  }
+
+  /**
+   * Constructor for a split reading a time range of an incremental export.
+   *
+   * @param subdomain the subdomain name
+   * @param object    the object name
+   * @param startTime the start of the time range in epoch seconds, 0 to start at the start date of the config
+   * @param endTime   the end of the time range in epoch seconds, exclusive, 0 if the range is not bounded
+   */
+  public ZendeskSplit(String subdomain, String object, long startTime, long endTime) {
+    this(subdomain, object, startTime, endTime, 0);
+  }
+
+  /**
+   * Constructor for a split with an estimated size.
+   *
+   * @param subdomain the subdomain name
+   * @param object    the object name
+   * @param startTime the start of the time range in epoch seconds, 0 to start at the start date of the config
+   * @param endTime   the end of the time range in epoch seconds, exclusive, 0 if the range is not bounded
+   * @param length    the estimated number of records read by the split, 0 if unknown
+   */
+  public ZendeskSplit(String subdomain, String object, long startTime, long endTime, long length) {
     this.subdomain = subdomain;
     this.object = object;
+    this.startTime = startTime;
+    this.endTime = endTime;
+    this.length = length;
+  }
+
+  /**
+   * Creates a split reading a range of the pages of a list.
+   *
+   * @param subdomain the subdomain name
+   * @param object    the object name
+   * @param startPage the number of the first page read, starting at 1
+   * @param endPage   the number of the page the split stops at, exclusive, 0 to read up to the last page
+   * @param length    the estimated number of records read by the split, 0 if unknown
+   * @return the split
+   */
+  public static ZendeskSplit forPages(String subdomain, String object, int startPage, int endPage, long length) {
+    ZendeskSplit split = new ZendeskSplit(subdomain, object, 0, 0, length);
+    split.startPage = startPage;
+    split.endPage = endPage;
+    return split;
+  }
+
+  /**
+   * Creates a split reading several splits one after the other, in a single task.
+   *
+   * @param parts the splits read, in order
+   * @return the split
+   */
+  public static ZendeskSplit packed(List<ZendeskSplit> parts) {
+    ZendeskSplit first = parts.get(0);
+    ZendeskSplit split = new ZendeskSplit(first.subdomain, first.object, 0, 0,
+                                          parts.stream().mapToLong(ZendeskSplit::getLength).sum());
+    split.parts = new ArrayList<>(parts);
+    return split;
   }
 
   @Override
   public void write(DataOutput out) throws IOException {
     out.writeUTF(subdomain);
     out.writeUTF(object);
+    out.writeLong(startTime);
+    out.writeLong(endTime);
+    out.writeLong(length);
+    out.writeInt(startPage);
+    out.writeInt(endPage);
+    out.writeInt(requestsPerMinute);
+    out.writeInt(parts.size());
+    for (ZendeskSplit part : parts) {
+      part.write(out);
+    }
   }
 
   @Override
   public void readFields(DataInput in) throws IOException {
     subdomain = in.readUTF();
     object = in.readUTF();
+    startTime = in.readLong();
+    endTime = in.readLong();
+    length = in.readLong();
+    startPage = in.readInt();
+    endPage = in.readInt();
+    requestsPerMinute = in.readInt();
+    int partCount = in.readInt();
+    parts = new ArrayList<>(partCount);
+    for (int i = 0; i < partCount; i++) {
+      ZendeskSplit part = new ZendeskSplit();
+      part.readFields(in);
+      parts.add(part);
+    }
   }
 
+  /**
+   * Returns the estimated number of records read by the split, which lets the framework start the biggest
+   * splits first.
+   */
   @Override
   public long getLength() {
-    return 0;
+    return length;
   }
 
   @Override
@@ -69,4 +165,46 @@ public class ZendeskSplit extends InputSplit implements Writable {
   public String getObject() {
     return object;
   }
+
+  public long getStartTime() {
+    return startTime;
+  }
+
+  public long getEndTime() {
+    return endTime;
+  }
+
+  /**
+   * Returns the number of the first page of a list read by the split, 0 if the split does not read a page range.
+   */
+  public int getStartPage() {
+    return startPage;
+  }
+
+  /**
+   * Returns the number of the page of a list the split stops at, exclusive, 0 if the split reads up to the
+   * last page.
+   */
+  public int getEndPage() {
+    return endPage;
+  }
+
+  /**
+   * Returns the number of requests per minute the split may send, its share of the request budget of the subdomain,
+   * 0 if the split has no budget.
+   */
+  public int getRequestsPerMinute() {
+    return requestsPerMinute;
+  }
+
+  void setRequestsPerMinute(int requestsPerMinute) {
+    this.requestsPerMinute = requestsPerMinute;
+  }
+
+  /**
+   * Returns the splits read one after the other by a packed split, empty if the split is not packed.
+   */
+  public List<ZendeskSplit> getParts() {
+    return Collections.unmodifiableList(parts);
+  }
 }
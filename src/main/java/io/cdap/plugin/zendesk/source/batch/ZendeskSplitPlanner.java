@@ -0,0 +1,430 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.cdap.plugin.zendesk.source.batch.http.BasePagedIterator;
+import io.cdap.plugin.zendesk.source.batch.http.HttpUtil;
+import io.cdap.plugin.zendesk.source.batch.http.PagedIterator;
+import io.cdap.plugin.zendesk.source.batch.http.RetryPolicy;
+import io.cdap.plugin.zendesk.source.batch.watermark.WatermarkTracker;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+
+/**
+ * Plans the splits of an object. The time range of an incremental export object is divided into several splits,
+ * whose number is estimated from the count and the end time of the first page of the export. The first page is
+ * also used to estimate the number of records read by each split. The pages of a list are divided into several
+ * splits reading a range of pages each, whose number follows from the count of objects given with the first page.
+ * The first pages are only sampled when the splits are divided or packed, the other splits have an unknown size.
+ */
+public class ZendeskSplitPlanner {
+
+  /**
+   * Maximum number of first pages sampled at once.
+   */
+  public static final int MAX_SAMPLE_CONCURRENCY = 16;
+
+  /**
+   * Time in seconds the samples of the first pages are waited for.
+   */
+  public static final long SAMPLE_TIMEOUT_SECONDS = 30;
+
+  private static final String COUNT = "count";
+  private static final String END_TIME = "end_time";
+  private static final int PAGE_SIZE = 1000;
+  // A split reads at least ten full pages, so that the requests saved outweigh the split overhead
+  private static final long MIN_RECORDS_PER_SPLIT = 10L * PAGE_SIZE;
+  private static final int MIN_PAGES_PER_SPLIT = 10;
+
+  private final ZendeskBatchSourceConfig config;
+  private final Map<String, Long> startTimes;
+
+  /**
+   * Constructor for ZendeskSplitPlanner object.
+   *
+   * @param config The batch source config
+   */
+  public ZendeskSplitPlanner(ZendeskBatchSourceConfig config) {
+    this(config, Collections.emptyMap());
+  }
+
+  /**
+   * Constructor for ZendeskSplitPlanner object, which starts the incremental exports at the given times.
+   *
+   * @param config     The batch source config
+   * @param startTimes The start times of the exports in epoch seconds, keyed by
+   *                   {@link WatermarkTracker#getKey(String, String)}. The start date of the config is used
+   *                   for the other exports.
+   */
+  public ZendeskSplitPlanner(ZendeskBatchSourceConfig config, Map<String, Long> startTimes) {
+    this.config = config;
+    this.startTimes = startTimes;
+  }
+
+  /**
+   * Plans the splits reading the objects of the subdomains. When the splits are divided or packed, the first pages
+   * of the objects are sampled in parallel, by up to {@link #MAX_SAMPLE_CONCURRENCY} threads. The objects whose
+   * sample fails or does not end within {@link #SAMPLE_TIMEOUT_SECONDS} seconds are read by a single split of unknown
+   * size, so that sampling never fails the planning.
+   *
+   * @param subdomains The subdomain names
+   * @param objects    The object names
+   * @return the splits reading the objects, by subdomain and object
+   */
+  public List<ZendeskSplit> plan(Collection<String> subdomains, List<String> objects) {
+    List<List<String>> reads = new ArrayList<>();
+    subdomains.forEach(subdomain -> objects.forEach(object -> reads.add(Arrays.asList(subdomain, object))));
+    List<ZendeskSplit> splits = new ArrayList<>();
+    if (!isSampled()) {
+      reads.forEach(read -> splits.addAll(plan(read.get(0), read.get(1), false)));
+      return splits;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(
+      Math.min(MAX_SAMPLE_CONCURRENCY, reads.size()),
+      new ThreadFactoryBuilder().setNameFormat("zendesk-split-planner-%d").setDaemon(true).build());
+    try {
+      List<Future<List<ZendeskSplit>>> plans = new ArrayList<>();
+      reads.forEach(read -> plans.add(executor.submit(() -> plan(read.get(0), read.get(1), true))));
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SAMPLE_TIMEOUT_SECONDS);
+      for (int i = 0; i < reads.size(); i++) {
+        splits.addAll(getPlan(plans.get(i), deadline, reads.get(i).get(0), reads.get(i).get(1)));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    return splits;
+  }
+
+  /**
+   * Plans the splits reading an object of a subdomain, sampling its first page within the same deadline.
+   *
+   * @param subdomain The subdomain name
+   * @param object    The object name
+   * @return the splits reading the object
+   */
+  public List<ZendeskSplit> plan(String subdomain, String object) {
+    return plan(Collections.singletonList(subdomain), Collections.singletonList(object));
+  }
+
+  private List<ZendeskSplit> getPlan(Future<List<ZendeskSplit>> plan, long deadline, String subdomain,
+                                     String object) {
+    try {
+      return plan.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      plan.cancel(true);
+    } catch (ExecutionException | TimeoutException e) {
+      plan.cancel(true);
+    }
+    return plan(subdomain, object, false);
+  }
+
+  /**
+   * Returns whether the size of the objects is needed, to divide them into several splits or to pack them.
+   */
+  private boolean isSampled() {
+    return config.getMaxSplitsPerObject() > 1 || config.isPackSmallObjects();
+  }
+
+  private List<ZendeskSplit> plan(String subdomain, String object, boolean sampled) {
+    ObjectType objectType;
+    try {
+      objectType = ObjectType.fromString(object);
+    } catch (IllegalStateException e) {
+      // The object is read by a single split, which reports the failure
+      return Collections.singletonList(new ZendeskSplit(subdomain, object));
+    }
+    // The comments are read entity after entity, there is no single export to sample
+    if (objectType == ObjectType.ARTICLE_COMMENTS
+      || objectType == ObjectType.POST_COMMENTS
+      || objectType == ObjectType.REQUESTS_COMMENTS) {
+      return Collections.singletonList(new ZendeskSplit(subdomain, object));
+    }
+    if (!objectType.isBatch()) {
+      long count = sampled ? getCount(sampleFirstPage(subdomain, objectType, null)) : 0;
+      return createPageSplits(subdomain, object, count, config.getMaxSplitsPerObject());
+    }
+    Long watermark = startTimes.get(WatermarkTracker.getKey(subdomain, object));
+    if (watermark == null && Strings.isNullOrEmpty(config.getStartDate())) {
+      return Collections.singletonList(new ZendeskSplit(subdomain, object));
+    }
+
+    long startTime = watermark == null ? HttpUtil.getEpochSecond(config.getStartDate()) : watermark;
+    long endTime = Strings.isNullOrEmpty(config.getEndDate())
+      ? TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis())
+      : HttpUtil.getEpochSecond(config.getEndDate());
+    Map<String, Object> sample = sampled ? sampleFirstPage(subdomain, objectType, startTime) : null;
+    int splitCount = getSplitCount(startTime, endTime, config.getMaxSplitsPerObject(), sample);
+    return createSplits(subdomain, object, startTime, endTime, splitCount,
+                        getRecordsPerSecond(startTime, endTime, sample));
+  }
+
+  /**
+   * Estimates the number of splits from the density of the objects in the first page of the export.
+   *
+   * @param startTime The start of the export in epoch seconds
+   * @param endTime   The end of the time range to divide in epoch seconds
+   * @param maxSplits The maximum number of splits
+   * @param sample    The top level values of the first page, null if the page could not be read
+   * @return the number of splits
+   */
+  @VisibleForTesting
+  static int getSplitCount(long startTime, long endTime, int maxSplits, Map<String, Object> sample) {
+    if (sample == null || endTime <= startTime) {
+      return 1;
+    }
+    Number count = (Number) sample.get(COUNT);
+    Number pageEndTime = (Number) sample.get(END_TIME);
+    // A partial first page holds the whole export
+    if (count == null || pageEndTime == null || count.intValue() < PAGE_SIZE) {
+      return 1;
+    }
+    long sampledSeconds = Math.max(1, pageEndTime.longValue() - startTime);
+    double estimatedRecords = count.doubleValue() * (endTime - startTime) / sampledSeconds;
+    long splitCount = (long) Math.ceil(estimatedRecords / MIN_RECORDS_PER_SPLIT);
+    return (int) Math.max(1, Math.min(Math.min(maxSplits, endTime - startTime), splitCount));
+  }
+
+  /**
+   * Divides the time range into splits of equal duration. The last split is not bounded, so that it reads
+   * the objects updated up to the time of the read, as a single split does.
+   */
+  @VisibleForTesting
+  static List<ZendeskSplit> createSplits(String subdomain, String object, long startTime, long endTime,
+                                         int splitCount) {
+    return createSplits(subdomain, object, startTime, endTime, splitCount, 0);
+  }
+
+  /**
+   * Divides the time range into splits of equal duration, whose length is the number of records estimated from
+   * the density of the objects.
+   */
+  @VisibleForTesting
+  static List<ZendeskSplit> createSplits(String subdomain, String object, long startTime, long endTime,
+                                         int splitCount, double recordsPerSecond) {
+    if (splitCount <= 1) {
+      long length = (long) (recordsPerSecond * Math.max(0, endTime - startTime));
+      return Collections.singletonList(new ZendeskSplit(subdomain, object, startTime, 0, length));
+    }
+    List<ZendeskSplit> splits = new ArrayList<>();
+    long sliceStart = startTime;
+    for (int i = 1; i < splitCount; i++) {
+      long sliceEnd = startTime + (endTime - startTime) * i / splitCount;
+      long length = (long) (recordsPerSecond * (sliceEnd - sliceStart));
+      splits.add(new ZendeskSplit(subdomain, object, sliceStart, sliceEnd, length));
+      sliceStart = sliceEnd;
+    }
+    long length = (long) (recordsPerSecond * (endTime - sliceStart));
+    splits.add(new ZendeskSplit(subdomain, object, sliceStart, 0, length));
+    return splits;
+  }
+
+  /**
+   * Divides the pages of a list into ranges of consecutive pages, each read by a split. The last split is not
+   * bounded, so that it reads the objects added since the count was taken.
+   *
+   * @param subdomain The subdomain name
+   * @param object    The object name
+   * @param count     The number of objects of the list
+   * @param maxSplits The maximum number of splits
+   * @return the splits reading the list
+   */
+  @VisibleForTesting
+  static List<ZendeskSplit> createPageSplits(String subdomain, String object, long count, int maxSplits) {
+    long pageCount = (count + BasePagedIterator.LIST_PAGE_SIZE - 1) / BasePagedIterator.LIST_PAGE_SIZE;
+    int splitCount = (int) Math.max(1, Math.min(maxSplits, pageCount / MIN_PAGES_PER_SPLIT));
+    if (splitCount <= 1) {
+      return Collections.singletonList(new ZendeskSplit(subdomain, object, 0, 0, count));
+    }
+    int pagesPerSplit = (int) ((pageCount + splitCount - 1) / splitCount);
+    List<ZendeskSplit> splits = new ArrayList<>();
+    for (int i = 0; i < splitCount; i++) {
+      int startPage = 1 + i * pagesPerSplit;
+      boolean last = i == splitCount - 1;
+      long remaining = count - (long) (startPage - 1) * BasePagedIterator.LIST_PAGE_SIZE;
+      long length = last ? remaining : Math.min(remaining, (long) pagesPerSplit * BasePagedIterator.LIST_PAGE_SIZE);
+      splits.add(ZendeskSplit.forPages(subdomain, object, startPage, last ? 0 : startPage + pagesPerSplit,
+                                       Math.max(0, length)));
+    }
+    return splits;
+  }
+
+  /**
+   * Packs the splits estimated to take at most ten requests, so that each pack is read by a single task. The small
+   * splits are packed first-fit, from the most requests to the fewest, up to the requests of the largest split of
+   * the plan: a pack then ends no later than the largest split, while starting fewer tasks. The splits whose size
+   * is unknown, such as the comments, are not packed.
+   *
+   * @param splits The planned splits
+   * @return the splits, with the small splits packed
+   */
+  public static List<ZendeskSplit> pack(List<ZendeskSplit> splits) {
+    List<ZendeskSplit> packedSplits = new ArrayList<>();
+    List<ZendeskSplit> smallSplits = new ArrayList<>();
+    long capacity = MIN_PAGES_PER_SPLIT;
+    for (ZendeskSplit split : splits) {
+      long requests = getRequestCount(split);
+      capacity = Math.max(capacity, requests);
+      if (requests > 0 && requests <= MIN_PAGES_PER_SPLIT) {
+        smallSplits.add(split);
+      } else {
+        packedSplits.add(split);
+      }
+    }
+    smallSplits.sort(Comparator.comparingLong(ZendeskSplitPlanner::getRequestCount).reversed());
+
+    List<List<ZendeskSplit>> packs = new ArrayList<>();
+    List<Long> packRequests = new ArrayList<>();
+    for (ZendeskSplit split : smallSplits) {
+      long requests = getRequestCount(split);
+      int pack = 0;
+      while (pack < packs.size() && packRequests.get(pack) + requests > capacity) {
+        pack++;
+      }
+      if (pack == packs.size()) {
+        packs.add(new ArrayList<>());
+        packRequests.add(0L);
+      }
+      packs.get(pack).add(split);
+      packRequests.set(pack, packRequests.get(pack) + requests);
+    }
+    for (List<ZendeskSplit> pack : packs) {
+      packedSplits.add(pack.size() == 1 ? pack.get(0) : ZendeskSplit.packed(pack));
+    }
+    return packedSplits;
+  }
+
+  /**
+   * Divides the request budget of each subdomain evenly among the splits reading it. A packed split reads its parts
+   * one after the other, so it takes a single share of each subdomain of its parts.
+   *
+   * @param splits            The planned splits
+   * @param requestsPerMinute The number of requests per minute of each subdomain
+   */
+  public static void allocateRequestBudget(List<ZendeskSplit> splits, int requestsPerMinute) {
+    Map<String, Integer> splitCounts = new HashMap<>();
+    for (ZendeskSplit split : splits) {
+      getSubdomains(split).forEach(subdomain -> splitCounts.merge(subdomain, 1, Integer::sum));
+    }
+    for (ZendeskSplit split : splits) {
+      List<ZendeskSplit> parts = split.getParts().isEmpty() ? Collections.singletonList(split) : split.getParts();
+      for (ZendeskSplit part : parts) {
+        // Every split gets a request at least, so that it can make progress
+        part.setRequestsPerMinute(Math.max(1, requestsPerMinute / splitCounts.get(part.getSubdomain())));
+      }
+    }
+  }
+
+  private static Set<String> getSubdomains(ZendeskSplit split) {
+    if (split.getParts().isEmpty()) {
+      return Collections.singleton(split.getSubdomain());
+    }
+    return split.getParts().stream().map(ZendeskSplit::getSubdomain).collect(Collectors.toSet());
+  }
+
+  /**
+   * Estimates the number of requests of a split from its estimated number of records and the page size of its
+   * object.
+   *
+   * @param split The split
+   * @return the number of requests, 0 if unknown
+   */
+  @VisibleForTesting
+  static long getRequestCount(ZendeskSplit split) {
+    if (split.getLength() <= 0) {
+      return 0;
+    }
+    ObjectType objectType;
+    try {
+      objectType = ObjectType.fromString(split.getObject());
+    } catch (IllegalStateException e) {
+      return 0;
+    }
+    int pageSize = objectType.isBatch() ? PAGE_SIZE : BasePagedIterator.LIST_PAGE_SIZE;
+    return (split.getLength() + pageSize - 1) / pageSize;
+  }
+
+  /**
+   * Estimates the density of the objects of an export from its first page.
+   *
+   * @param startTime The start of the export in epoch seconds
+   * @param endTime   The end of the time range read in epoch seconds
+   * @param sample    The top level values of the first page, null if the page could not be read
+   * @return the estimated number of objects per second, 0 if unknown
+   */
+  @VisibleForTesting
+  static double getRecordsPerSecond(long startTime, long endTime, Map<String, Object> sample) {
+    if (sample == null || endTime <= startTime) {
+      return 0;
+    }
+    Number count = (Number) sample.get(COUNT);
+    Number pageEndTime = (Number) sample.get(END_TIME);
+    if (count == null || pageEndTime == null) {
+      return 0;
+    }
+    // A partial first page holds the whole export
+    if (count.intValue() < PAGE_SIZE) {
+      return count.doubleValue() / (endTime - startTime);
+    }
+    return count.doubleValue() / Math.max(1, pageEndTime.longValue() - startTime);
+  }
+
+  /**
+   * Returns the total number of objects of a list endpoint, which is returned with its first page.
+   */
+  private static long getCount(Map<String, Object> sample) {
+    Number count = sample == null ? null : (Number) sample.get(COUNT);
+    return count == null ? 0 : count.longValue();
+  }
+
+  @VisibleForTesting
+  Map<String, Object> sampleFirstPage(String subdomain, ObjectType objectType, @Nullable Long startTime) {
+    try (PagedIterator pagedIterator = new PagedIterator(config, objectType, subdomain, null, startTime)) {
+      // Only the top level values of the page are used
+      pagedIterator.setProjection(Collections.emptySet());
+      pagedIterator.setRetryPolicy(RetryPolicy.forSample(config));
+      pagedIterator.hasNext();
+      return pagedIterator.getPageMetadata();
+    } catch (IOException | RuntimeException e) {
+      // The object is read by a single split, which reports the failure
+      return null;
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.cdap.plugin.zendesk.source.batch.ZendeskBatchSourceConfig;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.protocol.ResponseContentEncoding;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * Engine of the iterators sending their requests with a non-blocking client, when the async http engine is
+ * configured. The requests are sent and their responses received in full by the I/O threads of the client, so that
+ * an iterator keeps requests in flight without a thread waiting on each of them.
+ * <p>
+ * The clients are shared JVM wide by the iterators with the same connection settings, like the blocking clients of
+ * {@link HttpClientRegistry}. An engine is a reference to a client, which is closed once no reference is left.
+ */
+public class AsyncHttpEngine implements Closeable {
+
+  private static final Map<List<Object>, Entry> CLIENTS = new HashMap<>();
+  private static final ResponseContentEncoding CONTENT_ENCODING = new ResponseContentEncoding();
+
+  private final List<Object> key;
+  private final CloseableHttpAsyncClient httpClient;
+  private boolean closed;
+
+  private AsyncHttpEngine(List<Object> key, CloseableHttpAsyncClient httpClient) {
+    this.key = key;
+    this.httpClient = httpClient;
+  }
+
+  /**
+   * Returns an engine on the client for the connection settings of the config, creating the client if none is in
+   * use. The returned engine must be closed once it is not used anymore.
+   *
+   * @param config The batch source config
+   * @return the engine
+   */
+  public static synchronized AsyncHttpEngine acquire(ZendeskBatchSourceConfig config) {
+    List<Object> key = HttpClientRegistry.getKey(config);
+    Entry entry = CLIENTS.computeIfAbsent(key, k -> new Entry(HttpUtil.createHttpAsyncClient(config)));
+    entry.references++;
+    return new AsyncHttpEngine(key, entry.httpClient);
+  }
+
+  private static synchronized void release(List<Object> key) throws IOException {
+    Entry entry = CLIENTS.get(key);
+    if (entry == null || --entry.references > 0) {
+      return;
+    }
+    CLIENTS.remove(key);
+    entry.httpClient.close();
+  }
+
+  @VisibleForTesting
+  static synchronized int size() {
+    return CLIENTS.size();
+  }
+
+  /**
+   * Sends a request. The returned future completes once the response is received in full, with its content
+   * decompressed as it is read and its bytes counted as received, like the responses of the blocking client.
+   * Cancelling the future aborts the request.
+   *
+   * @param request The request
+   * @param context The context of the request
+   * @return the future response
+   */
+  public CompletableFuture<HttpResponse> execute(HttpGet request, HttpClientContext context) {
+    CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+    Future<HttpResponse> exchange = httpClient.execute(request, context, new FutureCallback<HttpResponse>() {
+      @Override
+      public void completed(HttpResponse response) {
+        try {
+          // The client receives the content as sent, the counting entity is kept in the context
+          HttpUtil.countWireBytes(response, context);
+          CONTENT_ENCODING.process(response, context);
+          result.complete(response);
+        } catch (IOException e) {
+          result.completeExceptionally(e);
+        } catch (HttpException e) {
+          result.completeExceptionally(new ClientProtocolException(e));
+        }
+      }
+
+      @Override
+      public void failed(Exception e) {
+        result.completeExceptionally(e);
+      }
+
+      @Override
+      public void cancelled() {
+        result.cancel(false);
+      }
+    });
+    result.whenComplete((response, failure) -> {
+      if (result.isCancelled()) {
+        exchange.cancel(true);
+      }
+    });
+    return result;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      release(key);
+    }
+  }
+
+  /**
+   * A client in use, with the number of its users.
+   */
+  private static class Entry {
+    private final CloseableHttpAsyncClient httpClient;
+    private int references;
+
+    private Entry(CloseableHttpAsyncClient httpClient) {
+      this.httpClient = httpClient;
+    }
+  }
+}
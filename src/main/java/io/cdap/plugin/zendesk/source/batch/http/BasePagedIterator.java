@@ -0,0 +1,739 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import com.github.rholder.retry.RetryException;
+import com.github.rholder.retry.Retryer;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.cdap.plugin.zendesk.source.batch.ZendeskBatchSourceConfig;
+import io.cdap.plugin.zendesk.source.batch.metrics.ZendeskMetrics;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.entity.ContentType;
+import org.apache.http.util.EntityUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+/**
+ * Base iterable for Zendesk page responses, which takes care of the requests and the pagination.
+ * <p>
+ * The requests are sent by the reading thread with the blocking client, or by an {@link AsyncHttpEngine} when the
+ * async http engine is configured. The following page is then requested as soon as the current one is read, and
+ * received by the engine while the records of the current page are consumed.
+ *
+ * @param <T> the type of the records read from the pages
+ */
+public abstract class BasePagedIterator<T> implements Iterator<T>, Closeable {
+
+  /**
+   * Number of objects of the pages of a list read by a page range.
+   */
+  public static final int LIST_PAGE_SIZE = 100;
+
+  private static final Pattern RESTRICTED_PATTERN = Pattern.compile("%2B", Pattern.LITERAL);
+  private static final String NEXT_PAGE = "next_page";
+  private static final String NEXT_CURSOR_URL = "after_url";
+  private static final String END_OF_STREAM = "end_of_stream";
+  private static final String END_TIME = "end_time";
+  private static final String COUNT = "count";
+  private static final String PAGE = "page";
+  private static final String PER_PAGE = "per_page";
+  private static final int INCREMENTAL_EXPORT_MAX_COUNT_BY_REQUEST = 1000;
+  private static final int DEFAULT_RETRY_AFTER_SECONDS = 60;
+  private static final long FIVE_MINUTES = TimeUnit.MINUTES.toMillis(5);
+  private static final String RETRY_AFTER = "retry-after";
+  private static final String RATE_LIMIT = "X-Rate-Limit";
+  private static final String RATE_LIMIT_REMAINING = "X-Rate-Limit-Remaining";
+
+  protected final ZendeskBatchSourceConfig config;
+  protected final ObjectType objectType;
+  protected final Pagination pagination;
+  protected final ZendeskMetrics metrics;
+  private final SharedHttpClient httpClient;
+  private final AsyncHttpEngine asyncEngine;
+  private final HttpClientContext httpClientContext;
+  private final SubdomainRateLimiter rateLimiter;
+  private final ConcurrencyController concurrencyController;
+  private final Long exportStartTime;
+  private final Long exportEndTime;
+  private final long progressEndTime;
+  private final Page<T> endOfPages = Page.empty();
+
+  private RetryPolicy retryPolicy;
+  private Retryer<Page<T>> retryer;
+  private SubdomainRateLimiter budgetLimiter;
+
+  private Iterator<T> current;
+  // Read by the progress reporting thread
+  private volatile Map<String, Object> pageMetadata;
+  private volatile long recordsRead;
+  private String nextPage;
+  private volatile HttpGet currentRequest;
+  // Request sent ahead by the async engine, cancelled by close
+  private volatile PendingRequest pendingRequest;
+  private int pageNumber = 1;
+  private int startPage = 1;
+  private int endPage;
+
+  private int prefetchPages;
+  private ExecutorService prefetchExecutor;
+  private BlockingQueue<Page<T>> prefetchQueue;
+  private volatile RuntimeException prefetchFailure;
+  private boolean prefetchDone;
+
+  /**
+   * Constructor for BasePagedIterator object.
+   *
+   * @param config     The batch source config
+   * @param objectType The object type
+   * @param subdomain  The subdomain name
+   * @param entityId   The entity id
+   */
+  protected BasePagedIterator(ZendeskBatchSourceConfig config, ObjectType objectType,
+                              String subdomain, Long entityId) {
+    this(config, objectType, subdomain, entityId, null, null);
+  }
+
+  /**
+   * Constructor for BasePagedIterator object, which reads an incremental export within a time range.
+   *
+   * @param config     The batch source config
+   * @param objectType The object type
+   * @param subdomain  The subdomain name
+   * @param entityId   The entity id
+   * @param startTime  The start time of the export in epoch seconds, the start date of the config if null
+   * @param endTime    The time in epoch seconds the pagination stops at, unbounded if null
+   */
+  protected BasePagedIterator(ZendeskBatchSourceConfig config, ObjectType objectType,
+                              String subdomain, Long entityId, @Nullable Long startTime, @Nullable Long endTime) {
+    this.config = config;
+    this.objectType = objectType;
+    this.pagination = Pagination.of(config, objectType);
+    this.exportEndTime = endTime;
+    this.exportStartTime = startTime != null || !objectType.isBatch() || Strings.isNullOrEmpty(config.getStartDate())
+      ? startTime
+      : Long.valueOf(HttpUtil.getEpochSecond(config.getStartDate()));
+    this.progressEndTime = endTime != null ? endTime : TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+
+    String firstPage = HttpUtil.createFirstPageUrl(config, objectType, subdomain, entityId, startTime);
+    this.httpClient = config.isAsyncHttpEngine() ? null : HttpClientRegistry.acquire(config);
+    this.asyncEngine = config.isAsyncHttpEngine() ? AsyncHttpEngine.acquire(config) : null;
+    this.httpClientContext = HttpUtil.createHttpContext(config, firstPage);
+    this.rateLimiter = SubdomainRateLimiter.forSubdomain(config, subdomain);
+    this.concurrencyController = config.isAdaptiveConcurrency()
+      ? ConcurrencyController.forSubdomain(config, subdomain)
+      : null;
+    this.metrics = ZendeskMetrics.forObject(config.referenceName, subdomain, objectType);
+    this.nextPage = firstPage;
+    this.retryPolicy = new RetryPolicy(config);
+    this.retryer = retryPolicy.buildRetryer(metrics);
+  }
+
+  /**
+   * Sets the retry policy of the requests, so that the iterators reading a split share its retry time.
+   * Each iterator has its own policy by default.
+   *
+   * @param retryPolicy The retry policy
+   */
+  public void setRetryPolicy(RetryPolicy retryPolicy) {
+    this.retryPolicy = retryPolicy;
+    this.retryer = retryPolicy.buildRetryer(metrics);
+  }
+
+  /**
+   * Returns the retry policy of the requests.
+   *
+   * @return the retry policy
+   */
+  public RetryPolicy getRetryPolicy() {
+    return retryPolicy;
+  }
+
+  /**
+   * Sets the limiter pacing the requests to the share of the split in the request budget of the subdomain, so that
+   * the iterators reading a split share it. The requests are only paced by the limiter of the subdomain by default.
+   *
+   * @param budgetLimiter The limiter of the split, null if the split has no budget
+   */
+  public void setBudgetLimiter(@Nullable SubdomainRateLimiter budgetLimiter) {
+    this.budgetLimiter = budgetLimiter;
+  }
+
+  /**
+   * Returns the limiter pacing the requests to the share of the split in the request budget of the subdomain.
+   *
+   * @return the limiter of the split, null if the split has no budget
+   */
+  @Nullable
+  public SubdomainRateLimiter getBudgetLimiter() {
+    return budgetLimiter;
+  }
+
+  /**
+   * Sets the number of pages requested ahead of the consumer by a background thread. The following page is
+   * requested as soon as the current one is read, while its records are consumed. No page is prefetched by default.
+   * Must be set before iterating.
+   *
+   * @param prefetchPages The maximum number of pages read ahead, 0 to read the pages on demand
+   */
+  public void setPrefetchPages(int prefetchPages) {
+    this.prefetchPages = prefetchPages;
+  }
+
+  /**
+   * Sets the pages of a list read by the iterator, so that the pages of a list are read by several splits.
+   * The pages hold {@link #LIST_PAGE_SIZE} objects. Must be set before iterating.
+   *
+   * @param startPage The number of the first page read, starting at 1
+   * @param endPage   The number of the page the iteration stops at, exclusive, 0 to read up to the last page
+   */
+  public void setPageRange(int startPage, int endPage) {
+    if (pagination != Pagination.OFFSET) {
+      throw new IllegalArgumentException(String.format(
+        "Object '%s' is not read by pages.", objectType.getObjectName()));
+    }
+    this.startPage = startPage;
+    this.endPage = endPage;
+    this.pageNumber = startPage;
+    this.nextPage = String.format(nextPage.contains("?") ? "%s&%s=%d&%s=%d" : "%s?%s=%d&%s=%d",
+                                  nextPage, PAGE, startPage, PER_PAGE, LIST_PAGE_SIZE);
+  }
+
+  /**
+   * Sends the request of the first page ahead of the iteration with the async http engine, so that the page is
+   * received while the iterator waits for its turn. Does nothing with the blocking engine, or once a request was sent.
+   */
+  public void requestFirstPage() {
+    if (asyncEngine != null && pendingRequest == null && pageNumber == startPage && hasNextPage()) {
+      requestAhead();
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (current == null || !current.hasNext()) {
+      Page<T> page = prefetchPages > 0 ? takePrefetchedPage() : (hasNextPage() ? readPage() : null);
+      if (page == null) {
+        return false;
+      }
+      pageMetadata = page.getMetadata();
+      current = page.getRecords();
+    }
+    return current.hasNext();
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    recordsRead++;
+    return current.next();
+  }
+
+  /**
+   * Estimates the progress of the iteration. The progress of an incremental export is the position of the last
+   * page read within the time range read, and the progress of a list is the share of its count already read.
+   *
+   * @return the progress between 0 and 1, 0 if unknown
+   */
+  public float getProgress() {
+    Map<String, Object> metadata = pageMetadata;
+    if (metadata == null) {
+      return 0;
+    }
+    if (pagination == Pagination.OFFSET) {
+      Number count = (Number) metadata.get(COUNT);
+      if (count == null) {
+        return 0;
+      }
+      // The objects of the pages read by the iterator
+      long total = count.longValue() - (long) (startPage - 1) * LIST_PAGE_SIZE;
+      if (endPage > 0) {
+        total = Math.min(total, (long) (endPage - startPage) * LIST_PAGE_SIZE);
+      }
+      return total <= 0 ? 0 : Math.min(1f, (float) recordsRead / total);
+    }
+    Number position = (Number) metadata.get(pagination == Pagination.CURSOR ? PageDecoder.LAST_EXPORT_TIME : END_TIME);
+    if (position == null || exportStartTime == null || progressEndTime <= exportStartTime) {
+      return 0;
+    }
+    float progress = (float) (position.longValue() - exportStartTime) / (progressEndTime - exportStartTime);
+    return Math.max(0f, Math.min(1f, progress));
+  }
+
+  /**
+   * Returns the position the incremental export reached: the end time of the last page read by a time based export,
+   * which the following page would start at, or the export time of the last page read by a cursor based one.
+   *
+   * @return the position in epoch seconds, null if the object is not exported or no position was read yet
+   */
+  @Nullable
+  public Long getReachedTime() {
+    Map<String, Object> metadata = pageMetadata;
+    if (metadata == null || pagination == Pagination.OFFSET) {
+      return null;
+    }
+    Number position = (Number) metadata.get(pagination == Pagination.CURSOR ? PageDecoder.LAST_EXPORT_TIME : END_TIME);
+    return position == null || position.longValue() == 0 ? null : position.longValue();
+  }
+
+  /**
+   * Returns the top level values of the last page read, such as the count and the end time of an export page.
+   *
+   * @return the values of the last page, or null if no page was read yet
+   */
+  public Map<String, Object> getPageMetadata() {
+    return pageMetadata;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (prefetchExecutor != null) {
+      stopPrefetch();
+    }
+    PendingRequest request = pendingRequest;
+    if (request != null) {
+      pendingRequest = null;
+      request.cancel();
+    }
+    if (httpClient != null) {
+      httpClient.close();
+    }
+    if (asyncEngine != null) {
+      asyncEngine.close();
+    }
+  }
+
+  private boolean hasNextPage() {
+    return nextPage != null && !nextPage.equalsIgnoreCase("null");
+  }
+
+  private Page<T> readPage() {
+    AtomicInteger attempts = new AtomicInteger();
+    try {
+      Page<T> page = retryer.call(() -> {
+        if (attempts.getAndIncrement() > 0) {
+          metrics.recordRetry();
+        }
+        try {
+          return fetchPage();
+        } catch (Exception e) {
+          if (RetryPolicy.isConnectionFailure(e)) {
+            metrics.recordConnectionFailure();
+          }
+          throw e;
+        }
+      });
+      nextPage = getNextPage(page.getMetadata());
+      pageNumber++;
+      if (asyncEngine != null && hasNextPage()) {
+        // The following page is received while the records of this one are consumed
+        requestAhead();
+      }
+      return page;
+    } catch (ExecutionException | RetryException e) {
+      throw new ConnectionTimeoutException(String.format("Cannot create Zendesk connection for object: '%s'",
+        objectType.getObjectName()), e);
+    }
+  }
+
+  private void requestAhead() {
+    try {
+      pendingRequest = sendRequest(nextPage);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ConnectionTimeoutException(String.format("Interrupted while reading object: '%s'",
+        objectType.getObjectName()), e);
+    }
+  }
+
+  private Page<T> takePrefetchedPage() {
+    if (prefetchDone) {
+      return null;
+    }
+    if (prefetchExecutor == null) {
+      prefetchQueue = new ArrayBlockingQueue<>(prefetchPages);
+      prefetchExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("zendesk-prefetch-" + objectType.name().toLowerCase() + "-%d")
+        .setDaemon(true)
+        .build());
+      prefetchExecutor.execute(this::prefetch);
+    }
+    Page<T> page;
+    try {
+      page = prefetchQueue.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ConnectionTimeoutException(String.format("Interrupted while reading object: '%s'",
+        objectType.getObjectName()), e);
+    }
+    if (page != endOfPages) {
+      return page;
+    }
+    prefetchDone = true;
+    if (prefetchFailure != null) {
+      throw prefetchFailure;
+    }
+    return null;
+  }
+
+  /**
+   * Reads the pages ahead of the consumer, blocking while the queue is full.
+   */
+  private void prefetch() {
+    try {
+      while (hasNextPage() && !Thread.currentThread().isInterrupted()) {
+        prefetchQueue.put(readPage());
+      }
+    } catch (InterruptedException e) {
+      // stopped by close
+      return;
+    } catch (RuntimeException e) {
+      prefetchFailure = e;
+    }
+    try {
+      prefetchQueue.put(endOfPages);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void stopPrefetch() {
+    prefetchExecutor.shutdownNow();
+    HttpGet request = currentRequest;
+    if (request != null) {
+      request.abort();
+    }
+    try {
+      prefetchExecutor.awaitTermination(config.getReadTimeout(), TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Requests the current page and reads its records.
+   *
+   * @return the page read
+   */
+  abstract Page<T> fetchPage() throws IOException, InterruptedException;
+
+  /**
+   * Executes the request for the current page.
+   *
+   * @param responseHandler The handler reading a successful response
+   * @param emptyResponse   The supplier of the response to use when comments are not available for an entity
+   * @param <R>             the type of the handled response
+   * @return the handled response
+   */
+  protected <R> R executeRequest(ResponseHandler<R> responseHandler, Supplier<R> emptyResponse)
+    throws IOException, InterruptedException {
+    if (asyncEngine != null) {
+      return handleResponse(takePendingRequest().await(), responseHandler, emptyResponse);
+    }
+    HttpGet request = createRequest(nextPage);
+    currentRequest = request;
+    long requestStart = acquirePermits();
+    long responseNanos = -1;
+    // A request failing on the connection is taken as a sign of overload too
+    boolean overloaded = true;
+    try (CloseableHttpResponse response = httpClient.getHttpClient().execute(request, httpClientContext)) {
+      responseNanos = System.nanoTime() - requestStart;
+      overloaded = recordResponse(response, responseNanos);
+      return handleResponse(response, responseHandler, emptyResponse);
+    } finally {
+      releasePermit(responseNanos < 0 ? System.nanoTime() - requestStart : responseNanos, overloaded);
+    }
+  }
+
+  /**
+   * Returns the request of the current page sent ahead by the async engine, sending it if it was not.
+   */
+  private PendingRequest takePendingRequest() throws InterruptedException {
+    PendingRequest request = pendingRequest;
+    pendingRequest = null;
+    if (request != null && request.url.equals(nextPage)) {
+      return request;
+    }
+    if (request != null) {
+      request.cancel();
+    }
+    return sendRequest(nextPage);
+  }
+
+  /**
+   * Sends a request with the async engine. The permits of the request are released once its response is received.
+   */
+  private PendingRequest sendRequest(String url) throws InterruptedException {
+    HttpGet request = createRequest(url);
+    long requestStart = acquirePermits();
+    CompletableFuture<HttpResponse> exchange;
+    try {
+      exchange = asyncEngine.execute(request, httpClientContext);
+    } catch (RuntimeException e) {
+      releasePermit(System.nanoTime() - requestStart, true);
+      throw e;
+    }
+    CompletableFuture<HttpResponse> response = exchange.whenComplete((result, failure) -> {
+      long responseNanos = System.nanoTime() - requestStart;
+      releasePermit(responseNanos, result == null || recordResponse(result, responseNanos));
+    });
+    return new PendingRequest(url, exchange, response);
+  }
+
+  private static HttpGet createRequest(String url) {
+    //replace out %2B with + due to API restriction
+    return new HttpGet(URI.create(RESTRICTED_PATTERN.matcher(url).replaceAll("+")));
+  }
+
+  /**
+   * Waits for the permits of a request, from the budget of the split, the rate limit and the concurrency limit of
+   * the subdomain.
+   *
+   * @return the time the request starts at, in nanoseconds
+   */
+  private long acquirePermits() throws InterruptedException {
+    long waitStart = System.nanoTime();
+    // The share of the split is waited for first, so that no token of the subdomain is held meanwhile
+    if (budgetLimiter != null) {
+      budgetLimiter.acquire();
+    }
+    rateLimiter.acquire();
+    if (concurrencyController != null) {
+      concurrencyController.acquire();
+    }
+    long requestStart = System.nanoTime();
+    metrics.recordWait(requestStart - waitStart);
+    return requestStart;
+  }
+
+  private void releasePermit(long latencyNanos, boolean overloaded) {
+    if (concurrencyController != null) {
+      concurrencyController.release(latencyNanos, overloaded);
+      metrics.recordConcurrencyLimit(concurrencyController.getLimit());
+    }
+  }
+
+  /**
+   * Records a response in the metrics and the rate limiter.
+   *
+   * @return whether the response shows the subdomain overloaded
+   */
+  private boolean recordResponse(HttpResponse response, long responseNanos) {
+    metrics.recordRequest(responseNanos);
+    rateLimiter.update(getIntHeader(response, RATE_LIMIT), getIntHeader(response, RATE_LIMIT_REMAINING));
+    int statusCode = response.getStatusLine().getStatusCode();
+    return statusCode == 429 || statusCode / 100 == 5;
+  }
+
+  private <R> R handleResponse(HttpResponse response, ResponseHandler<R> responseHandler, Supplier<R> emptyResponse)
+    throws IOException {
+    StatusLine statusLine = response.getStatusLine();
+    int statusCode = statusLine.getStatusCode();
+    if (statusCode / 100 == 2) {
+      HttpEntity entity = response.getEntity();
+      if (entity == null) {
+        return responseHandler.handleResponse(response);
+      }
+      // The entity as received, before its content is decompressed
+      CountingEntity wireEntity = (CountingEntity) httpClientContext.removeAttribute(HttpUtil.WIRE_ENTITY);
+      try {
+        R result = responseHandler.handleResponse(response);
+        // The rest of a content decoded as a stream is read, so that the connection can be reused
+        EntityUtils.consume(entity);
+        return result;
+      } finally {
+        if (wireEntity != null) {
+          metrics.recordBytes(wireEntity.getTransferredCount());
+        }
+      }
+    }
+    if (statusCode == 429) {
+      metrics.recordRateLimited();
+      // The retry waits in the limiter, along with every other request to the subdomain
+      Integer retryAfterTimeInSeconds = getIntHeader(response, RETRY_AFTER);
+      rateLimiter.pause(retryAfterTimeInSeconds == null ? DEFAULT_RETRY_AFTER_SECONDS : retryAfterTimeInSeconds);
+      throw new RateLimitException();
+    }
+    if (statusCode / 100 == 5) {
+      metrics.recordServerError();
+      throw new HttpResponseException(statusCode, statusLine.getReasonPhrase());
+    }
+    if (objectType == ObjectType.ARTICLE_COMMENTS
+      || objectType == ObjectType.POST_COMMENTS
+      || objectType == ObjectType.REQUESTS_COMMENTS) {
+      return emptyResponse.get();
+    }
+    throw new HttpResponseException(statusCode, "No response.");
+  }
+
+  /**
+   * Returns a reader decoding the content of a response as it is received, in the charset of the response,
+   * UTF-8 if not given.
+   *
+   * @param entity The entity of the response
+   * @return the reader of the content
+   */
+  protected static Reader getContentReader(HttpEntity entity) throws IOException {
+    Charset charset = ContentType.getOrDefault(entity).getCharset();
+    return new InputStreamReader(entity.getContent(), charset == null ? StandardCharsets.UTF_8 : charset);
+  }
+
+  private String getNextCursorPage(Map<String, Object> responseMap) {
+    if (Boolean.TRUE.equals(responseMap.get(END_OF_STREAM))) {
+      return null;
+    }
+    // The following pages only hold objects at or after the end of the time range being read.
+    Number lastExportTime = (Number) responseMap.get(PageDecoder.LAST_EXPORT_TIME);
+    if (exportEndTime != null && lastExportTime != null && lastExportTime.longValue() >= exportEndTime) {
+      return null;
+    }
+    String next = (String) responseMap.get(NEXT_CURSOR_URL);
+    if (next == null || next.equalsIgnoreCase("null")) {
+      throw new IllegalStateException(String.format(
+        "Cursor export of object '%s' ended before reaching the end of the stream.", objectType.getObjectName()));
+    }
+    return next;
+  }
+
+  private static Integer getIntHeader(HttpResponse response, String name) {
+    Header header = response.getFirstHeader(name);
+    if (header == null) {
+      return null;
+    }
+    try {
+      return Integer.parseInt(header.getValue().trim());
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  @VisibleForTesting
+  String getNextPage(Map<String, Object> responseMap) {
+    if (pagination == Pagination.OFFSET) {
+      // The following pages are read by another split
+      if (endPage > 0 && pageNumber + 1 >= endPage) {
+        return null;
+      }
+      return (String) responseMap.get(NEXT_PAGE);
+    }
+    if (pagination == Pagination.CURSOR) {
+      return getNextCursorPage(responseMap);
+    }
+
+    String next = (String) responseMap.get(NEXT_PAGE);
+    if (next == null) {
+      return null;
+    }
+
+    // A request after five minutes ago will result in a 422 response from Zendesk.
+    // Therefore, we stop pagination.
+    Number endTime = (Number) responseMap.get(END_TIME);
+    if (endTime == null || endTime.longValue() == 0
+      || TimeUnit.SECONDS.toMillis(endTime.longValue()) > System.currentTimeMillis() - FIVE_MINUTES) {
+      return null;
+    }
+
+    // The following pages only hold objects at or after the end of the time range being read.
+    if (exportEndTime != null && endTime.longValue() >= exportEndTime) {
+      return null;
+    }
+
+    // Taking into account documentation found at
+    // https://developer.zendesk.com/rest_api/docs/core/incremental_export#polling-strategy
+    Number count = (Number) responseMap.get(COUNT);
+    if (count == null || count.intValue() < INCREMENTAL_EXPORT_MAX_COUNT_BY_REQUEST) {
+      return null;
+    }
+
+    return next;
+  }
+
+  /**
+   * A request sent ahead by the async engine.
+   */
+  private static class PendingRequest {
+    private final String url;
+    private final CompletableFuture<HttpResponse> exchange;
+    private final CompletableFuture<HttpResponse> response;
+
+    private PendingRequest(String url, CompletableFuture<HttpResponse> exchange,
+                           CompletableFuture<HttpResponse> response) {
+      this.url = url;
+      this.exchange = exchange;
+      this.response = response;
+    }
+
+    /**
+     * Waits for the response, once the permits of the request are released.
+     */
+    private HttpResponse await() throws IOException, InterruptedException {
+      try {
+        return response.get();
+      } catch (InterruptedException e) {
+        cancel();
+        throw e;
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        throw new IOException(cause);
+      }
+    }
+
+    private void cancel() {
+      exchange.cancel(true);
+    }
+  }
+}
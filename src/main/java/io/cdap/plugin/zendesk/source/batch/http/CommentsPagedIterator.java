@@ -16,21 +16,41 @@
 
 package io.cdap.plugin.zendesk.source.batch.http;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.plugin.zendesk.source.batch.ZendeskBatchSourceConfig;
 import io.cdap.plugin.zendesk.source.common.ObjectType;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Iterable wrapper for Zendesk comments.
+ * <p>
+ * The comments of the entities are read one entity after the other, or by a pool of threads reading the comments
+ * of several entities at once when the comments concurrency of the config is greater than 1. With the async http
+ * engine, the first requests of the comments of the following entities are kept in flight on the engine instead, for
+ * at least as many entities as connections to the subdomain. The comments are returned in the order of the entities
+ * in every case. The requests of the comments follow the retry policy of the entity iterator, so that the split has a
+ * single retry time.
  */
-public class CommentsPagedIterator implements Iterator<String>, Closeable {
+public class CommentsPagedIterator implements Iterator<StructuredRecord>, Closeable {
 
   private static final Gson GSON = new GsonBuilder().create();
 
@@ -38,7 +58,13 @@ public class CommentsPagedIterator implements Iterator<String>, Closeable {
   private final ZendeskBatchSourceConfig config;
   private final ObjectType objectType;
   private final String subdomain;
-  private PagedIterator pagedIterator;
+  private final Schema schema;
+  private final int concurrency;
+  private final Deque<Future<List<StructuredRecord>>> pendingEntities = new ArrayDeque<>();
+  private final Deque<RecordPagedIterator> requestedEntities = new ArrayDeque<>();
+  private ExecutorService executor;
+  private RecordPagedIterator pagedIterator;
+  private Iterator<StructuredRecord> current;
 
   /**
    * Constructor for CommentsPagedIterator.
@@ -47,27 +73,39 @@ public class CommentsPagedIterator implements Iterator<String>, Closeable {
    * @param config         The batch source config
    * @param objectType     The object type
    * @param subdomain      The sub-domain
+   * @param schema         The output schema of the comments
    */
   public CommentsPagedIterator(PagedIterator entityIterator,
-                               ZendeskBatchSourceConfig config, ObjectType objectType, String subdomain) {
+                               ZendeskBatchSourceConfig config, ObjectType objectType, String subdomain,
+                               Schema schema) {
     this.entityIterator = entityIterator;
     this.config = config;
     this.objectType = objectType;
     this.subdomain = subdomain;
+    this.schema = schema;
+    this.concurrency = config.isAsyncHttpEngine()
+      ? Math.max(config.getCommentsConcurrency(), config.getMaxConnectionsPerRoute())
+      : config.getCommentsConcurrency();
   }
 
   @Override
   public boolean hasNext() {
+    if (config.isAsyncHttpEngine()) {
+      return hasNextRequested();
+    }
+    if (concurrency > 1) {
+      return hasNextConcurrently();
+    }
     if (pagedIterator == null || !pagedIterator.hasNext()) {
       if (!entityIterator.hasNext()) {
         return false;
       }
       // If there are no records in pagedIterator, check for next user
       while (entityIterator.hasNext()) {
-        String next = entityIterator.next();
-        Map userMap = GSON.fromJson(next, Map.class);
-        Long userId = ((Number) userMap.get("id")).longValue();
-        pagedIterator = new PagedIterator(config, objectType, subdomain, userId);
+        Long entityId = nextEntityId();
+        closePagedIterator();
+        pagedIterator = createCommentsIterator(entityId);
+        current = pagedIterator;
         if (pagedIterator.hasNext()) {
           return true;
         }
@@ -77,17 +115,134 @@ public class CommentsPagedIterator implements Iterator<String>, Closeable {
   }
 
   @Override
-  public String next() {
+  public StructuredRecord next() {
     if (!hasNext()) {
       throw new NoSuchElementException();
     }
-    return pagedIterator.next();
+    return current.next();
+  }
+
+  /**
+   * Estimates the progress from the share of the entities whose comments were read.
+   *
+   * @return the progress between 0 and 1, 0 if unknown
+   */
+  public float getProgress() {
+    return entityIterator.getProgress();
   }
 
   @Override
   public void close() throws IOException {
-    if (pagedIterator != null) {
+    try {
+      if (executor != null) {
+        pendingEntities.forEach(future -> future.cancel(true));
+        pendingEntities.clear();
+        executor.shutdownNow();
+      }
+      for (RecordPagedIterator requested : requestedEntities) {
+        requested.close();
+      }
+      requestedEntities.clear();
+      closePagedIterator();
+    } finally {
+      entityIterator.close();
+    }
+  }
+
+  /**
+   * Keeps up to the configured number of entities read ahead, and takes the comments of the oldest one.
+   */
+  private boolean hasNextConcurrently() {
+    while (current == null || !current.hasNext()) {
+      while (pendingEntities.size() < concurrency && entityIterator.hasNext()) {
+        Long entityId = nextEntityId();
+        pendingEntities.add(getExecutor().submit(() -> readComments(entityId)));
+      }
+      if (pendingEntities.isEmpty()) {
+        return false;
+      }
+      current = getComments(pendingEntities.poll()).iterator();
+    }
+    return true;
+  }
+
+  /**
+   * Keeps the first request of the comments of up to the configured number of entities in flight on the async http
+   * engine, and reads the comments of the oldest one from the task thread.
+   */
+  private boolean hasNextRequested() {
+    while (current == null || !current.hasNext()) {
+      while (requestedEntities.size() < concurrency && entityIterator.hasNext()) {
+        RecordPagedIterator entityComments = createCommentsIterator(nextEntityId());
+        requestedEntities.add(entityComments);
+        entityComments.requestFirstPage();
+      }
+      closePagedIterator();
+      pagedIterator = requestedEntities.poll();
+      if (pagedIterator == null) {
+        return false;
+      }
+      current = pagedIterator;
+    }
+    return true;
+  }
+
+  @VisibleForTesting
+  List<StructuredRecord> readComments(Long entityId) throws IOException {
+    List<StructuredRecord> comments = new ArrayList<>();
+    try (RecordPagedIterator entityComments = createCommentsIterator(entityId)) {
+      entityComments.forEachRemaining(comments::add);
+    }
+    return comments;
+  }
+
+  private RecordPagedIterator createCommentsIterator(Long entityId) {
+    RecordPagedIterator entityComments = new RecordPagedIterator(config, objectType, subdomain, entityId, schema);
+    entityComments.setRetryPolicy(entityIterator.getRetryPolicy());
+    entityComments.setBudgetLimiter(entityIterator.getBudgetLimiter());
+    return entityComments;
+  }
+
+  private List<StructuredRecord> getComments(Future<List<StructuredRecord>> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ConnectionTimeoutException(String.format("Interrupted while reading object: '%s'",
+        objectType.getObjectName()), e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new ConnectionTimeoutException(String.format("Cannot read object: '%s'",
+        objectType.getObjectName()), e.getCause());
+    }
+  }
+
+  private ExecutorService getExecutor() {
+    if (executor == null) {
+      executor = Executors.newFixedThreadPool(concurrency, new ThreadFactoryBuilder()
+        .setNameFormat("zendesk-comments-" + objectType.name().toLowerCase() + "-%d")
+        .setDaemon(true)
+        .build());
+    }
+    return executor;
+  }
+
+  private Long nextEntityId() {
+    Map entityMap = GSON.fromJson(entityIterator.next(), Map.class);
+    return ((Number) entityMap.get("id")).longValue();
+  }
+
+  private void closePagedIterator() {
+    if (pagedIterator == null) {
+      return;
+    }
+    try {
       pagedIterator.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
     }
+    pagedIterator = null;
   }
 }
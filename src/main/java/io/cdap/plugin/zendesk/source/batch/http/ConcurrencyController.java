@@ -0,0 +1,129 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.cdap.plugin.zendesk.source.batch.ZendeskBatchSourceConfig;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Window of the requests in flight to a Zendesk subdomain, shared by every iterator of the JVM reading the subdomain
+ * with the same max connections.
+ * <p>
+ * The window adapts to the subdomain with additive increase, multiplicative decrease: it starts at one request and
+ * grows by one request for each window of healthy responses, up to the max connections of the subdomain. It is
+ * halved when a request is rejected with a 429 or 5xx error, fails on the connection, or takes more than three times
+ * the smoothed latency of the subdomain. The window is halved at most once per smoothed latency, so that the
+ * responses of the requests already in flight do not halve it again.
+ */
+public class ConcurrencyController {
+
+  private static final Map<List<Object>, ConcurrencyController> CONTROLLERS = new ConcurrentHashMap<>();
+  private static final double LATENCY_SPIKE_FACTOR = 3;
+  private static final double LATENCY_SMOOTHING = 0.1;
+  // The latency is smoothed over a few responses before its spikes are detected
+  private static final int MIN_LATENCY_SAMPLES = 10;
+
+  private final int maxLimit;
+  private final LongSupplier clock;
+  private int limit = 1;
+  private int inFlight;
+  private int healthyResponses;
+  private double smoothedLatencyNanos;
+  private int latencySamples;
+  private long lastDecrease;
+
+  @VisibleForTesting
+  ConcurrencyController(int maxLimit, LongSupplier clock) {
+    this.maxLimit = Math.max(1, maxLimit);
+    this.clock = clock;
+    this.lastDecrease = clock.getAsLong();
+  }
+
+  /**
+   * Returns the controller of a subdomain up to the max connections of the config, creating it if it does not exist.
+   * The controllers are kept per base url, subdomain and max connections, so that the window of a pipeline run is
+   * not capped by the max connections of the pipelines run before it in the JVM.
+   *
+   * @param config    The batch source config
+   * @param subdomain The subdomain name
+   * @return the controller shared by the iterators of the subdomain
+   */
+  public static ConcurrencyController forSubdomain(ZendeskBatchSourceConfig config, String subdomain) {
+    int maxConnections = config.getMaxConnectionsPerRoute();
+    return CONTROLLERS.computeIfAbsent(
+      Arrays.asList(config.getZendeskBaseUrl(), subdomain, maxConnections),
+      key -> new ConcurrencyController(maxConnections, System::nanoTime));
+  }
+
+  /**
+   * Blocks until the window has room for a request.
+   */
+  public synchronized void acquire() throws InterruptedException {
+    while (inFlight >= limit) {
+      wait();
+    }
+    inFlight++;
+  }
+
+  /**
+   * Releases the room of a request and adapts the window to its outcome.
+   *
+   * @param latencyNanos The time the request took, up to its response headers or its failure
+   * @param overloaded   Whether the request was rejected with a 429 or 5xx error, or failed on the connection
+   */
+  public synchronized void release(long latencyNanos, boolean overloaded) {
+    inFlight--;
+    boolean latencySpike = latencySamples >= MIN_LATENCY_SAMPLES
+      && latencyNanos > LATENCY_SPIKE_FACTOR * smoothedLatencyNanos;
+    if (!overloaded) {
+      smoothedLatencyNanos = latencySamples == 0
+        ? latencyNanos
+        : smoothedLatencyNanos + LATENCY_SMOOTHING * (latencyNanos - smoothedLatencyNanos);
+      latencySamples++;
+    }
+    long now = clock.getAsLong();
+    if (overloaded || latencySpike) {
+      if (now - lastDecrease >= smoothedLatencyNanos) {
+        limit = Math.max(1, limit / 2);
+        healthyResponses = 0;
+        lastDecrease = now;
+      }
+    } else if (++healthyResponses >= limit) {
+      limit = Math.min(maxLimit, limit + 1);
+      healthyResponses = 0;
+    }
+    notifyAll();
+  }
+
+  /**
+   * Returns the number of requests allowed in flight.
+   */
+  public synchronized int getLimit() {
+    return limit;
+  }
+
+  @VisibleForTesting
+  int getMaxLimit() {
+    return maxLimit;
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.cdap.plugin.zendesk.source.batch.ZendeskBatchSourceConfig;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+
+/**
+ * Checks that the subdomains of a config can be read, by requesting the first page of their groups.
+ * <p>
+ * The subdomains are probed in parallel, by up to {@link #MAX_CONCURRENCY} threads, and the probes still running
+ * after the validation timeout of the config are reported as failed. A successful probe is remembered by the JVM for
+ * the validation cache TTL of the config, per base url, subdomain and credentials, so that the validation of a
+ * pipeline when it is deployed and when its run starts does not probe the subdomains again. Failed probes are not
+ * remembered.
+ */
+public final class ConnectionValidator {
+
+  /**
+   * Maximum number of subdomains probed at once.
+   */
+  public static final int MAX_CONCURRENCY = 16;
+
+  private static final Map<List<String>, Long> VALIDATED = new ConcurrentHashMap<>();
+
+  private final ZendeskBatchSourceConfig config;
+  private final LongSupplier clock;
+
+  /**
+   * Constructor for ConnectionValidator object.
+   *
+   * @param config The batch source config
+   */
+  public ConnectionValidator(ZendeskBatchSourceConfig config) {
+    this(config, System::nanoTime);
+  }
+
+  @VisibleForTesting
+  ConnectionValidator(ZendeskBatchSourceConfig config, LongSupplier clock) {
+    this.config = config;
+    this.clock = clock;
+  }
+
+  /**
+   * Probes the subdomains of the config that were not validated recently.
+   *
+   * @return the subdomains that could not be read
+   */
+  public Set<String> findFailingSubdomains() {
+    Map<String, List<String>> keys = new LinkedHashMap<>();
+    for (String subdomain : config.getSubdomains()) {
+      List<String> key = getKey(subdomain);
+      Long expiry = VALIDATED.get(key);
+      if (expiry == null || expiry - clock.getAsLong() <= 0) {
+        keys.put(subdomain, key);
+      }
+    }
+    Set<String> failing = new LinkedHashSet<>();
+    if (keys.isEmpty()) {
+      return failing;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(
+      Math.min(MAX_CONCURRENCY, keys.size()),
+      new ThreadFactoryBuilder().setNameFormat("zendesk-validation-%d").setDaemon(true).build());
+    try {
+      Map<String, Future<Boolean>> probes = new LinkedHashMap<>();
+      keys.keySet().forEach(subdomain -> probes.put(subdomain, executor.submit(() -> probe(subdomain))));
+      long deadline = clock.getAsLong() + TimeUnit.SECONDS.toNanos(config.getValidationTimeout());
+      for (Map.Entry<String, Future<Boolean>> probe : probes.entrySet()) {
+        String subdomain = probe.getKey();
+        if (!getProbeResult(probe.getValue(), deadline)) {
+          failing.add(subdomain);
+          continue;
+        }
+        long ttl = TimeUnit.SECONDS.toNanos(config.getValidationCacheTtl());
+        if (ttl > 0) {
+          VALIDATED.put(keys.get(subdomain), clock.getAsLong() + ttl);
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    return failing;
+  }
+
+  /**
+   * Requests the first page of the groups of a subdomain.
+   *
+   * @param subdomain The subdomain name
+   * @return true if the page was read
+   */
+  @VisibleForTesting
+  boolean probe(String subdomain) {
+    try (PagedIterator pagedIterator = new PagedIterator(config, ObjectType.GROUPS, subdomain)) {
+      // Only the top level values of the page are needed
+      pagedIterator.setProjection(Collections.emptySet());
+      pagedIterator.hasNext();
+      return true;
+    } catch (IOException | ConnectionTimeoutException e) {
+      return false;
+    }
+  }
+
+  @VisibleForTesting
+  static void clearCache() {
+    VALIDATED.clear();
+  }
+
+  private boolean getProbeResult(Future<Boolean> probe, long deadline) {
+    try {
+      return probe.get(Math.max(0, deadline - clock.getAsLong()), TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (ExecutionException | TimeoutException e) {
+      probe.cancel(true);
+      return false;
+    }
+  }
+
+  private List<String> getKey(String subdomain) {
+    // The token is only kept hashed
+    String apiTokenHash = Hashing.sha256().hashString(Strings.nullToEmpty(config.getApiToken()),
+                                                      StandardCharsets.UTF_8).toString();
+    return Arrays.asList(config.getZendeskBaseUrl(), subdomain, config.getAdminEmail(), apiTokenHash);
+  }
+}
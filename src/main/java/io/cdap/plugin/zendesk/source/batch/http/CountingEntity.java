@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Entity counting the bytes read from the content of the entity it wraps.
+ */
+class CountingEntity extends HttpEntityWrapper {
+
+  private CountingInputStream content;
+
+  CountingEntity(HttpEntity wrappedEntity) {
+    super(wrappedEntity);
+  }
+
+  @Override
+  public InputStream getContent() throws IOException {
+    if (content == null) {
+      content = new CountingInputStream(super.getContent());
+    }
+    return content;
+  }
+
+  @Override
+  public void writeTo(OutputStream outStream) throws IOException {
+    try (InputStream inputStream = getContent()) {
+      ByteStreams.copy(inputStream, outStream);
+    }
+  }
+
+  /**
+   * Returns the number of bytes read from the content.
+   *
+   * @return the number of bytes read
+   */
+  long getCount() {
+    return content == null ? 0 : content.getCount();
+  }
+
+  /**
+   * Returns the number of bytes of the content, its length when known, or the number of bytes read from it.
+   *
+   * @return the number of bytes of the content
+   */
+  long getTransferredCount() {
+    long length = getContentLength();
+    return length >= 0 ? length : getCount();
+  }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.CaseFormat;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.gson.stream.JsonToken;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Nullable;
+
+/**
+ * Immutable plan decoding the objects of an {@link ObjectType} into records of an output schema. The plan resolves
+ * once the keys of the response objects, the fields they are read into and the nested plans, so that decoding a
+ * record only looks keys up. Plans are built once per JVM and shared by every decoder, the JVM keeping the plans of
+ * the latest schemas only.
+ */
+final class DecodePlan {
+
+  private static final String ID = "id";
+  private static final String EVENT_TYPE = "event_type";
+  private static final String TICKET_ID = "ticket_id";
+  @VisibleForTesting
+  static final int MAX_CACHED_PLANS = 256;
+  private static final Cache<List<Object>, DecodePlan> PLANS = CacheBuilder.newBuilder()
+    .maximumSize(MAX_CACHED_PLANS)
+    .build();
+  private static final Cache<Schema, RecordPlan> RENAME_PLANS = CacheBuilder.newBuilder()
+    .maximumSize(MAX_CACHED_PLANS)
+    .build();
+
+  private final RecordPlan recordPlan;
+  private final String tableNameField;
+  private final String tableName;
+  private final Set<String> capturedKeys;
+
+  private DecodePlan(ObjectType objectType, Schema schema, String tableNameField) {
+    this.recordPlan = new PlanBuilder().recordPlan(schema, true);
+    this.tableNameField = schema.getField(tableNameField) == null ? null : tableNameField;
+    this.tableName = objectType.getObjectName().replace(" ", "_");
+    ImmutableSet.Builder<String> capturedKeys = ImmutableSet.<String>builder().add(ID, EVENT_TYPE);
+    if (objectType.getExportTimeKey() != null) {
+      capturedKeys.add(objectType.getExportTimeKey());
+    }
+    // the metric sets sideloaded with the tickets are matched to their ticket
+    if (objectType == ObjectType.TICKET_METRICS) {
+      capturedKeys.add(TICKET_ID);
+    }
+    this.capturedKeys = capturedKeys.build();
+  }
+
+  /**
+   * Returns the plan decoding the objects of an object type into records of a schema.
+   *
+   * @param objectType     The object type
+   * @param schema         The output schema of the records
+   * @param tableNameField The name of the field that holds the table name
+   * @return the shared plan
+   */
+  static DecodePlan of(ObjectType objectType, Schema schema, String tableNameField) {
+    return getCached(PLANS, Arrays.asList(objectType, schema, tableNameField),
+                     () -> new DecodePlan(objectType, schema, tableNameField));
+  }
+
+  /**
+   * Returns the plan renaming the keys of the objects read as maps into the field names of a schema.
+   *
+   * @param schema The schema of the objects
+   * @return the shared plan
+   */
+  static RecordPlan renamePlan(Schema schema) {
+    return getCached(RENAME_PLANS, schema, () -> new PlanBuilder().recordPlan(schema, true));
+  }
+
+  @VisibleForTesting
+  static long getCachedPlanCount() {
+    return PLANS.size() + RENAME_PLANS.size();
+  }
+
+  private static <K, V> V getCached(Cache<K, V> cache, K key, Callable<V> loader) {
+    try {
+      return cache.get(key, loader);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      // The plans are built without checked exceptions, the schema errors are thrown as they are
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  RecordPlan getRecordPlan() {
+    return recordPlan;
+  }
+
+  /**
+   * Returns the field holding the table name, null if the schema has none.
+   */
+  @Nullable
+  String getTableNameField() {
+    return tableNameField;
+  }
+
+  String getTableName() {
+    return tableName;
+  }
+
+  /**
+   * Returns the keys of the values captured from the top level objects: the id, the event type, the export time and
+   * the ticket id of the ticket metrics.
+   */
+  Set<String> getCapturedKeys() {
+    return capturedKeys;
+  }
+
+  /**
+   * Plan of a record: the fields read from each key of an object.
+   */
+  static final class RecordPlan {
+
+    private final Schema schema;
+    private final Map<String, FieldPlan> fieldsByKey;
+    private final List<FieldPlan> fields;
+
+    private RecordPlan(Schema schema, Map<String, FieldPlan> fieldsByKey, List<FieldPlan> fields) {
+      this.schema = schema;
+      this.fieldsByKey = fieldsByKey;
+      this.fields = fields;
+    }
+
+    Schema getSchema() {
+      return schema;
+    }
+
+    @Nullable
+    FieldPlan getField(String key) {
+      return fieldsByKey.get(key);
+    }
+
+    /**
+     * Renames the lower underscore keys of an object, and of its nested objects, into the field names.
+     *
+     * @param map The object read as a map
+     */
+    void renameKeys(@Nullable Map<Object, Object> map) {
+      if (map == null || map.isEmpty()) {
+        return;
+      }
+      for (FieldPlan field : fields) {
+        if (field.isRenamed() && map.containsKey(field.key)) {
+          map.put(field.name, map.remove(field.key));
+        }
+        RecordPlan nested = field.value.nestedRecord;
+        if (nested != null) {
+          nested.renameKeys((Map<Object, Object>) map.get(field.name));
+        }
+      }
+    }
+  }
+
+  /**
+   * Plan of a field: its name and the plan of its value.
+   */
+  static final class FieldPlan {
+
+    private final String key;
+    private final String name;
+    private final ValuePlan value;
+
+    private FieldPlan(String key, String name, ValuePlan value) {
+      this.key = key;
+      this.name = name;
+      this.value = value;
+    }
+
+    String getName() {
+      return name;
+    }
+
+    ValuePlan getValue() {
+      return value;
+    }
+
+    private boolean isRenamed() {
+      return !key.equals(name);
+    }
+  }
+
+  /**
+   * Plan of a value. Nullable unions are resolved to the plan of their non null schema.
+   */
+  static final class ValuePlan {
+
+    private final Schema.Type type;
+    private final ValuePlan element;
+    private final RecordPlan record;
+    private final RecordPlan nestedRecord;
+    private final Map<JsonToken, ValuePlan> unionPlans;
+    private final String unsupported;
+
+    private ValuePlan(Schema.Type type, @Nullable ValuePlan element, @Nullable RecordPlan record,
+                      @Nullable RecordPlan nestedRecord, @Nullable Map<JsonToken, ValuePlan> unionPlans,
+                      @Nullable String unsupported) {
+      this.type = type;
+      this.element = element;
+      this.record = record;
+      this.nestedRecord = nestedRecord;
+      this.unionPlans = unionPlans;
+      this.unsupported = unsupported;
+    }
+
+    Schema.Type getType() {
+      return type;
+    }
+
+    /**
+     * Returns the plan of the elements of an array or of the values of a map.
+     */
+    ValuePlan getElement() {
+      return element;
+    }
+
+    RecordPlan getRecord() {
+      return record;
+    }
+
+    /**
+     * Returns the plan of a union value starting with the given token, null if no schema of the union matches.
+     */
+    @Nullable
+    ValuePlan getUnionPlan(JsonToken token) {
+      return unionPlans.get(token);
+    }
+
+    /**
+     * Returns the reason why values of this plan cannot be decoded, null if they can.
+     */
+    @Nullable
+    String getUnsupported() {
+      return unsupported;
+    }
+  }
+
+  /**
+   * Builds the plans of a schema, sharing the plans of the record schemas met several times.
+   */
+  private static final class PlanBuilder {
+
+    private final Map<Schema, RecordPlan> mappedRecords = new HashMap<>();
+    private final Map<Schema, RecordPlan> verbatimRecords = new HashMap<>();
+
+    private RecordPlan recordPlan(Schema recordSchema, boolean mapKeys) {
+      Map<Schema, RecordPlan> records = mapKeys ? mappedRecords : verbatimRecords;
+      RecordPlan plan = records.get(recordSchema);
+      if (plan != null) {
+        return plan;
+      }
+      Map<String, FieldPlan> fieldsByKey = new LinkedHashMap<>();
+      ImmutableList.Builder<FieldPlan> fields = ImmutableList.builder();
+      for (Schema.Field field : recordSchema.getFields()) {
+        ValuePlan value = valuePlan(field.getSchema(), mapKeys);
+        String key = mapKeys ? CaseFormat.LOWER_CAMEL.to(CaseFormat.LOWER_UNDERSCORE, field.getName())
+          : field.getName();
+        FieldPlan fieldPlan = new FieldPlan(key, field.getName(), value);
+        fields.add(fieldPlan);
+        fieldsByKey.put(key, fieldPlan);
+      }
+      // a field is also read from its verbatim name, which wins over a mapped key
+      for (FieldPlan field : fields.build()) {
+        fieldsByKey.put(field.name, new FieldPlan(field.name, field.name, field.value));
+      }
+      plan = new RecordPlan(recordSchema, ImmutableMap.copyOf(fieldsByKey), fields.build());
+      records.put(recordSchema, plan);
+      return plan;
+    }
+
+    private ValuePlan valuePlan(Schema schema, boolean mapKeys) {
+      if (schema.isNullable()) {
+        return valuePlan(schema.getNonNullable(), mapKeys);
+      }
+      Schema.Type type = schema.getType();
+      switch (type) {
+        case BOOLEAN:
+        case INT:
+        case LONG:
+        case FLOAT:
+        case DOUBLE:
+        case STRING:
+        case ENUM:
+          return new ValuePlan(type, null, null, null, null, null);
+        case ARRAY:
+          // keys of records nested in arrays are matched verbatim, as the map based conversion does
+          return new ValuePlan(type, valuePlan(schema.getComponentSchema(), false), null, null, null, null);
+        case MAP:
+          Schema keySchema = schema.getMapSchema().getKey();
+          keySchema = keySchema.isNullable() ? keySchema.getNonNullable() : keySchema;
+          if (keySchema.getType() != Schema.Type.STRING) {
+            return new ValuePlan(type, null, null, null, null,
+                                 String.format("Unsupported map key type '%s'.", keySchema.getType()));
+          }
+          return new ValuePlan(type, valuePlan(schema.getMapSchema().getValue(), false), null, null, null, null);
+        case RECORD:
+          RecordPlan record = recordPlan(schema, mapKeys);
+          return new ValuePlan(type, null, record, record, null, null);
+        case UNION:
+          Map<JsonToken, ValuePlan> unionPlans = new HashMap<>();
+          RecordPlan nestedRecord = null;
+          for (Schema candidate : schema.getUnionSchemas()) {
+            ValuePlan candidatePlan = valuePlan(candidate, mapKeys);
+            unionPlans.putIfAbsent(getJsonToken(candidate.getType()), candidatePlan);
+            if (nestedRecord == null) {
+              nestedRecord = candidatePlan.nestedRecord;
+            }
+          }
+          return new ValuePlan(type, null, null, nestedRecord, ImmutableMap.copyOf(unionPlans), null);
+        default:
+          return new ValuePlan(type, null, null, null, null, String.format("Unsupported schema type '%s'.", type));
+      }
+    }
+  }
+
+  private static JsonToken getJsonToken(Schema.Type type) {
+    switch (type) {
+      case NULL:
+        return JsonToken.NULL;
+      case BOOLEAN:
+        return JsonToken.BOOLEAN;
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+        return JsonToken.NUMBER;
+      case STRING:
+      case ENUM:
+        return JsonToken.STRING;
+      case ARRAY:
+        return JsonToken.BEGIN_ARRAY;
+      default:
+        return JsonToken.BEGIN_OBJECT;
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.cdap.plugin.zendesk.source.batch.ZendeskBatchSourceConfig;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JVM wide registry of the pooled http clients, shared by the iterators with the same connection settings.
+ * A client is closed once the last iterator using it is closed.
+ */
+public final class HttpClientRegistry {
+
+  private static final Map<List<Object>, Entry> CLIENTS = new HashMap<>();
+
+  private HttpClientRegistry() {
+  }
+
+  /**
+   * Returns the client for the connection settings of the config, creating it if none is in use.
+   * The returned client must be closed once it is not used anymore.
+   *
+   * @param config The batch source config
+   * @return the shared client
+   */
+  public static synchronized SharedHttpClient acquire(ZendeskBatchSourceConfig config) {
+    List<Object> key = getKey(config);
+    Entry entry = CLIENTS.computeIfAbsent(key, k -> new Entry(HttpUtil.createHttpClient(config)));
+    entry.references++;
+    return new SharedHttpClient(key, entry.httpClient);
+  }
+
+  static synchronized void release(List<Object> key) throws IOException {
+    Entry entry = CLIENTS.get(key);
+    if (entry == null || --entry.references > 0) {
+      return;
+    }
+    CLIENTS.remove(key);
+    entry.httpClient.close();
+  }
+
+  @VisibleForTesting
+  static synchronized int size() {
+    return CLIENTS.size();
+  }
+
+  static List<Object> getKey(ZendeskBatchSourceConfig config) {
+    // Credentials are set on the context of each request, so clients only differ by their connection settings
+    return Arrays.asList(config.getConnectTimeout(), config.getReadTimeout(), config.getMaxConnectionsPerRoute(),
+                         config.getKeepAlive(), config.getIdleTimeout(), config.getSubdomains().size());
+  }
+
+  /**
+   * A client in use, with the number of its users.
+   */
+  private static class Entry {
+    private final CloseableHttpClient httpClient;
+    private int references;
+
+    private Entry(CloseableHttpClient httpClient) {
+      this.httpClient = httpClient;
+    }
+  }
+}
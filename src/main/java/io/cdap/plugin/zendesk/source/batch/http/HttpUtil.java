@@ -16,25 +16,33 @@
 
 package io.cdap.plugin.zendesk.source.batch.http;
 
-import com.github.rholder.retry.Retryer;
-import com.github.rholder.retry.RetryerBuilder;
-import com.github.rholder.retry.StopStrategies;
 import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.cdap.plugin.zendesk.source.batch.ZendeskBatchSourceConfig;
 import io.cdap.plugin.zendesk.source.common.ObjectType;
 
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.AuthCache;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.protocol.RequestAcceptEncoding;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.impl.auth.BasicScheme;
 import org.apache.http.impl.client.BasicAuthCache;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.protocol.HttpContext;
 
 import java.net.URI;
 import java.time.ZonedDateTime;
@@ -46,11 +54,19 @@ import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import javax.annotation.Nullable;
+
 /**
  * A class which contains utilities to build http specific resources.
  */
 public class HttpUtil {
 
+  /**
+   * Attribute of the context of a request holding the entity of its response as received, before its content is
+   * decompressed, see {@link #countWireBytes(HttpResponse, HttpContext)}.
+   */
+  static final String WIRE_ENTITY = "zendesk.wire.entity";
+
   private static final Map<String, String> SATISFACTION_RATINGS_SCORE_MAP = Stream.of(
       new String[][]{{"Offered", "offered"},
         {"Unoffered", "unoffered"},
@@ -66,21 +82,99 @@ public class HttpUtil {
     .collect(Collectors.toMap(data -> data[0], data -> data[1]));
 
   /**
-   * Returns CloseableHttpClient object depending on the batch source config
+   * Returns CloseableHttpClient object depending on the batch source config. The client pools its connections,
+   * keeps them alive for reuse and evicts the idle ones. Responses are asked gzip or deflate compressed, the default
+   * of the client, and decompressed as they are read, their bytes being counted as received. Iterators share clients
+   * through {@link HttpClientRegistry}.
    *
    * @param config The batch source config
    * @return The instance of CloseableHttpClient object
    */
   public static CloseableHttpClient createHttpClient(ZendeskBatchSourceConfig config) {
     HttpClientBuilder httpClientBuilder = HttpClientBuilder.create();
+    httpClientBuilder.setDefaultRequestConfig(createRequestConfig(config));
+
+    PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+    connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+    connectionManager.setMaxTotal(getMaxConnections(config));
+    httpClientBuilder.setConnectionManager(connectionManager);
+
+    httpClientBuilder.setKeepAliveStrategy(createKeepAliveStrategy(config));
+    httpClientBuilder.evictExpiredConnections();
+    httpClientBuilder.evictIdleConnections(config.getIdleTimeout(), TimeUnit.SECONDS);
+    // Runs before the content is decompressed
+    httpClientBuilder.addInterceptorFirst(HttpUtil::countWireBytes);
+    return httpClientBuilder.build();
+  }
+
+  /**
+   * Returns a non-blocking client depending on the batch source config, with the same timeouts, connection limits
+   * and keep-alive as {@link #createHttpClient(ZendeskBatchSourceConfig)}. Its I/O threads send the requests and
+   * receive the responses in full. Responses are asked gzip or deflate compressed, but the client does not
+   * decompress them, see {@link AsyncHttpEngine}. The client is started, and shared through {@link AsyncHttpEngine}.
+   *
+   * @param config The batch source config
+   * @return The instance of CloseableHttpAsyncClient object
+   */
+  public static CloseableHttpAsyncClient createHttpAsyncClient(ZendeskBatchSourceConfig config) {
+    HttpAsyncClientBuilder httpClientBuilder = HttpAsyncClientBuilder.create();
+    RequestConfig requestConfig = createRequestConfig(config);
+    httpClientBuilder.setDefaultRequestConfig(requestConfig);
+    httpClientBuilder.setDefaultIOReactorConfig(IOReactorConfig.custom()
+                                                  .setConnectTimeout(requestConfig.getConnectTimeout())
+                                                  .setSoTimeout(requestConfig.getSocketTimeout())
+                                                  .build());
+    httpClientBuilder.setMaxConnPerRoute(config.getMaxConnectionsPerRoute());
+    httpClientBuilder.setMaxConnTotal(getMaxConnections(config));
+    httpClientBuilder.setKeepAliveStrategy(createKeepAliveStrategy(config));
+    httpClientBuilder.setThreadFactory(new ThreadFactoryBuilder()
+                                         .setNameFormat("zendesk-async-http-%d")
+                                         .setDaemon(true)
+                                         .build());
+    httpClientBuilder.addInterceptorLast(new RequestAcceptEncoding());
+    CloseableHttpAsyncClient httpClient = httpClientBuilder.build();
+    httpClient.start();
+    return httpClient;
+  }
+
+  private static RequestConfig createRequestConfig(ZendeskBatchSourceConfig config) {
     Long connectTimeoutMillis = TimeUnit.SECONDS.toMillis(config.getConnectTimeout());
     Long readTimeoutMillis = TimeUnit.SECONDS.toMillis(config.getReadTimeout());
     RequestConfig.Builder requestBuilder = RequestConfig.custom();
     requestBuilder.setSocketTimeout(readTimeoutMillis.intValue());
     requestBuilder.setConnectTimeout(connectTimeoutMillis.intValue());
     requestBuilder.setConnectionRequestTimeout(connectTimeoutMillis.intValue());
-    httpClientBuilder.setDefaultRequestConfig(requestBuilder.build());
-    return httpClientBuilder.build();
+    return requestBuilder.build();
+  }
+
+  private static int getMaxConnections(ZendeskBatchSourceConfig config) {
+    return config.getMaxConnectionsPerRoute() * Math.max(1, config.getSubdomains().size());
+  }
+
+  private static ConnectionKeepAliveStrategy createKeepAliveStrategy(ZendeskBatchSourceConfig config) {
+    long keepAliveMillis = TimeUnit.SECONDS.toMillis(config.getKeepAlive());
+    return (response, context) -> {
+      long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+      return duration > 0 ? Math.min(duration, keepAliveMillis) : keepAliveMillis;
+    };
+  }
+
+  /**
+   * Wraps the entity of a response, as received, into a {@link CountingEntity} kept in the {@link #WIRE_ENTITY}
+   * attribute of the context, so that the bytes of the response are counted as transferred rather than decompressed.
+   *
+   * @param response The response received
+   * @param context  The context of the request
+   */
+  static void countWireBytes(HttpResponse response, HttpContext context) {
+    HttpEntity entity = response.getEntity();
+    if (entity == null) {
+      context.removeAttribute(WIRE_ENTITY);
+      return;
+    }
+    CountingEntity countingEntity = new CountingEntity(entity);
+    response.setEntity(countingEntity);
+    context.setAttribute(WIRE_ENTITY, countingEntity);
   }
 
   /**
@@ -124,9 +218,25 @@ public class HttpUtil {
   public static String createFirstPageUrl(ZendeskBatchSourceConfig config,
                                           ObjectType objectType, String subdomain,
                                           Long entityId) {
+    return createFirstPageUrl(config, objectType, subdomain, entityId, null);
+  }
+
+  /**
+   * Creates a url for the first page, starting an incremental export at the given time.
+   *
+   * @param config     The batch source config
+   * @param objectType The object type name
+   * @param subdomain  The subdomain name
+   * @param entityId   The entity id
+   * @param startTime  The start time of the export in epoch seconds, the start date of the config if null
+   * @return The concatenated url for the first page as per the parameters passed
+   */
+  public static String createFirstPageUrl(ZendeskBatchSourceConfig config,
+                                          ObjectType objectType, String subdomain,
+                                          Long entityId, @Nullable Long startTime) {
     List<String> additionalParams = new ArrayList<>();
     if (objectType.isBatch()) {
-      long epochSecond = getEpochSecond(config.getStartDate());
+      long epochSecond = startTime == null ? getEpochSecond(config.getStartDate()) : startTime;
       additionalParams.add(String.format("start_time=%s", epochSecond));
     }
     if (objectType == ObjectType.SATISFACTION_RATINGS) {
@@ -143,7 +253,18 @@ public class HttpUtil {
           "score=%s", SATISFACTION_RATINGS_SCORE_MAP.get(config.getSatisfactionRatingsScore())));
       }
     }
-    String baseUrl = String.format(config.getZendeskBaseUrl(), subdomain, objectType.getApiEndpoint());
+    if (!objectType.getSideloads().isEmpty()) {
+      List<String> includes = config.getTicketSideloads().stream()
+        .map(objectType.getSideloads()::get)
+        .collect(Collectors.toList());
+      if (!includes.isEmpty()) {
+        additionalParams.add(String.format("include=%s", String.join(",", includes)));
+      }
+    }
+    String apiEndpoint = Pagination.of(config, objectType) == Pagination.CURSOR
+      ? objectType.getCursorApiEndpoint()
+      : objectType.getApiEndpoint();
+    String baseUrl = String.format(config.getZendeskBaseUrl(), subdomain, apiEndpoint);
     if (entityId != null) {
       baseUrl = String.format(baseUrl, entityId);
     }
@@ -155,19 +276,12 @@ public class HttpUtil {
   }
 
   /**
-   * Returns the Retryer object instance depending on the batch source config.
+   * Converts a date in ISO format into epoch seconds.
    *
-   * @param config The batch source config
-   * @return The instance of Retryer object
+   * @param aDate The date
+   * @return The epoch seconds of the date
    */
-  public static Retryer<Map<String, Object>> buildRetryer(ZendeskBatchSourceConfig config) {
-    return RetryerBuilder.<Map<String, Object>>newBuilder()
-      .retryIfExceptionOfType(RateLimitException.class)
-      .withStopStrategy(StopStrategies.stopAfterAttempt(config.getMaxRetryCount()))
-      .build();
-  }
-
-  private static long getEpochSecond(String aDate) {
+  public static long getEpochSecond(String aDate) {
     ZonedDateTime zonedDateTime = ZonedDateTime.parse(aDate, DateTimeFormatter.ISO_DATE_TIME);
     return zonedDateTime.toEpochSecond();
   }
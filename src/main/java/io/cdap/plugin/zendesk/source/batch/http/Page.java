@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A single page of a Zendesk response: the records it holds and the pagination values returned with them.
+ *
+ * @param <T> the type of the records
+ */
+public class Page<T> {
+
+  private final Iterator<T> records;
+  private final Map<String, Object> metadata;
+
+  /**
+   * Constructor for Page object.
+   *
+   * @param records  The records of the page
+   * @param metadata The top level values of the response, such as 'next_page', 'end_time' and 'count'
+   */
+  public Page(Iterator<T> records, Map<String, Object> metadata) {
+    this.records = records;
+    this.metadata = metadata;
+  }
+
+  public Iterator<T> getRecords() {
+    return records;
+  }
+
+  public Map<String, Object> getMetadata() {
+    return metadata;
+  }
+
+  /**
+   * Returns a page without records and without a next page.
+   *
+   * @param <T> the type of the records
+   * @return the empty page
+   */
+  public static <T> Page<T> empty() {
+    return new Page<>(Collections.emptyIterator(), Collections.emptyMap());
+  }
+}
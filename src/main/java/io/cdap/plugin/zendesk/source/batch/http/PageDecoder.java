@@ -0,0 +1,431 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import javax.annotation.Nullable;
+
+/**
+ * Decodes a Zendesk page response into {@link StructuredRecord}s in a single streaming pass.
+ * <p>
+ * Keys of the response objects are matched to the schema fields the same way
+ * {@link PagedIterator#replaceKeys(Map, Schema)} renames them: a field named in lower camel case
+ * is read from its lower underscore key. The matching is resolved once per JVM by a shared {@link DecodePlan}.
+ */
+public class PageDecoder {
+
+  /**
+   * Key of the page values holding the latest export time of the objects read from the page, in epoch seconds.
+   */
+  public static final String LAST_EXPORT_TIME = "last_export_time";
+
+  /**
+   * Number of ids of each sideloaded object type remembered by a decoder, the least recently referenced first
+   * forgotten.
+   */
+  static final int MAX_SIDELOADED_IDS = 10000;
+
+  private static final String ID = "id";
+  private static final String EVENT_TYPE = "event_type";
+  private static final String COMMENT = "Comment";
+  private static final String TICKET_ID = "ticket_id";
+
+  private final ObjectType objectType;
+  private final DecodePlan plan;
+  private final String tableNameField;
+  private final Long endTime;
+  // Sideloaded object types by response key, with their plans and the ids of the objects recently read
+  private final Map<String, ObjectType> sideloadTypes = new HashMap<>();
+  private final Map<ObjectType, DecodePlan> sideloadPlans = new HashMap<>();
+  private final Map<ObjectType, Set<Object>> sideloadedIds = new HashMap<>();
+  private Predicate<Map<String, Object>> recordFilter = captured -> true;
+  private Long lastExportTime;
+
+  /**
+   * Constructor for PageDecoder object.
+   *
+   * @param objectType     The object type
+   * @param schema         The output schema of the records
+   * @param tableNameField The name of the field that holds the table name
+   */
+  public PageDecoder(ObjectType objectType, Schema schema, String tableNameField) {
+    this(objectType, schema, tableNameField, null);
+  }
+
+  /**
+   * Constructor for PageDecoder object, which drops the objects exported at or after the given time.
+   *
+   * @param objectType     The object type
+   * @param schema         The output schema of the records
+   * @param tableNameField The name of the field that holds the table name
+   * @param endTime        The end of the export time range in epoch seconds, unbounded if null
+   */
+  public PageDecoder(ObjectType objectType, Schema schema, String tableNameField, @Nullable Long endTime) {
+    this.objectType = objectType;
+    this.tableNameField = tableNameField;
+    this.endTime = endTime;
+    this.plan = DecodePlan.of(objectType, schema, tableNameField);
+  }
+
+  /**
+   * Sets the objects sideloaded with the pages, which are decoded into records of their own schema along with the
+   * objects of the page. A sideloaded object is read once, however many objects of the pages reference it, as long
+   * as it is among the {@link #MAX_SIDELOADED_IDS} objects of its type last referenced, and the ticket metrics are
+   * only read along with the ticket they belong to.
+   *
+   * @param schemas The output schemas of the sideloaded objects, by object type
+   */
+  public void setSideloads(Map<ObjectType, Schema> schemas) {
+    for (Map.Entry<ObjectType, Schema> entry : schemas.entrySet()) {
+      String responseKey = objectType.getSideloads().get(entry.getKey());
+      if (responseKey == null) {
+        throw new IllegalArgumentException(String.format("Object '%s' cannot be sideloaded with object '%s'.",
+                                                         entry.getKey().getObjectName(), objectType.getObjectName()));
+      }
+      sideloadTypes.put(responseKey, entry.getKey());
+      sideloadPlans.put(entry.getKey(), DecodePlan.of(entry.getKey(), entry.getValue(), tableNameField));
+      sideloadedIds.put(entry.getKey(), createIdSet());
+    }
+  }
+
+  private static Set<Object> createIdSet() {
+    return Collections.newSetFromMap(new LinkedHashMap<Object, Boolean>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Object, Boolean> eldest) {
+        return size() > MAX_SIDELOADED_IDS;
+      }
+    });
+  }
+
+  /**
+   * Sets the filter of the objects read. The filter is given the 'id' and the export time of each object,
+   * keyed as in the response. Objects with a child key are not filtered.
+   *
+   * @param recordFilter The filter returning true for the objects to keep
+   */
+  public void setRecordFilter(Predicate<Map<String, Object>> recordFilter) {
+    this.recordFilter = recordFilter;
+  }
+
+  /**
+   * Reads the records and the top level values of a page response.
+   *
+   * @param reader The reader of the page response
+   * @return the decoded page
+   * @throws IOException if the response cannot be decoded with the schema
+   */
+  public Page<StructuredRecord> decode(Reader reader) throws IOException {
+    List<StructuredRecord> records = new ArrayList<>();
+    Set<Object> recordIds = new HashSet<>();
+    List<SideloadedRecord> sideloadedRecords = new ArrayList<>();
+    Map<String, Object> metadata = new HashMap<>();
+    JsonReader jsonReader = new JsonReader(reader);
+    lastExportTime = null;
+    jsonReader.beginObject();
+    while (jsonReader.hasNext()) {
+      String name = jsonReader.nextName();
+      ObjectType sideloadType = sideloadTypes.get(name);
+      if (name.equals(objectType.getResponseKey()) && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+        readObjects(jsonReader, records, recordIds);
+      } else if (sideloadType != null && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+        readSideloadedObjects(jsonReader, sideloadType, sideloadedRecords);
+      } else {
+        metadata.put(name, readScalar(jsonReader));
+      }
+    }
+    jsonReader.endObject();
+    // the sideloaded objects are not necessarily read after the objects of the page
+    for (SideloadedRecord sideloaded : sideloadedRecords) {
+      if (sideloaded.ticketId != null && !recordIds.contains(sideloaded.ticketId)) {
+        continue;
+      }
+      if (sideloaded.id == null || sideloadedIds.get(sideloaded.objectType).add(sideloaded.id)) {
+        records.add(sideloaded.record);
+      }
+    }
+    if (lastExportTime != null) {
+      metadata.put(LAST_EXPORT_TIME, lastExportTime);
+    }
+    return new Page<>(records.iterator(), metadata);
+  }
+
+  private void readObjects(JsonReader reader, List<StructuredRecord> records, Set<Object> recordIds)
+    throws IOException {
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (objectType.getChildKey() == null) {
+        Map<String, Object> captured = new HashMap<>();
+        StructuredRecord record = readObject(reader, plan, captured);
+        Long time = toEpochSecond(captured.get(objectType.getExportTimeKey()));
+        if (isInTimeRange(time) && recordFilter.test(captured)) {
+          records.add(record);
+          if (!sideloadTypes.isEmpty()) {
+            recordIds.add(captured.get(ID));
+          }
+        }
+      } else {
+        readChildObjects(reader, records);
+      }
+    }
+    reader.endArray();
+  }
+
+  private void readSideloadedObjects(JsonReader reader, ObjectType sideloadType,
+                                     List<SideloadedRecord> sideloadedRecords) throws IOException {
+    DecodePlan sideloadPlan = sideloadPlans.get(sideloadType);
+    reader.beginArray();
+    while (reader.hasNext()) {
+      Map<String, Object> captured = new HashMap<>();
+      StructuredRecord record = readObject(reader, sideloadPlan, captured);
+      Object ticketId = sideloadType == ObjectType.TICKET_METRICS ? captured.get(TICKET_ID) : null;
+      sideloadedRecords.add(new SideloadedRecord(sideloadType, record, captured.get(ID), ticketId));
+    }
+    reader.endArray();
+  }
+
+  private void readChildObjects(JsonReader reader, List<StructuredRecord> records) throws IOException {
+    List<StructuredRecord> children = new ArrayList<>();
+    Object time = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (name.equals(objectType.getExportTimeKey())) {
+        time = readScalar(reader);
+        continue;
+      }
+      if (!name.equals(objectType.getChildKey()) || reader.peek() != JsonToken.BEGIN_ARRAY) {
+        reader.skipValue();
+        continue;
+      }
+      reader.beginArray();
+      while (reader.hasNext()) {
+        Map<String, Object> captured = new HashMap<>();
+        StructuredRecord record = readObject(reader, plan, captured);
+        if (COMMENT.equals(captured.get(EVENT_TYPE))) {
+          children.add(record);
+        }
+      }
+      reader.endArray();
+    }
+    reader.endObject();
+    // the time of the parent object is not necessarily read before its children
+    if (isInTimeRange(toEpochSecond(time))) {
+      records.addAll(children);
+    }
+  }
+
+  private StructuredRecord readObject(JsonReader reader, DecodePlan objectPlan, Map<String, Object> captured)
+    throws IOException {
+    StructuredRecord.Builder builder = readRecord(reader, objectPlan.getRecordPlan(), objectPlan.getCapturedKeys(),
+                                                  captured);
+    if (objectPlan.getTableNameField() != null) {
+      builder.set(objectPlan.getTableNameField(), objectPlan.getTableName());
+    }
+    return builder.build();
+  }
+
+  /**
+   * Reads the fields of a record.
+   *
+   * @param capturedKeys the keys of the values captured
+   * @param captured     if not null, receives the captured values of the record, such as its id
+   */
+  private StructuredRecord.Builder readRecord(JsonReader reader, DecodePlan.RecordPlan recordPlan,
+                                              Set<String> capturedKeys, Map<String, Object> captured)
+    throws IOException {
+    StructuredRecord.Builder builder = StructuredRecord.builder(recordPlan.getSchema());
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      DecodePlan.FieldPlan field = recordPlan.getField(name);
+      boolean capture = captured != null && capturedKeys.contains(name);
+      if (field == null) {
+        if (capture) {
+          captured.put(name, readScalar(reader));
+        } else {
+          reader.skipValue();
+        }
+        continue;
+      }
+      Object value = readValue(reader, field.getValue());
+      if (value != null) {
+        builder.set(field.getName(), value);
+      }
+      if (capture) {
+        captured.put(name, value);
+      }
+    }
+    reader.endObject();
+    return builder;
+  }
+
+  private Object readValue(JsonReader reader, DecodePlan.ValuePlan valuePlan) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    }
+    if (valuePlan.getUnsupported() != null) {
+      throw new IOException(valuePlan.getUnsupported());
+    }
+    switch (valuePlan.getType()) {
+      case BOOLEAN:
+        return reader.nextBoolean();
+      case INT:
+        return reader.nextInt();
+      case LONG:
+        return reader.nextLong();
+      case FLOAT:
+        return (float) reader.nextDouble();
+      case DOUBLE:
+        return reader.nextDouble();
+      case STRING:
+      case ENUM:
+        return reader.nextString();
+      case ARRAY:
+        return readArray(reader, valuePlan.getElement());
+      case MAP:
+        return readMap(reader, valuePlan.getElement());
+      case RECORD:
+        return readRecord(reader, valuePlan.getRecord(), null, null).build();
+      default:
+        JsonToken token = reader.peek();
+        DecodePlan.ValuePlan unionPlan = valuePlan.getUnionPlan(token);
+        if (unionPlan == null) {
+          throw new IOException(String.format("No matching schema found for union type for token '%s'.", token));
+        }
+        return readValue(reader, unionPlan);
+    }
+  }
+
+  private List<Object> readArray(JsonReader reader, DecodePlan.ValuePlan elementPlan) throws IOException {
+    List<Object> values = new ArrayList<>();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      values.add(readValue(reader, elementPlan));
+    }
+    reader.endArray();
+    return values;
+  }
+
+  private Map<String, Object> readMap(JsonReader reader, DecodePlan.ValuePlan valuePlan) throws IOException {
+    Map<String, Object> values = new HashMap<>();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String key = reader.nextName();
+      Object value = readValue(reader, valuePlan);
+      // null values are dropped, as the map based conversion does
+      if (value != null) {
+        values.put(key, value);
+      }
+    }
+    reader.endObject();
+    return values;
+  }
+
+  private Object readScalar(JsonReader reader) throws IOException {
+    switch (reader.peek()) {
+      case STRING:
+        return reader.nextString();
+      case NUMBER:
+        String number = reader.nextString();
+        try {
+          return Long.parseLong(number);
+        } catch (NumberFormatException e) {
+          return Double.parseDouble(number);
+        }
+      case BOOLEAN:
+        return reader.nextBoolean();
+      case NULL:
+        reader.nextNull();
+        return null;
+      default:
+        reader.skipValue();
+        return null;
+    }
+  }
+
+  /**
+   * Checks whether an object belongs to the time range read, and keeps track of the latest export time.
+   * Objects without a readable time are kept.
+   */
+  private boolean isInTimeRange(Long time) {
+    if (time == null) {
+      return true;
+    }
+    if (lastExportTime == null || time > lastExportTime) {
+      lastExportTime = time;
+    }
+    return endTime == null || time < endTime;
+  }
+
+  /**
+   * Converts an export time, in epoch seconds or in ISO format, into epoch seconds.
+   *
+   * @return the epoch seconds, or null if the time cannot be read
+   */
+  static Long toEpochSecond(Object time) {
+    if (time == null) {
+      return null;
+    }
+    if (time instanceof Number) {
+      return ((Number) time).longValue();
+    }
+    try {
+      return ZonedDateTime.parse(time.toString(), DateTimeFormatter.ISO_DATE_TIME).toEpochSecond();
+    } catch (DateTimeParseException e) {
+      return null;
+    }
+  }
+
+  /**
+   * A sideloaded object decoded from a page, kept until the whole page is read.
+   */
+  private static final class SideloadedRecord {
+
+    private final ObjectType objectType;
+    private final StructuredRecord record;
+    private final Object id;
+    private final Object ticketId;
+
+    private SideloadedRecord(ObjectType objectType, StructuredRecord record, Object id, Object ticketId) {
+      this.objectType = objectType;
+      this.record = record;
+      this.id = id;
+      this.ticketId = ticketId;
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import com.google.common.io.ByteStreams;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+/**
+ * Keeps the responses of the pages read by a split under a directory of a Hadoop file system, so that a retried
+ * task replays the pages already read instead of requesting them again from Zendesk.
+ * <p>
+ * The records of a failed task attempt are discarded, so the pages are replayed rather than skipped.
+ */
+public class PageSpool {
+
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private final FileSystem fileSystem;
+  private final Path directory;
+  // Unique to the attempt, so that concurrent attempts of a split never write the same file
+  private final String tempSuffix = "." + UUID.randomUUID() + TEMP_SUFFIX;
+
+  /**
+   * Constructor for PageSpool object.
+   *
+   * @param directory     The directory of the pages of the split
+   * @param configuration The Hadoop configuration used to resolve the file system
+   * @throws IOException if the file system could not be resolved
+   */
+  public PageSpool(String directory, Configuration configuration) throws IOException {
+    this.directory = new Path(directory);
+    this.fileSystem = this.directory.getFileSystem(configuration);
+  }
+
+  /**
+   * Opens a page kept by a previous attempt, or by {@link #write(int, InputStream)}.
+   *
+   * @param index The index of the page in the split
+   * @return the reader of the response of the page, null if the page was not read yet
+   * @throws IOException if the page could not be opened
+   */
+  @Nullable
+  public Reader open(int index) throws IOException {
+    Path path = new Path(directory, Integer.toString(index));
+    if (!fileSystem.exists(path)) {
+      return null;
+    }
+    return new InputStreamReader(fileSystem.open(path), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Keeps the response of a page as it is read, the content being UTF-8 encoded as the Zendesk API responses are.
+   * The page is written aside, under a name unique to the spool, and moved in place, so that a page is only ever
+   * read back whole.
+   *
+   * @param index   The index of the page in the split
+   * @param content The content of the response of the page
+   * @throws IOException if the page could not be written
+   */
+  public void write(int index, InputStream content) throws IOException {
+    Path path = new Path(directory, Integer.toString(index));
+    Path tempPath = path.suffix(tempSuffix);
+    try (FSDataOutputStream out = fileSystem.create(tempPath, true)) {
+      ByteStreams.copy(content, out);
+    }
+    if (!fileSystem.rename(tempPath, path)) {
+      // A speculative attempt of the same split may have kept the page first
+      fileSystem.delete(tempPath, false);
+      if (!fileSystem.exists(path)) {
+        throw new IOException(String.format("Unable to keep page '%s'.", path));
+      }
+    }
+  }
+
+  /**
+   * Deletes the pages kept under a directory.
+   *
+   * @param directory     The directory of the pages
+   * @param configuration The Hadoop configuration used to resolve the file system
+   * @throws IOException if the pages could not be deleted
+   */
+  public static void delete(String directory, Configuration configuration) throws IOException {
+    Path path = new Path(directory);
+    path.getFileSystem(configuration).delete(path, true);
+  }
+}
@@ -16,64 +16,39 @@
 
 package io.cdap.plugin.zendesk.source.batch.http;
 
-import com.github.rholder.retry.RetryException;
-import com.github.rholder.retry.Retryer;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.CaseFormat;
 import com.google.common.collect.ImmutableMap;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.plugin.zendesk.source.batch.ZendeskBatchSourceConfig;
 import io.cdap.plugin.zendesk.source.common.ObjectType;
 
-import org.apache.http.StatusLine;
-import org.apache.http.client.HttpResponseException;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.protocol.HttpClientContext;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.util.EntityUtils;
-
-import java.io.Closeable;
 import java.io.IOException;
-import java.net.URI;
-import java.nio.charset.StandardCharsets;
+import java.io.Reader;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
-import java.util.Objects;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import javax.annotation.Nullable;
 
 /**
  * Iterable for Zendesk page response.
  */
-public class PagedIterator implements Iterator<String>, Closeable {
+public class PagedIterator extends BasePagedIterator<String> {
 
-  private static final Pattern RESTRICTED_PATTERN = Pattern.compile("%2B", Pattern.LITERAL);
-  private static final String NEXT_PAGE = "next_page";
-  private static final String NEXT_CURSOR_URL = "after_url";
-  private static final String END_TIME = "end_time";
-  private static final String COUNT = "count";
   private static final String COMMENT = "Comment";
-  private static final int INCREMENTAL_EXPORT_MAX_COUNT_BY_REQUEST = 1000;
-  private static final long FIVE_MINUTES = TimeUnit.MINUTES.toMillis(5);
-  private static final String RETRY_AFTER = "retry-after";
 
   private static final Gson GSON = new GsonBuilder().create();
 
-  private final ZendeskBatchSourceConfig config;
-  private final CloseableHttpClient httpClient;
-  private final HttpClientContext httpClientContext;
-  private final ObjectType objectType;
-
-  private Iterator<String> current;
-  private String nextPage;
+  private Set<String> projection;
 
   /**
    * Constructor for PagedIterator object.
@@ -96,112 +71,103 @@ public class PagedIterator implements Iterator<String>, Closeable {
    */
   public PagedIterator(ZendeskBatchSourceConfig config, ObjectType objectType,
                        String subdomain, Long entityId) {
-    this.config = config;
-    this.objectType = objectType;
-
-    String firstPage = HttpUtil.createFirstPageUrl(config, objectType, subdomain, entityId);
-    this.httpClient = HttpUtil.createHttpClient(config);
-    this.httpClientContext = HttpUtil.createHttpContext(config, firstPage);
-    this.nextPage = firstPage;
+    super(config, objectType, subdomain, entityId);
   }
 
-  @Override
-  public boolean hasNext() {
-    if (current == null || !current.hasNext()) {
-      if (nextPage == null || nextPage.equalsIgnoreCase("null")) {
-        return false;
-      }
-
-      Retryer<Map<String, Object>> retryer = HttpUtil.buildRetryer(config);
-      try {
-        Map<String, Object> responseMap = retryer.call(this::getResponseAsMap);
-        nextPage = getNextPage(responseMap);
-        current = getJsonValuesFromResponse(responseMap);
-      } catch (ExecutionException | RetryException e) {
-        throw new ConnectionTimeoutException(String.format("Cannot create Zendesk connection for object: '%s'",
-          objectType.getObjectName()), e);
-      }
-    }
-    return current.hasNext();
+  /**
+   * Constructor for PagedIterator object, which starts an incremental export at the given time.
+   *
+   * @param config     The batch source config
+   * @param objectType The object type
+   * @param subdomain  The subdomain name
+   * @param entityId   The entity id
+   * @param startTime  The start time of the export in epoch seconds, the start date of the config if null
+   */
+  public PagedIterator(ZendeskBatchSourceConfig config, ObjectType objectType,
+                       String subdomain, Long entityId, @Nullable Long startTime) {
+    super(config, objectType, subdomain, entityId, startTime, null);
   }
 
-  @Override
-  public String next() {
-    if (!hasNext()) {
-      throw new NoSuchElementException();
-    }
-    return current.next();
+  /**
+   * Sets the keys of the objects read, such as the 'id' of the entities whose comments are read. The other values
+   * of the objects, and the other arrays and objects of the response, are skipped as the page is read, without being
+   * parsed. The objects of an object type with a child key are the parent objects. Must be set before iterating.
+   *
+   * @param keys The keys of the objects to read, as in the response
+   */
+  public void setProjection(Set<String> keys) {
+    this.projection = keys;
   }
 
   @Override
-  public void close() throws IOException {
-    if (httpClient != null) {
-      httpClient.close();
-    }
+  Page<String> fetchPage() throws IOException, InterruptedException {
+    Map<String, Object> responseMap = getResponseAsMap();
+    return new Page<>(getJsonValuesFromResponse(responseMap), responseMap);
   }
 
   @VisibleForTesting
   Map<String, Object> getResponseAsMap() throws IOException, InterruptedException {
-    //replace out %2B with + due to API restriction
-    URI uri = URI.create(RESTRICTED_PATTERN.matcher(nextPage).replaceAll("+"));
-    try (CloseableHttpResponse response = httpClient.execute(
-      new HttpGet(uri), httpClientContext)) {
-      StatusLine statusLine = response.getStatusLine();
-      int statusCode = statusLine.getStatusCode();
-      if (statusCode / 100 == 2) {
-        String responseAsString = new String(EntityUtils.toByteArray(response.getEntity()), StandardCharsets.UTF_8);
-        return (Map<String, Object>) GSON.fromJson(responseAsString, Map.class);
-      }
-      if (statusCode == 429) {
-        String retryAfterTimeInSeconds =
-          Arrays.stream(response.getAllHeaders()).filter(t -> t.getName().equals(RETRY_AFTER)).
-            findFirst().get().getValue();
-        Thread.sleep(Integer.parseInt(retryAfterTimeInSeconds) * 1000);
-        throw new RateLimitException();
-      }
-      if (objectType == ObjectType.ARTICLE_COMMENTS
-        || objectType == ObjectType.POST_COMMENTS
-        || objectType == ObjectType.REQUESTS_COMMENTS) {
-        return ImmutableMap.of(objectType.getResponseKey(), new ArrayList<>());
+    return executeRequest(response -> {
+      try (Reader reader = getContentReader(response.getEntity())) {
+        return parseResponse(reader);
       }
-      throw new HttpResponseException(statusCode, "No response.");
-    }
+    }, () -> ImmutableMap.of(objectType.getResponseKey(), new ArrayList<>()));
   }
 
+  /**
+   * Parses a page response as it is read.
+   */
   @VisibleForTesting
-  String getNextPage(Map<String, Object> responseMap) {
-    // Commenting cursor based pagination code as Zendesk APIs are having data loss issue with cursor pagination.
-    // Will uncomment this code once issue will get fixed from zendesk side.
-    // Link to track the issue {@link https://cdap.atlassian.net/browse/PLUGIN-1372}
-//    if (objectType.equals(ObjectType.TICKETS) || objectType.equals(ObjectType.USERS)) {
-//      return (String) responseMap.get(NEXT_CURSOR_URL);
-//    }
-
-    if (!objectType.isBatch()) {
-      return (String) responseMap.get(NEXT_PAGE);
-    }
-
-    String next = (String) responseMap.get(NEXT_PAGE);
-    if (next == null) {
-      return null;
-    }
-
-    // A request after five minutes ago will result in a 422 response from Zendesk.
-    // Therefore, we stop pagination.
-    Number endTime = (Number) responseMap.get(END_TIME);
-    if (endTime == null || endTime.longValue() == 0
-      || TimeUnit.SECONDS.toMillis(endTime.longValue()) > System.currentTimeMillis() - FIVE_MINUTES) {
-      return null;
-    }
+  Map<String, Object> parseResponse(Reader reader) {
+    long start = System.nanoTime();
+    Map<String, Object> responseMap = projection == null
+      ? (Map<String, Object>) GSON.fromJson(reader, Map.class)
+      : parseProjectedResponse(reader);
+    metrics.recordPage(System.nanoTime() - start);
+    return responseMap;
+  }
 
-    // Taking into account documentation found at
-    // https://developer.zendesk.com/rest_api/docs/core/incremental_export#polling-strategy
-    Number count = (Number) responseMap.get(COUNT);
-    if (count == null || count.intValue() < INCREMENTAL_EXPORT_MAX_COUNT_BY_REQUEST) {
-      return null;
+  private Map<String, Object> parseProjectedResponse(Reader reader) {
+    Map<String, Object> responseMap = new LinkedHashMap<>();
+    try {
+      JsonReader jsonReader = new JsonReader(reader);
+      jsonReader.beginObject();
+      while (jsonReader.hasNext()) {
+        String name = jsonReader.nextName();
+        JsonToken token = jsonReader.peek();
+        if (!name.equals(objectType.getResponseKey()) || token != JsonToken.BEGIN_ARRAY) {
+          // the top level arrays and objects, such as the sideloaded objects, are not pagination values
+          if (token == JsonToken.BEGIN_ARRAY || token == JsonToken.BEGIN_OBJECT) {
+            jsonReader.skipValue();
+          } else {
+            responseMap.put(name, GSON.fromJson(jsonReader, Object.class));
+          }
+          continue;
+        }
+        List<Object> objects = new ArrayList<>();
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+          Map<String, Object> object = new LinkedHashMap<>();
+          jsonReader.beginObject();
+          while (jsonReader.hasNext()) {
+            String key = jsonReader.nextName();
+            if (projection.contains(key)) {
+              object.put(key, GSON.fromJson(jsonReader, Object.class));
+            } else {
+              jsonReader.skipValue();
+            }
+          }
+          jsonReader.endObject();
+          objects.add(object);
+        }
+        jsonReader.endArray();
+        responseMap.put(name, objects);
+      }
+      jsonReader.endObject();
+    } catch (IOException e) {
+      throw new JsonIOException(e);
     }
-
-    return next;
+    return responseMap;
   }
 
   @VisibleForTesting
@@ -216,9 +182,11 @@ public class PagedIterator implements Iterator<String>, Closeable {
 
     return responseObjects
       .stream()
-      .flatMap(responseObject ->
-        ((List<Object>) ((Map) responseObject).get(objectType.getChildKey()))
-          .stream())
+      .flatMap(responseObject -> {
+        // the children are not read when the child key is not projected
+        List<Object> children = (List<Object>) ((Map) responseObject).get(objectType.getChildKey());
+        return children == null ? Stream.empty() : children.stream();
+      })
       .filter(map -> COMMENT.equals(((Map) map).get("event_type")))
       .map(this::objectMapToJsonString)
       .iterator();
@@ -231,50 +199,15 @@ public class PagedIterator implements Iterator<String>, Closeable {
     return GSON.toJson(map);
   }
 
+  /**
+   * Renames the lower underscore keys of an object, and of its nested objects, into the field names of the schema.
+   * The renaming is planned once per schema and shared, see {@link DecodePlan#renamePlan(Schema)}.
+   */
   @VisibleForTesting
   void replaceKeys(Map map, Schema schema) {
     if (map == null || map.isEmpty() || schema == null) {
       return;
     }
-    List<Schema.Field> fields = schema.getFields();
-    for (Schema.Field field : fields) {
-      String name = field.getName();
-      String underscoreName = CaseFormat.LOWER_CAMEL.to(CaseFormat.LOWER_UNDERSCORE, name);
-      if (!name.equals(underscoreName) && map.containsKey(underscoreName)) {
-        map.put(name, map.remove(underscoreName));
-      }
-      Schema fieldSchema = field.getSchema();
-      if (isRecord(fieldSchema)) {
-        Map recordMap = (Map) map.get(name);
-        Schema recordSchema = getRecordSchema(fieldSchema);
-        replaceKeys(recordMap, recordSchema);
-      }
-    }
-  }
-
-  @VisibleForTesting
-  boolean isRecord(Schema fieldSchema) {
-    Schema.Type schemaType = fieldSchema.getType();
-    return schemaType == Schema.Type.RECORD
-      || (schemaType == Schema.Type.UNION
-      && fieldSchema.getUnionSchemas().stream()
-      .map(this::isRecord)
-      .reduce(Boolean::logicalOr)
-      .orElse(false));
-  }
-
-  @VisibleForTesting
-  Schema getRecordSchema(Schema fieldSchema) {
-    Schema.Type schemaType = fieldSchema.getType();
-    if (schemaType == Schema.Type.RECORD) {
-      return fieldSchema;
-    }
-    if (schemaType == Schema.Type.UNION) {
-      return fieldSchema.getUnionSchemas().stream()
-        .map(this::getRecordSchema)
-        .filter(Objects::nonNull)
-        .findFirst().orElse(null);
-    }
-    return null;
+    DecodePlan.renamePlan(schema).renameKeys(map);
   }
 }
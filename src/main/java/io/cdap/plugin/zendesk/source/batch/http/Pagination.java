@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import io.cdap.plugin.zendesk.source.batch.ZendeskBatchSourceConfig;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
+
+/**
+ * Pagination strategies of the Zendesk APIs.
+ */
+public enum Pagination {
+  /**
+   * Pages followed through 'next_page' until it is null.
+   */
+  OFFSET,
+  /**
+   * Time based incremental export, followed through 'next_page' while full pages are returned.
+   */
+  TIME,
+  /**
+   * Cursor based incremental export, followed through 'after_url' until 'end_of_stream' is reached.
+   */
+  CURSOR;
+
+  /**
+   * Returns the pagination used to read an object.
+   *
+   * @param config     The batch source config
+   * @param objectType The object type
+   * @return the pagination of the object
+   */
+  public static Pagination of(ZendeskBatchSourceConfig config, ObjectType objectType) {
+    if (!objectType.isBatch()) {
+      return OFFSET;
+    }
+    if (objectType.getCursorApiEndpoint() != null
+      && ZendeskBatchSourceConfig.EXPORT_PAGINATION_CURSOR.equals(config.getExportPagination())) {
+      return CURSOR;
+    }
+    return TIME;
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.zendesk.source.batch.ZendeskBatchSourceConfig;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+/**
+ * Iterable for Zendesk page response, which decodes the pages straight into {@link StructuredRecord}s.
+ * <p>
+ * Cursor based exports are known to miss objects updated while the export runs
+ * (https://cdap.atlassian.net/browse/PLUGIN-1372). Once the end of the stream is reached, the export is read again
+ * from a few minutes before the latest object read, and the objects already read with the same export time are
+ * dropped.
+ */
+public class RecordPagedIterator extends BasePagedIterator<StructuredRecord> {
+
+  private static final String ID = "id";
+  private static final long OVERLAP_SECONDS = TimeUnit.MINUTES.toSeconds(5);
+
+  private final PageDecoder pageDecoder;
+  private final String subdomain;
+  private final Long endTime;
+  // Export times of the objects read within the overlap, by id
+  private final Map<Object, Long> recentIds = new HashMap<>();
+  private Long lastExportTime;
+  private boolean overlapRead;
+  private PageSpool pageSpool;
+  private int pageIndex;
+
+  /**
+   * Constructor for RecordPagedIterator object.
+   *
+   * @param config     The batch source config
+   * @param objectType The object type
+   * @param subdomain  The subdomain name
+   * @param schema     The output schema of the records
+   */
+  public RecordPagedIterator(ZendeskBatchSourceConfig config, ObjectType objectType, String subdomain,
+                             Schema schema) {
+    this(config, objectType, subdomain, null, schema);
+  }
+
+  /**
+   * Constructor for RecordPagedIterator object.
+   *
+   * @param config     The batch source config
+   * @param objectType The object type
+   * @param subdomain  The subdomain name
+   * @param entityId   The entity id
+   * @param schema     The output schema of the records
+   */
+  public RecordPagedIterator(ZendeskBatchSourceConfig config, ObjectType objectType, String subdomain,
+                             Long entityId, Schema schema) {
+    this(config, objectType, subdomain, entityId, schema, null, null);
+  }
+
+  /**
+   * Constructor for RecordPagedIterator object, which reads an incremental export within a time range.
+   *
+   * @param config     The batch source config
+   * @param objectType The object type
+   * @param subdomain  The subdomain name
+   * @param schema     The output schema of the records
+   * @param startTime  The start of the time range in epoch seconds, the start date of the config if null
+   * @param endTime    The end of the time range in epoch seconds, exclusive, unbounded if null
+   */
+  public RecordPagedIterator(ZendeskBatchSourceConfig config, ObjectType objectType, String subdomain,
+                             Schema schema, @Nullable Long startTime, @Nullable Long endTime) {
+    this(config, objectType, subdomain, null, schema, startTime, endTime);
+  }
+
+  private RecordPagedIterator(ZendeskBatchSourceConfig config, ObjectType objectType, String subdomain,
+                              Long entityId, Schema schema, Long startTime, Long endTime) {
+    super(config, objectType, subdomain, entityId, startTime, endTime);
+    this.subdomain = subdomain;
+    this.endTime = endTime;
+    this.pageDecoder = new PageDecoder(objectType, schema, config.getTableNameField(), endTime);
+    if (pagination == Pagination.CURSOR) {
+      pageDecoder.setRecordFilter(this::isNotRead);
+    }
+  }
+
+  @Override
+  String getNextPage(Map<String, Object> responseMap) {
+    String next = super.getNextPage(responseMap);
+    if (pagination != Pagination.CURSOR) {
+      return next;
+    }
+    Number pageExportTime = (Number) responseMap.get(PageDecoder.LAST_EXPORT_TIME);
+    if (pageExportTime != null && (lastExportTime == null || pageExportTime.longValue() > lastExportTime)) {
+      lastExportTime = pageExportTime.longValue();
+      recentIds.values().removeIf(time -> time < lastExportTime - OVERLAP_SECONDS);
+    }
+    // A time range bounded split leaves the objects after its end to the next split
+    if (next == null && !overlapRead && lastExportTime != null && endTime == null) {
+      overlapRead = true;
+      return HttpUtil.createFirstPageUrl(config, objectType, subdomain, null, lastExportTime - OVERLAP_SECONDS);
+    }
+    return next;
+  }
+
+  private boolean isNotRead(Map<String, Object> captured) {
+    Object id = captured.get(ID);
+    Long time = PageDecoder.toEpochSecond(captured.get(objectType.getExportTimeKey()));
+    if (id == null || time == null) {
+      return true;
+    }
+    return !time.equals(recentIds.put(id, time));
+  }
+
+  /**
+   * Sets the objects sideloaded with the pages, whose records are read along with the records of the object. The
+   * objects are included in the requests by {@link HttpUtil#createFirstPageUrl}, as configured.
+   *
+   * @param schemas The output schemas of the sideloaded objects, by object type
+   */
+  public void setSideloads(Map<ObjectType, Schema> schemas) {
+    pageDecoder.setSideloads(schemas);
+  }
+
+  /**
+   * Sets the spool keeping the pages read, so that the pages kept by a previous attempt of the split are replayed
+   * instead of requested again. Must be set before iterating.
+   *
+   * @param pageSpool The spool of the pages of the split
+   */
+  public void setPageSpool(PageSpool pageSpool) {
+    this.pageSpool = pageSpool;
+  }
+
+  @Override
+  Page<StructuredRecord> fetchPage() throws IOException, InterruptedException {
+    if (pageSpool == null) {
+      return executeRequest(response -> {
+        try (Reader reader = getContentReader(response.getEntity())) {
+          return decode(reader);
+        }
+      }, Page::empty);
+    }
+    Reader page = pageSpool.open(pageIndex);
+    if (page == null) {
+      // The response is copied to the spool as it is received, and decoded from there
+      boolean kept = executeRequest(response -> {
+        try (InputStream content = response.getEntity().getContent()) {
+          pageSpool.write(pageIndex, content);
+        }
+        return true;
+      }, () -> false);
+      if (!kept) {
+        return Page.empty();
+      }
+      page = pageSpool.open(pageIndex);
+      if (page == null) {
+        throw new IOException(String.format("Page %d of object '%s' was not kept.", pageIndex,
+                                            objectType.getObjectName()));
+      }
+    }
+    pageIndex++;
+    try (Reader reader = page) {
+      return decode(reader);
+    }
+  }
+
+  @VisibleForTesting
+  Page<StructuredRecord> decode(Reader reader) throws IOException {
+    long start = System.nanoTime();
+    Page<StructuredRecord> page = pageDecoder.decode(reader);
+    metrics.recordPage(System.nanoTime() - start);
+    return page;
+  }
+}
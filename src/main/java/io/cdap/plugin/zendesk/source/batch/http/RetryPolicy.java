@@ -0,0 +1,207 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import com.github.rholder.retry.Attempt;
+import com.github.rholder.retry.Retryer;
+import com.github.rholder.retry.RetryerBuilder;
+import com.github.rholder.retry.StopStrategy;
+import com.github.rholder.retry.WaitStrategy;
+import com.google.common.annotations.VisibleForTesting;
+import io.cdap.plugin.zendesk.source.batch.ZendeskBatchSourceConfig;
+import io.cdap.plugin.zendesk.source.batch.metrics.ZendeskMetrics;
+
+import org.apache.http.ConnectionClosedException;
+import org.apache.http.MalformedChunkCodingException;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.conn.ConnectTimeoutException;
+
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retry policy of the requests of a split, shared by the iterators reading it.
+ * <p>
+ * The requests rejected with a 429 error, answered with a 5xx error, or failing on a connection reset, a connect
+ * timeout or a read timeout are retried, up to the max retry count of the config for each page. Before retrying a
+ * server or connection failure, the policy waits for an exponential backoff with full jitter: a random time up to
+ * the base delay doubled at each attempt, capped to the max delay. The rate limited requests are not delayed by the
+ * policy, they wait in the {@link SubdomainRateLimiter} for the time given by Zendesk.
+ * <p>
+ * The backoff waits of the split add up to at most the max retry time of the config. Once it is used up, the next
+ * server or connection failure fails the split.
+ */
+public class RetryPolicy implements StopStrategy, WaitStrategy {
+
+  private static final int SAMPLE_MAX_ATTEMPTS = 3;
+  private static final long SAMPLE_MAX_RETRY_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+  private final int maxAttempts;
+  private final long baseDelayMillis;
+  private final long maxDelayMillis;
+  private final long maxRetryMillis;
+  private final AtomicLong waitedMillis = new AtomicLong();
+
+  /**
+   * Constructor for RetryPolicy object.
+   *
+   * @param config The batch source config
+   */
+  public RetryPolicy(ZendeskBatchSourceConfig config) {
+    this(config.getMaxRetryCount(), TimeUnit.SECONDS.toMillis(config.getRetryBaseDelay()),
+         TimeUnit.SECONDS.toMillis(config.getRetryMaxDelay()), TimeUnit.SECONDS.toMillis(config.getMaxRetryTime()));
+  }
+
+  /**
+   * Creates a policy for the requests sampling the size of an object while the splits are planned. The sample is
+   * only an estimate, so the requests are given up on early: after three attempts, or five seconds of backoff.
+   *
+   * @param config The batch source config
+   * @return the retry policy
+   */
+  public static RetryPolicy forSample(ZendeskBatchSourceConfig config) {
+    return new RetryPolicy(Math.min(config.getMaxRetryCount(), SAMPLE_MAX_ATTEMPTS),
+                           TimeUnit.SECONDS.toMillis(config.getRetryBaseDelay()),
+                           TimeUnit.SECONDS.toMillis(config.getRetryMaxDelay()), SAMPLE_MAX_RETRY_MILLIS);
+  }
+
+  @VisibleForTesting
+  RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, long maxRetryMillis) {
+    this.maxAttempts = Math.max(1, maxAttempts);
+    this.baseDelayMillis = baseDelayMillis;
+    this.maxDelayMillis = maxDelayMillis;
+    this.maxRetryMillis = maxRetryMillis;
+  }
+
+  /**
+   * Builds a retryer following the policy. The retryer can be reused for every page of an iterator.
+   *
+   * @param metrics The counters the backoff waits are added to
+   * @param <T>     the type of the retried call result
+   * @return the retryer
+   */
+  public <T> Retryer<T> buildRetryer(ZendeskMetrics metrics) {
+    return RetryerBuilder.<T>newBuilder()
+      .retryIfException(RetryPolicy::isRetryable)
+      .withStopStrategy(this)
+      .withWaitStrategy(attempt -> {
+        long sleepMillis = computeSleepTime(attempt);
+        metrics.recordRetryWait(TimeUnit.MILLISECONDS.toNanos(sleepMillis));
+        return sleepMillis;
+      })
+      .build();
+  }
+
+  /**
+   * Returns whether a failure of a request is transient, so that the request is sent again.
+   *
+   * @param failure The failure of the request
+   * @return true for rate limits, server errors and connection failures
+   */
+  public static boolean isRetryable(Throwable failure) {
+    if (Thread.currentThread().isInterrupted()) {
+      return false;
+    }
+    return failure instanceof RateLimitException || isServerError(failure) || isConnectionFailure(failure);
+  }
+
+  /**
+   * Returns whether a request failed with a 5xx response.
+   *
+   * @param failure The failure of the request
+   * @return true for a server error
+   */
+  public static boolean isServerError(Throwable failure) {
+    return failure instanceof HttpResponseException && ((HttpResponseException) failure).getStatusCode() / 100 == 5;
+  }
+
+  /**
+   * Returns whether a request failed on the connection, while sending it or while reading its response, such as
+   * a connection reset, a connect timeout, a read timeout or a response cut short. The failure may be wrapped, for
+   * instance by the JSON parser reading the response.
+   *
+   * @param failure The failure of the request
+   * @return true for a connection failure
+   */
+  public static boolean isConnectionFailure(Throwable failure) {
+    for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+      if (cause instanceof SocketException
+        || cause instanceof SocketTimeoutException
+        || cause instanceof ConnectTimeoutException
+        || cause instanceof NoHttpResponseException
+        || cause instanceof ConnectionClosedException
+        || cause instanceof MalformedChunkCodingException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean shouldStop(Attempt failedAttempt) {
+    if (failedAttempt.getAttemptNumber() >= maxAttempts) {
+      return true;
+    }
+    return !isRateLimited(failedAttempt) && waitedMillis.get() >= maxRetryMillis;
+  }
+
+  @Override
+  public long computeSleepTime(Attempt failedAttempt) {
+    if (isRateLimited(failedAttempt)) {
+      return 0;
+    }
+    long backoffMillis = getBackoffMillis(failedAttempt.getAttemptNumber(), ThreadLocalRandom.current().nextDouble());
+    while (true) {
+      long waited = waitedMillis.get();
+      // the last wait is cut to the time left
+      long sleepMillis = Math.max(0, Math.min(backoffMillis, maxRetryMillis - waited));
+      if (waitedMillis.compareAndSet(waited, waited + sleepMillis)) {
+        return sleepMillis;
+      }
+    }
+  }
+
+  /**
+   * Returns the total time the retries of the split waited for, in milliseconds.
+   */
+  public long getWaitedMillis() {
+    return waitedMillis.get();
+  }
+
+  /**
+   * Returns the backoff time before retrying a request: the given share of the base delay doubled for each failed
+   * attempt after the first one, up to the max delay.
+   *
+   * @param attemptNumber The number of the failed attempt, starting at 1
+   * @param jitter        The share of the backoff waited, between 0 and 1
+   * @return the backoff time in milliseconds
+   */
+  @VisibleForTesting
+  long getBackoffMillis(long attemptNumber, double jitter) {
+    long exponent = Math.min(attemptNumber - 1, 30);
+    long ceilingMillis = Math.min(maxDelayMillis, baseDelayMillis << exponent);
+    return (long) (ceilingMillis * jitter);
+  }
+
+  private static boolean isRateLimited(Attempt failedAttempt) {
+    return failedAttempt.hasException() && failedAttempt.getExceptionCause() instanceof RateLimitException;
+  }
+}
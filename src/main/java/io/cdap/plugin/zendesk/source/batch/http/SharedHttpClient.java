@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A reference to a client of the {@link HttpClientRegistry}. Closing it releases the reference,
+ * the client itself is closed once no reference is left.
+ */
+public class SharedHttpClient implements Closeable {
+
+  private final List<Object> key;
+  private final CloseableHttpClient httpClient;
+  private boolean closed;
+
+  SharedHttpClient(List<Object> key, CloseableHttpClient httpClient) {
+    this.key = key;
+    this.httpClient = httpClient;
+  }
+
+  public CloseableHttpClient getHttpClient() {
+    return httpClient;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      HttpClientRegistry.release(key);
+    }
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.cdap.plugin.zendesk.source.batch.ZendeskBatchSourceConfig;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket pacing the requests sent to a Zendesk subdomain, shared by every iterator of the JVM reading the
+ * subdomain at the same configured rate.
+ * <p>
+ * The rate starts at the configured number of requests per minute and is lowered to the limit reported by
+ * Zendesk in the 'X-Rate-Limit' header. The 'X-Rate-Limit-Remaining' header caps the available tokens,
+ * since other clients of the account consume the same quota. A 429 response pauses the subdomain until
+ * its 'Retry-After' time has passed.
+ */
+public class SubdomainRateLimiter {
+
+  private static final Map<List<Object>, SubdomainRateLimiter> LIMITERS = new ConcurrentHashMap<>();
+  private static final long MINUTE_NANOS = TimeUnit.MINUTES.toNanos(1);
+  // Requests may burst up to ten seconds of the quota
+  private static final double BURST_MINUTES = 1.0 / 6;
+
+  private final int configuredRequestsPerMinute;
+  private final LongSupplier clock;
+  private final AtomicLong waitedNanos = new AtomicLong();
+  private double requestsPerMinute;
+  private double tokens;
+  private long lastRefill;
+  private long pausedUntil;
+
+  @VisibleForTesting
+  SubdomainRateLimiter(int requestsPerMinute, LongSupplier clock) {
+    this.configuredRequestsPerMinute = requestsPerMinute;
+    this.clock = clock;
+    this.requestsPerMinute = requestsPerMinute;
+    this.tokens = getCapacity();
+    this.lastRefill = clock.getAsLong();
+    this.pausedUntil = lastRefill;
+  }
+
+  /**
+   * Returns the limiter of a subdomain at the rate of the config, creating it if it does not exist. The limiters are
+   * kept per base url, subdomain and rate, so that a pipeline run with another rate is not paced at the rate of the
+   * pipelines run before it in the JVM.
+   *
+   * @param config    The batch source config
+   * @param subdomain The subdomain name
+   * @return the limiter shared by the iterators of the subdomain
+   */
+  public static SubdomainRateLimiter forSubdomain(ZendeskBatchSourceConfig config, String subdomain) {
+    int requestsPerMinute = config.getMaxRequestsPerMinute();
+    return LIMITERS.computeIfAbsent(
+      Arrays.asList(config.getZendeskBaseUrl(), subdomain, requestsPerMinute),
+      key -> new SubdomainRateLimiter(requestsPerMinute, System::nanoTime));
+  }
+
+  /**
+   * Creates a limiter pacing the requests of a single split to its share of the request budget of the subdomain.
+   * The limiter is not shared: the limit reported by Zendesk is applied by the limiter of the subdomain.
+   *
+   * @param requestsPerMinute The number of requests per minute of the split
+   * @return the limiter of the split
+   */
+  public static SubdomainRateLimiter forBudget(int requestsPerMinute) {
+    return new SubdomainRateLimiter(requestsPerMinute, System::nanoTime);
+  }
+
+  /**
+   * Blocks until a request can be sent.
+   */
+  public void acquire() throws InterruptedException {
+    long waitNanos = reserve();
+    if (waitNanos > 0) {
+      waitedNanos.addAndGet(waitNanos);
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+  }
+
+  /**
+   * Returns the total time the requests to the subdomain were held back, including the pauses after 429 responses.
+   *
+   * @return the time waited in nanoseconds
+   */
+  public long getWaitedNanos() {
+    return waitedNanos.get();
+  }
+
+  /**
+   * Takes a token and returns the time to wait before sending the request it allows.
+   *
+   * @return the time to wait in nanoseconds
+   */
+  @VisibleForTesting
+  synchronized long reserve() {
+    long now = clock.getAsLong();
+    refill(now);
+    long waitNanos = Math.max(0, pausedUntil - now);
+    if (requestsPerMinute <= 0) {
+      return waitNanos;
+    }
+    // Tokens go below zero for the requests waiting their turn
+    tokens--;
+    if (tokens < 0) {
+      waitNanos = Math.max(waitNanos, (long) (-tokens * MINUTE_NANOS / requestsPerMinute));
+    }
+    return waitNanos;
+  }
+
+  /**
+   * Updates the bucket with the rate limit headers of a response.
+   *
+   * @param limit     The number of requests allowed per minute, null if not reported
+   * @param remaining The number of requests left in the current minute, null if not reported
+   */
+  public synchronized void update(Integer limit, Integer remaining) {
+    refill(clock.getAsLong());
+    if (limit != null && limit > 0
+      && (configuredRequestsPerMinute <= 0 || limit < configuredRequestsPerMinute) && limit != requestsPerMinute) {
+      boolean unlimited = requestsPerMinute <= 0;
+      requestsPerMinute = limit;
+      tokens = unlimited ? getCapacity() : Math.min(tokens, getCapacity());
+    }
+    if (remaining != null && requestsPerMinute > 0) {
+      tokens = Math.min(tokens, remaining);
+    }
+  }
+
+  /**
+   * Stops the requests to the subdomain for the time requested by a 429 response.
+   *
+   * @param retryAfterSeconds The time to wait in seconds
+   */
+  public synchronized void pause(long retryAfterSeconds) {
+    long now = clock.getAsLong();
+    refill(now);
+    pausedUntil = Math.max(pausedUntil, now + TimeUnit.SECONDS.toNanos(retryAfterSeconds));
+    tokens = Math.min(tokens, 0);
+  }
+
+  @VisibleForTesting
+  synchronized double getRequestsPerMinute() {
+    return requestsPerMinute;
+  }
+
+  private void refill(long now) {
+    if (requestsPerMinute > 0) {
+      // No token is earned while the subdomain is paused
+      long from = Math.max(lastRefill, Math.min(pausedUntil, now));
+      tokens = Math.min(getCapacity(), tokens + (now - from) * requestsPerMinute / MINUTE_NANOS);
+    }
+    lastRefill = now;
+  }
+
+  private double getCapacity() {
+    return Math.max(1, requestsPerMinute * BURST_MINUTES);
+  }
+}
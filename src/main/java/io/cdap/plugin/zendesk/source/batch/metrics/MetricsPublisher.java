@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.metrics;
+
+import io.cdap.cdap.api.metrics.Metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the {@link ZendeskMetrics} of a stage through the metrics of the stage, at most once a second while
+ * the records are transformed.
+ */
+public class MetricsPublisher {
+
+  private static final long PUBLISH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final String referenceName;
+  private final Metrics metrics;
+  private long lastPublished;
+
+  /**
+   * Constructor for MetricsPublisher object.
+   *
+   * @param referenceName The reference name of the stage
+   * @param metrics       The metrics of the stage
+   */
+  public MetricsPublisher(String referenceName, Metrics metrics) {
+    this.referenceName = referenceName;
+    this.metrics = metrics;
+    this.lastPublished = System.nanoTime();
+  }
+
+  /**
+   * Publishes the counts if they were not published within the last second.
+   */
+  public void publishPeriodically() {
+    long now = System.nanoTime();
+    if (now - lastPublished >= PUBLISH_INTERVAL_NANOS) {
+      lastPublished = now;
+      ZendeskMetrics.publish(referenceName, metrics);
+    }
+  }
+
+  /**
+   * Publishes the counts.
+   */
+  public void publish() {
+    lastPublished = System.nanoTime();
+    ZendeskMetrics.publish(referenceName, metrics);
+  }
+}
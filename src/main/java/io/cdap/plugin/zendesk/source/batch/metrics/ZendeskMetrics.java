@@ -0,0 +1,239 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.metrics;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.cdap.cdap.api.metrics.Metrics;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the reads of an object of a subdomain, shared by the iterators and record readers of the JVM.
+ * <p>
+ * The record readers have no access to the metrics of the stage, so the counters are published by the stage
+ * running in the same task, see {@link #publish(String, Metrics)}. The CDAP metrics have no tags: the subdomain
+ * and the object type are part of the metric names, like 'subdomain.tickets.requests'. The request latencies are
+ * counted in buckets, like 'subdomain.tickets.request.latency.le.250ms' for the requests answered within 250 ms
+ * but not within 100 ms. The window of the adaptive concurrency is published as the 'concurrency.limit' gauge.
+ */
+public final class ZendeskMetrics {
+
+  public static final String REQUESTS = "requests";
+  public static final String BYTES = "bytes";
+  public static final String PAGES = "pages";
+  public static final String RECORDS = "records";
+  public static final String RATE_LIMITED = "rate.limited";
+  public static final String SERVER_ERRORS = "server.errors";
+  public static final String CONNECTION_FAILURES = "connection.failures";
+  public static final String RETRIES = "retries";
+  public static final String RETRY_WAIT_TIME = "retry.wait.time.ms";
+  public static final String REQUEST_TIME = "request.time.ms";
+  public static final String DECODE_TIME = "decode.time.ms";
+  public static final String WAIT_TIME = "wait.time.ms";
+  public static final String REQUEST_LATENCY = "request.latency.le.";
+  public static final String CONCURRENCY_LIMIT = "concurrency.limit";
+
+  private static final Map<List<String>, ZendeskMetrics> METRICS = new ConcurrentHashMap<>();
+  private static final long[] LATENCY_BOUNDS_MILLIS = {100, 250, 500, 1000, 2500, 5000, 10000};
+  private static final long MILLI_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final String referenceName;
+  private final String prefix;
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong bytes = new AtomicLong();
+  private final AtomicLong pages = new AtomicLong();
+  private final AtomicLong records = new AtomicLong();
+  private final AtomicLong rateLimited = new AtomicLong();
+  private final AtomicLong serverErrors = new AtomicLong();
+  private final AtomicLong connectionFailures = new AtomicLong();
+  private final AtomicLong retries = new AtomicLong();
+  private final AtomicLong retryWaitNanos = new AtomicLong();
+  private final AtomicLong requestNanos = new AtomicLong();
+  private final AtomicLong decodeNanos = new AtomicLong();
+  private final AtomicLong waitNanos = new AtomicLong();
+  private final AtomicLong concurrencyLimit = new AtomicLong(-1);
+  private final AtomicLong[] latencyBuckets = new AtomicLong[LATENCY_BOUNDS_MILLIS.length + 1];
+
+  private ZendeskMetrics(String referenceName, String subdomain, ObjectType objectType) {
+    this.referenceName = referenceName;
+    this.prefix = String.format("%s.%s.", subdomain, objectType.name().toLowerCase());
+    for (int i = 0; i < latencyBuckets.length; i++) {
+      latencyBuckets[i] = new AtomicLong();
+    }
+  }
+
+  /**
+   * Returns the counters of an object of a subdomain read by a stage, creating them if they do not exist.
+   *
+   * @param referenceName The reference name of the stage
+   * @param subdomain     The subdomain name
+   * @param objectType    The object type
+   * @return the counters shared by the iterators and readers of the JVM
+   */
+  public static ZendeskMetrics forObject(String referenceName, String subdomain, ObjectType objectType) {
+    return METRICS.computeIfAbsent(Arrays.asList(referenceName, subdomain, objectType.name()),
+                                   key -> new ZendeskMetrics(referenceName, subdomain, objectType));
+  }
+
+  /**
+   * Publishes the counts added since the last call for every object read by a stage.
+   *
+   * @param referenceName The reference name of the stage
+   * @param metrics       The metrics of the stage
+   */
+  public static void publish(String referenceName, Metrics metrics) {
+    for (ZendeskMetrics objectMetrics : METRICS.values()) {
+      if (objectMetrics.referenceName == null ? referenceName == null
+        : objectMetrics.referenceName.equals(referenceName)) {
+        objectMetrics.publish(metrics);
+      }
+    }
+  }
+
+  /**
+   * Counts a request answered after the given time, up to its response headers.
+   */
+  public void recordRequest(long nanos) {
+    requests.incrementAndGet();
+    requestNanos.addAndGet(nanos);
+    int bucket = 0;
+    while (bucket < LATENCY_BOUNDS_MILLIS.length && nanos > LATENCY_BOUNDS_MILLIS[bucket] * MILLI_NANOS) {
+      bucket++;
+    }
+    latencyBuckets[bucket].incrementAndGet();
+  }
+
+  /**
+   * Counts the bytes of a response body, as transferred, before its content is decompressed.
+   */
+  public void recordBytes(long count) {
+    bytes.addAndGet(count);
+  }
+
+  /**
+   * Counts a page read, and the time taken to decode it.
+   */
+  public void recordPage(long decodeNanos) {
+    pages.incrementAndGet();
+    this.decodeNanos.addAndGet(decodeNanos);
+  }
+
+  /**
+   * Counts a record emitted by a record reader.
+   */
+  public void recordRecord() {
+    records.incrementAndGet();
+  }
+
+  /**
+   * Counts a request rejected with a 429 error.
+   */
+  public void recordRateLimited() {
+    rateLimited.incrementAndGet();
+  }
+
+  /**
+   * Counts a request answered with a 5xx error.
+   */
+  public void recordServerError() {
+    serverErrors.incrementAndGet();
+  }
+
+  /**
+   * Counts a request failed on the connection, such as a connection reset or a read timeout.
+   */
+  public void recordConnectionFailure() {
+    connectionFailures.incrementAndGet();
+  }
+
+  /**
+   * Counts a request sent again after a failure.
+   */
+  public void recordRetry() {
+    retries.incrementAndGet();
+  }
+
+  /**
+   * Counts the time waited before sending a request again after a failure.
+   */
+  public void recordRetryWait(long nanos) {
+    retryWaitNanos.addAndGet(nanos);
+  }
+
+  /**
+   * Counts the time a request waited for the rate limit of the subdomain.
+   */
+  public void recordWait(long nanos) {
+    waitNanos.addAndGet(nanos);
+  }
+
+  /**
+   * Records the number of requests allowed in flight to the subdomain by the adaptive concurrency.
+   */
+  public void recordConcurrencyLimit(int limit) {
+    concurrencyLimit.set(limit);
+  }
+
+  @VisibleForTesting
+  void publish(Metrics metrics) {
+    count(metrics, REQUESTS, requests.getAndSet(0));
+    count(metrics, BYTES, bytes.getAndSet(0));
+    count(metrics, PAGES, pages.getAndSet(0));
+    count(metrics, RECORDS, records.getAndSet(0));
+    count(metrics, RATE_LIMITED, rateLimited.getAndSet(0));
+    count(metrics, SERVER_ERRORS, serverErrors.getAndSet(0));
+    count(metrics, CONNECTION_FAILURES, connectionFailures.getAndSet(0));
+    count(metrics, RETRIES, retries.getAndSet(0));
+    count(metrics, RETRY_WAIT_TIME, drainMillis(retryWaitNanos));
+    count(metrics, REQUEST_TIME, drainMillis(requestNanos));
+    count(metrics, DECODE_TIME, drainMillis(decodeNanos));
+    count(metrics, WAIT_TIME, drainMillis(waitNanos));
+    for (int i = 0; i < latencyBuckets.length; i++) {
+      String bound = i < LATENCY_BOUNDS_MILLIS.length ? LATENCY_BOUNDS_MILLIS[i] + "ms" : "inf";
+      count(metrics, REQUEST_LATENCY + bound, latencyBuckets[i].getAndSet(0));
+    }
+    // The limit is a gauge, published while the adaptive concurrency is used
+    long limit = concurrencyLimit.getAndSet(-1);
+    if (limit >= 0) {
+      metrics.gauge(prefix + CONCURRENCY_LIMIT, limit);
+    }
+  }
+
+  private void count(Metrics metrics, String name, long delta) {
+    // CDAP counts are ints
+    while (delta > 0) {
+      int count = (int) Math.min(Integer.MAX_VALUE, delta);
+      metrics.count(prefix + name, count);
+      delta -= count;
+    }
+  }
+
+  /**
+   * Takes the whole milliseconds out of a time in nanoseconds, the remainder being published later.
+   */
+  private static long drainMillis(AtomicLong nanos) {
+    long millis = nanos.get() / MILLI_NANOS;
+    nanos.addAndGet(-millis * MILLI_NANOS);
+    return millis;
+  }
+}
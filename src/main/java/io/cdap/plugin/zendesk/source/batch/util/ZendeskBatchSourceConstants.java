@@ -25,5 +25,8 @@ public class ZendeskBatchSourceConstants {
   public static final String PROPERTY_OBJECTS_JSON = "cdap.zendesk.objects";
   public static final String PROPERTY_SCHEMAS_JSON = "cdap.zendesk.schemas";
   public static final String PROPERTY_PLUGIN_NAME = "cdap.zendesk.plugin.name";
+  public static final String PROPERTY_START_TIMES_JSON = "cdap.zendesk.start.times";
+  public static final String PROPERTY_CHECKPOINT_DIR = "cdap.zendesk.checkpoint.dir";
+  public static final String PROPERTY_POSITIONS_DIR = "cdap.zendesk.positions.dir";
 
 }
@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.zendesk.source.batch.watermark;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.annotation.Nullable;
+
+/**
+ * {@link WatermarkStore} keeping a file per object under a directory of a Hadoop file system, such as HDFS or
+ * the local file system.
+ */
+public class FileWatermarkStore implements WatermarkStore {
+
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private final FileSystem fileSystem;
+  private final Path directory;
+
+  /**
+   * Constructor for FileWatermarkStore object.
+   *
+   * @param directory     The directory of the watermark files
+   * @param configuration The Hadoop configuration used to resolve the file system
+   * @throws IOException if the file system could not be resolved
+   */
+  public FileWatermarkStore(String directory, Configuration configuration) throws IOException {
+    this.directory = new Path(directory);
+    this.fileSystem = this.directory.getFileSystem(configuration);
+  }
+
+  @Nullable
+  @Override
+  public Long get(String subdomain, String object) throws IOException {
+    Path path = getPath(subdomain, object);
+    if (!fileSystem.exists(path)) {
+      return null;
+    }
+    try (FSDataInputStream in = fileSystem.open(path)) {
+      byte[] content = new byte[(int) fileSystem.getFileStatus(path).getLen()];
+      in.readFully(content);
+      return Long.parseLong(new String(content, StandardCharsets.UTF_8).trim());
+    } catch (NumberFormatException e) {
+      throw new IOException(String.format("Invalid watermark file '%s'.", path), e);
+    }
+  }
+
+  @Override
+  public void put(String subdomain, String object, long watermark) throws IOException {
+    Path path = getPath(subdomain, object);
+    // The watermark is written aside and moved in place, so that a failed write keeps the previous watermark
+    Path tempPath = path.suffix(TEMP_SUFFIX);
+    try (FSDataOutputStream out = fileSystem.create(tempPath, true)) {
+      out.write(Long.toString(watermark).getBytes(StandardCharsets.UTF_8));
+    }
+    fileSystem.delete(path, false);
+    if (!fileSystem.rename(tempPath, path)) {
+      throw new IOException(String.format("Unable to save watermark file '%s'.", path));
+    }
+  }
+
+  private Path getPath(String subdomain, String object) {
+    return new Path(new Path(directory, subdomain), object.replaceAll("[^A-Za-z0-9]", "_"));
+  }
+}
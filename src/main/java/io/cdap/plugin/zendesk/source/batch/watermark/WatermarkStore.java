@@ -0,0 +1,50 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.zendesk.source.batch.watermark;
+
+import java.io.IOException;
+
+import javax.annotation.Nullable;
+
+/**
+ * Store of the watermarks of the incremental exports, which lets a pipeline run start where the last successful
+ * run of the pipeline started.
+ */
+public interface WatermarkStore {
+
+  /**
+   * Returns the watermark of an object of a subdomain.
+   *
+   * @param subdomain The subdomain name
+   * @param object    The object name
+   * @return the watermark in epoch seconds, null if no run of the object succeeded yet
+   * @throws IOException if the watermark could not be read
+   */
+  @Nullable
+  Long get(String subdomain, String object) throws IOException;
+
+  /**
+   * Saves the watermark of an object of a subdomain.
+   *
+   * @param subdomain The subdomain name
+   * @param object    The object name
+   * @param watermark The watermark in epoch seconds
+   * @throws IOException if the watermark could not be saved
+   */
+  void put(String subdomain, String object, long watermark) throws IOException;
+}
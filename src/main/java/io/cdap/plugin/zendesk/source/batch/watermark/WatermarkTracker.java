@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.watermark;
+
+import com.google.common.base.Strings;
+import io.cdap.plugin.zendesk.source.batch.ZendeskBatchSourceConfig;
+import io.cdap.plugin.zendesk.source.batch.http.HttpUtil;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves the start times of the incremental exports of a pipeline run from the watermarks of the last successful
+ * run, and saves the new watermarks once the run succeeds.
+ * <p>
+ * The last split of an export reads the objects updated up to the time of the read, so the objects updated while
+ * a run is reading are read again by the next run. A time based export stops early, at a page ending within the
+ * last five minutes, so the last split reports the position it reached, and the new watermark is the earliest of
+ * the start of the run and that position.
+ */
+public class WatermarkTracker {
+
+  private final ZendeskBatchSourceConfig config;
+  private final WatermarkStore store;
+  private final List<String> objects;
+  private final long runTime;
+
+  /**
+   * Constructor for WatermarkTracker object.
+   *
+   * @param config  The batch source config
+   * @param store   The store of the watermarks
+   * @param objects The objects read by the run
+   * @param runTime The start of the run in epoch seconds
+   */
+  public WatermarkTracker(ZendeskBatchSourceConfig config, WatermarkStore store, List<String> objects,
+                          long runTime) {
+    this.config = config;
+    this.store = store;
+    this.objects = objects;
+    this.runTime = runTime;
+  }
+
+  /**
+   * Returns the start times of the incremental exports, which have a watermark later than the start date.
+   *
+   * @return the start times in epoch seconds, keyed by {@link #getKey(String, String)}
+   * @throws IOException if a watermark could not be read
+   */
+  public Map<String, Long> getStartTimes() throws IOException {
+    Map<String, Long> startTimes = new HashMap<>();
+    long startDate = Strings.isNullOrEmpty(config.getStartDate()) ? 0 : HttpUtil.getEpochSecond(config.getStartDate());
+    for (String subdomain : config.getSubdomains()) {
+      for (String object : objects) {
+        if (!ObjectType.fromString(object).isBatch()) {
+          continue;
+        }
+        Long watermark = store.get(subdomain, object);
+        if (watermark != null && watermark > startDate) {
+          startTimes.put(getKey(subdomain, object), watermark);
+        }
+      }
+    }
+    return startTimes;
+  }
+
+  /**
+   * Saves the watermark of the incremental exports: the start of the run, or the position reached by the export
+   * when earlier, so that the objects updated between them are read by the next run. The objects sideloaded with
+   * the Tickets export keep their previous watermark: only the objects referenced by the tickets read were read, not
+   * their whole exports.
+   *
+   * @param positions The positions reached by the last split of each export, in epoch seconds
+   * @throws IOException if a position could not be read or a watermark could not be saved
+   */
+  public void commit(WatermarkStore positions) throws IOException {
+    Set<String> sideloaded = config.getTicketSideloads().stream()
+      .map(ObjectType::getObjectName)
+      .collect(Collectors.toSet());
+    for (String subdomain : config.getSubdomains()) {
+      for (String object : objects) {
+        if (ObjectType.fromString(object).isBatch() && !sideloaded.contains(object)) {
+          Long position = positions.get(subdomain, object);
+          store.put(subdomain, object, position == null ? runTime : Math.min(runTime, position));
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the key of the start time of an object of a subdomain.
+   *
+   * @param subdomain The subdomain name
+   * @param object    The object name
+   * @return the key of the start time
+   */
+  public static String getKey(String subdomain, String object) {
+    return subdomain + "/" + object;
+  }
+}
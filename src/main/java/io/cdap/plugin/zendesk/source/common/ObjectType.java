@@ -16,11 +16,14 @@
 
 package io.cdap.plugin.zendesk.source.common;
 
+import com.google.common.collect.ImmutableMap;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.plugin.zendesk.source.common.config.BaseZendeskSourceConfig;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * Supported Zendesk objects with schema.
@@ -49,13 +52,13 @@ public enum ObjectType {
   TICKET_COMMENTS(
     "Ticket Comments", "ticket_events", "child_events",
     "incremental/ticket_events.json?include=comment_events",
-    true, ObjectTypeSchemaConstants.SCHEMA_TICKET_COMMENTS),
+    true, ObjectTypeSchemaConstants.SCHEMA_TICKET_COMMENTS, "timestamp"),
   GROUPS(
     "Groups", "groups", "groups.json",
     false, ObjectTypeSchemaConstants.SCHEMA_GROUPS),
   ORGANIZATIONS(
-    "Organizations", "organizations", "incremental/organizations.json",
-    true, ObjectTypeSchemaConstants.SCHEMA_ORGANIZATIONS),
+    "Organizations", "organizations", null, "incremental/organizations.json",
+    true, ObjectTypeSchemaConstants.SCHEMA_ORGANIZATIONS, "updated_at"),
   SATISFACTION_RATINGS(
     "Satisfaction Ratings", "satisfaction_ratings", "satisfaction_ratings.json",
     false, ObjectTypeSchemaConstants.SCHEMA_SATISFACTION_RATINGS),
@@ -69,23 +72,30 @@ public enum ObjectType {
     "Ticket Metrics", "ticket_metrics", "ticket_metrics.json",
     false, ObjectTypeSchemaConstants.SCHEMA_TICKET_METRICS),
   TICKET_METRIC_EVENTS(
-    "Ticket Metric Events", "ticket_metric_events", "incremental/ticket_metric_events.json",
-    true, ObjectTypeSchemaConstants.SCHEMA_TICKET_METRIC_EVENTS),
+    "Ticket Metric Events", "ticket_metric_events", null, "incremental/ticket_metric_events.json",
+    true, ObjectTypeSchemaConstants.SCHEMA_TICKET_METRIC_EVENTS, "time"),
   TICKETS(
-    "Tickets", "tickets", "incremental/tickets.json",
-    true, ObjectTypeSchemaConstants.SCHEMA_TICKETS),
+    "Tickets", "tickets", null, "incremental/tickets.json", "incremental/tickets/cursor.json",
+    true, ObjectTypeSchemaConstants.SCHEMA_TICKETS, "generated_timestamp"),
   USERS(
-    "Users", "users", "incremental/users.json",
-    true, ObjectTypeSchemaConstants.SCHEMA_USERS);
+    "Users", "users", null, "incremental/users.json", "incremental/users/cursor.json",
+    true, ObjectTypeSchemaConstants.SCHEMA_USERS, "updated_at");
 
   private static final String CLASS_NAME = ObjectType.class.getName();
+  private static final Map<ObjectType, String> TICKETS_SIDELOADS = ImmutableMap.of(
+    TICKET_METRICS, "metric_sets",
+    USERS, "users",
+    GROUPS, "groups",
+    ORGANIZATIONS, "organizations");
 
   private final String objectName;
   private final String responseKey;
   private final String childKey;
   private final String apiEndpoint;
+  private final String cursorApiEndpoint;
   private final boolean batch;
   private final Schema objectSchema;
+  private final String exportTimeKey;
 
   ObjectType(String objectName,
              String responseKey,
@@ -102,12 +112,37 @@ public enum ObjectType {
              String apiEndpoint,
              boolean batch,
              Schema objectSchema) {
+    this(objectName, responseKey, childKey,
+      apiEndpoint, batch, objectSchema, null);
+  }
+
+  ObjectType(String objectName,
+             String responseKey,
+             String childKey,
+             String apiEndpoint,
+             boolean batch,
+             Schema objectSchema,
+             String exportTimeKey) {
+    this(objectName, responseKey, childKey,
+      apiEndpoint, null, batch, objectSchema, exportTimeKey);
+  }
+
+  ObjectType(String objectName,
+             String responseKey,
+             String childKey,
+             String apiEndpoint,
+             String cursorApiEndpoint,
+             boolean batch,
+             Schema objectSchema,
+             String exportTimeKey) {
     this.objectName = objectName;
     this.responseKey = responseKey;
     this.childKey = childKey;
     this.apiEndpoint = apiEndpoint;
+    this.cursorApiEndpoint = cursorApiEndpoint;
     this.batch = batch;
     this.objectSchema = objectSchema;
+    this.exportTimeKey = exportTimeKey;
   }
 
   public String getObjectName() {
@@ -126,6 +161,15 @@ public enum ObjectType {
     return apiEndpoint;
   }
 
+  /**
+   * Returns the endpoint of the cursor based incremental export, or null if the object is not exported with a cursor.
+   *
+   * @return the endpoint of the cursor based export
+   */
+  public String getCursorApiEndpoint() {
+    return cursorApiEndpoint;
+  }
+
   public boolean isBatch() {
     return batch;
   }
@@ -134,6 +178,26 @@ public enum ObjectType {
     return objectSchema;
   }
 
+  /**
+   * Returns the key of the time an incremental export is ordered by, or null if the object is not exported
+   * incrementally. For objects with a child key, the time is held by the parent object.
+   *
+   * @return the key of the export time
+   */
+  public String getExportTimeKey() {
+    return exportTimeKey;
+  }
+
+  /**
+   * Returns the objects that can be sideloaded with the pages of this object, by the name they are included with,
+   * which is also the key of their array in the response.
+   *
+   * @return the sideloaded object types by include name, empty if the object has no sideloads
+   */
+  public Map<ObjectType, String> getSideloads() {
+    return this == TICKETS ? TICKETS_SIDELOADS : Collections.emptyMap();
+  }
+
   /**
    * Converts object type string value into {@link ObjectType} enum.
    *
@@ -16,6 +16,7 @@
 
 package io.cdap.plugin.zendesk.source.batch;
 
+import com.google.common.collect.ImmutableSet;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.api.dataset.lib.KeyValue;
@@ -29,6 +30,7 @@ import io.cdap.cdap.etl.mock.common.MockArguments;
 import io.cdap.cdap.etl.mock.common.MockEmitter;
 import io.cdap.cdap.etl.mock.common.MockPipelineConfigurer;
 import io.cdap.cdap.etl.mock.validation.MockFailureCollector;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
 import io.cdap.plugin.zendesk.source.common.ObjectTypeSchemaConstants;
 
 import org.apache.hadoop.io.NullWritable;
@@ -395,6 +397,52 @@ public class ZendeskBatchSourceConfigTest {
     }
   }
 
+  @Test
+  public void testGetTicketSideloads() {
+    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+      "reference",
+      "email@test.com",
+      "apiToken",
+      "subdomain",
+      "Tickets,Organizations,Ticket Metrics,Tags",
+      "",
+      "2019-01-01T23:01:01Z",
+      null,
+      null,
+      20,
+      300,
+      300,
+      "https://%s.zendesk.com/api/v2/%s",
+      "");
+
+    Assert.assertTrue(config.getTicketSideloads().isEmpty());
+    config.sideloadWithTickets = true;
+    Assert.assertEquals(ImmutableSet.of(ObjectType.TICKET_METRICS, ObjectType.ORGANIZATIONS),
+                        config.getTicketSideloads());
+  }
+
+  @Test
+  public void testGetTicketSideloadsWithoutTickets() {
+    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+      "reference",
+      "email@test.com",
+      "apiToken",
+      "subdomain",
+      "Organizations,Ticket Metrics",
+      "",
+      "2019-01-01T23:01:01Z",
+      null,
+      null,
+      20,
+      300,
+      300,
+      "https://%s.zendesk.com/api/v2/%s",
+      "");
+    config.sideloadWithTickets = true;
+
+    Assert.assertTrue(config.getTicketSideloads().isEmpty());
+  }
+
   @Test
   public void testConfigurePipelineMultiSourceWithInvalidBasicParam() {
     ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.plugin.zendesk.source.batch;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+public class ZendeskInputConfigTest {
+  private static final Gson GSON = new GsonBuilder().create();
+
+  @Test
+  public void testParsedOnce() throws Exception {
+    ZendeskBatchSourceConfig config = createConfig("Groups,Tags", false);
+    Configuration conf = createConfiguration(config, ZendeskBatchSource.NAME);
+
+    ZendeskInputConfig inputConfig = ZendeskInputConfig.of(conf);
+    Assert.assertSame(inputConfig, ZendeskInputConfig.of(new Configuration(conf)));
+    Assert.assertSame(inputConfig.getSchema("Groups"), ZendeskInputConfig.of(conf).getSchema("Groups"));
+    Assert.assertEquals(config.getObjects(), inputConfig.getConfig().getObjects());
+    Assert.assertEquals(ObjectType.GROUPS.getObjectSchema(), inputConfig.getSchema("Groups"));
+
+    Configuration otherConf = createConfiguration(createConfig("Groups", false), ZendeskBatchSource.NAME);
+    Assert.assertNotSame(inputConfig, ZendeskInputConfig.of(otherConf));
+  }
+
+  @Test
+  public void testMultiSourceSchema() throws Exception {
+    ZendeskBatchSourceConfig config = createConfig("Groups", false);
+    Configuration conf = createConfiguration(config, ZendeskBatchMultiSource.NAME);
+
+    Schema schema = ZendeskInputConfig.of(conf).getSchema("Groups");
+    Assert.assertEquals("Groups", schema.getRecordName());
+    Assert.assertEquals(ObjectType.GROUPS.getObjectSchema().getFields().size() + 1, schema.getFields().size());
+    Assert.assertEquals(Schema.of(Schema.Type.STRING), schema.getField(config.getTableNameField()).getSchema());
+  }
+
+  @Test
+  public void testSideloadSchemas() throws Exception {
+    Configuration conf = createConfiguration(createConfig("Tickets,Users,Ticket Metrics", true),
+                                             ZendeskBatchMultiSource.NAME);
+
+    ZendeskInputConfig inputConfig = ZendeskInputConfig.of(conf);
+    Map<ObjectType, Schema> sideloadSchemas = inputConfig.getSideloadSchemas(ObjectType.TICKETS);
+    Assert.assertEquals(new HashSet<>(Arrays.asList(ObjectType.TICKET_METRICS, ObjectType.USERS)),
+                        sideloadSchemas.keySet());
+    Assert.assertSame(inputConfig.getSchema("Users"), sideloadSchemas.get(ObjectType.USERS));
+    Assert.assertEquals(Collections.emptyMap(), inputConfig.getSideloadSchemas(ObjectType.USERS));
+  }
+
+  private static ZendeskBatchSourceConfig createConfig(String objects, boolean sideloadWithTickets) {
+    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+      "reference",
+      "email@test.com",
+      "apiToken",
+      "subdomain",
+      objects,
+      "",
+      "2019-01-01T00:00:00Z",
+      null,
+      null,
+      5,
+      10,
+      10,
+      null,
+      null);
+    JsonObject configJson = GSON.toJsonTree(config).getAsJsonObject();
+    configJson.addProperty(ZendeskBatchSourceConfig.PROPERTY_SIDELOAD_WITH_TICKETS, sideloadWithTickets);
+    return GSON.fromJson(configJson, ZendeskBatchSourceConfig.class);
+  }
+
+  private static Configuration createConfiguration(ZendeskBatchSourceConfig config, String pluginName) {
+    List<String> objects = config.getObjects();
+    Map<String, String> schemas = new HashMap<>();
+    for (String object : objects) {
+      schemas.put(object, ObjectType.fromString(object).getObjectSchema().toString());
+    }
+    Configuration conf = new Configuration(false);
+    new ZendeskInputFormatProvider(config, objects, schemas, pluginName)
+      .getInputFormatConfiguration().forEach(conf::set);
+    return conf;
+  }
+}
@@ -19,6 +19,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -73,4 +74,31 @@ public class ZendeskInputFormatProviderTest {
     Assert.assertEquals(4, map.size());
     Assert.assertEquals("[\"object1\"]", map.get("cdap.zendesk.objects"));
   }
+
+  @Test
+  public void testGetInputFormatConfigurationWithStartTimesAndCheckpoints() {
+    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+      "reference",
+      "email@test.com",
+      "apiToken",
+      "subdomain",
+      "Tickets",
+      "",
+      "2019-01-01T23:01:01Z",
+      "",
+      "",
+      20,
+      300,
+      300,
+      "https://%s.zendesk.com/api/v2/%s",
+      "{}");
+    ZendeskInputFormatProvider zendeskInputFormatProvider = new ZendeskInputFormatProvider(
+      config, Collections.singletonList("Tickets"), null, "cdap.zendesk.plugin.name",
+      Collections.singletonMap("subdomain/Tickets", 1577836800L), "/checkpoints/run", "/watermarks/_positions/run");
+    Map<String, String> map = zendeskInputFormatProvider.getInputFormatConfiguration();
+    Assert.assertEquals(7, map.size());
+    Assert.assertEquals("{\"subdomain/Tickets\":1577836800}", map.get("cdap.zendesk.start.times"));
+    Assert.assertEquals("/checkpoints/run", map.get("cdap.zendesk.checkpoint.dir"));
+    Assert.assertEquals("/watermarks/_positions/run", map.get("cdap.zendesk.positions.dir"));
+  }
 }
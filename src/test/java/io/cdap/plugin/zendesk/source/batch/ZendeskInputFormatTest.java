@@ -17,20 +17,38 @@ package io.cdap.plugin.zendesk.source.batch;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.plugin.zendesk.source.batch.http.ZendeskApiSimulator;
 import io.cdap.plugin.zendesk.source.batch.util.ZendeskBatchSourceConstants;
+import io.cdap.plugin.zendesk.source.batch.watermark.FileWatermarkStore;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public class ZendeskInputFormatTest {
   private static final Gson GSON = new GsonBuilder().create();
 
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @Test
   public void testGetSplits() {
     ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
@@ -61,4 +79,237 @@ public class ZendeskInputFormatTest {
     List<InputSplit> splits = zendeskInputFormat.getSplits(context);
     Assert.assertEquals(1, splits.size());
   }
+
+  @Test
+  public void testSideloadWithTickets() throws Exception {
+    try (ZendeskApiSimulator simulator = new ZendeskApiSimulator()) {
+      simulator.setObjectCount(1500);
+      ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+        "reference",
+        "email@test.com",
+        "apiToken",
+        "sideload",
+        "Tickets,Users,Ticket Metrics,Tags",
+        "",
+        "2019-01-01T00:00:00Z",
+        null,
+        null,
+        5,
+        10,
+        10,
+        simulator.getBaseUrl(),
+        null);
+      JsonObject configJson = GSON.toJsonTree(config).getAsJsonObject();
+      configJson.addProperty(ZendeskBatchSourceConfig.PROPERTY_SIDELOAD_WITH_TICKETS, true);
+      config = GSON.fromJson(configJson, ZendeskBatchSourceConfig.class);
+      List<String> objects = config.getObjects();
+      Map<String, String> schemas = new HashMap<>();
+      for (String object : objects) {
+        schemas.put(object, ObjectType.fromString(object).getObjectSchema().toString());
+      }
+      Configuration conf = new Configuration(false);
+      new ZendeskInputFormatProvider(config, objects, schemas, ZendeskBatchMultiSource.NAME)
+        .getInputFormatConfiguration().forEach(conf::set);
+      JobContext jobContext = Mockito.mock(JobContext.class);
+      Mockito.when(jobContext.getConfiguration()).thenReturn(conf);
+      TaskAttemptContext taskContext = Mockito.mock(TaskAttemptContext.class);
+      Mockito.when(taskContext.getConfiguration()).thenReturn(conf);
+
+      ZendeskInputFormat inputFormat = new ZendeskInputFormat();
+      List<InputSplit> splits = inputFormat.getSplits(jobContext);
+      Set<String> splitObjects = new HashSet<>();
+      for (InputSplit split : splits) {
+        splitObjects.add(((ZendeskSplit) split).getObject());
+      }
+      Assert.assertEquals(new HashSet<>(Arrays.asList("Tickets", "Tags")), splitObjects);
+
+      InputSplit ticketsSplit = splits.stream()
+        .filter(split -> ((ZendeskSplit) split).getObject().equals("Tickets"))
+        .findFirst()
+        .get();
+      long requests = simulator.getRequestCount();
+      Map<String, Integer> counts = new HashMap<>();
+      try (RecordReader recordReader = inputFormat.createRecordReader(ticketsSplit, taskContext)) {
+        recordReader.initialize(ticketsSplit, taskContext);
+        while (recordReader.nextKeyValue()) {
+          StructuredRecord record = (StructuredRecord) recordReader.getCurrentValue();
+          counts.merge(record.get(config.getTableNameField()), 1, Integer::sum);
+        }
+      }
+
+      Assert.assertEquals(1500, (int) counts.get("Tickets"));
+      Assert.assertEquals(1500, (int) counts.get("Ticket_Metrics"));
+      // the users referenced by the tickets of both pages are read once
+      Assert.assertEquals(10, (int) counts.get("Users"));
+      Assert.assertEquals(2, simulator.getRequestCount() - requests);
+    }
+  }
+
+  @Test
+  public void testLastSplitReportsReachedPosition() throws Exception {
+    try (ZendeskApiSimulator simulator = new ZendeskApiSimulator()) {
+      simulator.setObjectCount(1500);
+      ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+        "reference",
+        "email@test.com",
+        "apiToken",
+        "positions",
+        "Tickets",
+        "",
+        "2019-01-01T00:00:00Z",
+        null,
+        null,
+        5,
+        10,
+        10,
+        simulator.getBaseUrl(),
+        null);
+      List<String> objects = config.getObjects();
+      Map<String, String> schemas = new HashMap<>();
+      schemas.put("Tickets", ObjectType.TICKETS.getObjectSchema().toString());
+      String positionsDir = temporaryFolder.newFolder("positions").getPath();
+      Configuration conf = new Configuration(false);
+      new ZendeskInputFormatProvider(config, objects, schemas, ZendeskBatchSource.NAME, new HashMap<>(), null,
+                                     positionsDir)
+        .getInputFormatConfiguration().forEach(conf::set);
+      JobContext jobContext = Mockito.mock(JobContext.class);
+      Mockito.when(jobContext.getConfiguration()).thenReturn(conf);
+      TaskAttemptContext taskContext = Mockito.mock(TaskAttemptContext.class);
+      Mockito.when(taskContext.getConfiguration()).thenReturn(conf);
+
+      ZendeskInputFormat inputFormat = new ZendeskInputFormat();
+      List<InputSplit> splits = inputFormat.getSplits(jobContext);
+      Assert.assertEquals(1, splits.size());
+      FileWatermarkStore positions = new FileWatermarkStore(positionsDir, conf);
+      try (RecordReader recordReader = inputFormat.createRecordReader(splits.get(0), taskContext)) {
+        recordReader.initialize(splits.get(0), taskContext);
+        int count = 0;
+        while (recordReader.nextKeyValue()) {
+          recordReader.getCurrentValue();
+          count++;
+        }
+        Assert.assertEquals(1500, count);
+      }
+
+      // the end time of the last page, right after the last ticket
+      long lastTicketTime = ZendeskApiSimulator.FIRST_OBJECT_TIME + 1499 * TimeUnit.DAYS.toSeconds(365) / 1500;
+      Assert.assertEquals(lastTicketTime + 1, positions.get("positions", "Tickets").longValue());
+    }
+  }
+
+  @Test
+  public void testListPageSplits() throws Exception {
+    try (ZendeskApiSimulator simulator = new ZendeskApiSimulator()) {
+      simulator.setObjectCount(3050);
+      ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+        "reference",
+        "email@test.com",
+        "apiToken",
+        "list-pages",
+        "Groups",
+        "",
+        "2019-01-01T00:00:00Z",
+        null,
+        null,
+        5,
+        10,
+        10,
+        simulator.getBaseUrl(),
+        null);
+      JsonObject configJson = GSON.toJsonTree(config).getAsJsonObject();
+      configJson.addProperty(ZendeskBatchSourceConfig.PROPERTY_MAX_SPLITS_PER_OBJECT, 4);
+      config = GSON.fromJson(configJson, ZendeskBatchSourceConfig.class);
+      List<String> objects = config.getObjects();
+      Map<String, String> schemas = new HashMap<>();
+      schemas.put("Groups", ObjectType.GROUPS.getObjectSchema().toString());
+      Configuration conf = new Configuration(false);
+      new ZendeskInputFormatProvider(config, objects, schemas, ZendeskBatchSource.NAME)
+        .getInputFormatConfiguration().forEach(conf::set);
+      JobContext jobContext = Mockito.mock(JobContext.class);
+      Mockito.when(jobContext.getConfiguration()).thenReturn(conf);
+      TaskAttemptContext taskContext = Mockito.mock(TaskAttemptContext.class);
+      Mockito.when(taskContext.getConfiguration()).thenReturn(conf);
+
+      ZendeskInputFormat inputFormat = new ZendeskInputFormat();
+      List<InputSplit> splits = inputFormat.getSplits(jobContext);
+      // 31 pages, at least ten pages a split
+      Assert.assertEquals(3, splits.size());
+
+      long requests = simulator.getRequestCount();
+      List<Object> ids = new ArrayList<>();
+      for (InputSplit split : splits) {
+        try (RecordReader recordReader = inputFormat.createRecordReader(split, taskContext)) {
+          recordReader.initialize(split, taskContext);
+          while (recordReader.nextKeyValue()) {
+            ids.add(((StructuredRecord) recordReader.getCurrentValue()).get("id"));
+          }
+        }
+      }
+
+      Assert.assertEquals(3050, ids.size());
+      Assert.assertEquals(3050, new HashSet<>(ids).size());
+      // every page is requested once
+      Assert.assertEquals(31, simulator.getRequestCount() - requests);
+    }
+  }
+
+  @Test
+  public void testPackSmallObjects() throws Exception {
+    try (ZendeskApiSimulator simulator = new ZendeskApiSimulator()) {
+      simulator.setObjectCount(150);
+      ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+        "reference",
+        "email@test.com",
+        "apiToken",
+        "packed-a,packed-b",
+        "Groups,Tags,Ticket Fields",
+        "",
+        "2019-01-01T00:00:00Z",
+        null,
+        null,
+        5,
+        10,
+        10,
+        simulator.getBaseUrl(),
+        null);
+      JsonObject configJson = GSON.toJsonTree(config).getAsJsonObject();
+      configJson.addProperty(ZendeskBatchSourceConfig.PROPERTY_PACK_SMALL_OBJECTS, true);
+      config = GSON.fromJson(configJson, ZendeskBatchSourceConfig.class);
+      List<String> objects = config.getObjects();
+      Map<String, String> schemas = new HashMap<>();
+      for (String object : objects) {
+        schemas.put(object, ObjectType.fromString(object).getObjectSchema().toString());
+      }
+      Configuration conf = new Configuration(false);
+      new ZendeskInputFormatProvider(config, objects, schemas, ZendeskBatchMultiSource.NAME)
+        .getInputFormatConfiguration().forEach(conf::set);
+      JobContext jobContext = Mockito.mock(JobContext.class);
+      Mockito.when(jobContext.getConfiguration()).thenReturn(conf);
+      TaskAttemptContext taskContext = Mockito.mock(TaskAttemptContext.class);
+      Mockito.when(taskContext.getConfiguration()).thenReturn(conf);
+
+      ZendeskInputFormat inputFormat = new ZendeskInputFormat();
+      List<InputSplit> splits = inputFormat.getSplits(jobContext);
+      // six lists of two pages, packed by ten pages at most
+      Assert.assertEquals(2, splits.size());
+      Assert.assertEquals(5, ((ZendeskSplit) splits.get(0)).getParts().size());
+
+      Map<String, Integer> counts = new HashMap<>();
+      for (InputSplit split : splits) {
+        try (RecordReader recordReader = inputFormat.createRecordReader(split, taskContext)) {
+          recordReader.initialize(split, taskContext);
+          Assert.assertEquals(0, recordReader.getProgress(), 0);
+          while (recordReader.nextKeyValue()) {
+            StructuredRecord record = (StructuredRecord) recordReader.getCurrentValue();
+            counts.merge(record.get(config.getTableNameField()), 1, Integer::sum);
+          }
+          Assert.assertEquals(1, recordReader.getProgress(), 0);
+        }
+      }
+
+      Assert.assertEquals(300, (int) counts.get("Groups"));
+      Assert.assertEquals(300, (int) counts.get("Tags"));
+      Assert.assertEquals(300, (int) counts.get("Ticket_Fields"));
+    }
+  }
 }
@@ -0,0 +1,209 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import io.cdap.plugin.zendesk.source.batch.http.SubdomainRateLimiter;
+import io.cdap.plugin.zendesk.source.batch.http.ZendeskApiSimulator;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test reading objects through {@link ZendeskInputFormat} and {@link ZendeskRecordReader} from a
+ * {@link ZendeskApiSimulator}, which reports the records read per second, the requests issued and the time the
+ * requests waited for the rate limit.
+ * <p>
+ * The volume is kept small for the unit tests, larger loads are run with system properties, for instance
+ * {@code mvn test -Dtest=ZendeskLoadTest -Dzendesk.load.objects=200000 -Dzendesk.load.latencyMillis=50}, and the
+ * http engines are compared with {@code -Dzendesk.load.httpEngine=Async}.
+ */
+public class ZendeskLoadTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ZendeskLoadTest.class);
+  private static final Gson GSON = new GsonBuilder().create();
+
+  private static final int OBJECT_COUNT = Integer.getInteger("zendesk.load.objects", 5000);
+  private static final int PAGE_SIZE = Integer.getInteger("zendesk.load.pageSize", 100);
+  private static final int LATENCY_MILLIS = Integer.getInteger("zendesk.load.latencyMillis", 0);
+  private static final int TASKS = Integer.getInteger("zendesk.load.tasks", 4);
+  private static final int MAX_SPLITS = Integer.getInteger("zendesk.load.maxSplits", 4);
+  private static final int PREFETCH_PAGES = Integer.getInteger("zendesk.load.prefetchPages", 0);
+  private static final String HTTP_ENGINE = System.getProperty("zendesk.load.httpEngine",
+                                                               ZendeskBatchSourceConfig.HTTP_ENGINE_BLOCKING);
+
+  private ZendeskApiSimulator simulator;
+
+  @Before
+  public void setUp() throws IOException {
+    simulator = new ZendeskApiSimulator();
+    simulator.setObjectCount(OBJECT_COUNT);
+    simulator.setPageSize(PAGE_SIZE);
+    simulator.setLatencyMillis(LATENCY_MILLIS);
+  }
+
+  @After
+  public void tearDown() {
+    simulator.close();
+  }
+
+  @Test
+  public void testLoad() throws Exception {
+    List<String> objects = Arrays.asList(ObjectType.TICKETS.getObjectName(), ObjectType.ORGANIZATIONS.getObjectName(),
+                                         ObjectType.GROUPS.getObjectName());
+    LoadResult result = run("load", objects);
+
+    Assert.assertEquals((long) OBJECT_COUNT * objects.size(), result.records);
+  }
+
+  @Test
+  public void testLoadRateLimited() throws Exception {
+    simulator.setRateLimitedShare(Double.parseDouble(System.getProperty("zendesk.load.rateLimitedShare", "0.1")));
+    simulator.setRetryAfterSeconds(1);
+    List<String> objects = Arrays.asList(ObjectType.TICKETS.getObjectName(), ObjectType.GROUPS.getObjectName());
+    LoadResult result = run("load-rate-limited", objects);
+
+    Assert.assertEquals((long) OBJECT_COUNT * objects.size(), result.records);
+    Assert.assertTrue(simulator.getRateLimitedCount() > 0);
+    Assert.assertTrue(result.waitedNanos > 0);
+  }
+
+  /**
+   * Plans the splits of the objects, and reads them with the given number of tasks running in parallel.
+   */
+  private LoadResult run(String subdomain, List<String> objects) throws Exception {
+    ZendeskBatchSourceConfig config = createConfig(subdomain);
+    Map<String, String> schemas = new HashMap<>();
+    for (String object : objects) {
+      schemas.put(object, ObjectType.fromString(object).getObjectSchema().toString());
+    }
+    Configuration conf = new Configuration(false);
+    new ZendeskInputFormatProvider(config, objects, schemas, ZendeskBatchSource.NAME)
+      .getInputFormatConfiguration().forEach(conf::set);
+    JobContext jobContext = Mockito.mock(JobContext.class);
+    Mockito.when(jobContext.getConfiguration()).thenReturn(conf);
+    TaskAttemptContext taskContext = Mockito.mock(TaskAttemptContext.class);
+    Mockito.when(taskContext.getConfiguration()).thenReturn(conf);
+
+    long start = System.nanoTime();
+    ZendeskInputFormat inputFormat = new ZendeskInputFormat();
+    List<InputSplit> splits = inputFormat.getSplits(jobContext);
+    ExecutorService executor = Executors.newFixedThreadPool(TASKS);
+    long records = 0;
+    try {
+      List<Future<Long>> tasks = new ArrayList<>();
+      for (InputSplit split : splits) {
+        tasks.add(executor.submit(() -> read(inputFormat, split, taskContext)));
+      }
+      for (Future<Long> task : tasks) {
+        records += task.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    LoadResult result = new LoadResult(records, System.nanoTime() - start,
+                                       SubdomainRateLimiter.forSubdomain(config, subdomain).getWaitedNanos());
+    LOG.info("Read {} records of {} from {} splits in {} ms: {} records/s, {} requests ({} rate limited, " +
+               "{} server errors), {} ms waiting for the rate limit",
+             result.records, objects, splits.size(), TimeUnit.NANOSECONDS.toMillis(result.elapsedNanos),
+             String.format("%.0f", result.getRecordsPerSecond()), simulator.getRequestCount(),
+             simulator.getRateLimitedCount(), simulator.getServerErrorCount(),
+             TimeUnit.NANOSECONDS.toMillis(result.waitedNanos));
+    return result;
+  }
+
+  private static long read(ZendeskInputFormat inputFormat, InputSplit split, TaskAttemptContext taskContext)
+    throws IOException, InterruptedException {
+    long records = 0;
+    try (RecordReader recordReader = inputFormat.createRecordReader(split, taskContext)) {
+      recordReader.initialize(split, taskContext);
+      while (recordReader.nextKeyValue()) {
+        recordReader.getCurrentValue();
+        records++;
+      }
+    }
+    return records;
+  }
+
+  private ZendeskBatchSourceConfig createConfig(String subdomain) {
+    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+      "reference",
+      "email@test.com",
+      "apiToken",
+      subdomain,
+      null,
+      "",
+      "2019-01-01T00:00:00Z",
+      "2020-01-01T00:00:00Z",
+      null,
+      10,
+      10,
+      10,
+      simulator.getBaseUrl(),
+      null);
+    JsonObject configJson = GSON.toJsonTree(config).getAsJsonObject();
+    configJson.addProperty(ZendeskBatchSourceConfig.PROPERTY_MAX_SPLITS_PER_OBJECT, MAX_SPLITS);
+    configJson.addProperty(ZendeskBatchSourceConfig.PROPERTY_PREFETCH_PAGES, PREFETCH_PAGES);
+    configJson.addProperty(ZendeskBatchSourceConfig.PROPERTY_HTTP_ENGINE, HTTP_ENGINE);
+    return GSON.fromJson(configJson, ZendeskBatchSourceConfig.class);
+  }
+
+  /**
+   * Figures of a load test run.
+   */
+  private static class LoadResult {
+
+    private final long records;
+    private final long elapsedNanos;
+    private final long waitedNanos;
+
+    LoadResult(long records, long elapsedNanos, long waitedNanos) {
+      this.records = records;
+      this.elapsedNanos = elapsedNanos;
+      this.waitedNanos = waitedNanos;
+    }
+
+    double getRecordsPerSecond() {
+      return records * (double) TimeUnit.SECONDS.toNanos(1) / Math.max(1, elapsedNanos);
+    }
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ZendeskRecordReaderTest {
+
+  @Test
+  public void testSpoolDirectoryOfTimeRange() {
+    Assert.assertEquals("/checkpoint/subdomain/Ticket_Comments-100-200", ZendeskRecordReader.getSpoolDirectory(
+      "/checkpoint", new ZendeskSplit("subdomain", "Ticket Comments", 100, 200)));
+  }
+
+  @Test
+  public void testSpoolDirectoryOfPageRanges() {
+    String first = ZendeskRecordReader.getSpoolDirectory(
+      "/checkpoint", ZendeskSplit.forPages("subdomain", "Groups", 1, 11, 1000));
+    String second = ZendeskRecordReader.getSpoolDirectory(
+      "/checkpoint", ZendeskSplit.forPages("subdomain", "Groups", 11, 0, 1000));
+
+    Assert.assertNotEquals(first, second);
+    Assert.assertEquals("/checkpoint/subdomain/Groups-0-0-pages-1-11", first);
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import io.cdap.cdap.etl.api.StageMetrics;
+import io.cdap.cdap.etl.api.batch.BatchRuntimeContext;
+import io.cdap.cdap.etl.api.batch.BatchSourceContext;
+import io.cdap.plugin.zendesk.source.batch.metrics.ZendeskMetrics;
+import io.cdap.plugin.zendesk.source.batch.watermark.FileWatermarkStore;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+public class ZendeskSourceRunTest {
+
+  private static final Gson GSON = new GsonBuilder().create();
+
+  // 2019-01-02T00:00:00Z
+  private static final long LOGICAL_START_TIME = 1546387200L;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testFinishSavesWatermarksOnSuccess() throws IOException {
+    ZendeskBatchSourceConfig config = createConfig();
+    FileWatermarkStore store = new FileWatermarkStore(config.getWatermarkPath(), new Configuration());
+
+    ZendeskSourceRun failedRun = new ZendeskSourceRun(config);
+    Assert.assertEquals(Collections.emptyMap(),
+                        failedRun.prepare(createContext(), Collections.singletonList("Tickets")));
+    failedRun.finish(false);
+    Assert.assertNull(store.get("first", "Tickets"));
+
+    ZendeskSourceRun run = new ZendeskSourceRun(config);
+    run.prepare(createContext(), Collections.singletonList("Tickets"));
+    run.finish(true);
+    Assert.assertEquals(LOGICAL_START_TIME, store.get("first", "Tickets").longValue());
+  }
+
+  @Test
+  public void testFinishSavesReachedPositions() throws IOException {
+    ZendeskBatchSourceConfig config = createConfig();
+    FileWatermarkStore store = new FileWatermarkStore(config.getWatermarkPath(), new Configuration());
+    ZendeskSourceRun run = new ZendeskSourceRun(config);
+    run.prepare(createContext(), Collections.singletonList("Tickets"));
+    File positionsDir = new File(run.getPositionsDir());
+    Assert.assertEquals(config.getWatermarkPath(), positionsDir.getParentFile().getParent());
+    // the export stopped at a page ending before the start of the run
+    new FileWatermarkStore(run.getPositionsDir(), new Configuration()).put("first", "Tickets",
+                                                                          LOGICAL_START_TIME - 600);
+
+    run.finish(true);
+
+    Assert.assertEquals(LOGICAL_START_TIME - 600, store.get("first", "Tickets").longValue());
+    Assert.assertFalse(positionsDir.exists());
+  }
+
+  @Test
+  public void testFinishDeletesCheckpoint() throws IOException {
+    ZendeskBatchSourceConfig config = createConfig();
+    ZendeskSourceRun run = new ZendeskSourceRun(config);
+    run.prepare(createContext(), Collections.singletonList("Tickets"));
+    File checkpointDir = new File(run.getCheckpointDir());
+    Assert.assertEquals(config.getCheckpointPath(), checkpointDir.getParent());
+    Assert.assertTrue(new File(checkpointDir, "first").mkdirs());
+
+    run.finish(false);
+
+    Assert.assertFalse(checkpointDir.exists());
+  }
+
+  @Test
+  public void testPrepareWithoutPaths() {
+    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+      "reference", "email@test.com", "apiToken", "first", "Tickets", "", "2019-01-01T23:01:01Z", "", "", 20, 300,
+      300, "http://%s.localhosttestdomain/%s", "");
+    ZendeskSourceRun run = new ZendeskSourceRun(config);
+
+    Assert.assertEquals(Collections.emptyMap(), run.prepare(createContext(), Collections.singletonList("Tickets")));
+    Assert.assertNull(run.getCheckpointDir());
+    Assert.assertNull(run.getPositionsDir());
+    run.finish(true);
+  }
+
+  @Test
+  public void testDestroyPublishesMetrics() throws IOException {
+    ZendeskSourceRun run = new ZendeskSourceRun(createConfig());
+    StageMetrics metrics = Mockito.mock(StageMetrics.class);
+    BatchRuntimeContext context = Mockito.mock(BatchRuntimeContext.class);
+    Mockito.when(context.getMetrics()).thenReturn(metrics);
+    run.initialize(context);
+
+    ZendeskMetrics.forObject("reference", "run-metrics", ObjectType.TICKETS).recordRecord();
+    // published at most once a second while the records are transformed
+    run.publishMetricsPeriodically();
+    Mockito.verify(metrics, Mockito.never()).count("run-metrics.tickets." + ZendeskMetrics.RECORDS, 1);
+
+    run.destroy();
+    Mockito.verify(metrics).count("run-metrics.tickets." + ZendeskMetrics.RECORDS, 1);
+  }
+
+  private BatchSourceContext createContext() {
+    BatchSourceContext context = Mockito.mock(BatchSourceContext.class);
+    Mockito.when(context.getLogicalStartTime()).thenReturn(LOGICAL_START_TIME * 1000);
+    return context;
+  }
+
+  private ZendeskBatchSourceConfig createConfig() throws IOException {
+    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+      "reference", "email@test.com", "apiToken", "first", "Tickets", "", "2019-01-01T23:01:01Z", "", "", 20, 300,
+      300, "http://%s.localhosttestdomain/%s", "");
+    JsonObject configJson = GSON.toJsonTree(config).getAsJsonObject();
+    configJson.addProperty(ZendeskBatchSourceConfig.PROPERTY_WATERMARK_PATH,
+                           temporaryFolder.newFolder("watermarks").getPath());
+    configJson.addProperty(ZendeskBatchSourceConfig.PROPERTY_CHECKPOINT_PATH,
+                           temporaryFolder.newFolder("checkpoints").getPath());
+    return GSON.fromJson(configJson, ZendeskBatchSourceConfig.class);
+  }
+}
@@ -0,0 +1,386 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch;
+
+import com.google.common.collect.ImmutableMap;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+public class ZendeskSplitPlannerTest {
+
+  private static final long START_TIME = 1546383661L;
+  private static final long DAY = 86400L;
+
+  @Test
+  public void testGetSplitCount() {
+    // a full first page covering a day of a hundred days long export
+    Map<String, Object> sample = ImmutableMap.of("count", 1000, "end_time", START_TIME + DAY);
+    Assert.assertEquals(10, ZendeskSplitPlanner.getSplitCount(START_TIME, START_TIME + 100 * DAY, 20, sample));
+    Assert.assertEquals(4, ZendeskSplitPlanner.getSplitCount(START_TIME, START_TIME + 100 * DAY, 4, sample));
+    Assert.assertEquals(1, ZendeskSplitPlanner.getSplitCount(START_TIME, START_TIME + 5 * DAY, 20, sample));
+  }
+
+  @Test
+  public void testGetSplitCountPartialPage() {
+    Map<String, Object> sample = ImmutableMap.of("count", 999, "end_time", START_TIME + DAY);
+    Assert.assertEquals(1, ZendeskSplitPlanner.getSplitCount(START_TIME, START_TIME + 100 * DAY, 20, sample));
+  }
+
+  @Test
+  public void testGetSplitCountWithoutSample() {
+    Assert.assertEquals(1, ZendeskSplitPlanner.getSplitCount(START_TIME, START_TIME + 100 * DAY, 20, null));
+  }
+
+  @Test
+  public void testCreateSplits() {
+    List<ZendeskSplit> splits = ZendeskSplitPlanner.createSplits("subdomain", "Tickets", START_TIME,
+                                                                 START_TIME + 3 * DAY, 3);
+    Assert.assertEquals(3, splits.size());
+    Assert.assertEquals(START_TIME, splits.get(0).getStartTime());
+    Assert.assertEquals(START_TIME + DAY, splits.get(0).getEndTime());
+    Assert.assertEquals(START_TIME + DAY, splits.get(1).getStartTime());
+    Assert.assertEquals(START_TIME + 2 * DAY, splits.get(1).getEndTime());
+    Assert.assertEquals(START_TIME + 2 * DAY, splits.get(2).getStartTime());
+    Assert.assertEquals(0, splits.get(2).getEndTime());
+    Assert.assertEquals("subdomain", splits.get(2).getSubdomain());
+    Assert.assertEquals("Tickets", splits.get(2).getObject());
+  }
+
+  @Test
+  public void testPlan() {
+    ZendeskBatchSourceConfig config = createConfig("2019-01-01T23:01:01Z", "2019-04-11T23:01:01Z");
+    config.maxSplitsPerObject = 5;
+    ZendeskSplitPlanner splitPlanner = new ZendeskSplitPlanner(config) {
+      @Override
+      Map<String, Object> sampleFirstPage(String subdomain, ObjectType objectType, Long startTime) {
+        return ImmutableMap.of("count", 1000, "end_time", START_TIME + DAY);
+      }
+    };
+
+    List<ZendeskSplit> splits = splitPlanner.plan("subdomain", "Tickets");
+    Assert.assertEquals(5, splits.size());
+    Assert.assertEquals(START_TIME, splits.get(0).getStartTime());
+    Assert.assertEquals(START_TIME + 20 * DAY, splits.get(0).getEndTime());
+    Assert.assertEquals(20000, splits.get(0).getLength());
+    Assert.assertEquals(0, splits.get(4).getEndTime());
+    Assert.assertEquals(20000, splits.get(4).getLength());
+
+    splits = splitPlanner.plan("subdomain", "Groups");
+    Assert.assertEquals(1, splits.size());
+    Assert.assertEquals(1000, splits.get(0).getLength());
+  }
+
+  @Test
+  public void testPlanSingleSplitByDefault() {
+    ZendeskSplitPlanner splitPlanner = new ZendeskSplitPlanner(
+      createConfig("2019-01-01T23:01:01Z", "2019-04-11T23:01:01Z")) {
+      @Override
+      Map<String, Object> sampleFirstPage(String subdomain, ObjectType objectType, Long startTime) {
+        throw new AssertionError("The first page must not be sampled");
+      }
+    };
+
+    List<ZendeskSplit> splits = splitPlanner.plan("subdomain", "Tickets");
+    Assert.assertEquals(1, splits.size());
+    Assert.assertEquals(START_TIME, splits.get(0).getStartTime());
+    Assert.assertEquals(0, splits.get(0).getEndTime());
+    Assert.assertEquals(0, splits.get(0).getLength());
+  }
+
+  @Test
+  public void testPlanSingleReadSampleFailed() {
+    ZendeskBatchSourceConfig config = createConfig("2019-01-01T23:01:01Z", "2019-04-11T23:01:01Z");
+    config.maxSplitsPerObject = 4;
+    ZendeskSplitPlanner splitPlanner = new ZendeskSplitPlanner(config) {
+      @Override
+      Map<String, Object> sampleFirstPage(String subdomain, ObjectType objectType, Long startTime) {
+        throw new IllegalStateException("Sample failed");
+      }
+    };
+
+    // the object is read by a single split of unknown size
+    List<ZendeskSplit> splits = splitPlanner.plan(Collections.singletonList("subdomain"),
+                                                  Collections.singletonList("Tickets"));
+    Assert.assertEquals(1, splits.size());
+    Assert.assertEquals(START_TIME, splits.get(0).getStartTime());
+    Assert.assertEquals(0, splits.get(0).getEndTime());
+    Assert.assertEquals(0, splits.get(0).getLength());
+  }
+
+  @Test
+  public void testSampleFirstPageInvalidUrl() {
+    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+      "reference", "email@test.com", "apiToken", "subdomain", "Tickets", "", "2019-01-01T23:01:01Z", null, null, 20,
+      300, 300, "http://%s.localhost testdomain/%s", "");
+    config.maxSplitsPerObject = 4;
+
+    Assert.assertNull(new ZendeskSplitPlanner(config).sampleFirstPage("subdomain", ObjectType.TICKETS, START_TIME));
+  }
+
+  @Test
+  public void testPlanSampledForPacking() {
+    ZendeskBatchSourceConfig config = createConfig("2019-01-01T23:01:01Z", "2019-04-11T23:01:01Z");
+    config.packSmallObjects = true;
+    ZendeskSplitPlanner splitPlanner = new ZendeskSplitPlanner(config) {
+      @Override
+      Map<String, Object> sampleFirstPage(String subdomain, ObjectType objectType, Long startTime) {
+        return ImmutableMap.of("count", 1000, "end_time", START_TIME + DAY);
+      }
+    };
+
+    List<ZendeskSplit> splits = splitPlanner.plan("subdomain", "Tickets");
+    Assert.assertEquals(1, splits.size());
+    Assert.assertEquals(100000, splits.get(0).getLength());
+  }
+
+  @Test
+  public void testPlanSampledInParallel() {
+    ZendeskBatchSourceConfig config = createConfig("2019-01-01T23:01:01Z", "2019-04-11T23:01:01Z");
+    config.maxSplitsPerObject = 4;
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+    ZendeskSplitPlanner splitPlanner = new ZendeskSplitPlanner(config) {
+      @Override
+      Map<String, Object> sampleFirstPage(String subdomain, ObjectType objectType, Long startTime) {
+        threads.add(Thread.currentThread().getName());
+        if (subdomain.equals("failing")) {
+          throw new IllegalStateException("Sample failed");
+        }
+        return ImmutableMap.of("count", 1000, "end_time", START_TIME + 10 * DAY);
+      }
+    };
+
+    List<ZendeskSplit> splits = splitPlanner.plan(Arrays.asList("first", "failing", "second"),
+                                                  Arrays.asList("Tickets", "Groups"));
+
+    Assert.assertFalse(threads.contains(Thread.currentThread().getName()));
+    Assert.assertEquals(Arrays.asList("first", "first", "failing", "failing", "second", "second"),
+                        splits.stream().map(ZendeskSplit::getSubdomain).collect(Collectors.toList()));
+    // the objects whose sample failed are read by a single split of unknown size
+    ZendeskSplit failingTickets = splits.get(2);
+    Assert.assertEquals("Tickets", failingTickets.getObject());
+    Assert.assertEquals(START_TIME, failingTickets.getStartTime());
+    Assert.assertEquals(0, failingTickets.getEndTime());
+    Assert.assertEquals(0, failingTickets.getLength());
+    Assert.assertEquals(10000, splits.get(0).getLength());
+  }
+
+  @Test
+  public void testPlanComments() {
+    ZendeskSplitPlanner splitPlanner = new ZendeskSplitPlanner(createConfig("2019-01-01T23:01:01Z", null)) {
+      @Override
+      Map<String, Object> sampleFirstPage(String subdomain, ObjectType objectType, Long startTime) {
+        throw new AssertionError("The first page must not be sampled");
+      }
+    };
+
+    List<ZendeskSplit> splits = splitPlanner.plan("subdomain", "Article Comments");
+    Assert.assertEquals(1, splits.size());
+    Assert.assertEquals(0, splits.get(0).getStartTime());
+    Assert.assertEquals(0, splits.get(0).getLength());
+  }
+
+  @Test
+  public void testCreatePageSplits() {
+    List<ZendeskSplit> splits = ZendeskSplitPlanner.createPageSplits("subdomain", "Groups", 2950, 4);
+
+    // 30 pages, at least ten pages a split
+    Assert.assertEquals(3, splits.size());
+    Assert.assertEquals(1, splits.get(0).getStartPage());
+    Assert.assertEquals(11, splits.get(0).getEndPage());
+    Assert.assertEquals(1000, splits.get(0).getLength());
+    Assert.assertEquals(11, splits.get(1).getStartPage());
+    Assert.assertEquals(21, splits.get(1).getEndPage());
+    Assert.assertEquals(21, splits.get(2).getStartPage());
+    // the last split reads up to the last page
+    Assert.assertEquals(0, splits.get(2).getEndPage());
+    Assert.assertEquals(950, splits.get(2).getLength());
+  }
+
+  @Test
+  public void testCreatePageSplitsSmallList() {
+    List<ZendeskSplit> splits = ZendeskSplitPlanner.createPageSplits("subdomain", "Groups", 1500, 4);
+
+    Assert.assertEquals(1, splits.size());
+    Assert.assertEquals(0, splits.get(0).getStartPage());
+    Assert.assertEquals(1500, splits.get(0).getLength());
+  }
+
+  @Test
+  public void testPlanList() {
+    ZendeskBatchSourceConfig config = createConfig("2019-01-01T23:01:01Z", null);
+    config.maxSplitsPerObject = 2;
+    ZendeskSplitPlanner splitPlanner = new ZendeskSplitPlanner(config) {
+      @Override
+      Map<String, Object> sampleFirstPage(String subdomain, ObjectType objectType, Long startTime) {
+        return ImmutableMap.of("count", 5000);
+      }
+    };
+
+    List<ZendeskSplit> splits = splitPlanner.plan("subdomain", "Ticket Metrics");
+    Assert.assertEquals(2, splits.size());
+    Assert.assertEquals(1, splits.get(0).getStartPage());
+    Assert.assertEquals(26, splits.get(0).getEndPage());
+    Assert.assertEquals(26, splits.get(1).getStartPage());
+    Assert.assertEquals(0, splits.get(1).getEndPage());
+  }
+
+  @Test
+  public void testGetRecordsPerSecond() {
+    Assert.assertEquals(1000.0 / DAY, ZendeskSplitPlanner.getRecordsPerSecond(
+      START_TIME, START_TIME + 100 * DAY, ImmutableMap.of("count", 1000, "end_time", START_TIME + DAY)), 1e-9);
+    Assert.assertEquals(5.0 / DAY, ZendeskSplitPlanner.getRecordsPerSecond(
+      START_TIME, START_TIME + 100 * DAY, ImmutableMap.of("count", 500, "end_time", START_TIME + DAY)), 1e-9);
+    Assert.assertEquals(0, ZendeskSplitPlanner.getRecordsPerSecond(START_TIME, START_TIME + DAY, null), 0);
+  }
+
+  @Test
+  public void testPlanFromWatermark() {
+    ZendeskBatchSourceConfig config = createConfig("2019-01-01T23:01:01Z", "2019-04-11T23:01:01Z");
+    long watermark = START_TIME + 60 * DAY;
+    ZendeskSplitPlanner splitPlanner = new ZendeskSplitPlanner(
+      config, ImmutableMap.of("subdomain/Tickets", watermark)) {
+      @Override
+      Map<String, Object> sampleFirstPage(String subdomain, ObjectType objectType, Long startTime) {
+        return null;
+      }
+    };
+
+    List<ZendeskSplit> splits = splitPlanner.plan("subdomain", "Tickets");
+    Assert.assertEquals(1, splits.size());
+    Assert.assertEquals(watermark, splits.get(0).getStartTime());
+    Assert.assertEquals(0, splits.get(0).getEndTime());
+
+    config.maxSplitsPerObject = 5;
+    splitPlanner = new ZendeskSplitPlanner(config, ImmutableMap.of("subdomain/Tickets", watermark)) {
+      @Override
+      Map<String, Object> sampleFirstPage(String subdomain, ObjectType objectType, Long startTime) {
+        Assert.assertEquals(watermark, (long) startTime);
+        return ImmutableMap.of("count", 1000, "end_time", watermark + DAY);
+      }
+    };
+
+    splits = splitPlanner.plan("subdomain", "Tickets");
+    Assert.assertEquals(4, splits.size());
+    Assert.assertEquals(watermark, splits.get(0).getStartTime());
+    Assert.assertEquals(watermark + 10 * DAY, splits.get(0).getEndTime());
+  }
+
+  private static ZendeskBatchSourceConfig createConfig(String startDate, String endDate) {
+    return new ZendeskBatchSourceConfig(
+      "reference",
+      "email@test.com",
+      "apiToken",
+      "subdomain",
+      "Tickets",
+      "",
+      startDate,
+      endDate,
+      null,
+      20,
+      300,
+      300,
+      "http://%s.localhosttestdomain/%s",
+      "");
+  }
+
+  @Test
+  public void testGetRequestCount() {
+    Assert.assertEquals(3, ZendeskSplitPlanner.getRequestCount(new ZendeskSplit("subdomain", "Groups", 0, 0, 250)));
+    Assert.assertEquals(2, ZendeskSplitPlanner.getRequestCount(new ZendeskSplit("subdomain", "Tickets", 0, 0, 1500)));
+    Assert.assertEquals(0, ZendeskSplitPlanner.getRequestCount(new ZendeskSplit("subdomain", "Tickets")));
+    Assert.assertEquals(0, ZendeskSplitPlanner.getRequestCount(new ZendeskSplit("subdomain", "unknown", 0, 0, 10)));
+  }
+
+  @Test
+  public void testPackUpToLargestSplit() {
+    ZendeskSplit tickets = new ZendeskSplit("subdomain", "Tickets", START_TIME, 0, 50000);
+    ZendeskSplit comments = new ZendeskSplit("subdomain", "Article Comments");
+    List<ZendeskSplit> splits = ZendeskSplitPlanner.pack(Arrays.asList(
+      tickets,
+      new ZendeskSplit("subdomain", "Groups", 0, 0, 300),
+      comments,
+      new ZendeskSplit("subdomain", "Tags", 0, 0, 900),
+      new ZendeskSplit("other", "Groups", 0, 0, 50)));
+
+    Assert.assertEquals(3, splits.size());
+    Assert.assertSame(tickets, splits.get(0));
+    Assert.assertSame(comments, splits.get(1));
+    // the small splits take 13 requests, less than the 50 of the tickets
+    List<ZendeskSplit> parts = splits.get(2).getParts();
+    Assert.assertEquals(Arrays.asList("Tags", "Groups", "Groups"),
+                        parts.stream().map(ZendeskSplit::getObject).collect(Collectors.toList()));
+    Assert.assertEquals(1250, splits.get(2).getLength());
+  }
+
+  @Test
+  public void testPackSmallSplits() {
+    List<ZendeskSplit> splits = ZendeskSplitPlanner.pack(Arrays.asList(
+      new ZendeskSplit("subdomain", "Groups", 0, 0, 300),
+      new ZendeskSplit("subdomain", "Tags", 0, 0, 900),
+      new ZendeskSplit("subdomain", "Ticket Fields", 0, 0, 300),
+      new ZendeskSplit("other", "Groups", 0, 0, 50)));
+
+    // packed by ten requests at most
+    Assert.assertEquals(2, splits.size());
+    Assert.assertEquals(Arrays.asList("Tags", "Groups"), splits.get(0).getParts().stream()
+      .map(ZendeskSplit::getObject).collect(Collectors.toList()));
+    Assert.assertEquals(Arrays.asList("subdomain", "subdomain"), splits.get(1).getParts().stream()
+      .map(ZendeskSplit::getSubdomain).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testAllocateRequestBudget() {
+    ZendeskSplit tickets = new ZendeskSplit("subdomain", "Tickets", START_TIME, START_TIME + DAY, 50000);
+    ZendeskSplit lastTickets = new ZendeskSplit("subdomain", "Tickets", START_TIME + DAY, 0, 50000);
+    ZendeskSplit otherTickets = new ZendeskSplit("other", "Tickets", START_TIME, 0, 50000);
+    ZendeskSplit packed = ZendeskSplit.packed(Arrays.asList(
+      new ZendeskSplit("subdomain", "Groups", 0, 0, 300),
+      new ZendeskSplit("subdomain", "Tags", 0, 0, 300),
+      new ZendeskSplit("small", "Tags", 0, 0, 300)));
+
+    ZendeskSplitPlanner.allocateRequestBudget(Arrays.asList(tickets, lastTickets, otherTickets, packed), 700);
+
+    // the packed split takes a single share of each of its subdomains
+    Assert.assertEquals(233, tickets.getRequestsPerMinute());
+    Assert.assertEquals(233, lastTickets.getRequestsPerMinute());
+    Assert.assertEquals(233, packed.getParts().get(0).getRequestsPerMinute());
+    Assert.assertEquals(233, packed.getParts().get(1).getRequestsPerMinute());
+    Assert.assertEquals(700, packed.getParts().get(2).getRequestsPerMinute());
+    Assert.assertEquals(700, otherTickets.getRequestsPerMinute());
+  }
+
+  @Test
+  public void testAllocateSmallRequestBudget() {
+    List<ZendeskSplit> splits = ZendeskSplitPlanner.createSplits("subdomain", "Tickets", START_TIME,
+                                                                 START_TIME + 10 * DAY, 5);
+    ZendeskSplitPlanner.allocateRequestBudget(splits, 3);
+
+    for (ZendeskSplit split : splits) {
+      Assert.assertEquals(1, split.getRequestsPerMinute());
+    }
+  }
+}
@@ -19,10 +19,15 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.util.Arrays;
 
 public class ZendeskSplitTest {
 
@@ -59,6 +64,33 @@ public class ZendeskSplitTest {
     Assert.assertEquals("object", zendeskSplit.getObject());
   }
 
+  @Test
+  public void testWriteAndReadTimeRange() throws IOException {
+    ZendeskSplit zendeskSplit = new ZendeskSplit("domain", "object", 1577836800L, 1580515200L);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    zendeskSplit.write(new DataOutputStream(bytes));
+
+    ZendeskSplit readSplit = new ZendeskSplit();
+    readSplit.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    Assert.assertEquals("domain", readSplit.getSubdomain());
+    Assert.assertEquals("object", readSplit.getObject());
+    Assert.assertEquals(1577836800L, readSplit.getStartTime());
+    Assert.assertEquals(1580515200L, readSplit.getEndTime());
+  }
+
+  @Test
+  public void testWriteAndReadLength() throws IOException {
+    ZendeskSplit zendeskSplit = new ZendeskSplit("domain", "object", 1577836800L, 0, 25000L);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    zendeskSplit.write(new DataOutputStream(bytes));
+
+    ZendeskSplit readSplit = new ZendeskSplit();
+    readSplit.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    Assert.assertEquals(1577836800L, readSplit.getStartTime());
+    Assert.assertEquals(0, readSplit.getEndTime());
+    Assert.assertEquals(25000L, readSplit.getLength());
+  }
+
   @Test
   public void testGetLocations() throws IOException, InterruptedException {
     Assert.assertEquals(String[].class, new ZendeskSplit("domain", "object").getLocations().
@@ -89,6 +121,51 @@ public class ZendeskSplitTest {
     ZendeskSplit zendeskSplit = new ZendeskSplit("domain", "object");
     Assert.assertEquals(0, zendeskSplit.getLength());
   }
-}
 
+  @Test
+  public void testWriteAndReadPageRange() throws IOException {
+    ZendeskSplit zendeskSplit = ZendeskSplit.forPages("domain", "object", 11, 21, 1000);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    zendeskSplit.write(new DataOutputStream(bytes));
 
+    ZendeskSplit readSplit = new ZendeskSplit();
+    readSplit.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    Assert.assertEquals("object", readSplit.getObject());
+    Assert.assertEquals(11, readSplit.getStartPage());
+    Assert.assertEquals(21, readSplit.getEndPage());
+    Assert.assertEquals(1000, readSplit.getLength());
+    Assert.assertEquals(0, readSplit.getStartTime());
+  }
+
+  @Test
+  public void testWriteAndReadPacked() throws IOException {
+    ZendeskSplit zendeskSplit = ZendeskSplit.packed(Arrays.asList(
+      new ZendeskSplit("domain", "Groups", 0, 0, 300),
+      ZendeskSplit.forPages("other", "Tags", 1, 0, 50)));
+    Assert.assertEquals(350, zendeskSplit.getLength());
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    zendeskSplit.write(new DataOutputStream(bytes));
+
+    ZendeskSplit readSplit = new ZendeskSplit();
+    readSplit.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    Assert.assertEquals(350, readSplit.getLength());
+    Assert.assertEquals(2, readSplit.getParts().size());
+    Assert.assertEquals("Groups", readSplit.getParts().get(0).getObject());
+    Assert.assertEquals(300, readSplit.getParts().get(0).getLength());
+    Assert.assertEquals("other", readSplit.getParts().get(1).getSubdomain());
+    Assert.assertEquals(1, readSplit.getParts().get(1).getStartPage());
+    Assert.assertTrue(readSplit.getParts().get(1).getParts().isEmpty());
+  }
+
+  @Test
+  public void testWriteAndReadRequestsPerMinute() throws IOException {
+    ZendeskSplit zendeskSplit = new ZendeskSplit("domain", "object");
+    zendeskSplit.setRequestsPerMinute(175);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    zendeskSplit.write(new DataOutputStream(bytes));
+
+    ZendeskSplit readSplit = new ZendeskSplit();
+    readSplit.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    Assert.assertEquals(175, readSplit.getRequestsPerMinute());
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.zendesk.source.batch.ZendeskBatchSourceConfig;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class CommentsPagedIteratorTest {
+
+  private static final Gson GSON = new GsonBuilder().create();
+
+  @Test
+  public void testCloseClosesEntityIterator() throws IOException {
+    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+      "reference",
+      "email@test.com",
+      "apiToken",
+      "subdomain",
+      "Article Comments",
+      "",
+      "",
+      "",
+      "",
+      20,
+      300,
+      300,
+      "http://%s.localhosttestdomain/%s",
+      "");
+    PagedIterator entityIterator = Mockito.mock(PagedIterator.class);
+    Mockito.when(entityIterator.hasNext()).thenReturn(false);
+
+    CommentsPagedIterator commentsPagedIterator = new CommentsPagedIterator(
+      entityIterator, config, ObjectType.ARTICLE_COMMENTS, "subdomain", ObjectType.ARTICLE_COMMENTS.getObjectSchema());
+    Assert.assertFalse(commentsPagedIterator.hasNext());
+    commentsPagedIterator.close();
+
+    Mockito.verify(entityIterator).close();
+  }
+
+  @Test
+  public void testHasNextConcurrently() throws IOException {
+    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+      "reference",
+      "email@test.com",
+      "apiToken",
+      "subdomain",
+      "Article Comments",
+      "",
+      "",
+      "",
+      "",
+      20,
+      300,
+      300,
+      "http://%s.localhosttestdomain/%s",
+      "");
+    JsonObject configJson = GSON.toJsonTree(config).getAsJsonObject();
+    configJson.addProperty(ZendeskBatchSourceConfig.PROPERTY_COMMENTS_CONCURRENCY, 3);
+    config = GSON.fromJson(configJson, ZendeskBatchSourceConfig.class);
+    PagedIterator entityIterator = Mockito.mock(PagedIterator.class);
+    Mockito.when(entityIterator.hasNext()).thenReturn(true, true, true, true, true, false);
+    Mockito.when(entityIterator.next()).thenReturn("{\"id\":1}", "{\"id\":2}", "{\"id\":3}", "{\"id\":4}",
+                                                   "{\"id\":5}");
+    Schema schema = Schema.recordOf("comment", Schema.Field.of("id", Schema.of(Schema.Type.LONG)));
+
+    List<Long> ids = new ArrayList<>();
+    try (CommentsPagedIterator commentsPagedIterator = new CommentsPagedIterator(
+      entityIterator, config, ObjectType.ARTICLE_COMMENTS, "subdomain", schema) {
+      @Override
+      List<StructuredRecord> readComments(Long entityId) {
+        // entities with an even id have no comments, the others have two
+        if (entityId % 2 == 0) {
+          return Collections.emptyList();
+        }
+        return Arrays.asList(StructuredRecord.builder(schema).set("id", entityId * 10).build(),
+                             StructuredRecord.builder(schema).set("id", entityId * 10 + 1).build());
+      }
+    }) {
+      commentsPagedIterator.forEachRemaining(record -> ids.add(record.get("id")));
+    }
+
+    Assert.assertEquals(Arrays.asList(10L, 11L, 30L, 31L, 50L, 51L), ids);
+    Mockito.verify(entityIterator).close();
+  }
+}
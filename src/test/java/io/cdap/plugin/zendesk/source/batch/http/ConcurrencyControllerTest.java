@@ -0,0 +1,154 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import io.cdap.plugin.zendesk.source.batch.ZendeskBatchSourceConfig;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ConcurrencyControllerTest {
+
+  private static final Gson GSON = new GsonBuilder().create();
+  private static final long LATENCY = TimeUnit.MILLISECONDS.toNanos(100);
+
+  @Test
+  public void testAdditiveIncrease() throws InterruptedException {
+    ConcurrencyController controller = new ConcurrencyController(4, new AtomicLong()::get);
+    Assert.assertEquals(1, controller.getLimit());
+
+    // one more request for each window of healthy responses
+    completeRequests(controller, 1);
+    Assert.assertEquals(2, controller.getLimit());
+    completeRequests(controller, 2);
+    Assert.assertEquals(3, controller.getLimit());
+    completeRequests(controller, 3);
+    Assert.assertEquals(4, controller.getLimit());
+
+    // up to the max connections
+    completeRequests(controller, 100);
+    Assert.assertEquals(4, controller.getLimit());
+  }
+
+  @Test
+  public void testMultiplicativeDecrease() throws InterruptedException {
+    AtomicLong clock = new AtomicLong();
+    ConcurrencyController controller = new ConcurrencyController(16, clock::get);
+    completeRequests(controller, 200);
+    Assert.assertEquals(16, controller.getLimit());
+
+    clock.addAndGet(LATENCY);
+    controller.acquire();
+    controller.release(LATENCY, true);
+    Assert.assertEquals(8, controller.getLimit());
+
+    // the responses of the requests in flight when the window was halved do not halve it again
+    controller.acquire();
+    controller.release(LATENCY, true);
+    Assert.assertEquals(8, controller.getLimit());
+
+    clock.addAndGet(LATENCY);
+    controller.acquire();
+    controller.release(LATENCY, true);
+    Assert.assertEquals(4, controller.getLimit());
+  }
+
+  @Test
+  public void testDecreaseOnLatencySpike() throws InterruptedException {
+    AtomicLong clock = new AtomicLong();
+    ConcurrencyController controller = new ConcurrencyController(8, clock::get);
+    completeRequests(controller, 100);
+    Assert.assertEquals(8, controller.getLimit());
+
+    clock.addAndGet(2 * LATENCY);
+    controller.acquire();
+    controller.release(2 * LATENCY, false);
+    Assert.assertEquals(8, controller.getLimit());
+
+    controller.acquire();
+    controller.release(4 * LATENCY, false);
+    Assert.assertEquals(4, controller.getLimit());
+  }
+
+  @Test
+  public void testAcquireWaitsForRoom() throws InterruptedException {
+    ConcurrencyController controller = new ConcurrencyController(4, new AtomicLong()::get);
+    controller.acquire();
+
+    CountDownLatch acquired = new CountDownLatch(1);
+    Thread thread = new Thread(() -> {
+      try {
+        controller.acquire();
+        acquired.countDown();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    thread.start();
+    Assert.assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+
+    controller.release(LATENCY, false);
+    Assert.assertTrue(acquired.await(5, TimeUnit.SECONDS));
+    thread.join();
+  }
+
+  private static void completeRequests(ConcurrencyController controller, int count) throws InterruptedException {
+    for (int i = 0; i < count; i++) {
+      controller.acquire();
+      controller.release(LATENCY, false);
+    }
+  }
+
+  @Test
+  public void testForSubdomainKeepsMaxConnectionsOfConfig() {
+    ConcurrencyController controller = ConcurrencyController.forSubdomain(createConfig(4), "controllers");
+    Assert.assertSame(controller, ConcurrencyController.forSubdomain(createConfig(4), "controllers"));
+    Assert.assertEquals(4, controller.getMaxLimit());
+
+    // a later run with more connections is not capped by the first one
+    ConcurrencyController widerController = ConcurrencyController.forSubdomain(createConfig(16), "controllers");
+    Assert.assertNotSame(controller, widerController);
+    Assert.assertEquals(16, widerController.getMaxLimit());
+  }
+
+  private ZendeskBatchSourceConfig createConfig(int maxConnectionsPerRoute) {
+    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+      "reference",
+      "email@test.com",
+      "apiToken",
+      "controllers",
+      null,
+      "",
+      "2019-01-01T00:00:00Z",
+      null,
+      null,
+      5,
+      10,
+      10,
+      "https://%s.zendesk.com/api/v2/%s",
+      null);
+    JsonObject configJson = GSON.toJsonTree(config).getAsJsonObject();
+    configJson.addProperty(ZendeskBatchSourceConfig.PROPERTY_MAX_CONNECTIONS_PER_ROUTE, maxConnectionsPerRoute);
+    return GSON.fromJson(configJson, ZendeskBatchSourceConfig.class);
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import io.cdap.plugin.zendesk.source.batch.ZendeskBatchSourceConfig;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ConnectionValidatorTest {
+
+  private static final Gson GSON = new GsonBuilder().create();
+
+  private ZendeskApiSimulator simulator;
+
+  @Before
+  public void setUp() throws IOException {
+    simulator = new ZendeskApiSimulator();
+    ConnectionValidator.clearCache();
+  }
+
+  @After
+  public void tearDown() {
+    simulator.close();
+  }
+
+  @Test
+  public void testValidationCached() {
+    ZendeskBatchSourceConfig config = createConfig("first,second,third", 30, 600);
+
+    Assert.assertEquals(Collections.emptySet(), new ConnectionValidator(config).findFailingSubdomains());
+    Assert.assertEquals(3, simulator.getRequestCount());
+
+    // validated again when the run starts
+    Assert.assertEquals(Collections.emptySet(), new ConnectionValidator(config).findFailingSubdomains());
+    Assert.assertEquals(3, simulator.getRequestCount());
+  }
+
+  @Test
+  public void testValidationCacheExpires() {
+    ZendeskBatchSourceConfig config = createConfig("expiring", 30, 600);
+    AtomicLong clock = new AtomicLong();
+
+    new ConnectionValidator(config, clock::get).findFailingSubdomains();
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(599));
+    new ConnectionValidator(config, clock::get).findFailingSubdomains();
+    Assert.assertEquals(1, simulator.getRequestCount());
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+    new ConnectionValidator(config, clock::get).findFailingSubdomains();
+    Assert.assertEquals(2, simulator.getRequestCount());
+  }
+
+  @Test
+  public void testValidationNotCached() {
+    ZendeskBatchSourceConfig config = createConfig("uncached", 30, 0);
+
+    new ConnectionValidator(config).findFailingSubdomains();
+    new ConnectionValidator(config).findFailingSubdomains();
+
+    Assert.assertEquals(2, simulator.getRequestCount());
+  }
+
+  @Test
+  public void testFailureNotCached() {
+    simulator.setServerErrorShare(1);
+    ZendeskBatchSourceConfig config = createConfig("failing", 30, 600);
+
+    Assert.assertEquals(ImmutableSet.of("failing"), new ConnectionValidator(config).findFailingSubdomains());
+    Assert.assertEquals(ImmutableSet.of("failing"), new ConnectionValidator(config).findFailingSubdomains());
+    Assert.assertEquals(2, simulator.getRequestCount());
+  }
+
+  @Test
+  public void testValidationTimeout() {
+    simulator.setLatencyMillis(5000);
+    ZendeskBatchSourceConfig config = createConfig("slow,slower", 1, 600);
+
+    long start = System.nanoTime();
+    Assert.assertEquals(ImmutableSet.of("slow", "slower"), new ConnectionValidator(config).findFailingSubdomains());
+
+    // the subdomains are probed in parallel, and given up on after the timeout
+    Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(4));
+  }
+
+  private ZendeskBatchSourceConfig createConfig(String subdomains, int validationTimeout, int validationCacheTtl) {
+    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+      "reference",
+      "email@test.com",
+      "apiToken",
+      subdomains,
+      null,
+      "",
+      "2019-01-01T00:00:00Z",
+      null,
+      null,
+      5,
+      10,
+      10,
+      simulator.getBaseUrl(),
+      null);
+    JsonObject configJson = GSON.toJsonTree(config).getAsJsonObject();
+    configJson.addProperty(ZendeskBatchSourceConfig.PROPERTY_VALIDATION_TIMEOUT, validationTimeout);
+    configJson.addProperty(ZendeskBatchSourceConfig.PROPERTY_VALIDATION_CACHE_TTL, validationCacheTtl);
+    // the server errors are not retried
+    configJson.addProperty(ZendeskBatchSourceConfig.PROPERTY_MAX_RETRY_TIME, 0);
+    return GSON.fromJson(configJson, ZendeskBatchSourceConfig.class);
+  }
+}
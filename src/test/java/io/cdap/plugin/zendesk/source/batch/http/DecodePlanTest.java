@@ -0,0 +1,111 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import com.google.gson.stream.JsonToken;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+public class DecodePlanTest {
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "test",
+    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("testKey", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("nestedKey", Schema.nullableOf(Schema.recordOf(
+      "nested",
+      Schema.Field.of("innerKey", Schema.nullableOf(Schema.of(Schema.Type.BOOLEAN)))))),
+    Schema.Field.of("items", Schema.nullableOf(Schema.arrayOf(Schema.recordOf(
+      "item",
+      Schema.Field.of("itemKey", Schema.nullableOf(Schema.of(Schema.Type.STRING))))))),
+    Schema.Field.of("choice", Schema.unionOf(Schema.of(Schema.Type.LONG), Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("tablename", Schema.of(Schema.Type.STRING))
+  );
+
+  @Test
+  public void testPlanIsShared() throws IOException {
+    DecodePlan plan = DecodePlan.of(ObjectType.GROUPS, SCHEMA, "tablename");
+
+    Assert.assertSame(plan, DecodePlan.of(ObjectType.GROUPS, Schema.parseJson(SCHEMA.toString()), "tablename"));
+    Assert.assertNotSame(plan, DecodePlan.of(ObjectType.USERS, SCHEMA, "tablename"));
+    Assert.assertEquals("tablename", plan.getTableNameField());
+    Assert.assertEquals("Groups", plan.getTableName());
+    Assert.assertNull(DecodePlan.of(ObjectType.GROUPS, SCHEMA, "missing").getTableNameField());
+  }
+
+  @Test
+  public void testPlansBounded() {
+    for (int i = 0; i < 2 * DecodePlan.MAX_CACHED_PLANS; i++) {
+      Schema schema = Schema.recordOf("record" + i, Schema.Field.of("id", Schema.of(Schema.Type.LONG)));
+      DecodePlan.of(ObjectType.GROUPS, schema, "tablename");
+      DecodePlan.renamePlan(schema);
+    }
+
+    Assert.assertTrue(DecodePlan.getCachedPlanCount() <= 2 * DecodePlan.MAX_CACHED_PLANS);
+  }
+
+  @Test
+  public void testFieldResolution() {
+    DecodePlan.RecordPlan recordPlan = DecodePlan.of(ObjectType.TICKETS, SCHEMA, "tablename").getRecordPlan();
+
+    Assert.assertEquals("testKey", recordPlan.getField("test_key").getName());
+    Assert.assertEquals("testKey", recordPlan.getField("testKey").getName());
+    Assert.assertNull(recordPlan.getField("unknown"));
+
+    DecodePlan.ValuePlan nested = recordPlan.getField("nested_key").getValue();
+    Assert.assertEquals(Schema.Type.RECORD, nested.getType());
+    Assert.assertEquals("innerKey", nested.getRecord().getField("inner_key").getName());
+
+    // records nested in arrays are matched verbatim
+    DecodePlan.ValuePlan items = recordPlan.getField("items").getValue();
+    Assert.assertEquals(Schema.Type.ARRAY, items.getType());
+    Assert.assertNull(items.getElement().getRecord().getField("item_key"));
+    Assert.assertEquals("itemKey", items.getElement().getRecord().getField("itemKey").getName());
+
+    DecodePlan.ValuePlan choice = recordPlan.getField("choice").getValue();
+    Assert.assertEquals(Schema.Type.LONG, choice.getUnionPlan(JsonToken.NUMBER).getType());
+    Assert.assertEquals(Schema.Type.STRING, choice.getUnionPlan(JsonToken.STRING).getType());
+    Assert.assertNull(choice.getUnionPlan(JsonToken.BEGIN_ARRAY));
+
+    Assert.assertTrue(DecodePlan.of(ObjectType.TICKETS, SCHEMA, "tablename").getCapturedKeys()
+                        .contains("generated_timestamp"));
+  }
+
+  @Test
+  public void testRenameKeys() {
+    Map<Object, Object> nested = new HashMap<>();
+    nested.put("inner_key", true);
+    Map<Object, Object> map = new HashMap<>();
+    map.put("id", 1L);
+    map.put("test_key", "value");
+    map.put("nested_key", nested);
+
+    DecodePlan.renamePlan(SCHEMA).renameKeys(map);
+
+    Assert.assertEquals("value", map.get("testKey"));
+    Assert.assertFalse(map.containsKey("test_key"));
+    Assert.assertEquals(true, ((Map) map.get("nestedKey")).get("innerKey"));
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import io.cdap.plugin.zendesk.source.batch.ZendeskBatchSourceConfig;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class HttpClientRegistryTest {
+
+  // read timeouts not used by other tests, so that the clients are not shared with them
+  private static final int READ_TIMEOUT = 301;
+  private static final int OTHER_READ_TIMEOUT = 302;
+
+  @Test
+  public void testAcquireSharesClient() throws IOException {
+    int size = HttpClientRegistry.size();
+    SharedHttpClient first = HttpClientRegistry.acquire(createConfig("email1@test.com", READ_TIMEOUT));
+    SharedHttpClient second = HttpClientRegistry.acquire(createConfig("email2@test.com", READ_TIMEOUT));
+    Assert.assertSame(first.getHttpClient(), second.getHttpClient());
+    Assert.assertEquals(size + 1, HttpClientRegistry.size());
+
+    first.close();
+    first.close();
+    Assert.assertEquals(size + 1, HttpClientRegistry.size());
+    second.close();
+    Assert.assertEquals(size, HttpClientRegistry.size());
+  }
+
+  @Test
+  public void testAcquireWithOtherSettings() throws IOException {
+    int size = HttpClientRegistry.size();
+    try (SharedHttpClient first = HttpClientRegistry.acquire(createConfig("email@test.com", READ_TIMEOUT));
+         SharedHttpClient second = HttpClientRegistry.acquire(createConfig("email@test.com", OTHER_READ_TIMEOUT))) {
+      Assert.assertNotSame(first.getHttpClient(), second.getHttpClient());
+      Assert.assertEquals(size + 2, HttpClientRegistry.size());
+    }
+    Assert.assertEquals(size, HttpClientRegistry.size());
+  }
+
+  private static ZendeskBatchSourceConfig createConfig(String adminEmail, int readTimeout) {
+    return new ZendeskBatchSourceConfig(
+      "reference",
+      adminEmail,
+      "apiToken",
+      "subdomain",
+      "Groups",
+      "",
+      "",
+      "",
+      "",
+      20,
+      300,
+      readTimeout,
+      "http://%s.localhosttestdomain/%s",
+      "");
+  }
+}
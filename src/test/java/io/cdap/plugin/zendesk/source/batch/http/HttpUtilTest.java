@@ -16,6 +16,8 @@
 
 package io.cdap.plugin.zendesk.source.batch.http;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
 import io.cdap.plugin.zendesk.source.batch.ZendeskBatchSourceConfig;
 import io.cdap.plugin.zendesk.source.common.ObjectType;
 
@@ -367,4 +369,95 @@ public class HttpUtilTest {
     String actual = HttpUtil.createFirstPageUrl(config, objectType, subdomain, null);
     Assert.assertEquals(expected, actual);
   }
+
+  @Test
+  public void createFirstPageUrlWithStartTime() {
+    String zendeskBaseUrl = "https://%s.zendesk.com/api/v2/%s";
+    String subdomain = "test";
+    ObjectType objectType = ObjectType.TICKETS;
+
+    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+      "reference",
+      "email@test.com",
+      "apiToken",
+      subdomain,
+      objectType.getObjectName(),
+      "",
+      "2019-01-01T23:01:01Z",
+      "",
+      "",
+      20,
+      300,
+      300,
+      zendeskBaseUrl,
+      "");
+
+    Assert.assertEquals("https://test.zendesk.com/api/v2/incremental/tickets.json?start_time=1546383661",
+                        HttpUtil.createFirstPageUrl(config, objectType, subdomain, null));
+    Assert.assertEquals("https://test.zendesk.com/api/v2/incremental/tickets.json?start_time=1577836800",
+                        HttpUtil.createFirstPageUrl(config, objectType, subdomain, null, 1577836800L));
+  }
+
+  @Test
+  public void createFirstPageUrlCursor() {
+    String zendeskBaseUrl = "https://%s.zendesk.com/api/v2/%s";
+    String subdomain = "test";
+    ObjectType objectType = ObjectType.USERS;
+
+    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+      "reference",
+      "email@test.com",
+      "apiToken",
+      subdomain,
+      objectType.getObjectName(),
+      "",
+      "2019-01-01T23:01:01Z",
+      "",
+      "",
+      20,
+      300,
+      300,
+      zendeskBaseUrl,
+      "");
+    JsonObject configJson = new Gson().toJsonTree(config).getAsJsonObject();
+    configJson.addProperty(ZendeskBatchSourceConfig.PROPERTY_EXPORT_PAGINATION,
+                           ZendeskBatchSourceConfig.EXPORT_PAGINATION_CURSOR);
+    config = new Gson().fromJson(configJson, ZendeskBatchSourceConfig.class);
+
+    Assert.assertEquals("https://test.zendesk.com/api/v2/incremental/users/cursor.json?start_time=1546383661",
+                        HttpUtil.createFirstPageUrl(config, objectType, subdomain, null));
+    Assert.assertEquals("https://test.zendesk.com/api/v2/incremental/organizations.json?start_time=1546383661",
+                        HttpUtil.createFirstPageUrl(config, ObjectType.ORGANIZATIONS, subdomain, null));
+  }
+
+  @Test
+  public void createFirstPageUrlSideloads() {
+    String zendeskBaseUrl = "https://%s.zendesk.com/api/v2/%s";
+    String subdomain = "test";
+
+    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+      "reference",
+      "email@test.com",
+      "apiToken",
+      subdomain,
+      "Tickets,Users,Ticket Metrics,Tags",
+      "",
+      "2019-01-01T23:01:01Z",
+      "",
+      "",
+      20,
+      300,
+      300,
+      zendeskBaseUrl,
+      "");
+    JsonObject configJson = new Gson().toJsonTree(config).getAsJsonObject();
+    configJson.addProperty(ZendeskBatchSourceConfig.PROPERTY_SIDELOAD_WITH_TICKETS, true);
+    config = new Gson().fromJson(configJson, ZendeskBatchSourceConfig.class);
+
+    Assert.assertEquals("https://test.zendesk.com/api/v2/incremental/tickets.json?start_time=1546383661" +
+                          "&include=metric_sets,users",
+                        HttpUtil.createFirstPageUrl(config, ObjectType.TICKETS, subdomain, null));
+    Assert.assertEquals("https://test.zendesk.com/api/v2/incremental/users.json?start_time=1546383661",
+                        HttpUtil.createFirstPageUrl(config, ObjectType.USERS, subdomain, null));
+  }
 }
@@ -0,0 +1,336 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.format.StructuredRecordStringConverter;
+import io.cdap.plugin.zendesk.source.batch.ZendeskBatchSourceConfig;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PageDecoderTest {
+
+  private static final Gson GSON = new GsonBuilder().create();
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "test",
+    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("testKey", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("nestedKey", Schema.nullableOf(Schema.recordOf(
+      "nested",
+      Schema.Field.of("innerKey", Schema.nullableOf(Schema.of(Schema.Type.BOOLEAN)))))),
+    Schema.Field.of("items", Schema.nullableOf(Schema.arrayOf(Schema.nullableOf(Schema.recordOf(
+      "item",
+      Schema.Field.of("id", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+      Schema.Field.of("itemKey", Schema.nullableOf(Schema.of(Schema.Type.STRING)))))))),
+    Schema.Field.of("fields", Schema.nullableOf(Schema.mapOf(
+      Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.STRING)))),
+    Schema.Field.of("tablename", Schema.of(Schema.Type.STRING))
+  );
+
+  @Test
+  public void testDecode() throws IOException {
+    String response = "{\"groups\":[{\"id\":1,\"test_key\":\"val1\",\"unknown\":{\"a\":[1,2]}," +
+      "\"nested_key\":{\"inner_key\":true}," +
+      "\"items\":[{\"id\":2,\"item_key\":\"verbatim\"},{\"itemKey\":\"val2\"}]," +
+      "\"fields\":{\"a\":\"b\",\"c\":null}}]," +
+      "\"next_page\":\"page2\",\"count\":1,\"end_time\":1577836800}";
+
+    Page<StructuredRecord> page = new PageDecoder(ObjectType.GROUPS, SCHEMA, "tablename")
+      .decode(new StringReader(response));
+
+    Assert.assertEquals("page2", page.getMetadata().get("next_page"));
+    Assert.assertEquals(1L, page.getMetadata().get("count"));
+    Assert.assertEquals(1577836800L, page.getMetadata().get("end_time"));
+
+    List<StructuredRecord> records = toList(page.getRecords());
+    Assert.assertEquals(1, records.size());
+    StructuredRecord record = records.get(0);
+    Assert.assertEquals(1L, (long) record.get("id"));
+    Assert.assertEquals("val1", record.get("testKey"));
+    Assert.assertEquals("Groups", record.get("tablename"));
+    Assert.assertTrue(((StructuredRecord) record.get("nestedKey")).get("innerKey"));
+    Assert.assertEquals(Collections.singletonMap("a", "b"), record.get("fields"));
+
+    List<StructuredRecord> items = record.get("items");
+    Assert.assertEquals(2, items.size());
+    Assert.assertEquals(2L, (long) items.get(0).get("id"));
+    Assert.assertNull(items.get(0).get("itemKey"));
+    Assert.assertEquals("val2", items.get(1).get("itemKey"));
+  }
+
+  @Test
+  public void testDecodeWithChildKey() throws IOException {
+    Schema schema = Schema.recordOf(
+      "test",
+      Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+      Schema.Field.of("plainBody", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    String response = "{\"ticket_events\":[{\"id\":10,\"child_events\":[" +
+      "{\"id\":1,\"event_type\":\"Comment\",\"plain_body\":\"body1\"}," +
+      "{\"id\":2,\"event_type\":\"Change\"}," +
+      "{\"plain_body\":\"body3\",\"id\":3,\"event_type\":\"Comment\"}]}]}";
+
+    Page<StructuredRecord> page = new PageDecoder(ObjectType.TICKET_COMMENTS, schema, "tablename")
+      .decode(new StringReader(response));
+
+    List<StructuredRecord> records = toList(page.getRecords());
+    Assert.assertEquals(2, records.size());
+    Assert.assertEquals(1L, (long) records.get(0).get("id"));
+    Assert.assertEquals("body1", records.get(0).get("plainBody"));
+    Assert.assertEquals(3L, (long) records.get(1).get("id"));
+    Assert.assertEquals("body3", records.get(1).get("plainBody"));
+  }
+
+  @Test
+  public void testDecodeWithEndTime() throws IOException {
+    Schema schema = Schema.recordOf(
+      "test",
+      Schema.Field.of("id", Schema.of(Schema.Type.LONG)));
+    String response = "{\"organizations\":[" +
+      "{\"id\":1,\"updated_at\":\"2019-12-31T23:59:59Z\"}," +
+      "{\"id\":2,\"updated_at\":\"2020-01-01T00:00:00Z\"}," +
+      "{\"id\":3}]," +
+      "\"next_page\":\"page2\",\"count\":3,\"end_time\":1577836800}";
+
+    Page<StructuredRecord> page = new PageDecoder(ObjectType.ORGANIZATIONS, schema, "tablename", 1577836800L)
+      .decode(new StringReader(response));
+
+    List<StructuredRecord> records = toList(page.getRecords());
+    Assert.assertEquals(2, records.size());
+    Assert.assertEquals(1L, (long) records.get(0).get("id"));
+    Assert.assertEquals(3L, (long) records.get(1).get("id"));
+  }
+
+  @Test
+  public void testDecodeWithChildKeyAndEndTime() throws IOException {
+    Schema schema = Schema.recordOf(
+      "test",
+      Schema.Field.of("id", Schema.of(Schema.Type.LONG)));
+    String response = "{\"ticket_events\":[" +
+      "{\"id\":10,\"timestamp\":1577836799,\"child_events\":[{\"id\":1,\"event_type\":\"Comment\"}]}," +
+      "{\"id\":11,\"child_events\":[{\"id\":2,\"event_type\":\"Comment\"}],\"timestamp\":1577836800}]}";
+
+    Page<StructuredRecord> page = new PageDecoder(ObjectType.TICKET_COMMENTS, schema, "tablename", 1577836800L)
+      .decode(new StringReader(response));
+
+    List<StructuredRecord> records = toList(page.getRecords());
+    Assert.assertEquals(1, records.size());
+    Assert.assertEquals(1L, (long) records.get(0).get("id"));
+  }
+
+  @Test
+  public void testDecodeWithRecordFilter() throws IOException {
+    Schema schema = Schema.recordOf(
+      "test",
+      Schema.Field.of("id", Schema.of(Schema.Type.LONG)));
+    String response = "{\"users\":[" +
+      "{\"id\":1,\"updated_at\":\"2019-12-31T23:59:58Z\"}," +
+      "{\"id\":2,\"updated_at\":\"2019-12-31T23:59:59Z\"}]," +
+      "\"after_url\":\"page2\",\"end_of_stream\":false}";
+
+    PageDecoder pageDecoder = new PageDecoder(ObjectType.USERS, schema, "tablename");
+    pageDecoder.setRecordFilter(captured -> ((Number) captured.get("id")).longValue() != 1L);
+    Page<StructuredRecord> page = pageDecoder.decode(new StringReader(response));
+
+    List<StructuredRecord> records = toList(page.getRecords());
+    Assert.assertEquals(1, records.size());
+    Assert.assertEquals(2L, (long) records.get(0).get("id"));
+    Assert.assertEquals(1577836799L, page.getMetadata().get(PageDecoder.LAST_EXPORT_TIME));
+  }
+
+  @Test
+  public void testDecodeSkipsUnprojectedFields() throws IOException {
+    Schema schema = Schema.recordOf(
+      "tickets",
+      Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+      Schema.Field.of("via", Schema.nullableOf(Schema.recordOf(
+        "via",
+        Schema.Field.of("channel", Schema.nullableOf(Schema.of(Schema.Type.STRING)))))));
+    // the values left out of the schema are not decoded, even if they do not match the object schema
+    String response = "{\"tickets\":[{\"id\":1,\"description\":{\"not\":[\"a string\"]}," +
+      "\"custom_fields\":\"not an array\",\"via\":{\"channel\":\"web\",\"source\":[1,{\"a\":null}]}," +
+      "\"generated_timestamp\":1577836700}],\"count\":1}";
+
+    Page<StructuredRecord> page = new PageDecoder(ObjectType.TICKETS, schema, "tablename")
+      .decode(new StringReader(response));
+
+    List<StructuredRecord> records = toList(page.getRecords());
+    Assert.assertEquals(1, records.size());
+    Assert.assertEquals(1L, (long) records.get(0).get("id"));
+    Assert.assertEquals("web", ((StructuredRecord) records.get(0).get("via")).get("channel"));
+    Assert.assertEquals(1577836700L, page.getMetadata().get(PageDecoder.LAST_EXPORT_TIME));
+  }
+
+  @Test
+  public void testDecodeWithSideloads() throws IOException {
+    Schema ticketSchema = Schema.recordOf(
+      "tickets",
+      Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+      Schema.Field.of("tablename", Schema.of(Schema.Type.STRING)));
+    Schema userSchema = Schema.recordOf(
+      "users",
+      Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+      Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("tablename", Schema.of(Schema.Type.STRING)));
+    Schema metricSchema = Schema.recordOf(
+      "ticketMetrics",
+      Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+      Schema.Field.of("ticketId", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+      Schema.Field.of("tablename", Schema.of(Schema.Type.STRING)));
+    Map<ObjectType, Schema> sideloads = new LinkedHashMap<>();
+    sideloads.put(ObjectType.USERS, userSchema);
+    sideloads.put(ObjectType.TICKET_METRICS, metricSchema);
+    // the metric sets are read before the tickets, and the second ticket is past the end time
+    String firstPage = "{\"metric_sets\":[{\"id\":11,\"ticket_id\":1},{\"id\":12,\"ticket_id\":2}]," +
+      "\"tickets\":[{\"id\":1,\"generated_timestamp\":1577836799}," +
+      "{\"id\":2,\"generated_timestamp\":1577836800}]," +
+      "\"users\":[{\"id\":21,\"name\":\"first\"},{\"id\":22,\"name\":\"second\"}],\"count\":2}";
+    String secondPage = "{\"tickets\":[{\"id\":3,\"generated_timestamp\":1577836700}]," +
+      "\"users\":[{\"id\":22,\"name\":\"second\"}],\"metric_sets\":[{\"id\":13,\"ticket_id\":3}]}";
+
+    PageDecoder pageDecoder = new PageDecoder(ObjectType.TICKETS, ticketSchema, "tablename", 1577836800L);
+    pageDecoder.setSideloads(sideloads);
+    List<StructuredRecord> records = toList(pageDecoder.decode(new StringReader(firstPage)).getRecords());
+    records.addAll(toList(pageDecoder.decode(new StringReader(secondPage)).getRecords()));
+
+    Map<String, List<Long>> ids = new HashMap<>();
+    for (StructuredRecord record : records) {
+      ids.computeIfAbsent(record.get("tablename"), key -> new ArrayList<>()).add(record.get("id"));
+    }
+    Assert.assertEquals(Arrays.asList(1L, 3L), ids.get("Tickets"));
+    // each user is read once, and the metric set of the ticket past the end time is dropped with it
+    Assert.assertEquals(Arrays.asList(21L, 22L), ids.get("Users"));
+    Assert.assertEquals(Arrays.asList(11L, 13L), ids.get("Ticket_Metrics"));
+  }
+
+  @Test
+  public void testDecodeWithSideloadsForgetsLeastRecentIds() throws IOException {
+    Schema ticketSchema = Schema.recordOf(
+      "tickets",
+      Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+      Schema.Field.of("tablename", Schema.of(Schema.Type.STRING)));
+    Schema userSchema = Schema.recordOf(
+      "users",
+      Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+      Schema.Field.of("tablename", Schema.of(Schema.Type.STRING)));
+    PageDecoder pageDecoder = new PageDecoder(ObjectType.TICKETS, ticketSchema, "tablename");
+    pageDecoder.setSideloads(Collections.singletonMap(ObjectType.USERS, userSchema));
+
+    // the first user is referenced again before the second one, then the id set is filled with other users
+    Assert.assertEquals(2, countUsers(pageDecoder, "{\"users\":[{\"id\":1},{\"id\":2}]}"));
+    Assert.assertEquals(0, countUsers(pageDecoder, "{\"users\":[{\"id\":1}]}"));
+    StringBuilder users = new StringBuilder("{\"users\":[");
+    for (int i = 0; i < PageDecoder.MAX_SIDELOADED_IDS - 2; i++) {
+      users.append(i == 0 ? "" : ",").append("{\"id\":").append(i + 3).append('}');
+    }
+    users.append("]}");
+    Assert.assertEquals(PageDecoder.MAX_SIDELOADED_IDS - 2, countUsers(pageDecoder, users.toString()));
+    Assert.assertEquals(1, countUsers(pageDecoder, "{\"users\":[{\"id\":0}]}"));
+
+    // the least recently referenced user is read again, the other ones are still remembered
+    Assert.assertEquals(0, countUsers(pageDecoder, "{\"users\":[{\"id\":1},{\"id\":3}]}"));
+    Assert.assertEquals(1, countUsers(pageDecoder, "{\"users\":[{\"id\":2}]}"));
+  }
+
+  private static int countUsers(PageDecoder pageDecoder, String page) throws IOException {
+    return toList(pageDecoder.decode(new StringReader(page)).getRecords()).size();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSideloadNotSupported() {
+    new PageDecoder(ObjectType.USERS, SCHEMA, "tablename")
+      .setSideloads(Collections.singletonMap(ObjectType.GROUPS, SCHEMA));
+  }
+
+  @Test
+  public void testDecodeEmptyPage() throws IOException {
+    Page<StructuredRecord> page = new PageDecoder(ObjectType.GROUPS, SCHEMA, "tablename")
+      .decode(new StringReader("{\"groups\":[],\"next_page\":null}"));
+
+    Assert.assertFalse(page.getRecords().hasNext());
+    Assert.assertNull(page.getMetadata().get("next_page"));
+  }
+
+  @Test
+  public void testDecodeMatchesMapConversion() throws IOException {
+    String response = "{\"tickets\":[{\"id\":35436,\"url\":\"https://company.zendesk.com/api/v2/tickets/35436.json\"," +
+      "\"external_id\":\"ahg35h3jh\",\"subject\":\"Help I need somebody!\",\"raw_subject\":\"Help\"," +
+      "\"requester_id\":20978392,\"submitter_id\":76872,\"assignee_id\":235323,\"group_id\":98738," +
+      "\"generated_timestamp\":1577836800,\"collaborator_ids\":[35334,234],\"has_incidents\":false," +
+      "\"tags\":[\"enterprise\",\"other_tag\"],\"is_public\":true," +
+      "\"via\":{\"channel\":\"email\",\"source\":{\"from\":{\"address\":\"a@b.com\",\"name\":\"A\"}," +
+      "\"to\":{\"address\":\"c@d.com\"},\"rel\":null}}," +
+      "\"custom_fields\":[{\"id\":27642,\"value\":\"745\"}],\"satisfaction_rating\":null," +
+      "\"created_at\":\"2009-07-20T22:55:29Z\",\"updated_at\":\"2011-05-05T10:38:52Z\"}]," +
+      "\"next_page\":null,\"count\":1,\"end_time\":1577836800}";
+    List<Schema.Field> fields = new ArrayList<>(ObjectType.TICKETS.getObjectSchema().getFields());
+    fields.add(Schema.Field.of("tablename", Schema.of(Schema.Type.STRING)));
+    Schema schema = Schema.recordOf("Tickets", fields);
+
+    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+      "reference",
+      "email@test.com",
+      "apiToken",
+      "subdomain",
+      "Tickets",
+      "",
+      "2019-01-01T23:01:01Z",
+      "2019-01-01T23:01:01Z",
+      "satisfactionRatingsScore",
+      20,
+      300,
+      300,
+      "http://%s.localhosttestdomain/%s",
+      "");
+
+    List<StructuredRecord> expected = new ArrayList<>();
+    try (PagedIterator pagedIterator = new PagedIterator(config, ObjectType.TICKETS, "subdomain")) {
+      Iterator<String> values = pagedIterator.getJsonValuesFromResponse(GSON.fromJson(response, Map.class));
+      while (values.hasNext()) {
+        expected.add(StructuredRecordStringConverter.fromJsonString(values.next(), schema));
+      }
+    }
+
+    List<StructuredRecord> actual = toList(new PageDecoder(ObjectType.TICKETS, schema, "tablename")
+      .decode(new StringReader(response)).getRecords());
+
+    Assert.assertEquals(1, actual.size());
+    Assert.assertEquals(expected, actual);
+  }
+
+  private static List<StructuredRecord> toList(Iterator<StructuredRecord> iterator) {
+    List<StructuredRecord> list = new ArrayList<>();
+    iterator.forEachRemaining(list::add);
+    return list;
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import com.google.common.io.CharStreams;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+
+public class PageSpoolTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testReplayAfterRetry() throws IOException {
+    String directory = new File(temporaryFolder.getRoot(), "split").getAbsolutePath();
+    PageSpool pageSpool = new PageSpool(directory, new Configuration());
+
+    Assert.assertNull(pageSpool.open(0));
+    write(pageSpool, 0, "{\"tickets\":[]}");
+    write(pageSpool, 1, "{\"tickets\":[{\"subject\":\"été\"}]}");
+
+    PageSpool retried = new PageSpool(directory, new Configuration());
+    Assert.assertEquals("{\"tickets\":[]}", read(retried, 0));
+    Assert.assertEquals("{\"tickets\":[{\"subject\":\"été\"}]}", read(retried, 1));
+    Assert.assertNull(retried.open(2));
+
+    PageSpool.delete(temporaryFolder.getRoot().getAbsolutePath(), new Configuration());
+    Assert.assertNull(new PageSpool(directory, new Configuration()).open(0));
+  }
+
+  @Test
+  public void testWriteStreamAndOpen() throws IOException {
+    String directory = new File(temporaryFolder.getRoot(), "split").getAbsolutePath();
+    PageSpool pageSpool = new PageSpool(directory, new Configuration());
+    String page = "{\"tickets\":[{\"subject\":\"été\"}]}";
+
+    Assert.assertNull(pageSpool.open(0));
+    pageSpool.write(0, new ByteArrayInputStream(page.getBytes(StandardCharsets.UTF_8)));
+
+    try (Reader reader = pageSpool.open(0)) {
+      Assert.assertNotNull(reader);
+      Assert.assertEquals(page, CharStreams.toString(reader));
+    }
+    Assert.assertNull(pageSpool.open(1));
+  }
+
+  @Test
+  public void testConcurrentAttemptsWriteWholePages() throws IOException {
+    String directory = new File(temporaryFolder.getRoot(), "split").getAbsolutePath();
+    PageSpool attempt = new PageSpool(directory, new Configuration());
+    PageSpool speculativeAttempt = new PageSpool(directory, new Configuration());
+    String page = "{\"tickets\":[{\"subject\":\"first\"}]}";
+    String speculativePage = "{\"tickets\":[{\"subject\":\"second\"}]}";
+
+    // the speculative attempt keeps the page while the first attempt is still writing it
+    InputStream content = new SequenceInputStream(
+      new ByteArrayInputStream(page.substring(0, 10).getBytes(StandardCharsets.UTF_8)),
+      new InputStream() {
+        private InputStream rest;
+
+        @Override
+        public int read() throws IOException {
+          if (rest == null) {
+            speculativeAttempt.write(0, new ByteArrayInputStream(speculativePage.getBytes(StandardCharsets.UTF_8)));
+            rest = new ByteArrayInputStream(page.substring(10).getBytes(StandardCharsets.UTF_8));
+          }
+          return rest.read();
+        }
+      });
+    attempt.write(0, content);
+
+    try (Reader reader = attempt.open(0)) {
+      String kept = CharStreams.toString(reader);
+      Assert.assertTrue(kept, kept.equals(page) || kept.equals(speculativePage));
+    }
+    Assert.assertArrayEquals(new String[] {"0"}, new File(directory).list((dir, name) -> !name.startsWith(".")));
+  }
+
+  private static void write(PageSpool pageSpool, int index, String page) throws IOException {
+    pageSpool.write(index, new ByteArrayInputStream(page.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static String read(PageSpool pageSpool, int index) throws IOException {
+    try (Reader reader = pageSpool.open(index)) {
+      return CharStreams.toString(reader);
+    }
+  }
+}
@@ -0,0 +1,541 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import com.google.common.collect.Iterators;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.plugin.zendesk.source.batch.ZendeskBatchSourceConfig;
+import io.cdap.plugin.zendesk.source.batch.metrics.ZendeskMetrics;
+import io.cdap.plugin.zendesk.source.batch.metrics.ZendeskMetricsTest;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the pages over HTTP, from a {@link ZendeskApiSimulator}.
+ */
+public class PagedIteratorHttpTest {
+
+  private static final Gson GSON = new GsonBuilder().create();
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private ZendeskApiSimulator simulator;
+
+  @Before
+  public void setUp() throws IOException {
+    simulator = new ZendeskApiSimulator();
+  }
+
+  @After
+  public void tearDown() {
+    simulator.close();
+  }
+
+  @Test
+  public void testTimeBasedExport() throws IOException {
+    simulator.setObjectCount(2500);
+    ZendeskBatchSourceConfig config = createConfig("time-export", ZendeskBatchSourceConfig.EXPORT_PAGINATION_TIME);
+
+    Set<Object> ids = new HashSet<>();
+    try (RecordPagedIterator pagedIterator = new RecordPagedIterator(
+      config, ObjectType.TICKETS, "time-export", ObjectType.TICKETS.getObjectSchema())) {
+      pagedIterator.forEachRemaining(record -> ids.add(record.get("id")));
+    }
+
+    Assert.assertEquals(2500, ids.size());
+    // two full pages and the partial last page
+    Assert.assertEquals(3, simulator.getRequestCount());
+  }
+
+  @Test
+  public void testCursorExport() throws IOException {
+    simulator.setObjectCount(250);
+    ZendeskBatchSourceConfig config = createConfig("cursor-export",
+                                                   ZendeskBatchSourceConfig.EXPORT_PAGINATION_CURSOR);
+
+    int records = 0;
+    Set<Object> ids = new HashSet<>();
+    try (RecordPagedIterator pagedIterator = new RecordPagedIterator(
+      config, ObjectType.USERS, "cursor-export", ObjectType.USERS.getObjectSchema())) {
+      while (pagedIterator.hasNext()) {
+        ids.add(pagedIterator.next().get("id"));
+        records++;
+      }
+    }
+
+    Assert.assertEquals(250, records);
+    Assert.assertEquals(250, ids.size());
+    // three pages and the overlap read again at the end of the stream
+    Assert.assertEquals(4, simulator.getRequestCount());
+  }
+
+  @Test
+  public void testListPagination() throws IOException {
+    simulator.setObjectCount(250);
+    ZendeskBatchSourceConfig config = createConfig("list", ZendeskBatchSourceConfig.EXPORT_PAGINATION_TIME);
+
+    int records = 0;
+    try (PagedIterator pagedIterator = new PagedIterator(config, ObjectType.GROUPS, "list")) {
+      while (pagedIterator.hasNext()) {
+        pagedIterator.next();
+        records++;
+      }
+      Assert.assertEquals(250L, ((Number) pagedIterator.getPageMetadata().get("count")).longValue());
+    }
+
+    Assert.assertEquals(250, records);
+    Assert.assertEquals(3, simulator.getRequestCount());
+  }
+
+  @Test
+  public void testPageRange() throws IOException {
+    simulator.setObjectCount(450);
+    ZendeskBatchSourceConfig config = createConfig("page-range", ZendeskBatchSourceConfig.EXPORT_PAGINATION_TIME);
+
+    List<Object> ids = new ArrayList<>();
+    try (RecordPagedIterator pagedIterator = new RecordPagedIterator(
+      config, ObjectType.GROUPS, "page-range", ObjectType.GROUPS.getObjectSchema())) {
+      pagedIterator.setPageRange(2, 4);
+      pagedIterator.forEachRemaining(record -> ids.add(record.get("id")));
+      Assert.assertEquals(1f, pagedIterator.getProgress(), 0);
+    }
+    List<Object> lastIds = new ArrayList<>();
+    try (RecordPagedIterator pagedIterator = new RecordPagedIterator(
+      config, ObjectType.GROUPS, "page-range", ObjectType.GROUPS.getObjectSchema())) {
+      pagedIterator.setPageRange(4, 0);
+      pagedIterator.forEachRemaining(record -> lastIds.add(record.get("id")));
+    }
+
+    Assert.assertEquals(200, ids.size());
+    Assert.assertEquals(150, lastIds.size());
+    Assert.assertTrue(Collections.disjoint(ids, lastIds));
+    Assert.assertEquals(4, simulator.getRequestCount());
+  }
+
+  @Test
+  public void testBudgetLimiter() throws IOException {
+    simulator.setObjectCount(103);
+    simulator.setPageSize(1);
+    ZendeskBatchSourceConfig config = createConfig("budget", ZendeskBatchSourceConfig.EXPORT_PAGINATION_TIME);
+    // bursts up to 100 requests, the clock standing still, then waits 100 ms more for each request
+    SubdomainRateLimiter budgetLimiter = new SubdomainRateLimiter(600, () -> 0L);
+
+    try (PagedIterator pagedIterator = new PagedIterator(config, ObjectType.GROUPS, "budget")) {
+      pagedIterator.setBudgetLimiter(budgetLimiter);
+      Iterators.size(pagedIterator);
+    }
+
+    Assert.assertEquals(103, simulator.getRequestCount());
+    Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(600), budgetLimiter.getWaitedNanos());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPageRangeOfExport() throws IOException {
+    ZendeskBatchSourceConfig config = createConfig("page-range-export",
+                                                   ZendeskBatchSourceConfig.EXPORT_PAGINATION_TIME);
+
+    try (RecordPagedIterator pagedIterator = new RecordPagedIterator(
+      config, ObjectType.TICKETS, "page-range-export", ObjectType.TICKETS.getObjectSchema())) {
+      pagedIterator.setPageRange(2, 4);
+    }
+  }
+
+  @Test
+  public void testCommentsOfEntities() throws IOException {
+    simulator.setObjectCount(10);
+    ZendeskBatchSourceConfig config = createConfig("comments", ZendeskBatchSourceConfig.EXPORT_PAGINATION_TIME);
+
+    int records = 0;
+    try (CommentsPagedIterator pagedIterator = new CommentsPagedIterator(
+      new PagedIterator(config, ObjectType.REQUESTS, "comments"), config, ObjectType.REQUESTS_COMMENTS,
+      "comments", ObjectType.REQUESTS_COMMENTS.getObjectSchema())) {
+      while (pagedIterator.hasNext()) {
+        StructuredRecord record = pagedIterator.next();
+        Assert.assertNotNull(record.get("id"));
+        records++;
+      }
+    }
+
+    Assert.assertEquals(30, records);
+    // the requests page and the comments of each request
+    Assert.assertEquals(11, simulator.getRequestCount());
+  }
+
+  @Test
+  public void testRetryAfterRateLimited() throws IOException {
+    simulator.setObjectCount(300);
+    // the second request is the only one drawn below half
+    simulator.setRateLimitedShare(0.5);
+    simulator.setRetryAfterSeconds(1);
+    ZendeskBatchSourceConfig config = createConfig("rate-limited", ZendeskBatchSourceConfig.EXPORT_PAGINATION_TIME);
+
+    int records = 0;
+    try (PagedIterator pagedIterator = new PagedIterator(config, ObjectType.GROUPS, "rate-limited")) {
+      while (pagedIterator.hasNext()) {
+        pagedIterator.next();
+        records++;
+      }
+    }
+
+    Assert.assertEquals(300, records);
+    Assert.assertEquals(1, simulator.getRateLimitedCount());
+    Assert.assertEquals(4, simulator.getRequestCount());
+    Assert.assertTrue(SubdomainRateLimiter.forSubdomain(config, "rate-limited").getWaitedNanos() > 0);
+  }
+
+  @Test
+  public void testCompressedResponses() throws IOException {
+    simulator.setObjectCount(250);
+    ZendeskBatchSourceConfig config = createConfig("compressed", ZendeskBatchSourceConfig.EXPORT_PAGINATION_TIME);
+
+    int records = 0;
+    try (PagedIterator pagedIterator = new PagedIterator(config, ObjectType.GROUPS, "compressed")) {
+      while (pagedIterator.hasNext()) {
+        Assert.assertTrue(pagedIterator.next().contains("\"id\""));
+        records++;
+      }
+    }
+    ZendeskMetricsTest.RecordingMetrics metrics = new ZendeskMetricsTest.RecordingMetrics();
+    ZendeskMetrics.publish(config.referenceName, metrics);
+
+    Assert.assertEquals(250, records);
+    Assert.assertEquals(3, simulator.getCompressedCount());
+    // the bytes counted are the ones transferred, before decompression
+    Assert.assertEquals(simulator.getBytesSent(), metrics.get("compressed.groups." + ZendeskMetrics.BYTES));
+  }
+
+  @Test
+  public void testSpooledPages() throws IOException {
+    simulator.setObjectCount(250);
+    ZendeskBatchSourceConfig config = createConfig("spooled", ZendeskBatchSourceConfig.EXPORT_PAGINATION_CURSOR);
+    PageSpool pageSpool = new PageSpool(temporaryFolder.getRoot().getAbsolutePath(), new Configuration());
+
+    Set<Object> ids = new HashSet<>();
+    try (RecordPagedIterator pagedIterator = new RecordPagedIterator(
+      config, ObjectType.USERS, "spooled", ObjectType.USERS.getObjectSchema())) {
+      pagedIterator.setPageSpool(pageSpool);
+      pagedIterator.forEachRemaining(record -> ids.add(record.get("id")));
+    }
+    long requests = simulator.getRequestCount();
+
+    // a retried attempt reads the pages kept by the first one
+    Set<Object> retriedIds = new HashSet<>();
+    try (RecordPagedIterator pagedIterator = new RecordPagedIterator(
+      config, ObjectType.USERS, "spooled", ObjectType.USERS.getObjectSchema())) {
+      pagedIterator.setPageSpool(new PageSpool(temporaryFolder.getRoot().getAbsolutePath(), new Configuration()));
+      pagedIterator.forEachRemaining(record -> retriedIds.add(record.get("id")));
+    }
+
+    Assert.assertEquals(250, ids.size());
+    Assert.assertEquals(ids, retriedIds);
+    Assert.assertEquals(requests, simulator.getRequestCount());
+  }
+
+  @Test
+  public void testMetrics() throws IOException {
+    simulator.setObjectCount(300);
+    simulator.setRateLimitedShare(0.5);
+    simulator.setRetryAfterSeconds(0);
+    ZendeskBatchSourceConfig config = createConfig("metrics", ZendeskBatchSourceConfig.EXPORT_PAGINATION_TIME);
+
+    try (PagedIterator pagedIterator = new PagedIterator(config, ObjectType.GROUPS, "metrics")) {
+      pagedIterator.forEachRemaining(value -> { });
+    }
+    ZendeskMetricsTest.RecordingMetrics metrics = new ZendeskMetricsTest.RecordingMetrics();
+    ZendeskMetrics.publish(config.referenceName, metrics);
+
+    Assert.assertEquals(4, metrics.get("metrics.groups." + ZendeskMetrics.REQUESTS));
+    Assert.assertEquals(1, metrics.get("metrics.groups." + ZendeskMetrics.RATE_LIMITED));
+    Assert.assertEquals(1, metrics.get("metrics.groups." + ZendeskMetrics.RETRIES));
+    Assert.assertEquals(3, metrics.get("metrics.groups." + ZendeskMetrics.PAGES));
+    Assert.assertTrue(metrics.get("metrics.groups." + ZendeskMetrics.BYTES) > 0);
+  }
+
+  @Test
+  public void testAdaptiveConcurrency() throws IOException {
+    simulator.setObjectCount(300);
+    simulator.setPageSize(10);
+    simulator.setRateLimitedShare(0.2);
+    simulator.setRetryAfterSeconds(0);
+    ZendeskBatchSourceConfig config = withProperty(
+      createConfig("adaptive", ZendeskBatchSourceConfig.EXPORT_PAGINATION_TIME),
+      ZendeskBatchSourceConfig.PROPERTY_MAX_CONNECTIONS_PER_ROUTE, 4);
+    JsonObject configJson = GSON.toJsonTree(config).getAsJsonObject();
+    configJson.addProperty(ZendeskBatchSourceConfig.PROPERTY_ADAPTIVE_CONCURRENCY, true);
+    config = GSON.fromJson(configJson, ZendeskBatchSourceConfig.class);
+
+    Set<Object> ids = new HashSet<>();
+    try (RecordPagedIterator pagedIterator = new RecordPagedIterator(
+      config, ObjectType.GROUPS, "adaptive", ObjectType.GROUPS.getObjectSchema())) {
+      pagedIterator.setPrefetchPages(4);
+      pagedIterator.forEachRemaining(record -> ids.add(record.get("id")));
+    }
+
+    Assert.assertEquals(300, ids.size());
+    ZendeskMetricsTest.RecordingMetrics recorded = new ZendeskMetricsTest.RecordingMetrics();
+    ZendeskMetrics.publish("reference", recorded);
+    long limit = recorded.get("adaptive.groups." + ZendeskMetrics.CONCURRENCY_LIMIT);
+    Assert.assertTrue(limit >= 1 && limit <= 4);
+  }
+
+  @Test
+  public void testRateLimitReported() throws IOException {
+    simulator.setRequestsPerMinute(30);
+    ZendeskBatchSourceConfig config = createConfig("rate-limit", ZendeskBatchSourceConfig.EXPORT_PAGINATION_TIME);
+
+    try (PagedIterator pagedIterator = new PagedIterator(config, ObjectType.GROUPS, "rate-limit")) {
+      Assert.assertTrue(pagedIterator.hasNext());
+    }
+
+    Assert.assertEquals(30, SubdomainRateLimiter.forSubdomain(config, "rate-limit").getRequestsPerMinute(), 0);
+  }
+
+  @Test(expected = ConnectionTimeoutException.class)
+  public void testServerError() throws IOException {
+    simulator.setServerErrorShare(1);
+    ZendeskBatchSourceConfig config = withProperty(
+      createConfig("server-error", ZendeskBatchSourceConfig.EXPORT_PAGINATION_TIME),
+      ZendeskBatchSourceConfig.PROPERTY_MAX_RETRY_TIME, 1);
+
+    try (PagedIterator pagedIterator = new PagedIterator(config, ObjectType.GROUPS, "server-error")) {
+      pagedIterator.hasNext();
+    }
+  }
+
+  @Test
+  public void testServerErrorRetried() throws IOException {
+    simulator.setObjectCount(300);
+    // the second request is the only one drawn below half
+    simulator.setServerErrorShare(0.5);
+    ZendeskBatchSourceConfig config = createConfig("server-error-retried",
+                                                   ZendeskBatchSourceConfig.EXPORT_PAGINATION_TIME);
+
+    int records = 0;
+    try (PagedIterator pagedIterator = new PagedIterator(config, ObjectType.GROUPS, "server-error-retried")) {
+      while (pagedIterator.hasNext()) {
+        pagedIterator.next();
+        records++;
+      }
+    }
+    ZendeskMetricsTest.RecordingMetrics metrics = new ZendeskMetricsTest.RecordingMetrics();
+    ZendeskMetrics.publish(config.referenceName, metrics);
+
+    Assert.assertEquals(300, records);
+    Assert.assertEquals(1, simulator.getServerErrorCount());
+    Assert.assertEquals(4, simulator.getRequestCount());
+    Assert.assertEquals(1, metrics.get("server-error-retried.groups." + ZendeskMetrics.SERVER_ERRORS));
+    Assert.assertEquals(1, metrics.get("server-error-retried.groups." + ZendeskMetrics.RETRIES));
+  }
+
+  @Test
+  public void testAsyncEngine() throws IOException {
+    simulator.setObjectCount(2500);
+    ZendeskBatchSourceConfig config = withAsyncEngine(
+      createConfig("async", ZendeskBatchSourceConfig.EXPORT_PAGINATION_TIME));
+
+    Set<Object> ids = new HashSet<>();
+    try (RecordPagedIterator pagedIterator = new RecordPagedIterator(
+      config, ObjectType.TICKETS, "async", ObjectType.TICKETS.getObjectSchema())) {
+      pagedIterator.forEachRemaining(record -> ids.add(record.get("id")));
+    }
+    ZendeskMetricsTest.RecordingMetrics metrics = new ZendeskMetricsTest.RecordingMetrics();
+    ZendeskMetrics.publish(config.referenceName, metrics);
+
+    Assert.assertEquals(2500, ids.size());
+    Assert.assertEquals(3, simulator.getRequestCount());
+    // the responses are decompressed by the engine, and counted as transferred
+    Assert.assertEquals(3, simulator.getCompressedCount());
+    Assert.assertEquals(simulator.getBytesSent(), metrics.get("async.tickets." + ZendeskMetrics.BYTES));
+    Assert.assertEquals(0, AsyncHttpEngine.size());
+  }
+
+  @Test
+  public void testAsyncEngineRequestsFollowingPage() throws Exception {
+    simulator.setObjectCount(250);
+    ZendeskBatchSourceConfig config = withAsyncEngine(
+      createConfig("async-ahead", ZendeskBatchSourceConfig.EXPORT_PAGINATION_TIME));
+
+    int records = 0;
+    try (PagedIterator pagedIterator = new PagedIterator(config, ObjectType.GROUPS, "async-ahead")) {
+      Assert.assertTrue(pagedIterator.hasNext());
+      // the second page is requested before the records of the first one are consumed
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (simulator.getRequestCount() < 2 && System.nanoTime() < deadline) {
+        TimeUnit.MILLISECONDS.sleep(10);
+      }
+      Assert.assertEquals(2, simulator.getRequestCount());
+      while (pagedIterator.hasNext()) {
+        pagedIterator.next();
+        records++;
+      }
+    }
+
+    Assert.assertEquals(250, records);
+    Assert.assertEquals(3, simulator.getRequestCount());
+  }
+
+  @Test
+  public void testAsyncEngineWithPrefetch() throws IOException {
+    simulator.setObjectCount(450);
+    ZendeskBatchSourceConfig config = withProperty(
+      withAsyncEngine(createConfig("async-prefetch", ZendeskBatchSourceConfig.EXPORT_PAGINATION_TIME)),
+      ZendeskBatchSourceConfig.PROPERTY_PREFETCH_PAGES, 2);
+
+    List<Object> ids = new ArrayList<>();
+    try (RecordPagedIterator pagedIterator = new RecordPagedIterator(
+      config, ObjectType.GROUPS, "async-prefetch", ObjectType.GROUPS.getObjectSchema())) {
+      pagedIterator.setPrefetchPages(config.getPrefetchPages());
+      pagedIterator.forEachRemaining(record -> ids.add(record.get("id")));
+    }
+
+    Assert.assertEquals(450, ids.size());
+    Assert.assertEquals(450, new HashSet<>(ids).size());
+    Assert.assertEquals(5, simulator.getRequestCount());
+  }
+
+  @Test
+  public void testAsyncEngineRetryAfterRateLimited() throws IOException {
+    simulator.setObjectCount(300);
+    // the second request is the only one drawn below half
+    simulator.setRateLimitedShare(0.5);
+    simulator.setRetryAfterSeconds(1);
+    ZendeskBatchSourceConfig config = withAsyncEngine(
+      createConfig("async-rate-limited", ZendeskBatchSourceConfig.EXPORT_PAGINATION_TIME));
+
+    int records = 0;
+    try (PagedIterator pagedIterator = new PagedIterator(config, ObjectType.GROUPS, "async-rate-limited")) {
+      while (pagedIterator.hasNext()) {
+        pagedIterator.next();
+        records++;
+      }
+    }
+
+    Assert.assertEquals(300, records);
+    Assert.assertEquals(1, simulator.getRateLimitedCount());
+    Assert.assertEquals(4, simulator.getRequestCount());
+  }
+
+  @Test
+  public void testAsyncEngineClosedWhileRequesting() throws IOException {
+    simulator.setObjectCount(250);
+    simulator.setLatencyMillis(500);
+    ZendeskBatchSourceConfig config = withAsyncEngine(
+      createConfig("async-closed", ZendeskBatchSourceConfig.EXPORT_PAGINATION_TIME));
+
+    try (PagedIterator pagedIterator = new PagedIterator(config, ObjectType.GROUPS, "async-closed")) {
+      Assert.assertTrue(pagedIterator.hasNext());
+      pagedIterator.next();
+    }
+
+    // the request of the second page was cancelled along with the engine
+    Assert.assertEquals(0, AsyncHttpEngine.size());
+  }
+
+  @Test
+  public void testCommentsOfEntitiesWithAsyncEngine() throws IOException {
+    simulator.setObjectCount(25);
+    simulator.setLatencyMillis(20);
+    ZendeskBatchSourceConfig config = withAsyncEngine(
+      createConfig("async-comments", ZendeskBatchSourceConfig.EXPORT_PAGINATION_TIME));
+
+    List<Long> ids = new ArrayList<>();
+    try (CommentsPagedIterator pagedIterator = new CommentsPagedIterator(
+      new PagedIterator(config, ObjectType.REQUESTS, "async-comments"), config, ObjectType.REQUESTS_COMMENTS,
+      "async-comments", ObjectType.REQUESTS_COMMENTS.getObjectSchema())) {
+      pagedIterator.forEachRemaining(record -> ids.add(record.get("id")));
+    }
+
+    Assert.assertEquals(75, ids.size());
+    // the comments come in the order of the entities
+    List<Long> sortedIds = new ArrayList<>(ids);
+    Collections.sort(sortedIds);
+    Assert.assertEquals(sortedIds, ids);
+    // the requests page and the comments of each request
+    Assert.assertEquals(26, simulator.getRequestCount());
+    Assert.assertEquals(0, AsyncHttpEngine.size());
+  }
+
+  @Test
+  public void testServerErrorRetriedUntilMaxRetryTime() {
+    simulator.setServerErrorShare(1);
+    ZendeskBatchSourceConfig config = withProperty(
+      createConfig("server-error-deadline", ZendeskBatchSourceConfig.EXPORT_PAGINATION_TIME),
+      ZendeskBatchSourceConfig.PROPERTY_MAX_RETRY_TIME, 0);
+
+    try (PagedIterator pagedIterator = new PagedIterator(config, ObjectType.GROUPS, "server-error-deadline")) {
+      pagedIterator.hasNext();
+      Assert.fail("The server error was not reported");
+    } catch (ConnectionTimeoutException | IOException e) {
+      // expected
+    }
+
+    // no retry time is left for the split
+    Assert.assertEquals(1, simulator.getServerErrorCount());
+  }
+
+  private ZendeskBatchSourceConfig createConfig(String subdomain, String exportPagination) {
+    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+      "reference",
+      "email@test.com",
+      "apiToken",
+      subdomain,
+      null,
+      "",
+      "2019-01-01T00:00:00Z",
+      null,
+      null,
+      5,
+      10,
+      10,
+      simulator.getBaseUrl(),
+      null);
+    JsonObject configJson = GSON.toJsonTree(config).getAsJsonObject();
+    configJson.addProperty(ZendeskBatchSourceConfig.PROPERTY_EXPORT_PAGINATION, exportPagination);
+    return GSON.fromJson(configJson, ZendeskBatchSourceConfig.class);
+  }
+
+  private static ZendeskBatchSourceConfig withAsyncEngine(ZendeskBatchSourceConfig config) {
+    JsonObject configJson = GSON.toJsonTree(config).getAsJsonObject();
+    configJson.addProperty(ZendeskBatchSourceConfig.PROPERTY_HTTP_ENGINE, ZendeskBatchSourceConfig.HTTP_ENGINE_ASYNC);
+    return GSON.fromJson(configJson, ZendeskBatchSourceConfig.class);
+  }
+
+  private static ZendeskBatchSourceConfig withProperty(ZendeskBatchSourceConfig config, String name, Number value) {
+    JsonObject configJson = GSON.toJsonTree(config).getAsJsonObject();
+    configJson.addProperty(name, value);
+    return GSON.fromJson(configJson, ZendeskBatchSourceConfig.class);
+  }
+}
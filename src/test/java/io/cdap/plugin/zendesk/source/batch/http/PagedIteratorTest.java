@@ -25,6 +25,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -33,6 +34,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class PagedIteratorTest {
 
@@ -402,6 +404,72 @@ public class PagedIteratorTest {
     }
   }
 
+  @Test
+  public void testParseResponseWithProjection() throws IOException {
+    String response = "{\"tickets\":[{\"id\":1,\"description\":\"text\",\"via\":{\"source\":{\"from\":{}}}," +
+      "\"custom_fields\":[{\"id\":2,\"value\":null}]},{\"subject\":\"no id\"}]," +
+      "\"users\":[{\"id\":3}],\"next_page\":\"page2\",\"count\":2,\"end_of_stream\":false}";
+    String subdomain = "subdomain";
+    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+      "reference",
+      "email@test.com",
+      "apiToken",
+      subdomain,
+      "Tickets",
+      "",
+      "2019-01-01T23:01:01Z",
+      "2019-01-01T23:01:01Z",
+      "satisfactionRatingsScore",
+      20,
+      300,
+      300,
+      "http://%s.localhosttestdomain/%s",
+      "");
+
+    try (PagedIterator pagedIterator = new PagedIterator(config, ObjectType.TICKETS, subdomain)) {
+      pagedIterator.setProjection(Collections.singleton("id"));
+      Map<String, Object> responseMap = pagedIterator.parseResponse(new StringReader(response));
+
+      Assert.assertEquals(Arrays.asList(Collections.singletonMap("id", 1.0), Collections.emptyMap()),
+                          responseMap.get("tickets"));
+      Assert.assertEquals("page2", responseMap.get("next_page"));
+      Assert.assertEquals(2.0, responseMap.get("count"));
+      Assert.assertEquals(false, responseMap.get("end_of_stream"));
+      Assert.assertFalse(responseMap.containsKey("users"));
+    }
+  }
+
+  @Test
+  public void testParseResponseWithProjectionAndChildKey() throws IOException {
+    String response = "{\"ticket_events\":[{\"id\":1,\"child_events\":[{\"id\":2,\"event_type\":\"Comment\"}]}]," +
+      "\"count\":1,\"end_time\":1577836800}";
+    String subdomain = "subdomain";
+    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+      "reference",
+      "email@test.com",
+      "apiToken",
+      subdomain,
+      "Ticket Comments",
+      "",
+      "2019-01-01T23:01:01Z",
+      "2019-01-01T23:01:01Z",
+      "satisfactionRatingsScore",
+      20,
+      300,
+      300,
+      "http://%s.localhosttestdomain/%s",
+      "");
+
+    try (PagedIterator pagedIterator = new PagedIterator(config, ObjectType.TICKET_COMMENTS, subdomain)) {
+      pagedIterator.setProjection(Collections.emptySet());
+      Map<String, Object> responseMap = pagedIterator.parseResponse(new StringReader(response));
+
+      Assert.assertFalse(pagedIterator.getJsonValuesFromResponse(responseMap).hasNext());
+      Assert.assertEquals(1.0, responseMap.get("count"));
+      Assert.assertEquals(1577836800.0, responseMap.get("end_time"));
+    }
+  }
+
   @Test
   public void testReplaceKeys() throws IOException {
     Map<String, String> actualMap1 = new HashMap<>();
@@ -496,234 +564,6 @@ public class PagedIteratorTest {
     }
   }
 
-  @Test
-  public void testIsRecord() throws IOException {
-    Schema expected = Schema.recordOf(
-      "test",
-      Schema.Field.of("test_field", Schema.nullableOf(Schema.of(Schema.Type.LONG)))
-    );
-
-    ObjectType objectType = ObjectType.GROUPS;
-    String subdomain = "subdomain";
-    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
-      "reference",
-      "email@test.com",
-      "apiToken",
-      subdomain,
-      "Groups",
-      "",
-      "2019-01-01T23:01:01Z",
-      "2019-01-01T23:01:01Z",
-      "satisfactionRatingsScore",
-      20,
-      300,
-      300,
-      "http://%s.localhosttestdomain/%s",
-      "");
-
-    try (PagedIterator pagedIterator = new PagedIterator(config, objectType, subdomain)) {
-      boolean actual = pagedIterator.isRecord(expected);
-      Assert.assertTrue(actual);
-    }
-  }
-
-  @Test
-  public void testIsRecordInsideUnion() throws IOException {
-    Schema expected = Schema.recordOf(
-      "test",
-      Schema.Field.of("test_field", Schema.nullableOf(Schema.of(Schema.Type.LONG)))
-    );
-
-    ObjectType objectType = ObjectType.GROUPS;
-    String subdomain = "subdomain";
-    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
-      "reference",
-      "email@test.com",
-      "apiToken",
-      subdomain,
-      "Groups",
-      "",
-      "2019-01-01T23:01:01Z",
-      "2019-01-01T23:01:01Z",
-      "satisfactionRatingsScore",
-      20,
-      300,
-      300,
-      "http://%s.localhosttestdomain/%s",
-      "");
-
-    try (PagedIterator pagedIterator = new PagedIterator(config, objectType, subdomain)) {
-      boolean actual = pagedIterator.isRecord(Schema.nullableOf(expected));
-      Assert.assertTrue(actual);
-    }
-  }
-
-  @Test
-  public void testIsRecordUnionSimple() throws IOException {
-    ObjectType objectType = ObjectType.GROUPS;
-    String subdomain = "subdomain";
-    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
-      "reference",
-      "email@test.com",
-      "apiToken",
-      subdomain,
-      "Groups",
-      "",
-      "2019-01-01T23:01:01Z",
-      "2019-01-01T23:01:01Z",
-      "satisfactionRatingsScore",
-      20,
-      300,
-      300,
-      "http://%s.localhosttestdomain/%s",
-      "");
-
-    try (PagedIterator pagedIterator = new PagedIterator(config, objectType, subdomain)) {
-      boolean actual = pagedIterator.isRecord(Schema.nullableOf(Schema.of(Schema.Type.LONG)));
-      Assert.assertFalse(actual);
-    }
-  }
-
-  @Test
-  public void testIsRecordSchemaSimple() throws IOException {
-    ObjectType objectType = ObjectType.GROUPS;
-    String subdomain = "subdomain";
-    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
-      "reference",
-      "email@test.com",
-      "apiToken",
-      subdomain,
-      "Groups",
-      "",
-      "2019-01-01T23:01:01Z",
-      "2019-01-01T23:01:01Z",
-      "satisfactionRatingsScore",
-      20,
-      300,
-      300,
-      "http://%s.localhosttestdomain/%s",
-      "");
-
-    try (PagedIterator pagedIterator = new PagedIterator(config, objectType, subdomain)) {
-      boolean actual = pagedIterator.isRecord(Schema.of(Schema.Type.LONG));
-      Assert.assertFalse(actual);
-    }
-  }
-
-  @Test
-  public void testGetRecordSchema() throws IOException {
-    Schema expected = Schema.recordOf(
-      "test",
-      Schema.Field.of("test_field", Schema.nullableOf(Schema.of(Schema.Type.LONG)))
-    );
-
-    ObjectType objectType = ObjectType.GROUPS;
-    String subdomain = "subdomain";
-    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
-      "reference",
-      "email@test.com",
-      "apiToken",
-      subdomain,
-      "Groups",
-      "",
-      "2019-01-01T23:01:01Z",
-      "2019-01-01T23:01:01Z",
-      "satisfactionRatingsScore",
-      20,
-      300,
-      300,
-      "http://%s.localhosttestdomain/%s",
-      "");
-
-    try (PagedIterator pagedIterator = new PagedIterator(config, objectType, subdomain)) {
-      Schema actual = pagedIterator.getRecordSchema(expected);
-      Assert.assertEquals(expected, actual);
-    }
-  }
-
-  @Test
-  public void testGetRecordSchemaInsideUnion() throws IOException {
-    Schema expected = Schema.recordOf(
-      "test",
-      Schema.Field.of("test_field", Schema.nullableOf(Schema.of(Schema.Type.LONG)))
-    );
-
-    ObjectType objectType = ObjectType.GROUPS;
-    String subdomain = "subdomain";
-    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
-      "reference",
-      "email@test.com",
-      "apiToken",
-      subdomain,
-      "Groups",
-      "",
-      "2019-01-01T23:01:01Z",
-      "2019-01-01T23:01:01Z",
-      "satisfactionRatingsScore",
-      20,
-      300,
-      300,
-      "http://%s.localhosttestdomain/%s",
-      "");
-
-    try (PagedIterator pagedIterator = new PagedIterator(config, objectType, subdomain)) {
-      Schema actual = pagedIterator.getRecordSchema(Schema.nullableOf(expected));
-      Assert.assertEquals(expected, actual);
-    }
-  }
-
-  @Test
-  public void testGetRecordSchemaUnionSimple() throws IOException {
-    ObjectType objectType = ObjectType.GROUPS;
-    String subdomain = "subdomain";
-    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
-      "reference",
-      "email@test.com",
-      "apiToken",
-      subdomain,
-      "Groups",
-      "",
-      "2019-01-01T23:01:01Z",
-      "2019-01-01T23:01:01Z",
-      "satisfactionRatingsScore",
-      20,
-      300,
-      300,
-      "http://%s.localhosttestdomain/%s",
-      "");
-
-    try (PagedIterator pagedIterator = new PagedIterator(config, objectType, subdomain)) {
-      Schema actual = pagedIterator.getRecordSchema(Schema.nullableOf(Schema.of(Schema.Type.LONG)));
-      Assert.assertNull(actual);
-    }
-  }
-
-  @Test
-  public void testGetRecordSchemaSimple() throws IOException {
-    ObjectType objectType = ObjectType.GROUPS;
-    String subdomain = "subdomain";
-    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
-      "reference",
-      "email@test.com",
-      "apiToken",
-      subdomain,
-      "Groups",
-      "",
-      "2019-01-01T23:01:01Z",
-      "2019-01-01T23:01:01Z",
-      "satisfactionRatingsScore",
-      20,
-      300,
-      300,
-      "http://%s.localhosttestdomain/%s",
-      "");
-
-    try (PagedIterator pagedIterator = new PagedIterator(config, objectType, subdomain)) {
-      Schema actual = pagedIterator.getRecordSchema(Schema.of(Schema.Type.LONG));
-      Assert.assertNull(actual);
-    }
-  }
-
   @Test
   public void testHasNext() throws IOException {
     ImmutableMap<String, Object> response = ImmutableMap.of(
@@ -897,4 +737,79 @@ public class PagedIteratorTest {
       Assert.assertFalse(actual);
     }
   }
+
+  @Test
+  public void testHasNextWithPrefetch() throws IOException {
+    ObjectType objectType = ObjectType.GROUPS;
+    String subdomain = "subdomain";
+    ZendeskBatchSourceConfig config = createPrefetchConfig(subdomain);
+    AtomicInteger pages = new AtomicInteger();
+
+    List<String> records = new ArrayList<>();
+    try (PagedIterator pagedIterator = new PagedIterator(config, objectType, subdomain) {
+      @Override
+      Map<String, Object> getResponseAsMap() {
+        int page = pages.incrementAndGet();
+        Map<String, Object> response = new HashMap<>();
+        response.put("groups", Collections.singletonList(new HashMap<>(ImmutableMap.of("key", "val" + page))));
+        response.put("next_page", page < 3 ? "page" + (page + 1) : null);
+        return response;
+      }
+    }) {
+      pagedIterator.setPrefetchPages(2);
+      pagedIterator.forEachRemaining(records::add);
+      Assert.assertFalse(pagedIterator.hasNext());
+    }
+
+    Assert.assertEquals(Arrays.asList("{\"tablename\":\"Groups\",\"key\":\"val1\"}",
+                                      "{\"tablename\":\"Groups\",\"key\":\"val2\"}",
+                                      "{\"tablename\":\"Groups\",\"key\":\"val3\"}"), records);
+  }
+
+  @Test
+  public void testCloseStopsPrefetch() throws IOException, InterruptedException {
+    ObjectType objectType = ObjectType.GROUPS;
+    String subdomain = "subdomain";
+    ZendeskBatchSourceConfig config = createPrefetchConfig(subdomain);
+    AtomicInteger pages = new AtomicInteger();
+
+    PagedIterator pagedIterator = new PagedIterator(config, objectType, subdomain) {
+      @Override
+      Map<String, Object> getResponseAsMap() {
+        pages.incrementAndGet();
+        Map<String, Object> response = new HashMap<>();
+        response.put("groups", Collections.singletonList(new HashMap<>(ImmutableMap.of("key", "val"))));
+        response.put("next_page", "next");
+        return response;
+      }
+    };
+    pagedIterator.setPrefetchPages(2);
+    Assert.assertTrue(pagedIterator.hasNext());
+    pagedIterator.next();
+    pagedIterator.close();
+
+    // the page taken, the pages queued and the page waiting to be queued
+    int fetched = pages.get();
+    Assert.assertTrue(fetched <= 4);
+    TimeUnit.MILLISECONDS.sleep(100);
+    Assert.assertEquals(fetched, pages.get());
+  }
+
+  private static ZendeskBatchSourceConfig createPrefetchConfig(String subdomain) {
+    return new ZendeskBatchSourceConfig(
+      "reference",
+      "email@test.com",
+      "apiToken",
+      subdomain,
+      "Groups",
+      "",
+      "2019-01-01T23:01:01Z",
+      "2019-01-01T23:01:01Z",
+      "satisfactionRatingsScore",
+      20,
+      300,
+      300,
+      "http://%s.localhosttestdomain/%s",
+      "");
+  }
 }
@@ -0,0 +1,197 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.zendesk.source.batch.ZendeskBatchSourceConfig;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RecordPagedIteratorTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private static final Gson GSON = new GsonBuilder().create();
+
+  private static final ZendeskBatchSourceConfig CONFIG = new ZendeskBatchSourceConfig(
+    "reference",
+    "email@test.com",
+    "apiToken",
+    "subdomain",
+    "Tickets",
+    "",
+    "2019-01-01T23:01:01Z",
+    null,
+    null,
+    20,
+    300,
+    300,
+    "http://%s.localhosttestdomain/%s",
+    "");
+
+  @Test
+  public void testGetNextPageWithinTimeRange() throws IOException {
+    try (RecordPagedIterator pagedIterator = new RecordPagedIterator(
+      CONFIG, ObjectType.TICKETS, "subdomain", ObjectType.TICKETS.getObjectSchema(), 1546383661L, 1577836800L)) {
+      String actual = pagedIterator.getNextPage(ImmutableMap.of("next_page", "page2",
+        "end_time", 1577836799L,
+        "count", 1000));
+      Assert.assertEquals("page2", actual);
+    }
+  }
+
+  @Test
+  public void testGetNextPageAtEndOfTimeRange() throws IOException {
+    try (RecordPagedIterator pagedIterator = new RecordPagedIterator(
+      CONFIG, ObjectType.TICKETS, "subdomain", ObjectType.TICKETS.getObjectSchema(), 1546383661L, 1577836800L)) {
+      String actual = pagedIterator.getNextPage(ImmutableMap.of("next_page", "page2",
+        "end_time", 1577836800L,
+        "count", 1000));
+      Assert.assertNull(actual);
+    }
+  }
+
+  @Test
+  public void testCursorExportReadsOverlap() throws IOException {
+    String[] responses = {
+      "{\"tickets\":[{\"id\":1,\"generated_timestamp\":1000},{\"id\":2,\"generated_timestamp\":2000}]," +
+        "\"after_url\":\"page2\",\"end_of_stream\":false}",
+      "{\"tickets\":[{\"id\":3,\"generated_timestamp\":3000}],\"after_url\":\"page3\",\"end_of_stream\":true}",
+      "{\"tickets\":[{\"id\":3,\"generated_timestamp\":3000},{\"id\":4,\"generated_timestamp\":2800}]," +
+        "\"after_url\":\"page4\",\"end_of_stream\":true}"
+    };
+    AtomicInteger pages = new AtomicInteger();
+    Schema schema = Schema.recordOf("ticket", Schema.Field.of("id", Schema.of(Schema.Type.LONG)));
+
+    List<Long> ids = new ArrayList<>();
+    try (RecordPagedIterator pagedIterator = new RecordPagedIterator(
+      createCursorConfig(), ObjectType.TICKETS, "subdomain", schema) {
+      @Override
+      Page<StructuredRecord> fetchPage() throws IOException {
+        return decode(new StringReader(responses[pages.getAndIncrement()]));
+      }
+    }) {
+      pagedIterator.forEachRemaining(record -> ids.add(record.get("id")));
+    }
+
+    Assert.assertEquals(3, pages.get());
+    Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 4L), ids);
+  }
+
+  @Test
+  public void testGetNextPageCursor() throws IOException {
+    try (RecordPagedIterator pagedIterator = new RecordPagedIterator(
+      createCursorConfig(), ObjectType.TICKETS, "subdomain", ObjectType.TICKETS.getObjectSchema(), 1546383661L,
+      1577836800L)) {
+      Assert.assertEquals("page2", pagedIterator.getNextPage(ImmutableMap.of(
+        "after_url", "page2", "end_of_stream", false, PageDecoder.LAST_EXPORT_TIME, 1577836799L)));
+      Assert.assertNull(pagedIterator.getNextPage(ImmutableMap.of(
+        "after_url", "page2", "end_of_stream", false, PageDecoder.LAST_EXPORT_TIME, 1577836800L)));
+      Assert.assertNull(pagedIterator.getNextPage(ImmutableMap.of("after_url", "page2", "end_of_stream", true)));
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testGetNextPageIncompleteCursor() throws IOException {
+    try (RecordPagedIterator pagedIterator = new RecordPagedIterator(
+      createCursorConfig(), ObjectType.TICKETS, "subdomain", ObjectType.TICKETS.getObjectSchema())) {
+      pagedIterator.getNextPage(ImmutableMap.of("end_of_stream", false));
+    }
+  }
+
+  @Test
+  public void testGetProgressOfExport() throws IOException {
+    Schema schema = Schema.recordOf("ticket", Schema.Field.of("id", Schema.of(Schema.Type.LONG)));
+    try (RecordPagedIterator pagedIterator = new RecordPagedIterator(
+      CONFIG, ObjectType.TICKETS, "subdomain", schema, 1577836800L, 1577836900L) {
+      @Override
+      Page<StructuredRecord> fetchPage() throws IOException {
+        return decode(new StringReader("{\"tickets\":[{\"id\":1}],\"count\":1,\"end_time\":1577836825}"));
+      }
+    }) {
+      Assert.assertEquals(0f, pagedIterator.getProgress(), 0);
+      Assert.assertTrue(pagedIterator.hasNext());
+      Assert.assertEquals(0.25f, pagedIterator.getProgress(), 0.001);
+    }
+  }
+
+  @Test
+  public void testGetProgressOfList() throws IOException {
+    Schema schema = Schema.recordOf("group", Schema.Field.of("id", Schema.of(Schema.Type.LONG)));
+    try (RecordPagedIterator pagedIterator = new RecordPagedIterator(
+      CONFIG, ObjectType.GROUPS, "subdomain", schema) {
+      @Override
+      Page<StructuredRecord> fetchPage() throws IOException {
+        return decode(new StringReader("{\"groups\":[{\"id\":1},{\"id\":2}],\"count\":4}"));
+      }
+    }) {
+      pagedIterator.next();
+      Assert.assertEquals(0.25f, pagedIterator.getProgress(), 0.001);
+      pagedIterator.next();
+      Assert.assertEquals(0.5f, pagedIterator.getProgress(), 0.001);
+    }
+  }
+
+  @Test
+  public void testReplaySpooledPages() throws IOException {
+    PageSpool pageSpool = new PageSpool(temporaryFolder.getRoot().getAbsolutePath(), new Configuration());
+    pageSpool.write(0, toStream(
+      "{\"groups\":[{\"id\":1}],\"next_page\":\"http://subdomain.localhosttestdomain/page2\"}"));
+    pageSpool.write(1, toStream("{\"groups\":[{\"id\":2}],\"next_page\":null}"));
+    Schema schema = Schema.recordOf("group", Schema.Field.of("id", Schema.of(Schema.Type.LONG)));
+
+    List<Long> ids = new ArrayList<>();
+    try (RecordPagedIterator pagedIterator = new RecordPagedIterator(CONFIG, ObjectType.GROUPS, "subdomain", schema)) {
+      pagedIterator.setPageSpool(pageSpool);
+      pagedIterator.forEachRemaining(record -> ids.add(record.get("id")));
+    }
+
+    Assert.assertEquals(Arrays.asList(1L, 2L), ids);
+  }
+
+  private static InputStream toStream(String page) {
+    return new ByteArrayInputStream(page.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static ZendeskBatchSourceConfig createCursorConfig() {
+    JsonObject configJson = GSON.toJsonTree(CONFIG).getAsJsonObject();
+    configJson.addProperty(ZendeskBatchSourceConfig.PROPERTY_EXPORT_PAGINATION,
+                           ZendeskBatchSourceConfig.EXPORT_PAGINATION_CURSOR);
+    return GSON.fromJson(configJson, ZendeskBatchSourceConfig.class);
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import com.github.rholder.retry.RetryException;
+import com.github.rholder.retry.Retryer;
+import com.google.gson.JsonSyntaxException;
+import io.cdap.plugin.zendesk.source.batch.metrics.ZendeskMetrics;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
+
+import org.apache.http.client.HttpResponseException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RetryPolicyTest {
+
+  private static final ZendeskMetrics METRICS = ZendeskMetrics.forObject("retry-policy", "subdomain",
+                                                                         ObjectType.GROUPS);
+
+  @Test
+  public void testIsRetryable() {
+    Assert.assertTrue(RetryPolicy.isRetryable(new RateLimitException()));
+    Assert.assertTrue(RetryPolicy.isRetryable(new HttpResponseException(502, "Bad Gateway")));
+    Assert.assertTrue(RetryPolicy.isRetryable(new HttpResponseException(503, "Service Unavailable")));
+    Assert.assertTrue(RetryPolicy.isRetryable(new SocketException("Connection reset")));
+    Assert.assertTrue(RetryPolicy.isRetryable(new SocketTimeoutException("Read timed out")));
+    // a read timeout while parsing the page
+    Assert.assertTrue(RetryPolicy.isRetryable(new JsonSyntaxException(new SocketTimeoutException("Read timed out"))));
+
+    Assert.assertFalse(RetryPolicy.isRetryable(new HttpResponseException(404, "Not Found")));
+    Assert.assertFalse(RetryPolicy.isRetryable(new JsonSyntaxException("Malformed page")));
+    Assert.assertFalse(RetryPolicy.isRetryable(new IllegalStateException()));
+  }
+
+  @Test
+  public void testBackoff() {
+    RetryPolicy retryPolicy = new RetryPolicy(10, 100, 1000, 10000);
+
+    Assert.assertEquals(100, retryPolicy.getBackoffMillis(1, 1));
+    Assert.assertEquals(200, retryPolicy.getBackoffMillis(2, 1));
+    Assert.assertEquals(400, retryPolicy.getBackoffMillis(3, 1));
+    Assert.assertEquals(1000, retryPolicy.getBackoffMillis(5, 1));
+    Assert.assertEquals(1000, retryPolicy.getBackoffMillis(100, 1));
+    // full jitter
+    Assert.assertEquals(200, retryPolicy.getBackoffMillis(3, 0.5));
+    Assert.assertEquals(0, retryPolicy.getBackoffMillis(3, 0));
+  }
+
+  @Test
+  public void testStopAtMaxRetryTime() throws ExecutionException {
+    RetryPolicy retryPolicy = new RetryPolicy(1000, 10, 10, 50);
+    Retryer<Object> retryer = retryPolicy.buildRetryer(METRICS);
+    AtomicInteger attempts = new AtomicInteger();
+
+    try {
+      retryer.call(() -> {
+        attempts.incrementAndGet();
+        throw new HttpResponseException(503, "Service Unavailable");
+      });
+      Assert.fail("The server error was not reported");
+    } catch (RetryException e) {
+      // expected
+    }
+
+    Assert.assertEquals(50, retryPolicy.getWaitedMillis());
+    Assert.assertTrue(attempts.get() > 1);
+    Assert.assertTrue(attempts.get() < 1000);
+  }
+
+  @Test
+  public void testMaxRetryTimeSharedByCalls() throws ExecutionException, RetryException {
+    RetryPolicy retryPolicy = new RetryPolicy(1000, 10, 10, 50);
+    Retryer<Object> retryer = retryPolicy.buildRetryer(METRICS);
+    AtomicInteger attempts = new AtomicInteger();
+
+    // every other attempt fails, until the retry time is used up
+    try {
+      while (true) {
+        retryer.call(() -> {
+          if (attempts.incrementAndGet() % 2 == 1) {
+            throw new SocketException("Connection reset");
+          }
+          return attempts.get();
+        });
+      }
+    } catch (RetryException e) {
+      // expected
+    }
+
+    Assert.assertEquals(50, retryPolicy.getWaitedMillis());
+  }
+
+  @Test
+  public void testRateLimitedRetriedWithoutBackoff() throws ExecutionException {
+    RetryPolicy retryPolicy = new RetryPolicy(5, 1000, 1000, 0);
+    Retryer<Object> retryer = retryPolicy.buildRetryer(METRICS);
+    AtomicInteger attempts = new AtomicInteger();
+
+    try {
+      retryer.call(() -> {
+        attempts.incrementAndGet();
+        throw new RateLimitException();
+      });
+      Assert.fail("The rate limit was not reported");
+    } catch (RetryException e) {
+      // expected
+    }
+
+    Assert.assertEquals(5, attempts.get());
+    Assert.assertEquals(0, retryPolicy.getWaitedMillis());
+  }
+
+  @Test
+  public void testNotRetryable() throws RetryException {
+    Retryer<Object> retryer = new RetryPolicy(5, 10, 10, 1000).buildRetryer(METRICS);
+    AtomicInteger attempts = new AtomicInteger();
+
+    try {
+      retryer.call(() -> {
+        attempts.incrementAndGet();
+        throw new HttpResponseException(401, "Unauthorized");
+      });
+      Assert.fail("The error was not reported");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof HttpResponseException);
+    }
+
+    Assert.assertEquals(1, attempts.get());
+  }
+}
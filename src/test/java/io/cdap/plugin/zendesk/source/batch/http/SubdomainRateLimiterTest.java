@@ -0,0 +1,152 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import io.cdap.plugin.zendesk.source.batch.ZendeskBatchSourceConfig;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SubdomainRateLimiterTest {
+
+  private static final Gson GSON = new GsonBuilder().create();
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Test
+  public void testReserveWithinBurst() {
+    SubdomainRateLimiter rateLimiter = new SubdomainRateLimiter(60, new AtomicLong()::get);
+    // ten seconds of a one request per second quota
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(0, rateLimiter.reserve());
+    }
+    Assert.assertEquals(SECOND, rateLimiter.reserve());
+    Assert.assertEquals(2 * SECOND, rateLimiter.reserve());
+  }
+
+  @Test
+  public void testReserveAfterRefill() {
+    AtomicLong clock = new AtomicLong();
+    SubdomainRateLimiter rateLimiter = new SubdomainRateLimiter(60, clock::get);
+    for (int i = 0; i < 10; i++) {
+      rateLimiter.reserve();
+    }
+    clock.addAndGet(3 * SECOND);
+    Assert.assertEquals(0, rateLimiter.reserve());
+    Assert.assertEquals(0, rateLimiter.reserve());
+    Assert.assertEquals(0, rateLimiter.reserve());
+    Assert.assertEquals(SECOND, rateLimiter.reserve());
+  }
+
+  @Test
+  public void testAcquireRecordsWaitedTime() throws InterruptedException {
+    SubdomainRateLimiter rateLimiter = new SubdomainRateLimiter(6000, new AtomicLong()::get);
+    // ten seconds of a hundred requests per second quota
+    for (int i = 0; i < 1000; i++) {
+      rateLimiter.acquire();
+    }
+    Assert.assertEquals(0, rateLimiter.getWaitedNanos());
+    rateLimiter.acquire();
+    Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(10), rateLimiter.getWaitedNanos());
+  }
+
+  @Test
+  public void testUnlimitedUntilLimitReported() {
+    SubdomainRateLimiter rateLimiter = new SubdomainRateLimiter(0, new AtomicLong()::get);
+    for (int i = 0; i < 100; i++) {
+      Assert.assertEquals(0, rateLimiter.reserve());
+    }
+
+    rateLimiter.update(60, 0);
+    Assert.assertEquals(60, rateLimiter.getRequestsPerMinute(), 0);
+    Assert.assertEquals(SECOND, rateLimiter.reserve());
+  }
+
+  @Test
+  public void testUpdateLowersRate() {
+    SubdomainRateLimiter rateLimiter = new SubdomainRateLimiter(600, new AtomicLong()::get);
+    rateLimiter.update(700, null);
+    Assert.assertEquals(600, rateLimiter.getRequestsPerMinute(), 0);
+    rateLimiter.update(60, null);
+    Assert.assertEquals(60, rateLimiter.getRequestsPerMinute(), 0);
+  }
+
+  @Test
+  public void testUpdateRemaining() {
+    SubdomainRateLimiter rateLimiter = new SubdomainRateLimiter(60, new AtomicLong()::get);
+    rateLimiter.update(null, 1);
+    Assert.assertEquals(0, rateLimiter.reserve());
+    Assert.assertEquals(SECOND, rateLimiter.reserve());
+  }
+
+  @Test
+  public void testPause() {
+    AtomicLong clock = new AtomicLong();
+    SubdomainRateLimiter rateLimiter = new SubdomainRateLimiter(60, clock::get);
+    rateLimiter.pause(30);
+    Assert.assertEquals(30 * SECOND, rateLimiter.reserve());
+
+    clock.addAndGet(40 * SECOND);
+    // the tokens earned after the pause, less the one taken during it
+    for (int i = 0; i < 9; i++) {
+      Assert.assertEquals(0, rateLimiter.reserve());
+    }
+    Assert.assertEquals(SECOND, rateLimiter.reserve());
+  }
+
+  @Test
+  public void testForSubdomainKeepsRateOfConfig() {
+    ZendeskBatchSourceConfig config = createConfig("https://%s.zendesk.com/api/v2/%s", 300);
+    SubdomainRateLimiter rateLimiter = SubdomainRateLimiter.forSubdomain(config, "rates");
+    Assert.assertSame(rateLimiter, SubdomainRateLimiter.forSubdomain(config, "rates"));
+    Assert.assertEquals(300, rateLimiter.getRequestsPerMinute(), 0);
+
+    // a later run with another rate is not paced at the rate of the first one
+    SubdomainRateLimiter fasterLimiter = SubdomainRateLimiter.forSubdomain(
+      createConfig("https://%s.zendesk.com/api/v2/%s", 600), "rates");
+    Assert.assertNotSame(rateLimiter, fasterLimiter);
+    Assert.assertEquals(600, fasterLimiter.getRequestsPerMinute(), 0);
+
+    Assert.assertNotSame(rateLimiter, SubdomainRateLimiter.forSubdomain(
+      createConfig("http://localhost/%s/%s", 300), "rates"));
+  }
+
+  private ZendeskBatchSourceConfig createConfig(String baseUrl, int requestsPerMinute) {
+    ZendeskBatchSourceConfig config = new ZendeskBatchSourceConfig(
+      "reference",
+      "email@test.com",
+      "apiToken",
+      "rates",
+      null,
+      "",
+      "2019-01-01T00:00:00Z",
+      null,
+      null,
+      5,
+      10,
+      10,
+      baseUrl,
+      null);
+    JsonObject configJson = GSON.toJsonTree(config).getAsJsonObject();
+    configJson.addProperty(ZendeskBatchSourceConfig.PROPERTY_MAX_REQUESTS_PER_MINUTE, requestsPerMinute);
+    return GSON.fromJson(configJson, ZendeskBatchSourceConfig.class);
+  }
+}
@@ -0,0 +1,508 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.http;
+
+import com.google.common.base.CaseFormat;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In-process HTTP server simulating the Zendesk API, for tests reading over actual HTTP.
+ * <p>
+ * Every endpoint of {@link ObjectType} is served with synthetic objects generated from the object schema:
+ * <ul>
+ *   <li>time based incremental exports, with 1000 objects a page as Zendesk returns them</li>
+ *   <li>cursor based incremental exports and lists, with pages of the configured size, or of the size asked for
+ *   a list</li>
+ *   <li>comments of an entity, on a single page</li>
+ * </ul>
+ * The objects of an export are spread evenly over a year starting at {@link #FIRST_OBJECT_TIME}.
+ * Responses can be delayed, and a share of them can be answered with 429 or 503 errors.
+ */
+public class ZendeskApiSimulator implements Closeable {
+
+  /**
+   * Export time of the first object of an export, 2019-01-01T00:00:00Z in epoch seconds.
+   */
+  public static final long FIRST_OBJECT_TIME = 1546300800L;
+
+  private static final Gson GSON = new GsonBuilder().serializeNulls().create();
+  private static final long TIME_RANGE_SECONDS = TimeUnit.DAYS.toSeconds(365);
+  private static final int INCREMENTAL_PAGE_SIZE = 1000;
+  private static final int COMMENTS_PER_ENTITY = 3;
+  private static final int SIDELOADED_OBJECTS = 10;
+  private static final String API_PREFIX = "/api/v2/";
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final Map<Pattern, ObjectType> endpoints = new LinkedHashMap<>();
+  private final Map<Pattern, ObjectType> cursorEndpoints = new LinkedHashMap<>();
+  private final Random random = new Random(0);
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong rateLimitedCount = new AtomicLong();
+  private final AtomicLong serverErrorCount = new AtomicLong();
+  private final AtomicLong bytesSent = new AtomicLong();
+  private final AtomicLong compressedCount = new AtomicLong();
+
+  private volatile int objectCount = 1000;
+  private volatile int pageSize = 100;
+  private volatile long latencyMillis;
+  private volatile double rateLimitedShare;
+  private volatile double serverErrorShare;
+  private volatile int retryAfterSeconds = 1;
+  private volatile int requestsPerMinute;
+  private long minuteStart;
+  private int minuteRequests;
+
+  /**
+   * Starts the simulator on a free port of the loopback address.
+   *
+   * @throws IOException if the server cannot be started
+   */
+  public ZendeskApiSimulator() throws IOException {
+    for (ObjectType objectType : ObjectType.values()) {
+      endpoints.put(toPattern(objectType.getApiEndpoint()), objectType);
+      if (objectType.getCursorApiEndpoint() != null) {
+        cursorEndpoints.put(toPattern(objectType.getCursorApiEndpoint()), objectType);
+      }
+    }
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/", this::handle);
+    executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                                               .setNameFormat("zendesk-simulator-%d")
+                                               .setDaemon(true)
+                                               .build());
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  /**
+   * Returns the format of the API urls, to be set as the Zendesk base url of the config.
+   *
+   * @return the url format taking the subdomain and the endpoint
+   */
+  public String getBaseUrl() {
+    return String.format("http://%s:%d/%%s%s%%s", server.getAddress().getHostString(),
+                         server.getAddress().getPort(), API_PREFIX);
+  }
+
+  /**
+   * Sets the number of objects of every export and list. Defaults to 1000.
+   */
+  public void setObjectCount(int objectCount) {
+    this.objectCount = objectCount;
+  }
+
+  /**
+   * Sets the number of objects of the pages of lists and cursor based exports. Defaults to 100.
+   */
+  public void setPageSize(int pageSize) {
+    this.pageSize = pageSize;
+  }
+
+  /**
+   * Sets the time every response is delayed by. No delay by default.
+   */
+  public void setLatencyMillis(long latencyMillis) {
+    this.latencyMillis = latencyMillis;
+  }
+
+  /**
+   * Sets the share of the requests answered with a 429 error, between 0 and 1. None by default.
+   */
+  public void setRateLimitedShare(double rateLimitedShare) {
+    this.rateLimitedShare = rateLimitedShare;
+  }
+
+  /**
+   * Sets the share of the requests answered with a 503 error, between 0 and 1. None by default.
+   */
+  public void setServerErrorShare(double serverErrorShare) {
+    this.serverErrorShare = serverErrorShare;
+  }
+
+  /**
+   * Sets the 'Retry-After' time of the 429 errors. Defaults to one second.
+   */
+  public void setRetryAfterSeconds(int retryAfterSeconds) {
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  /**
+   * Sets the rate limit reported in the 'X-Rate-Limit' header, and enforced with 429 errors. Not limited by default.
+   */
+  public void setRequestsPerMinute(int requestsPerMinute) {
+    this.requestsPerMinute = requestsPerMinute;
+  }
+
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  public long getRateLimitedCount() {
+    return rateLimitedCount.get();
+  }
+
+  public long getServerErrorCount() {
+    return serverErrorCount.get();
+  }
+
+  /**
+   * Returns the number of bytes of the response bodies sent, as transferred.
+   */
+  public long getBytesSent() {
+    return bytesSent.get();
+  }
+
+  /**
+   * Returns the number of responses sent gzip compressed, as asked by the 'Accept-Encoding' request header.
+   */
+  public long getCompressedCount() {
+    return compressedCount.get();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      requestCount.incrementAndGet();
+      if (latencyMillis > 0) {
+        TimeUnit.MILLISECONDS.sleep(latencyMillis);
+      }
+      Integer remaining = null;
+      double draw;
+      synchronized (this) {
+        draw = random.nextDouble();
+        if (requestsPerMinute > 0) {
+          long now = System.nanoTime();
+          if (now - minuteStart >= TimeUnit.MINUTES.toNanos(1)) {
+            minuteStart = now;
+            minuteRequests = 0;
+          }
+          remaining = requestsPerMinute - ++minuteRequests;
+          exchange.getResponseHeaders().add("X-Rate-Limit", String.valueOf(requestsPerMinute));
+          exchange.getResponseHeaders().add("X-Rate-Limit-Remaining", String.valueOf(Math.max(0, remaining)));
+        }
+      }
+      if (draw < rateLimitedShare || (remaining != null && remaining < 0)) {
+        rateLimitedCount.incrementAndGet();
+        exchange.getResponseHeaders().add("Retry-After", String.valueOf(retryAfterSeconds));
+        send(exchange, 429, "{\"error\":\"APIRateLimitExceeded\"}");
+        return;
+      }
+      if (draw < rateLimitedShare + serverErrorShare) {
+        serverErrorCount.incrementAndGet();
+        send(exchange, 503, "{\"error\":\"ServiceUnavailable\"}");
+        return;
+      }
+      Map<String, Object> page = createPage(exchange);
+      if (page == null) {
+        send(exchange, 404, "{\"error\":\"InvalidEndpoint\"}");
+      } else {
+        send(exchange, 200, GSON.toJson(page));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private Map<String, Object> createPage(HttpExchange exchange) {
+    String path = exchange.getRequestURI().getPath();
+    int prefix = path.indexOf(API_PREFIX);
+    if (prefix < 0) {
+      return null;
+    }
+    String url = String.format("http://%s%s", exchange.getRequestHeaders().getFirst("Host"), path);
+    String endpoint = path.substring(prefix + API_PREFIX.length());
+    Map<String, String> params = getParams(exchange.getRequestURI().getRawQuery());
+
+    for (Map.Entry<Pattern, ObjectType> entry : cursorEndpoints.entrySet()) {
+      if (entry.getKey().matcher(endpoint).matches()) {
+        return createCursorPage(entry.getValue(), url, params);
+      }
+    }
+    for (Map.Entry<Pattern, ObjectType> entry : endpoints.entrySet()) {
+      Matcher matcher = entry.getKey().matcher(endpoint);
+      if (!matcher.matches()) {
+        continue;
+      }
+      ObjectType objectType = entry.getValue();
+      if (matcher.groupCount() > 0) {
+        return createEntityPage(objectType, Long.parseLong(matcher.group(1)));
+      }
+      return objectType.isBatch()
+        ? createIncrementalPage(objectType, url, params)
+        : createListPage(objectType, url, params);
+    }
+    return null;
+  }
+
+  private Map<String, Object> createIncrementalPage(ObjectType objectType, String url, Map<String, String> params) {
+    long startTime = Long.parseLong(params.getOrDefault("start_time", "0"));
+    int from = getFirstIndexAt(startTime);
+    int to = Math.min(objectCount, from + INCREMENTAL_PAGE_SIZE);
+    // The objects have distinct times, the next page starts right after the last object of the page
+    long endTime = to > from ? getTime(to - 1) + 1 : startTime;
+
+    Map<String, Object> page = new LinkedHashMap<>();
+    page.put(objectType.getResponseKey(), createObjects(objectType, from, to));
+    addSideloads(page, objectType, params, from, to);
+    page.put("next_page", withInclude(String.format("%s?start_time=%d", url, endTime), params));
+    page.put("count", to - from);
+    page.put("end_time", endTime);
+    return page;
+  }
+
+  private Map<String, Object> createCursorPage(ObjectType objectType, String url, Map<String, String> params) {
+    int from = params.containsKey("cursor")
+      ? Integer.parseInt(params.get("cursor"))
+      : getFirstIndexAt(Long.parseLong(params.getOrDefault("start_time", "0")));
+    int to = Math.min(objectCount, from + pageSize);
+
+    Map<String, Object> page = new LinkedHashMap<>();
+    page.put(objectType.getResponseKey(), createObjects(objectType, from, to));
+    addSideloads(page, objectType, params, from, to);
+    page.put("after_url", to < objectCount ? withInclude(String.format("%s?cursor=%d", url, to), params) : null);
+    page.put("after_cursor", to < objectCount ? String.valueOf(to) : null);
+    page.put("end_of_stream", to >= objectCount);
+    return page;
+  }
+
+  private Map<String, Object> createListPage(ObjectType objectType, String url, Map<String, String> params) {
+    int pageNumber = Integer.parseInt(params.getOrDefault("page", "1"));
+    int perPage = params.containsKey("per_page") ? Integer.parseInt(params.get("per_page")) : pageSize;
+    int from = Math.min(objectCount, (pageNumber - 1) * perPage);
+    int to = Math.min(objectCount, from + perPage);
+    // the page size asked is kept by the following pages
+    String pageUrl = params.containsKey("per_page") ? url + "?per_page=" + perPage + "&page=%d" : url + "?page=%d";
+
+    Map<String, Object> page = new LinkedHashMap<>();
+    page.put(objectType.getResponseKey(), createObjects(objectType, from, to));
+    page.put("next_page", to < objectCount ? String.format(pageUrl, pageNumber + 1) : null);
+    page.put("previous_page", pageNumber > 1 ? String.format(pageUrl, pageNumber - 1) : null);
+    page.put("count", objectCount);
+    return page;
+  }
+
+  private Map<String, Object> createEntityPage(ObjectType objectType, long entityId) {
+    int from = (int) (entityId * COMMENTS_PER_ENTITY);
+    Map<String, Object> page = new LinkedHashMap<>();
+    page.put(objectType.getResponseKey(), createObjects(objectType, from, from + COMMENTS_PER_ENTITY));
+    page.put("next_page", null);
+    page.put("count", COMMENTS_PER_ENTITY);
+    return page;
+  }
+
+  /**
+   * Adds the objects included with the page: the metrics of each object of the page, and the users, groups and
+   * organizations, which are shared by the objects of the same index modulo {@value #SIDELOADED_OBJECTS}.
+   */
+  private void addSideloads(Map<String, Object> page, ObjectType objectType, Map<String, String> params,
+                            int from, int to) {
+    String include = params.get("include");
+    if (include == null) {
+      return;
+    }
+    List<String> includes = Arrays.asList(include.split(","));
+    for (Map.Entry<ObjectType, String> sideload : objectType.getSideloads().entrySet()) {
+      if (!includes.contains(sideload.getValue())) {
+        continue;
+      }
+      ObjectType sideloadType = sideload.getKey();
+      List<Object> objects = new ArrayList<>();
+      if (sideloadType == ObjectType.TICKET_METRICS) {
+        for (int i = from; i < to; i++) {
+          Map<String, Object> object = createObject(sideloadType, i);
+          object.put("ticket_id", (long) i);
+          objects.add(object);
+        }
+      } else {
+        for (int i = from; i < Math.min(to, from + SIDELOADED_OBJECTS); i++) {
+          objects.add(createObject(sideloadType, i % SIDELOADED_OBJECTS));
+        }
+      }
+      page.put(sideload.getValue(), objects);
+    }
+  }
+
+  private static String withInclude(String url, Map<String, String> params) {
+    return params.containsKey("include") ? String.format("%s&include=%s", url, params.get("include")) : url;
+  }
+
+  private List<Object> createObjects(ObjectType objectType, int from, int to) {
+    List<Object> objects = new ArrayList<>();
+    for (int i = from; i < to; i++) {
+      Map<String, Object> object = createObject(objectType, i);
+      if (objectType.getChildKey() == null) {
+        objects.add(object);
+        continue;
+      }
+      object.put("event_type", "Comment");
+      Map<String, Object> parent = new LinkedHashMap<>();
+      parent.put("id", i);
+      parent.put(objectType.getExportTimeKey(), getTime(i));
+      parent.put(objectType.getChildKey(), Collections.singletonList(object));
+      objects.add(parent);
+    }
+    return objects;
+  }
+
+  private Map<String, Object> createObject(ObjectType objectType, int index) {
+    Map<String, Object> object = new LinkedHashMap<>();
+    Schema schema = objectType.getObjectSchema();
+    if (schema != null) {
+      for (Schema.Field field : schema.getFields()) {
+        // the optional values are left out, as most of them are in actual responses
+        if (!field.getSchema().isNullable()) {
+          String key = CaseFormat.LOWER_CAMEL.to(CaseFormat.LOWER_UNDERSCORE, field.getName());
+          object.put(key, createValue(field.getSchema(), index));
+        }
+      }
+    }
+    object.put("id", (long) index);
+    String exportTimeKey = objectType.getExportTimeKey();
+    if (exportTimeKey != null && objectType.getChildKey() == null) {
+      Schema.Field field = schema.getField(CaseFormat.LOWER_UNDERSCORE.to(CaseFormat.LOWER_CAMEL, exportTimeKey));
+      boolean isoTime = field != null && field.getSchema().getNonNullable().getType() == Schema.Type.STRING;
+      object.put(exportTimeKey, isoTime ? Instant.ofEpochSecond(getTime(index)).toString() : getTime(index));
+    }
+    return object;
+  }
+
+  private static Object createValue(Schema schema, int index) {
+    switch (schema.getType()) {
+      case BOOLEAN:
+        return index % 2 == 0;
+      case INT:
+      case LONG:
+        return index;
+      case FLOAT:
+      case DOUBLE:
+        return index / 10.0;
+      case STRING:
+        return "value " + index;
+      case ENUM:
+        return schema.getEnumValue(index % schema.getEnumValues().size());
+      case ARRAY:
+        return Collections.singletonList(createValue(schema.getComponentSchema(), index));
+      case MAP:
+        return Collections.singletonMap("key", createValue(schema.getMapSchema().getValue(), index));
+      case RECORD:
+        Map<String, Object> record = new LinkedHashMap<>();
+        for (Schema.Field field : schema.getFields()) {
+          record.put(CaseFormat.LOWER_CAMEL.to(CaseFormat.LOWER_UNDERSCORE, field.getName()),
+                     createValue(field.getSchema(), index));
+        }
+        return record;
+      default:
+        return createValue(schema.getNonNullable(), index);
+    }
+  }
+
+  /**
+   * Returns the export time of an object, the times being distinct as long as there are fewer objects than seconds.
+   */
+  private long getTime(int index) {
+    return FIRST_OBJECT_TIME + index * TIME_RANGE_SECONDS / objectCount;
+  }
+
+  private int getFirstIndexAt(long time) {
+    if (time <= FIRST_OBJECT_TIME) {
+      return 0;
+    }
+    int index = (int) Math.min(objectCount, (time - FIRST_OBJECT_TIME) * objectCount / TIME_RANGE_SECONDS);
+    while (index > 0 && getTime(index - 1) >= time) {
+      index--;
+    }
+    while (index < objectCount && getTime(index) < time) {
+      index++;
+    }
+    return index;
+  }
+
+  private static Pattern toPattern(String endpoint) {
+    String path = endpoint.split("\\?")[0];
+    return Pattern.compile(Pattern.quote(path).replace("%s", "\\E(\\d+)\\Q"));
+  }
+
+  private static Map<String, String> getParams(String query) {
+    Map<String, String> params = new HashMap<>();
+    if (query == null) {
+      return params;
+    }
+    for (String param : query.split("&")) {
+      String[] keyValue = param.split("=", 2);
+      params.put(keyValue[0], keyValue.length > 1 ? keyValue[1] : "");
+    }
+    return params;
+  }
+
+  private void send(HttpExchange exchange, int statusCode, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+    String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+    if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+      try (GZIPOutputStream outputStream = new GZIPOutputStream(compressed)) {
+        outputStream.write(bytes);
+      }
+      bytes = compressed.toByteArray();
+      exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+      compressedCount.incrementAndGet();
+    }
+    bytesSent.addAndGet(bytes.length);
+    exchange.sendResponseHeaders(statusCode, bytes.length);
+    try (OutputStream outputStream = exchange.getResponseBody()) {
+      outputStream.write(bytes);
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.zendesk.source.batch.metrics;
+
+import io.cdap.cdap.api.metrics.Metrics;
+import io.cdap.plugin.zendesk.source.common.ObjectType;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class ZendeskMetricsTest {
+
+  @Test
+  public void testPublish() {
+    ZendeskMetrics metrics = ZendeskMetrics.forObject("publish", "subdomain", ObjectType.TICKETS);
+    metrics.recordRequest(TimeUnit.MILLISECONDS.toNanos(50));
+    metrics.recordRequest(TimeUnit.MILLISECONDS.toNanos(300));
+    metrics.recordRequest(TimeUnit.SECONDS.toNanos(20));
+    metrics.recordBytes(1024);
+    metrics.recordPage(TimeUnit.MILLISECONDS.toNanos(7));
+    metrics.recordRecord();
+    metrics.recordRecord();
+    metrics.recordRateLimited();
+    metrics.recordRetry();
+    metrics.recordWait(TimeUnit.SECONDS.toNanos(1));
+
+    RecordingMetrics recorded = new RecordingMetrics();
+    ZendeskMetrics.publish("publish", recorded);
+
+    Assert.assertEquals(3, recorded.get("subdomain.tickets.requests"));
+    Assert.assertEquals(1024, recorded.get("subdomain.tickets.bytes"));
+    Assert.assertEquals(1, recorded.get("subdomain.tickets.pages"));
+    Assert.assertEquals(2, recorded.get("subdomain.tickets.records"));
+    Assert.assertEquals(1, recorded.get("subdomain.tickets.rate.limited"));
+    Assert.assertEquals(1, recorded.get("subdomain.tickets.retries"));
+    Assert.assertEquals(20350, recorded.get("subdomain.tickets.request.time.ms"));
+    Assert.assertEquals(7, recorded.get("subdomain.tickets.decode.time.ms"));
+    Assert.assertEquals(1000, recorded.get("subdomain.tickets.wait.time.ms"));
+    Assert.assertEquals(1, recorded.get("subdomain.tickets.request.latency.le.100ms"));
+    Assert.assertEquals(1, recorded.get("subdomain.tickets.request.latency.le.500ms"));
+    Assert.assertEquals(1, recorded.get("subdomain.tickets.request.latency.le.inf"));
+    Assert.assertEquals(0, recorded.get("subdomain.tickets.request.latency.le.250ms"));
+  }
+
+  @Test
+  public void testPublishDelta() {
+    ZendeskMetrics metrics = ZendeskMetrics.forObject("delta", "subdomain", ObjectType.GROUPS);
+    metrics.recordPage(TimeUnit.MICROSECONDS.toNanos(1500));
+    metrics.recordRecord();
+    RecordingMetrics recorded = new RecordingMetrics();
+    ZendeskMetrics.publish("delta", recorded);
+
+    metrics.recordPage(TimeUnit.MICROSECONDS.toNanos(700));
+    ZendeskMetrics.publish("delta", recorded);
+
+    Assert.assertEquals(1, recorded.get("subdomain.groups.records"));
+    Assert.assertEquals(2, recorded.get("subdomain.groups.pages"));
+    // the remainder of the first page is published with the second one
+    Assert.assertEquals(2, recorded.get("subdomain.groups.decode.time.ms"));
+  }
+
+  @Test
+  public void testPublishByReferenceName() {
+    ZendeskMetrics.forObject("first", "subdomain", ObjectType.USERS).recordRecord();
+    ZendeskMetrics.forObject("second", "subdomain", ObjectType.USERS).recordRecord();
+
+    RecordingMetrics recorded = new RecordingMetrics();
+    ZendeskMetrics.publish("first", recorded);
+
+    Assert.assertEquals(1, recorded.get("subdomain.users.records"));
+    recorded = new RecordingMetrics();
+    ZendeskMetrics.publish("second", recorded);
+    Assert.assertEquals(1, recorded.get("subdomain.users.records"));
+  }
+
+  @Test
+  public void testPublishConcurrencyLimit() {
+    ZendeskMetrics metrics = ZendeskMetrics.forObject("concurrency", "subdomain", ObjectType.GROUPS);
+    RecordingMetrics recorded = new RecordingMetrics();
+    ZendeskMetrics.publish("concurrency", recorded);
+    Assert.assertEquals(0, recorded.get("subdomain.groups.concurrency.limit"));
+
+    metrics.recordConcurrencyLimit(4);
+    metrics.recordConcurrencyLimit(2);
+    ZendeskMetrics.publish("concurrency", recorded);
+
+    // the last limit is published
+    Assert.assertEquals(2, recorded.get("subdomain.groups.concurrency.limit"));
+  }
+
+  /**
+   * Sums the counts published by name.
+   */
+  public static class RecordingMetrics implements Metrics {
+
+    private final Map<String, Long> counts = new HashMap<>();
+
+    @Override
+    public void count(String metricName, int delta) {
+      counts.merge(metricName, (long) delta, Long::sum);
+    }
+
+    @Override
+    public void gauge(String metricName, long value) {
+      counts.put(metricName, value);
+    }
+
+    public long get(String metricName) {
+      return counts.getOrDefault(metricName, 0L);
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.zendesk.source.batch.watermark;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+public class FileWatermarkStoreTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testPutAndGet() throws IOException {
+    String directory = temporaryFolder.getRoot().getAbsolutePath();
+    WatermarkStore store = new FileWatermarkStore(directory, new Configuration());
+
+    Assert.assertNull(store.get("subdomain", "Ticket Comments"));
+    store.put("subdomain", "Ticket Comments", 1577836800L);
+    store.put("subdomain", "Ticket Comments", 1577840400L);
+    store.put("other", "Ticket Comments", 1546300800L);
+
+    WatermarkStore reopened = new FileWatermarkStore(directory, new Configuration());
+    Assert.assertEquals(1577840400L, (long) reopened.get("subdomain", "Ticket Comments"));
+    Assert.assertEquals(1546300800L, (long) reopened.get("other", "Ticket Comments"));
+    Assert.assertNull(reopened.get("subdomain", "Tickets"));
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.plugin.zendesk.source.batch.watermark;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import io.cdap.plugin.zendesk.source.batch.ZendeskBatchSourceConfig;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class WatermarkTrackerTest {
+
+  private static final Gson GSON = new GsonBuilder().create();
+
+  // 2019-01-01T23:01:01Z
+  private static final long START_DATE = 1546383661L;
+
+  @Test
+  public void testGetStartTimes() throws IOException {
+    InMemoryWatermarkStore store = new InMemoryWatermarkStore();
+    store.put("first", "Tickets", START_DATE + 3600);
+    store.put("second", "Tickets", START_DATE - 3600);
+    store.put("first", "Groups", START_DATE + 3600);
+
+    WatermarkTracker tracker = new WatermarkTracker(createConfig(), store, Arrays.asList("Tickets", "Groups"),
+                                                    START_DATE + 7200);
+
+    Assert.assertEquals(ImmutableMap.of("first/Tickets", START_DATE + 3600), tracker.getStartTimes());
+  }
+
+  @Test
+  public void testCommit() throws IOException {
+    InMemoryWatermarkStore store = new InMemoryWatermarkStore();
+    WatermarkTracker tracker = new WatermarkTracker(createConfig(), store, Arrays.asList("Tickets", "Groups"),
+                                                    START_DATE + 7200);
+
+    tracker.commit(new InMemoryWatermarkStore());
+
+    Assert.assertEquals(ImmutableMap.of("first/Tickets", START_DATE + 7200, "second/Tickets", START_DATE + 7200),
+                        store.watermarks);
+  }
+
+  @Test
+  public void testCommitWhenExportStoppedEarly() throws IOException {
+    InMemoryWatermarkStore store = new InMemoryWatermarkStore();
+    InMemoryWatermarkStore positions = new InMemoryWatermarkStore();
+    // the last page read ended ten minutes before the start of the run, within five minutes of the read
+    positions.put("first", "Tickets", START_DATE + 6600);
+    // the export read past the start of the run
+    positions.put("second", "Tickets", START_DATE + 7260);
+    WatermarkTracker tracker = new WatermarkTracker(createConfig(), store, Arrays.asList("Tickets", "Groups"),
+                                                    START_DATE + 7200);
+
+    tracker.commit(positions);
+
+    // the next run reads the tickets updated after the position reached
+    Assert.assertEquals(ImmutableMap.of("first/Tickets", START_DATE + 6600, "second/Tickets", START_DATE + 7200),
+                        store.watermarks);
+  }
+
+  @Test
+  public void testCommitKeepsSideloadedWatermarks() throws IOException {
+    InMemoryWatermarkStore store = new InMemoryWatermarkStore();
+    store.put("first", "Users", START_DATE + 3600);
+    ZendeskBatchSourceConfig config = createConfig("Tickets,Users,Organizations");
+    JsonObject configJson = GSON.toJsonTree(config).getAsJsonObject();
+    configJson.addProperty(ZendeskBatchSourceConfig.PROPERTY_SIDELOAD_WITH_TICKETS, true);
+    config = GSON.fromJson(configJson, ZendeskBatchSourceConfig.class);
+    WatermarkTracker tracker = new WatermarkTracker(config, store, config.getObjects(), START_DATE + 7200);
+
+    tracker.commit(new InMemoryWatermarkStore());
+
+    // only the users and organizations referenced by the tickets were read
+    Assert.assertEquals(ImmutableMap.of("first/Tickets", START_DATE + 7200, "second/Tickets", START_DATE + 7200,
+                                        "first/Users", START_DATE + 3600),
+                        store.watermarks);
+  }
+
+  private static ZendeskBatchSourceConfig createConfig() {
+    return createConfig("Tickets,Groups");
+  }
+
+  private static ZendeskBatchSourceConfig createConfig(String objects) {
+    return new ZendeskBatchSourceConfig(
+      "reference",
+      "email@test.com",
+      "apiToken",
+      "first,second",
+      objects,
+      "",
+      "2019-01-01T23:01:01Z",
+      "",
+      "",
+      20,
+      300,
+      300,
+      "http://%s.localhosttestdomain/%s",
+      "");
+  }
+
+  private static class InMemoryWatermarkStore implements WatermarkStore {
+
+    private final Map<String, Long> watermarks = new HashMap<>();
+
+    @Override
+    public Long get(String subdomain, String object) {
+      return watermarks.get(WatermarkTracker.getKey(subdomain, object));
+    }
+
+    @Override
+    public void put(String subdomain, String object, long watermark) {
+      watermarks.put(WatermarkTracker.getKey(subdomain, object), watermark);
+    }
+  }
+}